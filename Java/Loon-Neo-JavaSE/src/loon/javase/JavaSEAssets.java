@@ -489,10 +489,20 @@ public class JavaSEAssets extends Assets {
 		Exception err = null;
 		String ext = LSystem.getExtension(path);
 		if (ext == null || ext.length() == 0) {
+			// 缓存以补全后缀的路径为键,需按同样的路径查询
+			for (String suff : SUFFIXES) {
+				final String soundPath = path + suff;
+				if (_audio.isCached(soundPath, music)) {
+					return _audio.createSound(soundPath, null, music);
+				}
+			}
 			for (String suff : SUFFIXES) {
 				final String soundPath = path + suff;
 				try {
-					return _audio.createSound(path, new ByteArrayInputStream(
+					if (_audio.isStreamed(soundPath, music)) {
+						return _audio.createMusicStream(streamSource(soundPath));
+					}
+					return _audio.createSound(soundPath, new ByteArrayInputStream(
 							getBytesSync(soundPath)), music);
 				} catch (Exception e) {
 					e.printStackTrace();
@@ -500,7 +510,13 @@ public class JavaSEAssets extends Assets {
 				}
 			}
 		} else {
+			if (_audio.isCached(path, music)) {
+				return _audio.createSound(path, null, music);
+			}
 			try {
+				if (_audio.isStreamed(path, music)) {
+					return _audio.createMusicStream(streamSource(path));
+				}
 				return _audio.createSound(path, new ByteArrayInputStream(
 						getBytesSync(path)), music);
 			} catch (Exception e) {
@@ -511,6 +527,28 @@ public class JavaSEAssets extends Assets {
 		return new Sound.Error(err);
 	}
 
+	/**
+	 * 流式播放音乐使用的数据源,每次打开都重新读取资源文件
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 *             资源不存在
+	 */
+	private JavaSEAudioStream.Source streamSource(final String path)
+			throws IOException {
+		final Resource res = requireResource(path);
+		return new JavaSEAudioStream.Source() {
+			public InputStream open() throws IOException {
+				InputStream in = res.openStream();
+				if (in == null) {
+					throw new FileNotFoundException(path);
+				}
+				return in;
+			}
+		};
+	}
+
 	static ClassLoader classLoader;
 
 	static {
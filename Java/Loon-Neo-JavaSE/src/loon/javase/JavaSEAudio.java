@@ -20,6 +20,8 @@
  */
 package loon.javase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -29,11 +31,25 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 
 import loon.LSystem;
+import loon.Sound;
 import loon.SoundImpl;
 import loon.event.Updateable;
 
 public class JavaSEAudio {
 
+	/**
+	 * 为true时音效与ogg音乐统一经由软件混音器播放(ogg音乐以流式解码)
+	 */
+	public static boolean USE_MIXER = true;
+
+	public static int MAX_VOICES = 32;
+
+	public static long PCM_CACHE_SIZE = 64L * 1024 * 1024;
+
+	private JavaSEAudioMixer mixer;
+
+	private JavaSEPCMCache pcmCache;
+
 	protected static <I> void dispatchLoaded(final SoundImpl<I> sound,
 			final I impl) {
 		Updateable update = new Updateable() {
@@ -56,8 +72,51 @@ public class JavaSEAudio {
 		LSystem.unload(update);
 	}
 
-	public JavaSESound createSound(final String path, final InputStream in,
+	public JavaSEAudioMixer getMixer() {
+		if (mixer == null) {
+			mixer = new JavaSEAudioMixer(MAX_VOICES);
+		}
+		return mixer;
+	}
+
+	public JavaSEPCMCache getPCMCache() {
+		if (pcmCache == null) {
+			pcmCache = new JavaSEPCMCache(PCM_CACHE_SIZE);
+		}
+		return pcmCache;
+	}
+
+	/**
+	 * 指定路径的音效已解码缓存时,可以不再读取文件直接创建
+	 * 
+	 * @param path
+	 * @param music
+	 * @return
+	 */
+	public boolean isCached(String path, boolean music) {
+		return USE_MIXER && !music && getPCMCache().contains(path);
+	}
+
+	/**
+	 * 是否以JavaSEAudioStream流式播放(混音器中的ogg音乐)
+	 * 
+	 * @param path
+	 * @param music
+	 * @return
+	 */
+	public boolean isStreamed(String path, boolean music) {
+		return USE_MIXER && music
+				&& "ogg".equalsIgnoreCase(LSystem.getExtension(path));
+	}
+
+	public Sound createSound(final String path, final InputStream in,
 			final boolean music) {
+		if (USE_MIXER && !music) {
+			return createMixerSound(path, in);
+		}
+		if (USE_MIXER && "ogg".equalsIgnoreCase(LSystem.getExtension(path))) {
+			return createMusicStream(in);
+		}
 		final JavaSESound sound = new JavaSESound();
 		String ext = LSystem.getExtension(path);
 		if ("ogg".equalsIgnoreCase(ext)) {
@@ -103,16 +162,100 @@ public class JavaSEAudio {
 		return sound;
 	}
 
-	public void onPause() {
+	private JavaSEMixerSound createMixerSound(final String path,
+			final InputStream in) {
+		final JavaSEMixerSound sound = new JavaSEMixerSound(getMixer());
+		final JavaSEPCMCache cache = getPCMCache();
+		final JavaSEPCM cached = cache.get(path);
+		if (cached != null) {
+			dispatchLoaded(sound, cached);
+			return sound;
+		}
+		LSystem.load(new Updateable() {
+			public void action(Object o) {
+				try {
+					JavaSEPCM pcm = JavaSEPCM.decode(path, in);
+					cache.put(path, pcm);
+					dispatchLoaded(sound, pcm);
+				} catch (Exception e) {
+					dispatchLoadError(sound, e);
+				}
+			}
+		});
+		return sound;
+	}
 
+	/**
+	 * 只有一个不能重新打开的数据流时,先读入内存再播放(资源文件应使用可重复打开的Source,不占用额外内存)
+	 * 
+	 * @param in
+	 * @return
+	 */
+	private JavaSEMusicSound createMusicStream(final InputStream in) {
+		final JavaSEMusicSound sound = new JavaSEMusicSound(getMixer());
+		LSystem.load(new Updateable() {
+			public void action(Object o) {
+				try {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					byte[] buffer = new byte[8192];
+					for (int len; (len = in.read(buffer)) > 0;) {
+						out.write(buffer, 0, len);
+					}
+					in.close();
+					final byte[] data = out.toByteArray();
+					dispatchLoaded(sound, new JavaSEAudioStream(
+							new JavaSEAudioStream.Source() {
+								public InputStream open() {
+									return new ByteArrayInputStream(data);
+								}
+							}));
+				} catch (Exception e) {
+					dispatchLoadError(sound, e);
+				}
+			}
+		});
+		return sound;
 	}
 
-	public void onResume() {
+	/**
+	 * 从可重复打开的数据源流式播放ogg音乐,循环与seek时重新打开数据源,内存占用与音乐长度无关
+	 * 
+	 * @param source
+	 * @return
+	 */
+	public Sound createMusicStream(final JavaSEAudioStream.Source source) {
+		final JavaSEMusicSound sound = new JavaSEMusicSound(getMixer());
+		LSystem.load(new Updateable() {
+			public void action(Object o) {
+				try {
+					dispatchLoaded(sound, new JavaSEAudioStream(source));
+				} catch (Exception e) {
+					dispatchLoadError(sound, e);
+				}
+			}
+		});
+		return sound;
+	}
 
+	public void onPause() {
+		if (mixer != null) {
+			mixer.pause();
+		}
 	}
 
-	public void onDestroy() {
+	public void onResume() {
+		if (mixer != null) {
+			mixer.resume();
+		}
+	}
 
+	public void onDestroy() {
+		if (mixer != null) {
+			mixer.close();
+		}
+		if (pcmCache != null) {
+			pcmCache.clear();
+		}
 	}
 
 }
@@ -0,0 +1,703 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.util.ArrayList;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.SourceDataLine;
+
+import loon.LSystem;
+
+/**
+ * 软件混音器,只占用一条SourceDataLine,由一个线程把全部声音(voice)混合后输出.
+ * 每个voice可单独设置音量,声道平衡与音调,voice数量达到上限时按优先级与播放时间抢占最旧的低优先级voice.
+ * 流式音乐(JavaSEAudioStream)由一个共享的解码线程填充缓冲区,可淡入淡出与交叉淡化.
+ */
+public class JavaSEAudioMixer implements Runnable {
+
+	public static final int SAMPLE_RATE = 44100;
+
+	public static final int BLOCK_FRAMES = 512;
+
+	private static final int SLOT_BITS = 10;
+
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+	private static final class Voice {
+
+		JavaSEPCM pcm;
+
+		JavaSEAudioStream stream;
+
+		short[] scratch;
+
+		Object owner;
+
+		double position;
+
+		float gain, pan, pitch;
+
+		float fade, fadeTarget, fadeStep;
+
+		boolean loop, active, stopOnFade;
+
+		int priority, generation;
+
+		long order;
+
+	}
+
+	/**
+	 * 为全部流式音乐解码的共享线程
+	 */
+	private final class DecodeWorker implements Runnable {
+
+		@Override
+		public void run() {
+			final ArrayList<JavaSEAudioStream> list = new ArrayList<JavaSEAudioStream>();
+			while (running) {
+				list.clear();
+				synchronized (streams) {
+					list.addAll(streams);
+				}
+				boolean busy = false;
+				for (int i = 0; i < list.size(); i++) {
+					JavaSEAudioStream stream = list.get(i);
+					if (stream.isClosed()) {
+						stream.dispose();
+						synchronized (streams) {
+							streams.remove(stream);
+						}
+						continue;
+					}
+					if (stream.needsFill() && stream.fill()) {
+						busy = true;
+					}
+				}
+				if (!busy) {
+					synchronized (streams) {
+						try {
+							streams.wait(5);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private final Voice[] voices;
+
+	private final ArrayList<JavaSEAudioStream> streams = new ArrayList<JavaSEAudioStream>();
+
+	private Thread decodeThread;
+
+	private final int[] mixLeft = new int[BLOCK_FRAMES];
+
+	private final int[] mixRight = new int[BLOCK_FRAMES];
+
+	private final byte[] output = new byte[BLOCK_FRAMES * 4];
+
+	private SourceDataLine line;
+
+	private Thread thread;
+
+	private volatile boolean running, paused;
+
+	private boolean failed;
+
+	private float masterVolume = 1f;
+
+	private long playOrder;
+
+	private int activeCount, peakVoices, stolenVoices, rejectedVoices;
+
+	public JavaSEAudioMixer(int maxVoices) {
+		int size = Math.max(1, Math.min(maxVoices, SLOT_MASK + 1));
+		this.voices = new Voice[size];
+		for (int i = 0; i < size; i++) {
+			voices[i] = new Voice();
+		}
+	}
+
+	private boolean open() {
+		if (running) {
+			return true;
+		}
+		if (failed) {
+			return false;
+		}
+		try {
+			AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+			DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+			line = (SourceDataLine) AudioSystem.getLine(info);
+			line.open(format, output.length * 4);
+			line.start();
+		} catch (Exception e) {
+			failed = true;
+			LSystem.error("Unable to open the audio mixer line", e);
+			return false;
+		}
+		running = true;
+		thread = new Thread(this, "LoonAudioMixer");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+		decodeThread = new Thread(new DecodeWorker(), "LoonAudioDecoder");
+		decodeThread.setDaemon(true);
+		decodeThread.start();
+		return true;
+	}
+
+	/**
+	 * 把流式音乐交给解码线程填充(播放前调用,以便提前缓冲)
+	 * 
+	 * @param stream
+	 */
+	public void addStream(JavaSEAudioStream stream) {
+		synchronized (streams) {
+			if (!streams.contains(stream)) {
+				streams.add(stream);
+			}
+			streams.notifyAll();
+		}
+	}
+
+	/**
+	 * 播放一段PCM,返回voice的句柄,无法播放(或被更高优先级的声音占满)时返回-1
+	 * 
+	 * @param pcm
+	 * @param owner
+	 * @param gain
+	 * @param pan
+	 *            -1(左)到1(右)
+	 * @param pitch
+	 * @param loop
+	 * @param priority
+	 * @return
+	 */
+	public synchronized int play(JavaSEPCM pcm, Object owner, float gain, float pan, float pitch, boolean loop,
+			int priority) {
+		if (pcm == null || pcm.frames == 0) {
+			return -1;
+		}
+		return start(pcm, null, owner, gain, pan, pitch, loop, priority, 0f);
+	}
+
+	/**
+	 * 播放流式音乐(循环由JavaSEAudioStream.setLooping控制)
+	 * 
+	 * @param stream
+	 * @param owner
+	 * @param gain
+	 * @param pan
+	 * @param pitch
+	 * @param priority
+	 * @param fadeIn
+	 *            淡入时间(秒)
+	 * @return
+	 */
+	public synchronized int play(JavaSEAudioStream stream, Object owner, float gain, float pan, float pitch,
+			int priority, float fadeIn) {
+		if (stream == null) {
+			return -1;
+		}
+		int handle = start(null, stream, owner, gain, pan, pitch, false, priority, fadeIn);
+		if (handle != -1) {
+			addStream(stream);
+		}
+		return handle;
+	}
+
+	private int start(JavaSEPCM pcm, JavaSEAudioStream stream, Object owner, float gain, float pan, float pitch,
+			boolean loop, int priority, float fadeIn) {
+		if (!open()) {
+			return -1;
+		}
+		int slot = -1;
+		Voice victim = null;
+		for (int i = 0; i < voices.length; i++) {
+			Voice v = voices[i];
+			if (!v.active) {
+				slot = i;
+				break;
+			}
+			// 抢占优先级最低,其次是最早开始播放的voice
+			if (v.priority <= priority && (victim == null || v.priority < victim.priority
+					|| (v.priority == victim.priority && v.order < victim.order))) {
+				victim = v;
+				slot = i;
+			}
+		}
+		if (slot == -1) {
+			rejectedVoices++;
+			return -1;
+		}
+		Voice v = voices[slot];
+		if (v.active) {
+			stolenVoices++;
+		} else {
+			activeCount++;
+			if (activeCount > peakVoices) {
+				peakVoices = activeCount;
+			}
+		}
+		v.pcm = pcm;
+		v.stream = stream;
+		v.owner = owner;
+		v.position = 0;
+		v.fadeTarget = 1f;
+		v.stopOnFade = false;
+		if (fadeIn > 0) {
+			v.fade = 0f;
+			v.fadeStep = 1f / (fadeIn * SAMPLE_RATE);
+		} else {
+			v.fade = 1f;
+			v.fadeStep = 0f;
+		}
+		v.gain = gain;
+		v.pan = pan;
+		v.pitch = pitch;
+		v.loop = loop;
+		v.priority = priority;
+		v.order = playOrder++;
+		v.generation = (v.generation + 1) & 0x1FFFFF;
+		v.active = true;
+		return (v.generation << SLOT_BITS) | slot;
+	}
+
+	private Voice voice(int handle) {
+		if (handle < 0) {
+			return null;
+		}
+		Voice v = voices[handle & SLOT_MASK];
+		return v.active && v.generation == (handle >>> SLOT_BITS) ? v : null;
+	}
+
+	private void release(Voice v) {
+		if (v.active) {
+			v.active = false;
+			v.pcm = null;
+			v.stream = null;
+			v.owner = null;
+			activeCount--;
+		}
+	}
+
+	public synchronized void stop(int handle) {
+		Voice v = voice(handle);
+		if (v != null) {
+			release(v);
+		}
+	}
+
+	public synchronized void stop(Object owner) {
+		for (int i = 0; i < voices.length; i++) {
+			if (voices[i].active && voices[i].owner == owner) {
+				release(voices[i]);
+			}
+		}
+	}
+
+	public synchronized void stopAll() {
+		for (int i = 0; i < voices.length; i++) {
+			release(voices[i]);
+		}
+	}
+
+	public synchronized boolean isPlaying(int handle) {
+		return voice(handle) != null;
+	}
+
+	public synchronized boolean isPlaying(Object owner) {
+		for (int i = 0; i < voices.length; i++) {
+			if (voices[i].active && voices[i].owner == owner) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public synchronized void setGain(Object owner, float gain) {
+		for (int i = 0; i < voices.length; i++) {
+			if (voices[i].active && voices[i].owner == owner) {
+				voices[i].gain = gain;
+			}
+		}
+	}
+
+	public synchronized void setPan(Object owner, float pan) {
+		for (int i = 0; i < voices.length; i++) {
+			if (voices[i].active && voices[i].owner == owner) {
+				voices[i].pan = pan;
+			}
+		}
+	}
+
+	public synchronized void setPitch(Object owner, float pitch) {
+		for (int i = 0; i < voices.length; i++) {
+			if (voices[i].active && voices[i].owner == owner) {
+				voices[i].pitch = pitch;
+			}
+		}
+	}
+
+	public synchronized void setLooping(Object owner, boolean loop) {
+		for (int i = 0; i < voices.length; i++) {
+			if (voices[i].active && voices[i].owner == owner) {
+				voices[i].loop = loop;
+			}
+		}
+	}
+
+	/**
+	 * 在seconds秒内把owner的全部voice淡化到target音量(0到1),stop为true时淡出结束后停止
+	 * 
+	 * @param owner
+	 * @param target
+	 * @param seconds
+	 * @param stop
+	 */
+	public synchronized void fade(Object owner, float target, float seconds, boolean stop) {
+		for (int i = 0; i < voices.length; i++) {
+			Voice v = voices[i];
+			if (v.active && v.owner == owner) {
+				v.fadeTarget = Math.max(0f, Math.min(1f, target));
+				v.stopOnFade = stop;
+				if (seconds <= 0) {
+					v.fade = v.fadeTarget;
+					v.fadeStep = 0f;
+				} else {
+					v.fadeStep = Math.abs(v.fadeTarget - v.fade) / (seconds * SAMPLE_RATE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 交叉淡化,from在seconds秒内淡出并停止,to同时淡入
+	 * 
+	 * @param from
+	 * @param to
+	 * @param seconds
+	 */
+	public synchronized void crossFade(Object from, Object to, float seconds) {
+		fade(from, 0f, seconds, true);
+		fade(to, 1f, seconds, false);
+	}
+
+	public synchronized void setGain(int handle, float gain) {
+		Voice v = voice(handle);
+		if (v != null) {
+			v.gain = gain;
+		}
+	}
+
+	public synchronized void setPan(int handle, float pan) {
+		Voice v = voice(handle);
+		if (v != null) {
+			v.pan = pan;
+		}
+	}
+
+	public synchronized void setPitch(int handle, float pitch) {
+		Voice v = voice(handle);
+		if (v != null) {
+			v.pitch = pitch;
+		}
+	}
+
+	/**
+	 * 混合一个数据块,返回写入output的字节数
+	 * 
+	 * @return
+	 */
+	synchronized int mix() {
+		final int[] left = mixLeft;
+		final int[] right = mixRight;
+		for (int i = 0; i < BLOCK_FRAMES; i++) {
+			left[i] = 0;
+			right[i] = 0;
+		}
+		for (int n = 0; n < voices.length; n++) {
+			Voice v = voices[n];
+			if (v.active && !(v.stream != null ? mixStream(v, left, right) : mixVoice(v, left, right))) {
+				release(v);
+			}
+		}
+		final byte[] out = output;
+		for (int i = 0, j = 0; i < BLOCK_FRAMES; i++) {
+			int l = left[i] >> 8;
+			int r = right[i] >> 8;
+			l = l > 32767 ? 32767 : (l < -32768 ? -32768 : l);
+			r = r > 32767 ? 32767 : (r < -32768 ? -32768 : r);
+			out[j++] = (byte) l;
+			out[j++] = (byte) (l >> 8);
+			out[j++] = (byte) r;
+			out[j++] = (byte) (r >> 8);
+		}
+		return out.length;
+	}
+
+	/**
+	 * 推进淡入淡出一个数据块,返回块结束时的淡化系数
+	 * 
+	 * @param v
+	 * @return
+	 */
+	private static float advanceFade(Voice v) {
+		if (v.fadeStep == 0f) {
+			return v.fade;
+		}
+		final float delta = v.fadeStep * BLOCK_FRAMES;
+		if (v.fade < v.fadeTarget) {
+			return Math.min(v.fadeTarget, v.fade + delta);
+		}
+		return Math.max(v.fadeTarget, v.fade - delta);
+	}
+
+	/**
+	 * 淡化结束后的处理,需要停止时返回false
+	 * 
+	 * @param v
+	 * @param fadeEnd
+	 * @return
+	 */
+	private static boolean finishFade(Voice v, float fadeEnd) {
+		v.fade = fadeEnd;
+		if (v.fadeStep != 0f && fadeEnd == v.fadeTarget) {
+			v.fadeStep = 0f;
+			if (v.stopOnFade) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 把一个voice线性插值重采样后叠加到混音缓冲区(音量以8位定点数表示),播放结束时返回false
+	 * 
+	 * @param v
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private boolean mixVoice(Voice v, int[] left, int[] right) {
+		final JavaSEPCM pcm = v.pcm;
+		final short[] data = pcm.samples;
+		final int frames = pcm.frames;
+		final int channels = pcm.channels;
+		final float volume = v.gain * masterVolume * 256f;
+		final float fadeEnd = advanceFade(v);
+		final float baseLeft = volume * Math.min(1f, 1f - v.pan);
+		final float baseRight = volume * Math.min(1f, 1f + v.pan);
+		float gainLeft = baseLeft * v.fade;
+		float gainRight = baseRight * v.fade;
+		final float stepLeft = baseLeft * (fadeEnd - v.fade) / BLOCK_FRAMES;
+		final float stepRight = baseRight * (fadeEnd - v.fade) / BLOCK_FRAMES;
+		final double step = v.pitch * pcm.sampleRate / (double) SAMPLE_RATE;
+		double pos = v.position;
+		for (int i = 0; i < BLOCK_FRAMES; i++) {
+			if (pos >= frames) {
+				if (!v.loop) {
+					return false;
+				}
+				pos -= frames;
+			}
+			final int idx = (int) pos;
+			final int frac = (int) ((pos - idx) * 256);
+			int next = idx + 1;
+			if (next >= frames) {
+				next = v.loop ? 0 : idx;
+			}
+			final int a = idx * channels;
+			final int b = next * channels;
+			int l = data[a];
+			l += ((data[b] - l) * frac) >> 8;
+			int r = l;
+			if (channels > 1) {
+				r = data[a + 1];
+				r += ((data[b + 1] - r) * frac) >> 8;
+			}
+			left[i] += (int) (l * gainLeft);
+			right[i] += (int) (r * gainRight);
+			gainLeft += stepLeft;
+			gainRight += stepRight;
+			pos += step;
+		}
+		v.position = pos;
+		return finishFade(v, fadeEnd);
+	}
+
+	/**
+	 * 从流式音乐的缓冲区读取一个数据块所需的帧并混合,缓冲区暂时不足时输出静音,数据结束时返回false
+	 * 
+	 * @param v
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private boolean mixStream(Voice v, int[] left, int[] right) {
+		final JavaSEAudioStream stream = v.stream;
+		if (stream.isFinished()) {
+			return false;
+		}
+		final int channels = stream.getChannels();
+		final double step = v.pitch * stream.getSampleRate() / (double) SAMPLE_RATE;
+		final int need = (int) (v.position + BLOCK_FRAMES * step) + 2;
+		if (v.scratch == null || v.scratch.length < need * channels) {
+			v.scratch = new short[need * channels];
+		}
+		final short[] data = v.scratch;
+		final int available = stream.peek(data, need);
+		if (available < 2) {
+			if (stream.isEnded()) {
+				stream.skip(available);
+				return false;
+			}
+			return true;
+		}
+		final float volume = v.gain * masterVolume * 256f;
+		final float fadeEnd = advanceFade(v);
+		final float baseLeft = volume * Math.min(1f, 1f - v.pan);
+		final float baseRight = volume * Math.min(1f, 1f + v.pan);
+		float gainLeft = baseLeft * v.fade;
+		float gainRight = baseRight * v.fade;
+		final float stepLeft = baseLeft * (fadeEnd - v.fade) / BLOCK_FRAMES;
+		final float stepRight = baseRight * (fadeEnd - v.fade) / BLOCK_FRAMES;
+		double pos = v.position;
+		for (int i = 0; i < BLOCK_FRAMES; i++) {
+			final int idx = (int) pos;
+			if (idx + 1 >= available) {
+				break;
+			}
+			final int frac = (int) ((pos - idx) * 256);
+			final int a = idx * channels;
+			final int b = a + channels;
+			int l = data[a];
+			l += ((data[b] - l) * frac) >> 8;
+			int r = l;
+			if (channels > 1) {
+				r = data[a + 1];
+				r += ((data[b + 1] - r) * frac) >> 8;
+			}
+			left[i] += (int) (l * gainLeft);
+			right[i] += (int) (r * gainRight);
+			gainLeft += stepLeft;
+			gainRight += stepRight;
+			pos += step;
+		}
+		final int consumed = (int) pos;
+		stream.skip(consumed);
+		v.position = pos - consumed;
+		return finishFade(v, fadeEnd);
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			if (paused) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					return;
+				}
+				continue;
+			}
+			int size = mix();
+			line.write(output, 0, size);
+		}
+	}
+
+	public void pause() {
+		paused = true;
+		if (line != null) {
+			line.stop();
+		}
+	}
+
+	public void resume() {
+		paused = false;
+		if (line != null) {
+			line.start();
+		}
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	public synchronized void setMasterVolume(float v) {
+		this.masterVolume = Math.max(0f, Math.min(1f, v));
+	}
+
+	public synchronized float getMasterVolume() {
+		return masterVolume;
+	}
+
+	public int getMaxVoices() {
+		return voices.length;
+	}
+
+	public synchronized int getActiveVoices() {
+		return activeCount;
+	}
+
+	public synchronized int getPeakVoices() {
+		return peakVoices;
+	}
+
+	public synchronized int getStolenVoices() {
+		return stolenVoices;
+	}
+
+	public synchronized int getRejectedVoices() {
+		return rejectedVoices;
+	}
+
+	public void close() {
+		running = false;
+		if (decodeThread != null) {
+			synchronized (streams) {
+				streams.notifyAll();
+			}
+			decodeThread = null;
+		}
+		if (thread != null) {
+			try {
+				thread.join(500);
+			} catch (InterruptedException e) {
+			}
+			thread = null;
+		}
+		stopAll();
+		if (line != null) {
+			line.stop();
+			line.close();
+			line = null;
+		}
+	}
+
+}
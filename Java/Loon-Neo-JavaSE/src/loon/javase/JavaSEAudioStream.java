@@ -0,0 +1,290 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import loon.LSystem;
+import loon.jni.OggDecoder;
+
+/**
+ * 流式播放的Ogg Vorbis音乐,由JavaSEAudioMixer的解码线程按需从Source读取并解码到固定大小的PCM环形缓冲区,混音线程读取.
+ * 压缩数据不保存在内存中,循环与seek时重新打开Source(seek只读取页头跳过目标前的数据,不做解码),
+ * 因此内存占用与音乐长度无关.循环播放时解码结束后直接从头继续填充同一缓冲区,不会产生间隙.
+ */
+public class JavaSEAudioStream {
+
+	/**
+	 * 可重复打开的音乐数据,每次open返回一个从头开始的新数据流
+	 */
+	public static interface Source {
+
+		InputStream open() throws IOException;
+	}
+
+	public static int BUFFER_FRAMES = 16384;
+
+	private static final int MIN_FILL_FRAMES = 2048;
+
+	private final Source source;
+
+	private final short[] ring;
+
+	private final int capacity;
+
+	private final int channels;
+
+	private final int sampleRate;
+
+	private OggDecoder decoder;
+
+	private int head, count;
+
+	private long decodedFrames, playedFrames;
+
+	private long seekFrame = -1;
+
+	private boolean looping, ended, closed;
+
+	private short[] skipBuffer;
+
+	public JavaSEAudioStream(Source source) throws IOException {
+		this.source = source;
+		this.decoder = openDecoder();
+		this.channels = decoder.getChannels();
+		this.sampleRate = decoder.getSampleRate();
+		this.capacity = BUFFER_FRAMES;
+		this.ring = new short[capacity * channels];
+	}
+
+	/**
+	 * 在解码线程中调用,缓冲区空闲空间足够时解码一段数据,返回是否解码了数据
+	 * 
+	 * @return
+	 */
+	boolean fill() {
+		long seek;
+		int writePos, free;
+		synchronized (this) {
+			if (closed) {
+				return false;
+			}
+			seek = seekFrame;
+			seekFrame = -1;
+			if (seek >= 0) {
+				head = 0;
+				count = 0;
+				ended = false;
+				playedFrames = seek;
+			}
+			if (ended) {
+				return false;
+			}
+			free = capacity - count;
+			if (free < MIN_FILL_FRAMES) {
+				return false;
+			}
+			writePos = (head + count) % capacity;
+			// 只写入连续的一段,避免回绕
+			free = Math.min(free, capacity - writePos);
+		}
+		try {
+			if (seek >= 0) {
+				reopen();
+				skipFrames(seek);
+			}
+			int frames = decoder.read(ring, writePos * channels, free);
+			if (frames < 0) {
+				synchronized (this) {
+					if (!looping) {
+						ended = true;
+						return false;
+					}
+				}
+				reopen();
+				frames = decoder.read(ring, writePos * channels, free);
+				if (frames < 0) {
+					synchronized (this) {
+						ended = true;
+					}
+					return false;
+				}
+			}
+			synchronized (this) {
+				// 填充期间发生seek时丢弃本次数据
+				if (seekFrame < 0) {
+					count += frames;
+					decodedFrames += frames;
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			LSystem.error("Ogg stream decode exception", e);
+			synchronized (this) {
+				ended = true;
+			}
+			return false;
+		}
+	}
+
+	private OggDecoder openDecoder() throws IOException {
+		InputStream in = source.open();
+		try {
+			return new OggDecoder(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	private void reopen() throws IOException {
+		decoder.close();
+		decoder = openDecoder();
+	}
+
+	private void skipFrames(long frames) throws IOException {
+		frames -= decoder.skipTo(frames);
+		if (skipBuffer == null) {
+			skipBuffer = new short[MIN_FILL_FRAMES * channels];
+		}
+		while (frames > 0) {
+			int n = decoder.read(skipBuffer, 0, (int) Math.min(frames, MIN_FILL_FRAMES));
+			if (n < 0) {
+				break;
+			}
+			frames -= n;
+		}
+	}
+
+	/**
+	 * 复制(不移除)缓冲区开头的最多frames帧到dst,返回实际复制的帧数
+	 * 
+	 * @param dst
+	 * @param frames
+	 * @return
+	 */
+	synchronized int peek(short[] dst, int frames) {
+		final int n = Math.min(frames, count);
+		final int first = Math.min(n, capacity - head);
+		System.arraycopy(ring, head * channels, dst, 0, first * channels);
+		if (n > first) {
+			System.arraycopy(ring, 0, dst, first * channels, (n - first) * channels);
+		}
+		return n;
+	}
+
+	synchronized void skip(int frames) {
+		final int n = Math.min(frames, count);
+		head = (head + n) % capacity;
+		count -= n;
+		playedFrames += n;
+	}
+
+	/**
+	 * 缓冲区已空且不会再有数据
+	 * 
+	 * @return
+	 */
+	synchronized boolean isFinished() {
+		return ended && count == 0 && seekFrame < 0;
+	}
+
+	synchronized boolean isEnded() {
+		return ended && seekFrame < 0;
+	}
+
+	synchronized boolean needsFill() {
+		return closed || seekFrame >= 0 || (!ended && capacity - count >= MIN_FILL_FRAMES);
+	}
+
+	/**
+	 * 跳转到指定时间(秒),由解码线程重新定位
+	 * 
+	 * @param seconds
+	 */
+	public synchronized void seek(float seconds) {
+		seekFrame = Math.max(0, (long) (seconds * sampleRate));
+		ended = false;
+	}
+
+	public synchronized void rewind() {
+		seek(0);
+	}
+
+	public synchronized void setLooping(boolean loop) {
+		this.looping = loop;
+	}
+
+	public synchronized boolean isLooping() {
+		return looping;
+	}
+
+	/**
+	 * 当前播放位置(秒,循环播放时为累计时间)
+	 * 
+	 * @return
+	 */
+	public synchronized float getPosition() {
+		return (float) playedFrames / sampleRate;
+	}
+
+	public synchronized int getBufferedFrames() {
+		return count;
+	}
+
+	public synchronized long getDecodedFrames() {
+		return decodedFrames;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * 关闭数据流(解码器由解码线程在下次处理时释放)
+	 */
+	public synchronized void close() {
+		closed = true;
+		ended = true;
+		count = 0;
+	}
+
+	/**
+	 * 在解码线程中释放解码器
+	 */
+	void dispose() {
+		decoder.close();
+	}
+
+}
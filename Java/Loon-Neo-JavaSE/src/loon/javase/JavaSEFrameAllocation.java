@@ -0,0 +1,184 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.lang.management.ManagementFactory;
+
+import loon.LSystem;
+import loon.utils.StringUtils;
+
+/**
+ * 帧内存分配检测工具,使用HotSpot的线程分配计数统计每帧在当前线程中分配的字节数,跳过预热帧后用于断言稳定状态下每帧零分配.
+ * 
+ * <pre>
+ * JavaSEFrameAllocation monitor = new JavaSEFrameAllocation(120);
+ * game.setAllocationMonitor(monitor);
+ * ...
+ * monitor.assertZero();
+ * </pre>
+ */
+public class JavaSEFrameAllocation {
+
+	public static class Result {
+
+		public int frames;
+
+		public int allocatingFrames;
+
+		public long totalBytes;
+
+		public long maxBytes;
+
+		public float getAverageBytes() {
+			return frames == 0 ? 0 : (float) totalBytes / frames;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format("[frames:{0},allocatingFrames:{1},total:{2}B,max:{3}B,average:{4}B]",
+					frames, allocatingFrames, totalBytes, maxBytes, getAverageBytes());
+		}
+	}
+
+	private final com.sun.management.ThreadMXBean threads;
+
+	private final int warmupFrames;
+
+	private final Result result = new Result();
+
+	private int frameIndex;
+
+	private long frameStart;
+
+	private long overhead;
+
+	public JavaSEFrameAllocation(int warmupFrames) {
+		this.warmupFrames = warmupFrames;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+			this.threads.setThreadAllocatedMemoryEnabled(true);
+			// 计数调用自身的分配,多次取最小值
+			long min = Long.MAX_VALUE;
+			for (int i = 0; i < 16; i++) {
+				long a = allocated();
+				long b = allocated();
+				min = Math.min(min, b - a);
+			}
+			this.overhead = min;
+		} else {
+			this.threads = null;
+		}
+	}
+
+	public boolean isSupported() {
+		return threads != null;
+	}
+
+	private long allocated() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public void beginFrame() {
+		if (threads != null) {
+			frameStart = allocated();
+		}
+	}
+
+	public void endFrame() {
+		if (threads == null) {
+			return;
+		}
+		long bytes = allocated() - frameStart - overhead;
+		if (frameIndex++ < warmupFrames) {
+			return;
+		}
+		result.frames++;
+		if (bytes > 0) {
+			result.allocatingFrames++;
+			result.totalBytes += bytes;
+			if (bytes > result.maxBytes) {
+				result.maxBytes = bytes;
+			}
+		}
+	}
+
+	/**
+	 * 是否已经度过预热阶段
+	 * 
+	 * @return
+	 */
+	public boolean isSteady() {
+		return frameIndex > warmupFrames;
+	}
+
+	public Result getResult() {
+		return result;
+	}
+
+	public void reset() {
+		frameIndex = 0;
+		result.frames = 0;
+		result.allocatingFrames = 0;
+		result.totalBytes = 0;
+		result.maxBytes = 0;
+	}
+
+	/**
+	 * 若预热之后存在分配内存的帧则抛出异常
+	 */
+	public void assertZero() {
+		if (threads == null) {
+			throw LSystem.runThrow("Thread allocation counting is not supported by this JVM !");
+		}
+		if (result.totalBytes > 0) {
+			throw LSystem.runThrow("Steady-state frames allocated memory " + result);
+		}
+	}
+
+	private static JavaSEFrameAllocation run(Runnable frame, int warmup, int frames) {
+		JavaSEFrameAllocation monitor = new JavaSEFrameAllocation(warmup);
+		for (int i = 0, size = warmup + frames; i < size; i++) {
+			monitor.beginFrame();
+			frame.run();
+			monitor.endFrame();
+		}
+		return monitor;
+	}
+
+	/**
+	 * 执行warmup次预热后再执行frames次frame,统计每次执行的内存分配
+	 * 
+	 * @param frame
+	 * @param warmup
+	 * @param frames
+	 * @return
+	 */
+	public static Result measure(Runnable frame, int warmup, int frames) {
+		return run(frame, warmup, frames).getResult();
+	}
+
+	public static void assertZeroAllocation(Runnable frame, int warmup, int frames) {
+		run(frame, warmup, frames).assertZero();
+	}
+
+}
@@ -34,6 +34,7 @@ import org.lwjgl.opengl.Display;
 import loon.*;
 import loon.canvas.Image;
 import loon.canvas.Pixmap;
+import loon.canvas.PixmapKernels;
 import loon.event.KeyMake;
 import loon.geom.Dimension;
 import loon.jni.NativeSupport;
@@ -45,6 +46,8 @@ public class JavaSEGame extends LGame {
 	public static class JavaSetting extends LSetting {
 		public boolean vSyncEnabled = true;
 		public String[] iconPaths = null;
+		/** 多核时以ForkJoinPool并行处理大尺寸Pixmap的缩放,填充与卷积 */
+		public boolean parallelPixmap = false;
 	}
 
 	final static private boolean osIsLinux;
@@ -151,7 +154,7 @@ public class JavaSEGame extends LGame {
 	private final Asyn asyn = new JavaSEAsyn(pool, log, frame);
 
 	private final JavaSEAccelerometer accelerometer = new JavaSEAccelerometer();
-	private final JavaSESave save;
+	private final Save save;
 	private final JavaSEGraphics graphics;
 	private final JavaSEInputMake input;
 	private final JavaSEAssets assets = new JavaSEAssets(this);
@@ -210,7 +213,8 @@ public class JavaSEGame extends LGame {
 		this.preInit();
 		this.graphics = createGraphics();
 		this.input = createInput();
-		this.save = new JavaSESave(log, config.appName);
+		Save journal = JavaSEJournalSave.open(log, config.appName);
+		this.save = journal != null ? journal : new JavaSESave(log, config.appName);
 		if (config.activationKey != -1) {
 			input.keyboardEvents.connect(new Port<KeyMake.Event>() {
 				public void onEmit(KeyMake.Event event) {
@@ -229,6 +233,10 @@ public class JavaSEGame extends LGame {
 		this.initProcess();
 		if (setting instanceof JavaSetting) {
 			setIcon(((JavaSetting)setting).iconPaths);
+			if (((JavaSetting) setting).parallelPixmap && Runtime.getRuntime().availableProcessors() > 1
+					&& PixmapKernels.getParallelExecutor() == null) {
+				PixmapKernels.setParallelExecutor(new JavaSEPhysExecutor());
+			}
 		}
 		this.graphics.init();
 		this.input.init();
@@ -407,13 +415,35 @@ public class JavaSEGame extends LGame {
 		System.exit(0);
 	}
 
+	private JavaSEFrameAllocation allocationMonitor;
+
+	/**
+	 * 设置帧内存分配检测,每次processFrame都会被统计
+	 * 
+	 * @param monitor
+	 */
+	public void setAllocationMonitor(JavaSEFrameAllocation monitor) {
+		this.allocationMonitor = monitor;
+	}
+
+	public JavaSEFrameAllocation getAllocationMonitor() {
+		return allocationMonitor;
+	}
+
 	protected void processFrame() {
+		final JavaSEFrameAllocation monitor = allocationMonitor;
+		if (monitor != null) {
+			monitor.beginFrame();
+		}
 		try {
 			input.update();
 		} catch (Exception e) {
 			log.warn("your system input exception !", e);
 		}
 		emitFrame();
+		if (monitor != null) {
+			monitor.endFrame();
+		}
 	}
 
 	protected void toggleActivation() {
@@ -0,0 +1,622 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.prefs.Preferences;
+import java.util.zip.CRC32;
+
+import loon.Log;
+import loon.Save;
+import loon.SaveBatchImpl;
+
+/**
+ * 以追加写入的日志文件保存数据的Save实现.
+ * 
+ * setItem与removeItem只修改内存中的数据并把变化编码为一条日志记录,由后台线程定时批量追加到日志文件,
+ * 游戏线程不会因为写入磁盘而阻塞.日志超过一定大小时后台线程把全部数据写为新的快照并清空日志.
+ * 每条日志记录带有长度与CRC32校验,Save.Batch的全部修改写为同一条记录,因此一次提交要么全部生效要么全部丢弃.
+ * 启动时把快照与日志整体读入堆内存,不使用内存映射(Windows中未被回收的映射会阻止截断,清空与替换文件).
+ */
+class JavaSEJournalSave implements Save {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int MAGIC = 0x4C534156;
+
+	private static final byte OP_SET = 1;
+
+	private static final byte OP_REMOVE = 2;
+
+	private static final long MIN_COMPACT_SIZE = 64 * 1024;
+
+	private final class Flusher implements Runnable {
+
+		@Override
+		public void run() {
+			for (;;) {
+				synchronized (lock) {
+					if (!closed) {
+						try {
+							lock.wait(flushInterval);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				flushPending();
+				synchronized (lock) {
+					if (closed && pending.isEmpty()) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 一次提交所包含的修改,编码为一条日志记录
+	 */
+	private static final class Record {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		private int count;
+
+		void set(String key, String value) {
+			try {
+				out.writeByte(OP_SET);
+				writeString(out, key);
+				writeString(out, value);
+				count++;
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void remove(String key) {
+			try {
+				out.writeByte(OP_REMOVE);
+				writeString(out, key);
+				count++;
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		byte[] toFrame() {
+			byte[] payload = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(payload, 0, payload.length);
+			ByteBuffer frame = ByteBuffer.allocate(payload.length + 12);
+			frame.putInt(payload.length);
+			frame.putInt((int) crc.getValue());
+			frame.putInt(count);
+			frame.put(payload);
+			return frame.array();
+		}
+	}
+
+	private final Object lock = new Object();
+
+	private final Object ioLock = new Object();
+
+	private final Log log;
+
+	private final File snapshotFile, snapshotTemp, journalFile;
+
+	private final Map<String, String> values = new LinkedHashMap<String, String>();
+
+	private ArrayList<byte[]> pending = new ArrayList<byte[]>();
+
+	private RandomAccessFile journal;
+
+	private long journalGeneration;
+
+	private long journalSize, snapshotSize;
+
+	private long flushInterval = 200;
+
+	private boolean syncToDisk = false;
+
+	private boolean closed, isPersisted;
+
+	private int flushCount, compactCount;
+
+	private final Thread flusher;
+
+	static JavaSEJournalSave open(Log log, String storage) {
+		try {
+			File dir = new File(System.getProperty("user.home"), ".loon"
+					+ File.separator + sanitize(storage));
+			if (!dir.exists() && !dir.mkdirs()) {
+				return null;
+			}
+			return new JavaSEJournalSave(log, dir, storage);
+		} catch (Exception e) {
+			log.warn("Couldn't open save journal: " + e.getMessage());
+			return null;
+		}
+	}
+
+	JavaSEJournalSave(Log log, File dir, String storage) throws IOException {
+		this.log = log;
+		this.snapshotFile = new File(dir, "save.snapshot");
+		this.snapshotTemp = new File(dir, "save.snapshot.tmp");
+		this.journalFile = new File(dir, "save.journal");
+		final boolean exists = snapshotFile.exists() || journalFile.exists();
+		final long snapshotGeneration = readSnapshot();
+		openJournal(snapshotGeneration);
+		if (!exists) {
+			importPreferences(storage);
+		}
+		isPersisted = exists;
+		flusher = new Thread(new Flusher(), "LoonSaveFlusher");
+		flusher.setDaemon(true);
+		flusher.start();
+		Runtime.getRuntime().addShutdownHook(new Thread("LoonSaveShutdown") {
+			@Override
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	private static String sanitize(String name) {
+		StringBuilder sbr = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char ch = name.charAt(i);
+			sbr.append(Character.isLetterOrDigit(ch) || ch == '-' || ch == '_'
+					|| ch == '.' ? ch : '_');
+		}
+		return sbr.length() == 0 ? "loon" : sbr.toString();
+	}
+
+	/**
+	 * 旧版本使用Preferences保存,首次使用日志文件时导入
+	 * 
+	 * @param storage
+	 */
+	private void importPreferences(String storage) {
+		try {
+			Preferences root = Preferences.userRoot();
+			if (!root.nodeExists(storage)) {
+				return;
+			}
+			Preferences prefs = root.node(storage);
+			String[] keys = prefs.keys();
+			if (keys.length == 0) {
+				return;
+			}
+			Record record = new Record();
+			for (String key : keys) {
+				String value = prefs.get(key, null);
+				if (value != null) {
+					values.put(key, value);
+					record.set(key, value);
+				}
+			}
+			enqueue(record);
+		} catch (Exception e) {
+			log.warn("Couldn't import Preferences: " + e.getMessage());
+		}
+	}
+
+	private long readSnapshot() throws IOException {
+		if (!snapshotFile.exists()) {
+			return 0;
+		}
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			snapshotSize = channel.size();
+			if (snapshotSize < 12) {
+				return 0;
+			}
+			ByteBuffer buffer = readFully(channel, snapshotSize);
+			if (buffer.getInt() != MAGIC) {
+				log.warn("Save snapshot is damaged: " + snapshotFile);
+				return 0;
+			}
+			long generation = buffer.getLong();
+			replay(buffer);
+			return generation;
+		} finally {
+			file.close();
+		}
+	}
+
+	private void openJournal(long snapshotGeneration) throws IOException {
+		journal = new RandomAccessFile(journalFile, "rw");
+		FileChannel channel = journal.getChannel();
+		long size = channel.size();
+		if (size >= 12) {
+			ByteBuffer buffer = readFully(channel, size);
+			if (buffer.getInt() == MAGIC) {
+				long generation = buffer.getLong();
+				// 快照之前的日志(压缩时未来得及清空)已经包含在快照中
+				if (generation >= snapshotGeneration) {
+					journalGeneration = generation;
+					long end = replay(buffer);
+					if (end < size) {
+						log.warn("Save journal truncated at " + end + " of "
+								+ size);
+						channel.truncate(end);
+					}
+					journalSize = end;
+					journal.seek(end);
+					return;
+				}
+			}
+		}
+		resetJournal(snapshotGeneration);
+	}
+
+	/**
+	 * 从头读取文件的全部内容
+	 * 
+	 * @param channel
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 */
+	private static ByteBuffer readFully(FileChannel channel, long size)
+			throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Save file too large: " + size);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		channel.position(0);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private void resetJournal(long generation) throws IOException {
+		journal.setLength(0);
+		journal.seek(0);
+		journal.writeInt(MAGIC);
+		journal.writeLong(generation);
+		journalGeneration = generation;
+		journalSize = 12;
+	}
+
+	/**
+	 * 读取全部完整的记录,返回最后一条完整记录的结束位置
+	 * 
+	 * @param buffer
+	 * @return
+	 */
+	private long replay(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		byte[] payload = new byte[256];
+		for (;;) {
+			int start = buffer.position();
+			if (buffer.remaining() < 12) {
+				return start;
+			}
+			int length = buffer.getInt();
+			int check = buffer.getInt();
+			int count = buffer.getInt();
+			if (length < 0 || count < 0 || length > buffer.remaining()) {
+				return start;
+			}
+			if (payload.length < length) {
+				payload = new byte[length];
+			}
+			buffer.get(payload, 0, length);
+			crc.reset();
+			crc.update(payload, 0, length);
+			if ((int) crc.getValue() != check) {
+				return start;
+			}
+			ByteBuffer data = ByteBuffer.wrap(payload, 0, length);
+			for (int i = 0; i < count; i++) {
+				byte op = data.get();
+				String key = readString(data);
+				if (op == OP_SET) {
+					values.put(key, readString(data));
+				} else {
+					values.remove(key);
+				}
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String v)
+			throws IOException {
+		byte[] bytes = v.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer data) {
+		int length = data.getInt();
+		String result = new String(data.array(), data.arrayOffset()
+				+ data.position(), length, UTF8);
+		data.position(data.position() + length);
+		return result;
+	}
+
+	private void enqueue(Record record) {
+		if (record.count == 0) {
+			return;
+		}
+		byte[] frame = record.toFrame();
+		synchronized (lock) {
+			pending.add(frame);
+		}
+	}
+
+	@Override
+	public void setItem(String key, String data) {
+		if (data == null) {
+			removeItem(key);
+			return;
+		}
+		Record record = new Record();
+		record.set(key, data);
+		synchronized (lock) {
+			values.put(key, data);
+			pending.add(record.toFrame());
+		}
+	}
+
+	@Override
+	public void removeItem(String key) {
+		synchronized (lock) {
+			if (!values.containsKey(key)) {
+				return;
+			}
+			values.remove(key);
+			Record record = new Record();
+			record.remove(key);
+			pending.add(record.toFrame());
+		}
+	}
+
+	@Override
+	public String getItem(String key) {
+		synchronized (lock) {
+			return values.get(key);
+		}
+	}
+
+	@Override
+	public Batch startBatch() {
+		return new SaveBatchImpl(this) {
+
+			private final Record record = new Record();
+
+			private final ArrayList<String[]> changes = new ArrayList<String[]>();
+
+			@Override
+			protected void setImpl(String key, String data) {
+				record.set(key, data);
+				changes.add(new String[] { key, data });
+			}
+
+			@Override
+			protected void removeImpl(String key) {
+				record.remove(key);
+				changes.add(new String[] { key, null });
+			}
+
+			@Override
+			protected void onAfterCommit() {
+				if (record.count == 0) {
+					return;
+				}
+				byte[] frame = record.toFrame();
+				synchronized (lock) {
+					for (String[] change : changes) {
+						if (change[1] == null) {
+							values.remove(change[0]);
+						} else {
+							values.put(change[0], change[1]);
+						}
+					}
+					pending.add(frame);
+				}
+			}
+		};
+	}
+
+	@Override
+	public Iterable<String> keys() {
+		synchronized (lock) {
+			return new ArrayList<String>(values.keySet());
+		}
+	}
+
+	@Override
+	public boolean isPersisted() {
+		return isPersisted;
+	}
+
+	/**
+	 * 把等待中的记录按提交顺序写入日志文件,必要时压缩为快照
+	 */
+	private void flushPending() {
+		synchronized (ioLock) {
+			ArrayList<byte[]> frames;
+			synchronized (lock) {
+				if (pending.isEmpty() || journal == null) {
+					return;
+				}
+				frames = pending;
+				pending = new ArrayList<byte[]>();
+			}
+			try {
+				int size = 0;
+				for (byte[] frame : frames) {
+					size += frame.length;
+				}
+				byte[] block = new byte[size];
+				int offset = 0;
+				for (byte[] frame : frames) {
+					System.arraycopy(frame, 0, block, offset, frame.length);
+					offset += frame.length;
+				}
+				journal.write(block);
+				if (syncToDisk) {
+					journal.getFD().sync();
+				}
+				journalSize += size;
+				flushCount++;
+				isPersisted = true;
+				if (journalSize > Math.max(MIN_COMPACT_SIZE, snapshotSize * 2)) {
+					compact();
+				}
+			} catch (IOException e) {
+				log.warn("Error writing save journal: " + e.getMessage());
+				isPersisted = false;
+			}
+		}
+	}
+
+	/**
+	 * 把当前全部数据写为新快照(先写临时文件再替换),然后清空日志
+	 * 
+	 * @throws IOException
+	 */
+	private void compact() throws IOException {
+		Record record = new Record();
+		synchronized (lock) {
+			for (Map.Entry<String, String> entry : values.entrySet()) {
+				record.set(entry.getKey(), entry.getValue());
+			}
+		}
+		final long generation = journalGeneration + 1;
+		byte[] frame = record.toFrame();
+		FileOutputStream out = new FileOutputStream(snapshotTemp);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(12);
+			header.putInt(MAGIC);
+			header.putLong(generation);
+			out.write(header.array());
+			out.write(frame);
+			out.flush();
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if (!snapshotTemp.renameTo(snapshotFile)) {
+			snapshotFile.delete();
+			if (!snapshotTemp.renameTo(snapshotFile)) {
+				throw new IOException("Couldn't replace " + snapshotFile);
+			}
+		}
+		snapshotSize = frame.length + 12;
+		resetJournal(generation);
+		compactCount++;
+	}
+
+	/**
+	 * 立即把全部修改写入磁盘(阻塞调用线程)
+	 */
+	public void flush() {
+		flushPending();
+	}
+
+	/**
+	 * 后台线程两次写入日志的间隔(毫秒)
+	 * 
+	 * @param millis
+	 */
+	public void setFlushInterval(long millis) {
+		this.flushInterval = Math.max(1, millis);
+	}
+
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * 每次写入日志后是否调用fsync(更可靠但更慢)
+	 * 
+	 * @param sync
+	 */
+	public void setSyncToDisk(boolean sync) {
+		this.syncToDisk = sync;
+	}
+
+	public boolean isSyncToDisk() {
+		return syncToDisk;
+	}
+
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pending.size();
+		}
+	}
+
+	public int getFlushCount() {
+		return flushCount;
+	}
+
+	public int getCompactCount() {
+		return compactCount;
+	}
+
+	public long getJournalSize() {
+		return journalSize;
+	}
+
+	public void close() {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			lock.notifyAll();
+		}
+		flushPending();
+		synchronized (ioLock) {
+			try {
+				if (journal != null) {
+					journal.close();
+					journal = null;
+				}
+			} catch (IOException e) {
+				log.warn("Error closing save journal: " + e.getMessage());
+			}
+		}
+	}
+
+}
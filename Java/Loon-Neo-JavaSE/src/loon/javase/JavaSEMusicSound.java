@@ -0,0 +1,159 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import loon.SoundImpl;
+
+/**
+ * 流式播放的音乐,经由JavaSEAudioMixer输出,支持无缝循环,跳转,淡入淡出与交叉淡化
+ */
+public class JavaSEMusicSound extends SoundImpl<JavaSEAudioStream> {
+
+	public static int DEFAULT_PRIORITY = 100;
+
+	private final JavaSEAudioMixer mixer;
+
+	private float pan, pitch = 1f;
+
+	private float fadeIn;
+
+	private int priority = DEFAULT_PRIORITY;
+
+	JavaSEMusicSound(JavaSEAudioMixer mixer) {
+		this.mixer = mixer;
+	}
+
+	@Override
+	public void onLoaded(JavaSEAudioStream stream) {
+		mixer.addStream(stream);
+		super.onLoaded(stream);
+	}
+
+	@Override
+	protected boolean playingImpl() {
+		return mixer.isPlaying(this);
+	}
+
+	@Override
+	protected boolean playImpl() {
+		mixer.stop(this);
+		impl.setLooping(looping);
+		impl.rewind();
+		int voice = mixer.play(impl, this, volume, pan, pitch, priority, fadeIn);
+		fadeIn = 0f;
+		return voice != -1;
+	}
+
+	@Override
+	protected void stopImpl() {
+		mixer.stop(this);
+	}
+
+	@Override
+	protected void setLoopingImpl(boolean looping) {
+		impl.setLooping(looping);
+	}
+
+	@Override
+	protected void setVolumeImpl(float volume) {
+		mixer.setGain(this, volume);
+	}
+
+	@Override
+	protected void releaseImpl() {
+		mixer.stop(this);
+		impl.close();
+	}
+
+	/**
+	 * 在seconds秒内淡入播放
+	 * 
+	 * @param seconds
+	 * @return
+	 */
+	public boolean fadeIn(float seconds) {
+		this.fadeIn = seconds;
+		return play();
+	}
+
+	/**
+	 * 在seconds秒内淡出并停止
+	 * 
+	 * @param seconds
+	 */
+	public void fadeOut(float seconds) {
+		mixer.fade(this, 0f, seconds, true);
+	}
+
+	/**
+	 * 当前音乐淡出的同时淡入播放另一首音乐
+	 * 
+	 * @param to
+	 * @param seconds
+	 * @return
+	 */
+	public boolean crossFade(JavaSEMusicSound to, float seconds) {
+		fadeOut(seconds);
+		return to.fadeIn(seconds);
+	}
+
+	/**
+	 * 跳转到指定时间(秒)
+	 * 
+	 * @param seconds
+	 */
+	public void seek(float seconds) {
+		if (impl != null) {
+			impl.seek(seconds);
+		}
+	}
+
+	public float getPosition() {
+		return impl == null ? 0f : impl.getPosition();
+	}
+
+	public void setPan(float pan) {
+		this.pan = Math.max(-1f, Math.min(1f, pan));
+		mixer.setPan(this, this.pan);
+	}
+
+	public float getPan() {
+		return pan;
+	}
+
+	public void setPitch(float pitch) {
+		this.pitch = Math.max(0.05f, pitch);
+		mixer.setPitch(this, this.pitch);
+	}
+
+	public float getPitch() {
+		return pitch;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+}
@@ -0,0 +1,238 @@
+package org.test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import loon.action.map.AStarFindHeuristic;
+import loon.action.map.AStarFinder;
+import loon.action.map.AStarFinderEngine;
+import loon.action.map.Field2D;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.TArray;
+
+/**
+ * A*寻径性能对比,以同一组随机地图与起止点分别测试旧的路径复制搜索(按原AStarFinder.astar实现)
+ * 与AStarFinderEngine(二叉堆与父节点数组),输出平均耗时,找到的路径数与路径长度合计
+ */
+public class AStarFinderBenchmark {
+
+	/**
+	 * 原AStarFinder的搜索方式:每展开一个邻居复制一次完整路径,开放列表按线性扫描插入
+	 */
+	static class LegacyAStar {
+
+		private final AStarFindHeuristic heuristic;
+
+		private final int overflow;
+
+		private Vector2f goal;
+
+		private TArray<ScoredPath> pathes = new TArray<ScoredPath>();
+
+		private HashSet<Vector2f> visitedCache = new HashSet<Vector2f>();
+
+		LegacyAStar(AStarFindHeuristic heuristic, int overflow) {
+			this.heuristic = heuristic;
+			this.overflow = overflow;
+		}
+
+		TArray<Vector2f> calc(Field2D field, Vector2f start, Vector2f goal,
+				boolean flag) {
+			if (start.equals(goal)) {
+				TArray<Vector2f> v = new TArray<Vector2f>();
+				v.add(start);
+				return v;
+			}
+			this.goal = goal;
+			visitedCache.clear();
+			pathes.clear();
+			visitedCache.add(start);
+			TArray<Vector2f> path = new TArray<Vector2f>();
+			path.add(start);
+			pathes.add(new ScoredPath(0, path));
+			return astar(field, flag);
+		}
+
+		private TArray<Vector2f> astar(Field2D field, boolean flag) {
+			for (int j = 0; pathes.size > 0; j++) {
+				if (j > overflow) {
+					pathes.clear();
+					continue;
+				}
+				ScoredPath spath = pathes.removeIndex(0);
+				Vector2f current = spath.path.get(spath.path.size - 1);
+				if (current.equals(goal)) {
+					return new TArray<Vector2f>(spath.path);
+				}
+				TArray<Vector2f> list = field.neighbors(current, flag);
+				int size = list.size;
+				for (int i = 0; i < size; i++) {
+					Vector2f next = list.get(i);
+					if (visitedCache.contains(next)) {
+						continue;
+					}
+					visitedCache.add(next);
+					if (!field.isHit(next)) {
+						continue;
+					}
+					TArray<Vector2f> path = new TArray<Vector2f>(spath.path);
+					path.add(next);
+					float score = spath.score
+							+ heuristic.getScore(goal.x, goal.y, next.x, next.y);
+					insert(score, path);
+				}
+			}
+			return null;
+		}
+
+		private void insert(float score, TArray<Vector2f> path) {
+			int size = pathes.size;
+			for (int i = 0; i < size; i++) {
+				ScoredPath spath = pathes.get(i);
+				if (spath.score >= score) {
+					pathes.add(new ScoredPath(score, path));
+					return;
+				}
+			}
+			pathes.add(new ScoredPath(score, path));
+		}
+	}
+
+	static class ScoredPath {
+
+		float score;
+
+		TArray<Vector2f> path;
+
+		ScoredPath(float score, TArray<Vector2f> path) {
+			this.score = score;
+			this.path = path;
+		}
+	}
+
+	public static class Result {
+
+		public final String name;
+
+		public final int size;
+
+		public final int queries;
+
+		public long totalTime;
+
+		public int found;
+
+		public long steps;
+
+		Result(String name, int size, int queries) {
+			this.name = name;
+			this.size = size;
+			this.queries = queries;
+		}
+
+		public float getAverageMillis() {
+			return queries == 0 ? 0 : totalTime / 1000000f / queries;
+		}
+
+		@Override
+		public String toString() {
+			return name + " [map:" + size + "x" + size + ",queries:" + queries
+					+ ",avg:" + getAverageMillis() + "ms,found:" + found
+					+ ",steps:" + steps + "]";
+		}
+	}
+
+	/**
+	 * 生成size x size的随机地图,blocked为障碍比例,障碍格的值为1
+	 */
+	public static Field2D createField(int size, float blocked, long seed) {
+		Random rand = new Random(seed);
+		int[][] data = new int[size][size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				data[y][x] = rand.nextFloat() < blocked ? 1 : 0;
+			}
+		}
+		Field2D field = new Field2D(data);
+		field.setLimit(new int[] { 1 });
+		return field;
+	}
+
+	/**
+	 * 生成queries组不在障碍上的起止点,依次为sx,sy,ex,ey
+	 */
+	public static int[] createQueries(Field2D field, int queries, long seed) {
+		Random rand = new Random(seed);
+		int[] points = new int[queries * 4];
+		for (int i = 0; i < points.length; i += 2) {
+			int x, y;
+			do {
+				x = rand.nextInt(field.getWidth());
+				y = rand.nextInt(field.getHeight());
+			} while (!field.isHit(x, y));
+			points[i] = x;
+			points[i + 1] = y;
+		}
+		return points;
+	}
+
+	public static Result runLegacy(Field2D field, int[] points,
+			AStarFindHeuristic heuristic, boolean flag, int overflow) {
+		Result result = new Result("legacy", field.getWidth(),
+				points.length / 4);
+		LegacyAStar astar = new LegacyAStar(heuristic, overflow);
+		for (int i = 0; i < points.length; i += 4) {
+			long st = System.nanoTime();
+			TArray<Vector2f> path = astar.calc(field, new Vector2f(points[i],
+					points[i + 1]), new Vector2f(points[i + 2], points[i + 3]),
+					flag);
+			result.totalTime += System.nanoTime() - st;
+			if (path != null) {
+				result.found++;
+				result.steps += path.size;
+			}
+		}
+		return result;
+	}
+
+	public static Result runEngine(Field2D field, int[] points,
+			AStarFindHeuristic heuristic, boolean flag, int overflow) {
+		Result result = new Result("engine", field.getWidth(),
+				points.length / 4);
+		AStarFinderEngine engine = new AStarFinderEngine();
+		engine.setOverflow(overflow);
+		for (int i = 0; i < points.length; i += 4) {
+			long st = System.nanoTime();
+			IntArray path = engine.searchIndex(field, heuristic, points[i],
+					points[i + 1], points[i + 2], points[i + 3], flag, false);
+			result.totalTime += System.nanoTime() - st;
+			if (path != null) {
+				result.found++;
+				result.steps += path.length;
+			}
+		}
+		engine.close();
+		return result;
+	}
+
+	public static void main(String[] args) {
+		final AStarFindHeuristic heuristic = AStarFinder.ASTAR_MANHATTAN;
+		final int[] sizes = { 64, 128, 256 };
+		final int queries = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		for (int i = 0; i < sizes.length; i++) {
+			int size = sizes[i];
+			Field2D field = createField(size, 0.2f, 7L + size);
+			int[] points = createQueries(field, queries, 11L + size);
+			// 不限制展开数量,保证两者都完整搜索(旧实现默认上限4096,大地图上会提前放弃)
+			int overflow = size * size;
+			// 预热
+			runLegacy(field, points, heuristic, false, overflow);
+			runEngine(field, points, heuristic, false, overflow);
+			System.out.println(runLegacy(field, points, heuristic, false,
+					overflow));
+			System.out.println(runEngine(field, points, heuristic, false,
+					overflow));
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package org.test;
+
+import java.util.Random;
+
+import loon.action.ActionBind;
+import loon.action.ActionControl;
+import loon.action.ActionTweenBatch;
+import loon.action.MoveBy;
+import loon.action.map.Field2D;
+import loon.canvas.LColor;
+import loon.geom.RectBox;
+import loon.utils.Easing;
+import loon.utils.Easing.EasingMode;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+
+/**
+ * 补间性能对比工具,以相同数量的目标分别测试逐对象的MoveBy动作与ActionTweenBatch批量补间
+ */
+public class ActionTweenBenchmark {
+
+	public static class Result {
+
+		public final String name;
+
+		public final int tweens;
+
+		public final int steps;
+
+		public long totalTime;
+
+		public int remaining;
+
+		Result(String name, int tweens, int steps) {
+			this.name = name;
+			this.tweens = tweens;
+			this.steps = steps;
+		}
+
+		/**
+		 * 平均每帧耗时(毫秒)
+		 *
+		 * @return
+		 */
+		public float getAverageStepMillis() {
+			return steps == 0 ? 0 : totalTime / 1000000f / steps;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format(
+					"{0} [tweens:{1},steps:{2},step:{3}ms,remaining:{4}]",
+					name, tweens, steps, getAverageStepMillis(), remaining);
+		}
+	}
+
+	/**
+	 * 仅保存数值的ActionBind,用于排除绘制与碰撞等开销
+	 */
+	public static class Target implements ActionBind {
+
+		public float x, y, scaleX = 1f, scaleY = 1f, rotation, alpha = 1f;
+
+		public boolean visible = true;
+
+		private LColor color = new LColor(LColor.white);
+
+		@Override
+		public Field2D getField2D() {
+			return null;
+		}
+
+		@Override
+		public void setVisible(boolean v) {
+			this.visible = v;
+		}
+
+		@Override
+		public boolean isVisible() {
+			return visible;
+		}
+
+		@Override
+		public int x() {
+			return (int) x;
+		}
+
+		@Override
+		public int y() {
+			return (int) y;
+		}
+
+		@Override
+		public float getX() {
+			return x;
+		}
+
+		@Override
+		public float getY() {
+			return y;
+		}
+
+		@Override
+		public float getScaleX() {
+			return scaleX;
+		}
+
+		@Override
+		public float getScaleY() {
+			return scaleY;
+		}
+
+		@Override
+		public void setColor(LColor color) {
+			this.color = color;
+		}
+
+		@Override
+		public LColor getColor() {
+			return color;
+		}
+
+		@Override
+		public void setScale(float sx, float sy) {
+			this.scaleX = sx;
+			this.scaleY = sy;
+		}
+
+		@Override
+		public float getRotation() {
+			return rotation;
+		}
+
+		@Override
+		public void setRotation(float r) {
+			this.rotation = r;
+		}
+
+		@Override
+		public float getWidth() {
+			return 1f;
+		}
+
+		@Override
+		public float getHeight() {
+			return 1f;
+		}
+
+		@Override
+		public float getAlpha() {
+			return alpha;
+		}
+
+		@Override
+		public void setAlpha(float alpha) {
+			this.alpha = alpha;
+		}
+
+		@Override
+		public void setLocation(float x, float y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public void setX(float x) {
+			this.x = x;
+		}
+
+		@Override
+		public void setY(float y) {
+			this.y = y;
+		}
+
+		@Override
+		public boolean isBounded() {
+			return false;
+		}
+
+		@Override
+		public boolean isContainer() {
+			return false;
+		}
+
+		@Override
+		public boolean inContains(float x, float y, float w, float h) {
+			return false;
+		}
+
+		@Override
+		public RectBox getRectBox() {
+			return new RectBox(x, y, 1f, 1f);
+		}
+
+		@Override
+		public float getContainerWidth() {
+			return 0;
+		}
+
+		@Override
+		public float getContainerHeight() {
+			return 0;
+		}
+	}
+
+	private static Target[] createTargets(int count, long seed) {
+		Random rand = new Random(seed);
+		Target[] targets = new Target[count];
+		for (int i = 0; i < count; i++) {
+			Target t = new Target();
+			t.setLocation(rand.nextFloat() * 1000f, rand.nextFloat() * 1000f);
+			targets[i] = t;
+		}
+		return targets;
+	}
+
+	/**
+	 * 每个目标绑定一个MoveBy动作,经由ActionControl(内部的Actions)逐对象推进
+	 *
+	 * @param count
+	 * @param duration
+	 * @param steps
+	 * @param seed
+	 * @return
+	 */
+	public static Result runActions(int count, float duration, int steps,
+			long seed) {
+		Target[] targets = createTargets(count, seed);
+		Random rand = new Random(seed + 1);
+		ActionControl actions = ActionControl.get();
+		actions.clear();
+		for (int i = 0; i < count; i++) {
+			MoveBy move = new MoveBy(rand.nextFloat() * 1000f,
+					rand.nextFloat() * 1000f, duration, EasingMode.Linear);
+			actions.addAction(move, targets[i], false);
+		}
+		Result result = new Result("Actions", count, steps);
+		for (int i = 0; i < steps; i++) {
+			long st = TimeUtils.nanoTime();
+			ActionControl.update(16);
+			result.totalTime += TimeUtils.nanoTime() - st;
+		}
+		result.remaining = actions.getCount();
+		actions.clear();
+		return result;
+	}
+
+	/**
+	 * 全部目标的位移补间保存在一个ActionTweenBatch中统一推进
+	 *
+	 * @param count
+	 * @param duration
+	 * @param steps
+	 * @param seed
+	 * @return
+	 */
+	public static Result runBatch(int count, float duration, int steps,
+			long seed) {
+		Target[] targets = createTargets(count, seed);
+		Random rand = new Random(seed + 1);
+		ActionTweenBatch batch = new ActionTweenBatch(count);
+		for (int i = 0; i < count; i++) {
+			batch.moveTo(targets[i], rand.nextFloat() * 1000f,
+					rand.nextFloat() * 1000f, duration, Easing.NONE);
+		}
+		Result result = new Result("ActionTweenBatch", count, steps);
+		for (int i = 0; i < steps; i++) {
+			long st = TimeUtils.nanoTime();
+			batch.update(16);
+			result.totalTime += TimeUtils.nanoTime() - st;
+		}
+		result.remaining = batch.size();
+		return result;
+	}
+
+	public static TArray<Result> compare(int count, float duration, int steps,
+			long seed) {
+		TArray<Result> results = new TArray<Result>(2);
+		results.add(runActions(count, duration, steps, seed));
+		results.add(runBatch(count, duration, steps, seed));
+		return results;
+	}
+
+	public static void main(String[] args) {
+		final int[] counts = { 10000, 20000, 50000 };
+		for (int i = 0; i < counts.length; i++) {
+			// 预热
+			compare(counts[i], 2f, 60, 1L);
+			TArray<Result> results = compare(counts[i], 2f, 120, 1L);
+			for (int j = 0; j < results.size; j++) {
+				System.out.println(results.get(j));
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package org.test;
+
+import loon.LSetting;
+import loon.LTexture;
+import loon.LazyLoading;
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.canvas.Pixmap;
+import loon.javase.Loon;
+import loon.opengl.GLEx;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * 图形绘制的提交次数对比工具,在同一帧中交替绘制纹理与图形,分别统计GLRenderer模式与图形批处理模式的绘制次数与耗时.
+ * 需要在游戏运行时的绘制过程中(GLEx.begin与end之间)调用,main方法以BenchmarkScreen启动一个窗口运行对比
+ */
+public class GLExShapeBenchmark {
+
+	public static class Result {
+
+		public final String name;
+
+		public final int items;
+
+		public int drawCalls;
+
+		public long totalTime;
+
+		public int cacheHits;
+
+		Result(String name, int items) {
+			this.name = name;
+			this.items = items;
+		}
+
+		public float getMillis() {
+			return totalTime / 1000000f;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format(
+					"{0} [items:{1},drawCalls:{2},time:{3}ms,cacheHits:{4}]",
+					name, items, drawCalls, getMillis(), cacheHits);
+		}
+	}
+
+	/**
+	 * 交替绘制count组精灵,矩形边框,圆形与三角形
+	 *
+	 * @param g
+	 * @param sprite
+	 * @param count
+	 * @param shapeBatch
+	 * @return
+	 */
+	public static Result run(GLEx g, LTexture sprite, int count,
+			boolean shapeBatch) {
+		Result result = new Result(shapeBatch ? "ShapeBatch" : "GLRenderer",
+				count);
+		boolean old = g.isShapeBatch();
+		int oldColor = g.color();
+		g.setShapeBatch(shapeBatch);
+		g.batch().flush();
+		g.resetDrawCalls();
+		int hits = g.getTessellator().getHits();
+		long st = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			float x = (i % 20) * 32f;
+			float y = (i / 20) * 32f;
+			if (sprite != null) {
+				g.draw(sprite, x, y, 24, 24);
+			}
+			g.setColor(LColor.red);
+			g.drawRect(x, y, 24, 24);
+			g.setColor(LColor.green);
+			g.fillOval(x + 4, y + 4, 16, 16);
+			g.setColor(LColor.blue);
+			g.fillTriangle(x, y + 24, x + 12, y + 12, x + 24, y + 24);
+		}
+		g.batch().flush();
+		result.totalTime = System.nanoTime() - st;
+		result.drawCalls = g.getDrawCalls();
+		result.cacheHits = g.getTessellator().getHits() - hits;
+		g.setColor(oldColor);
+		g.setShapeBatch(old);
+		return result;
+	}
+
+	public static TArray<Result> compare(GLEx g, LTexture sprite, int count) {
+		TArray<Result> results = new TArray<Result>(2);
+		results.add(run(g, sprite, count, false));
+		results.add(run(g, sprite, count, true));
+		return results;
+	}
+
+	/**
+	 * 在游戏运行时的绘制过程中执行对比,每隔一段时间重新统计一次并在屏幕上显示结果
+	 */
+	public static class BenchmarkScreen extends Stage {
+
+		private final int count;
+
+		private LTexture sprite;
+
+		private TArray<Result> results;
+
+		private int frames;
+
+		public BenchmarkScreen(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public void create() {
+			Pixmap pixmap = new Pixmap(24, 24, true);
+			pixmap.setColor(LColor.orange);
+			pixmap.fillOval(0, 0, 24, 24);
+			sprite = pixmap.toTexture();
+		}
+
+		@Override
+		public void draw(GLEx g) {
+			if (frames++ % 120 == 0) {
+				results = compare(g, sprite, count);
+				for (int i = 0; i < results.size; i++) {
+					System.out.println(results.get(i));
+				}
+			}
+			if (results != null) {
+				for (int i = 0; i < results.size; i++) {
+					g.drawString(results.get(i).toString(), 10, getHeight() - 50 + i * 20, LColor.white);
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		LSetting setting = new LSetting();
+		setting.isFPS = true;
+		setting.isLogo = false;
+		setting.width = 640;
+		setting.height = 480;
+		setting.fps = 60;
+		setting.appName = "GLExShapeBenchmark";
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		Loon.register(setting, new LazyLoading.Data() {
+
+			@Override
+			public Screen onScreen() {
+				return new BenchmarkScreen(count);
+			}
+		});
+	}
+}
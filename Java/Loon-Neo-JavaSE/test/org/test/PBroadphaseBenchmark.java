@@ -0,0 +1,161 @@
+package org.test;
+
+import java.util.Random;
+
+import loon.physics.PBody;
+import loon.physics.PBoxShape;
+import loon.physics.PBroadphase;
+import loon.physics.PCircleShape;
+import loon.physics.PDynamicAABBTree;
+import loon.physics.PPhysWorld;
+import loon.physics.PShape;
+import loon.physics.PSpatialHash;
+import loon.physics.PSweepAndPrune;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * 宽相位性能对比工具,生成相同的随机场景,分别以不同宽相位运行并统计碰撞对数量与耗时
+ */
+public class PBroadphaseBenchmark {
+
+	public static class Result {
+
+		public final String name;
+
+		public final int bodies;
+
+		public final int steps;
+
+		public long totalTime;
+
+		public long detectionTime;
+
+		public long totalPairs;
+
+		public int maxPairs;
+
+		Result(String name, int bodies, int steps) {
+			this.name = name;
+			this.bodies = bodies;
+			this.steps = steps;
+		}
+
+		public float getAveragePairs() {
+			return steps == 0 ? 0 : (float) totalPairs / steps;
+		}
+
+		/**
+		 * 平均每次step耗时(毫秒)
+		 *
+		 * @return
+		 */
+		public float getAverageStepMillis() {
+			return steps == 0 ? 0 : totalTime / 1000000f / steps;
+		}
+
+		/**
+		 * 平均每次碰撞检测耗时(毫秒)
+		 *
+		 * @return
+		 */
+		public float getAverageDetectionMillis() {
+			return steps == 0 ? 0 : detectionTime / 1000000f / steps;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format(
+					"{0} [bodies:{1},steps:{2},pairs:{3},maxPairs:{4},step:{5}ms,detection:{6}ms]",
+					name, bodies, steps, getAveragePairs(), maxPairs,
+					getAverageStepMillis(), getAverageDetectionMillis());
+		}
+	}
+
+	/**
+	 * 在width x height(物理世界坐标)的区域中随机生成盒子与圆形,底部为固定的地面
+	 *
+	 * @param world
+	 * @param count
+	 * @param width
+	 * @param height
+	 * @param seed
+	 * @return
+	 */
+	public static PPhysWorld createScene(PPhysWorld world, int count,
+			float width, float height, long seed) {
+		Random rand = new Random(seed);
+		world.addBody(new PBody(0, true, new PShape[] { new PBoxShape(
+				width / 2, height + 0.5F, width + 2F, 1F, 0, 1F) }));
+		for (int i = 0; i < count; i++) {
+			float size = 0.3F + rand.nextFloat() * 0.5F;
+			float x = size + rand.nextFloat() * (width - size * 2);
+			float y = size + rand.nextFloat() * (height - size * 2);
+			PShape shape;
+			if (rand.nextBoolean()) {
+				shape = new PBoxShape(x, y, size, size, 0, 1F);
+			} else {
+				shape = new PCircleShape(x, y, size / 2, 0, 1F);
+			}
+			world.addBody(new PBody(0, false, new PShape[] { shape }));
+		}
+		return world;
+	}
+
+	public static Result run(String name, PBroadphase broadphase, int count,
+			float width, float height, int steps, long seed) {
+		PPhysWorld world = new PPhysWorld();
+		world.setBroadphase(broadphase);
+		createScene(world, count, width, height, seed);
+		Result result = new Result(name, count, steps);
+		final float dt = 1f / 60f;
+		for (int i = 0; i < steps; i++) {
+			long st = System.nanoTime();
+			world.step(dt);
+			result.totalTime += System.nanoTime() - st;
+			result.detectionTime += world.getCollisionDetectionTime();
+			int pairs = world.getPairCount();
+			result.totalPairs += pairs;
+			if (pairs > result.maxPairs) {
+				result.maxPairs = pairs;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 以同一场景依次测试PSweepAndPrune,PDynamicAABBTree与PSpatialHash
+	 *
+	 * @param count
+	 * @param width
+	 * @param height
+	 * @param steps
+	 * @param seed
+	 * @return
+	 */
+	public static TArray<Result> compare(int count, float width, float height,
+			int steps, long seed) {
+		TArray<Result> results = new TArray<Result>(3);
+		results.add(run("PSweepAndPrune", new PSweepAndPrune(), count, width,
+				height, steps, seed));
+		results.add(run("PDynamicAABBTree", new PDynamicAABBTree(), count,
+				width, height, steps, seed));
+		results.add(run("PSpatialHash", new PSpatialHash(), count, width,
+				height, steps, seed));
+		return results;
+	}
+
+	public static void main(String[] args) {
+		final int[] counts = { 250, 1000, 4000 };
+		for (int i = 0; i < counts.length; i++) {
+			int count = counts[i];
+			float size = (float) Math.sqrt(count) * 1.5f;
+			// 预热
+			compare(count, size, size, 30, 1L);
+			TArray<Result> results = compare(count, size, size, 120, 1L);
+			for (int j = 0; j < results.size; j++) {
+				System.out.println(results.get(j));
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package org.test;
+
+import loon.LTexture;
+import loon.canvas.LColor;
+import loon.javase.JavaSEPhysExecutor;
+import loon.particle.ArrayParticleSystem;
+import loon.particle.SimpleConfigurableEmitter;
+import loon.particle.SimpleParticleSystem;
+import loon.physics.PParallelExecutor;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * 粒子更新性能对比工具,以相同的发射器配置分别测试SimpleParticleSystem与ArrayParticleSystem(不含绘制)
+ */
+public class ParticleBenchmark {
+
+	public static class Result {
+
+		public final String name;
+
+		public final int emitters;
+
+		public final int steps;
+
+		public long totalTime;
+
+		public int particles;
+
+		Result(String name, int emitters, int steps) {
+			this.name = name;
+			this.emitters = emitters;
+			this.steps = steps;
+		}
+
+		/**
+		 * 平均每帧耗时(毫秒)
+		 *
+		 * @return
+		 */
+		public float getAverageStepMillis() {
+			return steps == 0 ? 0 : totalTime / 1000000f / steps;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format(
+					"{0} [emitters:{1},steps:{2},step:{3}ms,particles:{4}]",
+					name, emitters, steps, getAverageStepMillis(), particles);
+		}
+	}
+
+	/**
+	 * 每帧生成perFrame个粒子的发射器,带重力,颜色渐变与尺寸增长
+	 *
+	 * @param perFrame
+	 * @param life
+	 * @return
+	 */
+	public static SimpleConfigurableEmitter createEmitter(int perFrame,
+			float life) {
+		SimpleConfigurableEmitter emitter = new SimpleConfigurableEmitter(
+				"benchmark");
+		emitter.spawnInterval.setMin(0);
+		emitter.spawnInterval.setMax(0);
+		emitter.spawnCount.setMin(perFrame);
+		emitter.spawnCount.setMax(perFrame);
+		emitter.initialLife.setMin(life * 0.5f);
+		emitter.initialLife.setMax(life);
+		emitter.speed.setMin(50);
+		emitter.speed.setMax(150);
+		emitter.gravityFactor.setValue(10);
+		emitter.growthFactor.setValue(5);
+		emitter.addColorPoint(0.5f, LColor.orange);
+		emitter.addColorPoint(1f, LColor.gray);
+		emitter.setPosition(400, 300, false);
+		return emitter;
+	}
+
+	public static Result runSimple(int emitters, int perFrame, int capacity,
+			int steps) {
+		SimpleParticleSystem system = new SimpleParticleSystem(
+				(LTexture) null, capacity);
+		for (int i = 0; i < emitters; i++) {
+			system.addEmitter(createEmitter(perFrame, 2000));
+		}
+		Result result = new Result("SimpleParticleSystem", emitters, steps);
+		for (int i = 0; i < steps; i++) {
+			long st = System.nanoTime();
+			system.onUpdate(16);
+			result.totalTime += System.nanoTime() - st;
+		}
+		result.particles = system.getParticleCount();
+		return result;
+	}
+
+	public static Result runArray(int emitters, int perFrame, int capacity,
+			int steps, PParallelExecutor executor) {
+		ArrayParticleSystem system = new ArrayParticleSystem(
+				(LTexture) null, capacity);
+		system.setParallelExecutor(executor);
+		for (int i = 0; i < emitters; i++) {
+			system.addEmitter(createEmitter(perFrame, 2000));
+		}
+		Result result = new Result(executor == null ? "ArrayParticleSystem"
+				: "ArrayParticleSystem(parallel)", emitters, steps);
+		for (int i = 0; i < steps; i++) {
+			long st = System.nanoTime();
+			system.update(16);
+			result.totalTime += System.nanoTime() - st;
+		}
+		result.particles = system.getParticleCount();
+		return result;
+	}
+
+	public static TArray<Result> compare(int emitters, int perFrame,
+			int capacity, int steps, PParallelExecutor executor) {
+		TArray<Result> results = new TArray<Result>(3);
+		results.add(runSimple(emitters, perFrame, capacity, steps));
+		results.add(runArray(emitters, perFrame, capacity, steps, null));
+		if (executor != null) {
+			results.add(runArray(emitters, perFrame, capacity, steps, executor));
+		}
+		return results;
+	}
+
+	public static void main(String[] args) {
+		JavaSEPhysExecutor executor = new JavaSEPhysExecutor();
+		final int[] perFrames = { 10, 50, 200 };
+		for (int i = 0; i < perFrames.length; i++) {
+			int perFrame = perFrames[i];
+			// 预热
+			compare(4, perFrame, 20000, 60, executor);
+			TArray<Result> results = compare(4, perFrame, 20000, 300, executor);
+			for (int j = 0; j < results.size; j++) {
+				System.out.println(results.get(j));
+			}
+		}
+		executor.close();
+	}
+}
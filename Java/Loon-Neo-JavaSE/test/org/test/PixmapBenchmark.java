@@ -0,0 +1,204 @@
+package org.test;
+
+import loon.canvas.ConvolutionMatrix;
+import loon.canvas.LColor;
+import loon.canvas.Pixmap;
+import loon.canvas.PixmapKernels;
+import loon.javase.JavaSEPhysExecutor;
+import loon.physics.PParallelExecutor;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * Pixmap常用像素操作(填充,复制,缩放,卷积)在不同尺寸下的性能测试工具
+ */
+public class PixmapBenchmark {
+
+	public static final int[] DEFAULT_SIZES = { 64, 256, 1024 };
+
+	public static class Result {
+
+		public final String name;
+
+		public final int size;
+
+		public final int iterations;
+
+		public final boolean parallel;
+
+		public long totalTime;
+
+		Result(String name, int size, int iterations, boolean parallel) {
+			this.name = name;
+			this.size = size;
+			this.iterations = iterations;
+			this.parallel = parallel;
+		}
+
+		/**
+		 * 平均每次操作耗时(毫秒)
+		 *
+		 * @return
+		 */
+		public float getAverageMillis() {
+			return iterations == 0 ? 0 : totalTime / 1000000f / iterations;
+		}
+
+		/**
+		 * 每秒处理的目标像素数(百万)
+		 * 
+		 * @return
+		 */
+		public float getMegaPixelsPerSecond() {
+			return totalTime == 0 ? 0 : (float) size * size * iterations * 1000f / totalTime;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format("{0} [size:{1}x{1},parallel:{2},op:{3}ms,mpix/s:{4}]", name, size, parallel,
+					getAverageMillis(), getMegaPixelsPerSecond());
+		}
+	}
+
+	/**
+	 * 生成带渐变与半透明像素的测试图像
+	 * 
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static Pixmap createPattern(int width, int height) {
+		Pixmap pixmap = new Pixmap(width, height, true);
+		int[] pixels = pixmap.getData();
+		for (int y = 0, idx = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, idx++) {
+				int a = ((x ^ y) & 0x20) == 0 ? 0xFF : 0x80 + (x & 0x7F);
+				pixels[idx] = (a << 24) | ((x * 255 / width) << 16) | ((y * 255 / height) << 8) | ((x + y) & 0xFF);
+			}
+		}
+		return pixmap;
+	}
+
+	private static boolean isParallel() {
+		return PixmapKernels.getParallelExecutor() != null;
+	}
+
+	public static Result runFill(int size, int iterations) {
+		Pixmap dst = new Pixmap(size, size, true);
+		dst.setColor(LColor.orange);
+		Result result = new Result("fillRect", size, iterations, isParallel());
+		for (int i = 0; i < iterations; i++) {
+			long st = System.nanoTime();
+			dst.fillRect(0, 0, size, size);
+			result.totalTime += System.nanoTime() - st;
+		}
+		dst.close();
+		return result;
+	}
+
+	public static Result runBlit(int size, int iterations) {
+		Pixmap src = createPattern(size, size);
+		Pixmap dst = new Pixmap(size, size, true);
+		Result result = new Result("drawPixmap", size, iterations, isParallel());
+		for (int i = 0; i < iterations; i++) {
+			long st = System.nanoTime();
+			dst.drawPixmap(src, 0, 0);
+			result.totalTime += System.nanoTime() - st;
+		}
+		src.close();
+		dst.close();
+		return result;
+	}
+
+	public static Result runScale(int size, int iterations, boolean enlarge) {
+		Pixmap src = createPattern(enlarge ? size / 2 : size * 2, enlarge ? size / 2 : size * 2);
+		Pixmap dst = createPattern(size, size);
+		Result result = new Result(enlarge ? "drawPixmap(scale up)" : "drawPixmap(scale down)", size, iterations,
+				isParallel());
+		for (int i = 0; i < iterations; i++) {
+			long st = System.nanoTime();
+			dst.drawPixmap(src, 0, 0, size, size, 0, 0, src.getWidth(), src.getHeight());
+			result.totalTime += System.nanoTime() - st;
+		}
+		src.close();
+		dst.close();
+		return result;
+	}
+
+	public static Result runConvolution(int size, int iterations) {
+		ConvolutionMatrix matrix = new ConvolutionMatrix(ConvolutionMatrix.SIZE);
+		matrix.setAll(1);
+		matrix.matrix[1][1] = 4;
+		matrix.factor = 12;
+		matrix.offset = 0;
+		Pixmap src = createPattern(size, size);
+		Result result = new Result("computeConvolution3x3", size, iterations, isParallel());
+		for (int i = 0; i < iterations; i++) {
+			Pixmap tmp = src.cpy();
+			long st = System.nanoTime();
+			ConvolutionMatrix.computeConvolution3x3(tmp, matrix).close();
+			result.totalTime += System.nanoTime() - st;
+		}
+		src.close();
+		return result;
+	}
+
+	/**
+	 * 在当前PixmapKernels设置下测试指定尺寸的全部操作
+	 * 
+	 * @param size
+	 * @param iterations
+	 * @return
+	 */
+	public static TArray<Result> runAll(int size, int iterations) {
+		TArray<Result> results = new TArray<Result>(5);
+		results.add(runFill(size, iterations));
+		results.add(runBlit(size, iterations));
+		results.add(runScale(size, iterations, true));
+		results.add(runScale(size, iterations, false));
+		results.add(runConvolution(size, iterations));
+		return results;
+	}
+
+	/**
+	 * 分别以串行与指定并行执行器测试多个尺寸,结束后恢复原有执行器
+	 * 
+	 * @param sizes
+	 * @param iterations
+	 * @param executor
+	 * @return
+	 */
+	public static TArray<Result> compare(int[] sizes, int iterations, PParallelExecutor executor) {
+		TArray<Result> results = new TArray<Result>();
+		PParallelExecutor old = PixmapKernels.getParallelExecutor();
+		try {
+			for (int i = 0; i < sizes.length; i++) {
+				PixmapKernels.setParallelExecutor(null);
+				results.addAll(runAll(sizes[i], iterations));
+				if (executor != null) {
+					PixmapKernels.setParallelExecutor(executor);
+					results.addAll(runAll(sizes[i], iterations));
+				}
+			}
+		} finally {
+			PixmapKernels.setParallelExecutor(old);
+		}
+		return results;
+	}
+
+	public static TArray<Result> compare(int iterations, PParallelExecutor executor) {
+		return compare(DEFAULT_SIZES, iterations, executor);
+	}
+
+	public static void main(String[] args) {
+		JavaSEPhysExecutor executor = new JavaSEPhysExecutor();
+		final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		// 预热
+		compare(new int[] { 256 }, iterations, executor);
+		TArray<Result> results = compare(iterations, executor);
+		for (int i = 0; i < results.size; i++) {
+			System.out.println(results.get(i));
+		}
+		executor.close();
+	}
+}
@@ -0,0 +1,204 @@
+package org.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import loon.action.map.tmx.TMXMap;
+import loon.action.map.tmx.TMXTileLayer;
+import loon.action.map.tmx.TMXTileLayer.Compression;
+import loon.action.map.tmx.tiles.TMXMapTile;
+import loon.utils.Base64Coder;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * TMX图块数据解码的性能对比工具,以同一份zlib压缩的base64图层数据分别测试旧的(先完整解码为字节数组,
+ * 再为每个格子创建TMXMapTile)与紧凑存储(流式解码到int数组)两种方式的耗时与内存占用
+ */
+public class TMXLayerBenchmark {
+
+	// 估算值:对象头12字节+3个int字段,按8字节对齐
+	private final static int TILE_OBJECT_BYTES = 32;
+
+	private final static int REFERENCE_BYTES = 4;
+
+	public static class Result {
+
+		public final String name;
+
+		public final int width;
+
+		public final int height;
+
+		public final int runs;
+
+		public long totalTime;
+
+		public long heapBytes;
+
+		public long checksum;
+
+		Result(String name, int width, int height, int runs) {
+			this.name = name;
+			this.width = width;
+			this.height = height;
+			this.runs = runs;
+		}
+
+		/**
+		 * 平均每次解码耗时(毫秒)
+		 *
+		 * @return
+		 */
+		public float getAverageMillis() {
+			return runs == 0 ? 0 : totalTime / 1000000f / runs;
+		}
+
+		/**
+		 * 图块数据的估算内存占用(千字节)
+		 *
+		 * @return
+		 */
+		public float getHeapKB() {
+			return heapBytes / 1024f;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format(
+					"{0} [size:{1}x{2},runs:{3},decode:{4}ms,heap:{5}KB,checksum:{6}]",
+					name, width, height, runs, getAverageMillis(), getHeapKB(),
+					checksum);
+		}
+	}
+
+	/**
+	 * 生成width x height的随机图层数据,并以zlib压缩后编码为base64
+	 *
+	 * @param width
+	 * @param height
+	 * @param tileCount
+	 * @param seed
+	 * @return
+	 * @throws Exception
+	 */
+	public static String createLayerData(int width, int height, int tileCount,
+			long seed) throws Exception {
+		Random rand = new Random(seed);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(width * height
+				* 4);
+		DeflaterOutputStream out = new DeflaterOutputStream(bytes,
+				new Deflater());
+		for (int i = 0, size = width * height; i < size; i++) {
+			int gid = rand.nextInt(tileCount + 1);
+			if (gid != 0 && rand.nextInt(16) == 0) {
+				gid |= TMXMap.FLIPPED_HORIZONTALLY_FLAG;
+			}
+			out.write(gid & 0xFF);
+			out.write((gid >> 8) & 0xFF);
+			out.write((gid >> 16) & 0xFF);
+			out.write((gid >>> 24) & 0xFF);
+		}
+		out.close();
+		return new String(Base64Coder.encode(bytes.toByteArray()));
+	}
+
+	public static Result runLegacy(String data, int width, int height, int runs)
+			throws Exception {
+		Result result = new Result("TMXMapTile[]", width, height, runs);
+		final int size = width * height;
+		for (int r = 0; r < runs; r++) {
+			long st = System.nanoTime();
+			byte[] dec = Base64Coder.decodeBase64(data.toCharArray());
+			InputStream is = new InflaterInputStream(new ByteArrayInputStream(
+					dec));
+			TMXMapTile[] tiles = new TMXMapTile[size];
+			byte[] temp = new byte[4];
+			for (int i = 0; i < size; i++) {
+				int read = 0;
+				while (read < 4) {
+					int curr = is.read(temp, read, 4 - read);
+					if (curr == -1) {
+						break;
+					}
+					read += curr;
+				}
+				int gid = (temp[0] & 0xFF) | (temp[1] & 0xFF) << 8
+						| (temp[2] & 0xFF) << 16 | (temp[3] & 0xFF) << 24;
+				tiles[i] = new TMXMapTile(gid, 1, 0);
+			}
+			is.close();
+			result.totalTime += System.nanoTime() - st;
+			if (r == 0) {
+				for (int i = 0; i < size; i++) {
+					result.checksum += tiles[i].getGID();
+				}
+			}
+		}
+		result.heapBytes = (long) size * (TILE_OBJECT_BYTES + REFERENCE_BYTES);
+		return result;
+	}
+
+	public static Result runPacked(String data, int width, int height, int runs)
+			throws Exception {
+		Result result = new Result("int[]", width, height, runs);
+		final int size = width * height;
+		for (int r = 0; r < runs; r++) {
+			long st = System.nanoTime();
+			InputStream is = TMXTileLayer.openStream(data, Compression.ZLIB);
+			int[] tiles = new int[size];
+			byte[] buffer = new byte[width * 4];
+			for (int y = 0; y < height; y++) {
+				TMXTileLayer.readTiles(is, tiles, y * width, width, buffer);
+			}
+			is.close();
+			result.totalTime += System.nanoTime() - st;
+			if (r == 0) {
+				for (int i = 0; i < size; i++) {
+					result.checksum += tiles[i]
+							& ~(TMXMap.FLIPPED_HORIZONTALLY_FLAG
+									| TMXMap.FLIPPED_VERTICALLY_FLAG | TMXMap.FLIPPED_DIAGONALLY_FLAG);
+				}
+			}
+		}
+		result.heapBytes = (long) size * 4;
+		return result;
+	}
+
+	/**
+	 * 以同一份图层数据依次测试旧的对象数组方式与紧凑存储方式
+	 *
+	 * @param width
+	 * @param height
+	 * @param runs
+	 * @param seed
+	 * @return
+	 * @throws Exception
+	 */
+	public static TArray<Result> compare(int width, int height, int runs,
+			long seed) throws Exception {
+		String data = createLayerData(width, height, 256, seed);
+		TArray<Result> results = new TArray<Result>(2);
+		results.add(runLegacy(data, width, height, runs));
+		results.add(runPacked(data, width, height, runs));
+		return results;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final int[] sizes = { 64, 256, 1024 };
+		for (int i = 0; i < sizes.length; i++) {
+			int size = sizes[i];
+			// 预热
+			compare(size, size, 3, 1L);
+			TArray<Result> results = compare(size, size, 10, 1L);
+			for (int j = 0; j < results.size; j++) {
+				System.out.println(results.get(j));
+			}
+		}
+	}
+}
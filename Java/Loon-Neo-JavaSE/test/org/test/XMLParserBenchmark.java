@@ -0,0 +1,222 @@
+package org.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+import loon.utils.xml.XMLDocument;
+import loon.utils.xml.XMLElement;
+import loon.utils.xml.XMLParser;
+import loon.utils.xml.XMLStreamListener;
+import loon.utils.xml.XMLStreamParser;
+
+/**
+ * XML解析性能对比工具,以同一份生成的大型TMX格式文本,分别统计旧的XMLTokenizer解析,XMLStreamParser构建延迟文档,
+ * 以及只接收事件不构建文档三种方式的耗时与内存分配(HotSpot下为当前线程的实际分配字节数,
+ * 否则为Runtime统计的堆增长近似值,发生垃圾回收的那次解析不计入)
+ */
+public class XMLParserBenchmark {
+
+	public static class Result {
+
+		public final String name;
+
+		public final int chars;
+
+		public final int loops;
+
+		public long totalTime;
+
+		public long allocated;
+
+		public int measured;
+
+		public int elements;
+
+		Result(String name, int chars, int loops) {
+			this.name = name;
+			this.chars = chars;
+			this.loops = loops;
+		}
+
+		public float getAverageMillis() {
+			return loops == 0 ? 0 : totalTime / 1000000f / loops;
+		}
+
+		/**
+		 * 平均每次解析分配的内存(KB)
+		 *
+		 * @return
+		 */
+		public float getAverageAllocatedKB() {
+			return measured == 0 ? 0 : allocated / 1024f / measured;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.format(
+					"{0} [chars:{1},loops:{2},elements:{3},parse:{4}ms,alloc:{5}KB]",
+					name, chars, loops, elements, getAverageMillis(),
+					getAverageAllocatedKB());
+		}
+	}
+
+	private static class CountListener implements XMLStreamListener {
+
+		int elements;
+
+		long sum;
+
+		@Override
+		public void startElement(XMLStreamParser parser) {
+			elements++;
+		}
+
+		@Override
+		public void attribute(XMLStreamParser parser) {
+			if (parser.isAttribute("gid")) {
+				sum += parser.getAttributeInt(0);
+			}
+		}
+
+		@Override
+		public void text(XMLStreamParser parser) {
+		}
+
+		@Override
+		public void comment(XMLStreamParser parser) {
+		}
+
+		@Override
+		public void processing(XMLStreamParser parser) {
+		}
+
+		@Override
+		public void endElement(XMLStreamParser parser) {
+		}
+	}
+
+	/**
+	 * 生成width x height个tile节点与objects个对象节点的TMX格式文本
+	 *
+	 * @param width
+	 * @param height
+	 * @param objects
+	 * @return
+	 */
+	public static String createDocument(int width, int height, int objects) {
+		StringBuffer sbr = new StringBuffer(width * height * 24 + objects
+				* 96 + 512);
+		sbr.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sbr.append("<map version=\"1.0\" orientation=\"orthogonal\" width=\"")
+				.append(width).append("\" height=\"").append(height)
+				.append("\" tilewidth=\"32\" tileheight=\"32\">\n");
+		sbr.append(" <tileset firstgid=\"1\" name=\"tiles\" tilewidth=\"32\" tileheight=\"32\">\n");
+		sbr.append("  <image source=\"tiles.png\" width=\"256\" height=\"256\"/>\n");
+		sbr.append(" </tileset>\n");
+		sbr.append(" <layer name=\"ground\" width=\"").append(width)
+				.append("\" height=\"").append(height).append("\">\n  <data>\n");
+		for (int i = 0, size = width * height; i < size; i++) {
+			sbr.append("   <tile gid=\"").append(i % 64 + 1).append("\"/>\n");
+		}
+		sbr.append("  </data>\n </layer>\n");
+		sbr.append(" <objectgroup name=\"objects\">\n");
+		for (int i = 0; i < objects; i++) {
+			sbr.append("  <object name=\"obj").append(i)
+					.append("\" type=\"enemy\" x=\"").append(i * 7 % 1000)
+					.append("\" y=\"").append(i * 13 % 1000)
+					.append("\" width=\"32\" height=\"32\">\n");
+			sbr.append("   <properties><property name=\"hp\" value=\"")
+					.append(i % 100).append("\"/></properties>\n");
+			sbr.append("  </object>\n");
+		}
+		sbr.append(" </objectgroup>\n</map>\n");
+		return sbr.toString();
+	}
+
+	private static long usedMemory() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static int countElements(XMLElement e) {
+		int count = 1;
+		TArray<XMLElement> list = e.list();
+		for (int i = 0; i < list.size; i++) {
+			count += countElements(list.get(i));
+		}
+		return count;
+	}
+
+	/**
+	 * 运行指定方式的解析,mode为0时使用旧解析器,1时构建延迟文档,2时只接收事件
+	 *
+	 * @param text
+	 * @param mode
+	 * @param loops
+	 * @return
+	 */
+	public static Result run(String text, int mode, int loops) {
+		Result result = new Result(mode == 0 ? "XMLTokenizer"
+				: (mode == 1 ? "XMLStreamBuilder" : "XMLStreamParser"),
+				text.length(), loops);
+		XMLStreamParser parser = new XMLStreamParser();
+		for (int i = 0; i < loops; i++) {
+			XMLDocument doc = null;
+			CountListener listener = null;
+			long mem = usedMemory();
+			long st = System.nanoTime();
+			if (mode == 0) {
+				doc = XMLParser.parseTokens(text, null);
+			} else if (mode == 1) {
+				doc = XMLStreamParser.parseDocument(text);
+			} else {
+				listener = new CountListener();
+				parser.parse(text, listener);
+			}
+			result.totalTime += System.nanoTime() - st;
+			long used = usedMemory() - mem;
+			if (used > 0) {
+				result.allocated += used;
+				result.measured++;
+			}
+			if (i == loops - 1) {
+				result.elements = doc == null ? listener.elements
+						: countElements(doc.getRoot());
+			}
+		}
+		return result;
+	}
+
+	public static TArray<Result> compare(String text, int loops) {
+		TArray<Result> results = new TArray<Result>(3);
+		results.add(run(text, 0, loops));
+		results.add(run(text, 1, loops));
+		results.add(run(text, 2, loops));
+		return results;
+	}
+
+	public static TArray<Result> compare(int width, int height, int objects,
+			int loops) {
+		return compare(createDocument(width, height, objects), loops);
+	}
+
+	public static void main(String[] args) {
+		final int[] sizes = { 64, 256 };
+		for (int i = 0; i < sizes.length; i++) {
+			String text = createDocument(sizes[i], sizes[i], sizes[i] * 4);
+			// 预热
+			compare(text, 3);
+			TArray<Result> results = compare(text, 10);
+			for (int j = 0; j < results.size; j++) {
+				System.out.println(results.get(j));
+			}
+		}
+	}
+}
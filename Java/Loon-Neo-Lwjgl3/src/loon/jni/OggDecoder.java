@@ -0,0 +1,321 @@
+package loon.jni;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.jcraft.jogg.Packet;
+import com.jcraft.jogg.Page;
+import com.jcraft.jogg.StreamState;
+import com.jcraft.jogg.SyncState;
+import com.jcraft.jorbis.Block;
+import com.jcraft.jorbis.Comment;
+import com.jcraft.jorbis.DspState;
+import com.jcraft.jorbis.Info;
+
+/**
+ * 按需解码的Ogg Vorbis数据源,每次read只解码填满目标数组所需的数据包,输出交错排列的16位PCM.
+ * 不创建线程,也不打开音频输出,由调用者决定在何处解码.
+ */
+public class OggDecoder {
+
+	private static final int BUFSIZE = 4096 * 2;
+
+	// Vorbis数据块最大为8192帧,跳转时在目标位置前保留这一距离重新开始解码
+	private static final int SEEK_MARGIN = 8192;
+
+	private final InputStream input;
+
+	private final SyncState oy = new SyncState();
+
+	private final StreamState os = new StreamState();
+
+	private final Page og = new Page();
+
+	private final Packet op = new Packet();
+
+	private final Info vi = new Info();
+
+	private final Comment vc = new Comment();
+
+	private DspState vd = new DspState();
+
+	private Block vb = new Block(vd);
+
+	private final float[][][] pcmf = new float[1][][];
+
+	private int[] index;
+
+	private boolean lastPage, inputEnd, ended, closed;
+
+	private long framesRead;
+
+	public OggDecoder(InputStream in) throws IOException {
+		this.input = in;
+		oy.init();
+		readHeaders();
+	}
+
+	private int fill() throws IOException {
+		if (inputEnd) {
+			return -1;
+		}
+		int offset = oy.buffer(BUFSIZE);
+		int bytes = input.read(oy.data, offset, BUFSIZE);
+		if (bytes <= 0) {
+			inputEnd = true;
+			return -1;
+		}
+		oy.wrote(bytes);
+		return bytes;
+	}
+
+	private boolean nextPage() throws IOException {
+		for (;;) {
+			int result = oy.pageout(og);
+			if (result == 1) {
+				return true;
+			}
+			if (result == 0 && fill() < 0) {
+				return false;
+			}
+		}
+	}
+
+	private void readHeaders() throws IOException {
+		if (!nextPage()) {
+			throw new IOException("Input does not appear to be an Ogg bitstream.");
+		}
+		os.init(og.serialno());
+		os.reset();
+		vi.init();
+		vc.init();
+		if (os.pagein(og) < 0) {
+			throw new IOException("Error reading first page of Ogg bitstream data.");
+		}
+		if (os.packetout(op) != 1) {
+			throw new IOException("Error reading initial header packet.");
+		}
+		if (vi.synthesis_headerin(vc, op) < 0) {
+			throw new IOException("This Ogg bitstream does not contain Vorbis audio data.");
+		}
+		int headers = 0;
+		while (headers < 2) {
+			int result = os.packetout(op);
+			if (result == 1) {
+				vi.synthesis_headerin(vc, op);
+				headers++;
+			} else if (result == -1) {
+				throw new IOException("Corrupt secondary header.");
+			} else {
+				if (!nextPage()) {
+					throw new IOException("End of file before finding all Vorbis headers!");
+				}
+				os.pagein(og);
+			}
+		}
+		vd.synthesis_init(vi);
+		vb.init(vd);
+		index = new int[vi.channels];
+	}
+
+	/**
+	 * 解码最多frames帧(每帧包含全部声道)到out中,返回实际解码的帧数,数据结束时返回-1
+	 *
+	 * @param out
+	 * @param offset
+	 * @param frames
+	 * @return
+	 * @throws IOException
+	 */
+	public int read(short[] out, int offset, int frames) throws IOException {
+		if (closed) {
+			return -1;
+		}
+		final int channels = vi.channels;
+		int done = 0;
+		while (done < frames) {
+			int samples = vd.synthesis_pcmout(pcmf, index);
+			if (samples > 0) {
+				final int count = Math.min(samples, frames - done);
+				final float[][] pcm = pcmf[0];
+				for (int c = 0; c < channels; c++) {
+					final float[] src = pcm[c];
+					int ptr = offset + done * channels + c;
+					for (int j = 0, pos = index[c]; j < count; j++) {
+						int val = (int) (src[pos + j] * 32767f);
+						if (val > 32767) {
+							val = 32767;
+						} else if (val < -32768) {
+							val = -32768;
+						}
+						out[ptr] = (short) val;
+						ptr += channels;
+					}
+				}
+				vd.synthesis_read(count);
+				done += count;
+				continue;
+			}
+			int result = os.packetout(op);
+			if (result == 1) {
+				if (vb.synthesis(op) == 0) {
+					vd.synthesis_blockin(vb);
+				}
+				continue;
+			}
+			if (result == -1) {
+				continue;
+			}
+			if (lastPage || !nextPage()) {
+				ended = true;
+				break;
+			}
+			os.pagein(og);
+			if (og.eos() != 0) {
+				lastPage = true;
+			}
+		}
+		framesRead += done;
+		return done == 0 ? -1 : done;
+	}
+
+	/**
+	 * 不解码地跳过结束位置早于frame(减去一个数据块)的数据页,只读取页头中的位置信息,返回跳过后所在的帧位置.
+	 * 跳过的数据页不经过Vorbis合成,因此跳转耗时只与读取的字节数有关,其后的数据由调用者解码并丢弃到目标位置
+	 *
+	 * @param frame
+	 * @return
+	 * @throws IOException
+	 */
+	public long skipTo(long frame) throws IOException {
+		if (closed || frame - SEEK_MARGIN <= framesRead) {
+			return framesRead;
+		}
+		final long limit = frame - SEEK_MARGIN;
+		// 尚未取出的数据包属于当前页,当前页结束位置已超过界限时无法跳过
+		long position = og.granulepos();
+		if (position < 0 || position >= limit) {
+			return framesRead;
+		}
+		int lastBlock = drainPackets(0);
+		for (;;) {
+			if (lastPage || !nextPage()) {
+				ended = true;
+				return framesRead = position;
+			}
+			os.pagein(og);
+			if (og.eos() != 0) {
+				lastPage = true;
+			}
+			long granule = og.granulepos();
+			if (granule >= limit) {
+				break;
+			}
+			lastBlock = drainPackets(lastBlock);
+			if (granule >= 0) {
+				position = granule;
+			}
+		}
+		// 丢弃旧的合成状态后,新的第一个数据包只用于重叠,不产生输出,其后的输出从该包结束位置
+		// (position加上两个数据块各自的四分之一)开始;未跳过任何音频包时与从头解码相同
+		vb.clear();
+		vd.clear();
+		vd = new DspState();
+		vd.synthesis_init(vi);
+		vb = new Block(vd);
+		vb.init(vd);
+		for (;;) {
+			int result = os.packetout(op);
+			if (result == 1) {
+				if (lastBlock > 0) {
+					position += (lastBlock + vi.blocksize(op)) / 4;
+				}
+				if (vb.synthesis(op) == 0) {
+					vd.synthesis_blockin(vb);
+				}
+				break;
+			}
+			if (result == -1) {
+				continue;
+			}
+			if (lastPage || !nextPage()) {
+				ended = true;
+				break;
+			}
+			os.pagein(og);
+			if (og.eos() != 0) {
+				lastPage = true;
+			}
+		}
+		return framesRead = position;
+	}
+
+	private int drainPackets(int lastBlock) {
+		for (int result; (result = os.packetout(op)) != 0;) {
+			if (result == 1) {
+				lastBlock = vi.blocksize(op);
+			}
+		}
+		return lastBlock;
+	}
+
+	/**
+	 * 解码全部剩余数据
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public short[] readAll() throws IOException {
+		final int channels = vi.channels;
+		short[] result = new short[vi.rate * channels];
+		int size = 0;
+		for (;;) {
+			if (result.length - size < BUFSIZE * channels) {
+				short[] tmp = new short[result.length * 2];
+				System.arraycopy(result, 0, tmp, 0, size);
+				result = tmp;
+			}
+			int frames = read(result, size, (result.length - size) / channels);
+			if (frames < 0) {
+				break;
+			}
+			size += frames * channels;
+		}
+		short[] pcm = new short[size];
+		System.arraycopy(result, 0, pcm, 0, size);
+		return pcm;
+	}
+
+	public int getChannels() {
+		return vi.channels;
+	}
+
+	public int getSampleRate() {
+		return vi.rate;
+	}
+
+	public long getFramesRead() {
+		return framesRead;
+	}
+
+	public boolean isEnd() {
+		return closed || ended;
+	}
+
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		os.clear();
+		vb.clear();
+		vd.clear();
+		vi.clear();
+		oy.clear();
+		try {
+			input.close();
+		} catch (IOException e) {
+		}
+	}
+
+}
@@ -39,6 +39,7 @@ import static org.lwjgl.opengl.GL11.GL_FALSE;
 import loon.*;
 import loon.canvas.Image;
 import loon.canvas.Pixmap;
+import loon.canvas.PixmapKernels;
 import loon.event.KeyMake;
 import loon.geom.Dimension;
 import loon.jni.NativeSupport;
@@ -54,6 +55,8 @@ public class Lwjgl3Game extends LGame {
 	public static class JavaSetting extends LSetting {
 		public boolean vSyncEnabled = true;
 		public String[] iconPaths = null;
+		/** 多核时以ForkJoinPool并行处理大尺寸Pixmap的缩放,填充与卷积 */
+		public boolean parallelPixmap = false;
 		public int synMode = Lwjgl3Sync.LWJGL_GLFW;
 	}
 
@@ -161,7 +164,7 @@ public class Lwjgl3Game extends LGame {
 	private final Asyn asyn = new Lwjgl3Asyn(pool, log, frame);
 
 	private final Lwjgl3Accelerometer accelerometer = new Lwjgl3Accelerometer();
-	private final Lwjgl3Save save;
+	private final Save save;
 	private final Lwjgl3ImplGraphics graphics;
 	private final Lwjgl3Input input;
 	private final Lwjgl3Assets assets = new Lwjgl3Assets(this);
@@ -281,7 +284,8 @@ public class Lwjgl3Game extends LGame {
 		}
 		GL.createCapabilities();
 
-		this.save = new Lwjgl3Save(log, config.appName);
+		Save journal = Lwjgl3JournalSave.open(log, config.appName);
+		this.save = journal != null ? journal : new Lwjgl3Save(log, config.appName);
 
 		if (config.activationKey != -1) {
 			input.keyboardEvents.connect(new Port<KeyMake.Event>() {
@@ -301,6 +305,10 @@ public class Lwjgl3Game extends LGame {
 		this.initProcess();
 		if (config instanceof JavaSetting) {
 			setIcon(window, ((JavaSetting) config).iconPaths);
+			if (((JavaSetting) config).parallelPixmap && Runtime.getRuntime().availableProcessors() > 1
+					&& PixmapKernels.getParallelExecutor() == null) {
+				PixmapKernels.setParallelExecutor(new Lwjgl3PhysExecutor());
+			}
 		}
 		this.graphics.init();
 		this.input.init();
@@ -484,13 +492,35 @@ public class Lwjgl3Game extends LGame {
 		System.exit(0);
 	}
 
+	private Lwjgl3FrameAllocation allocationMonitor;
+
+	/**
+	 * 设置帧内存分配检测,每次processFrame都会被统计
+	 * 
+	 * @param monitor
+	 */
+	public void setAllocationMonitor(Lwjgl3FrameAllocation monitor) {
+		this.allocationMonitor = monitor;
+	}
+
+	public Lwjgl3FrameAllocation getAllocationMonitor() {
+		return allocationMonitor;
+	}
+
 	protected void processFrame() {
+		final Lwjgl3FrameAllocation monitor = allocationMonitor;
+		if (monitor != null) {
+			monitor.beginFrame();
+		}
 		try {
 			input.update();
 		} catch (Exception e) {
 			log.warn("your system input exception !", e);
 		}
 		emitFrame();
+		if (monitor != null) {
+			monitor.endFrame();
+		}
 	}
 
 	protected void toggleActivation() {
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.lwjgl;
+
+import loon.SoundImpl;
+
+/**
+ * 经由Lwjgl3AudioMixer播放的音效,每次play都会新开一个voice(可重叠播放),不再为每个音效占用独立的音频线路
+ */
+public class Lwjgl3MixerSound extends SoundImpl<Lwjgl3PCM> {
+
+	private final Lwjgl3AudioMixer mixer;
+
+	private float pan, pitch = 1f;
+
+	private int priority;
+
+	private int lastVoice = -1;
+
+	Lwjgl3MixerSound(Lwjgl3AudioMixer mixer) {
+		this.mixer = mixer;
+	}
+
+	@Override
+	protected boolean playingImpl() {
+		return mixer.isPlaying(this);
+	}
+
+	@Override
+	protected boolean playImpl() {
+		if (looping && mixer.isPlaying(this)) {
+			return true;
+		}
+		lastVoice = mixer.play(impl, this, volume, pan, pitch, looping, priority);
+		return lastVoice != -1;
+	}
+
+	@Override
+	protected void stopImpl() {
+		mixer.stop(this);
+	}
+
+	@Override
+	protected void setLoopingImpl(boolean looping) {
+		mixer.setLooping(this, looping);
+	}
+
+	@Override
+	protected void setVolumeImpl(float volume) {
+		mixer.setGain(this, volume);
+	}
+
+	@Override
+	protected void releaseImpl() {
+		mixer.stop(this);
+	}
+
+	/**
+	 * 声道平衡,-1为左声道,1为右声道
+	 * 
+	 * @param pan
+	 */
+	public void setPan(float pan) {
+		this.pan = Math.max(-1f, Math.min(1f, pan));
+		mixer.setPan(this, this.pan);
+	}
+
+	public float getPan() {
+		return pan;
+	}
+
+	/**
+	 * 音调(播放速度),1为原始音调
+	 * 
+	 * @param pitch
+	 */
+	public void setPitch(float pitch) {
+		this.pitch = Math.max(0.05f, pitch);
+		mixer.setPitch(this, this.pitch);
+	}
+
+	public float getPitch() {
+		return pitch;
+	}
+
+	/**
+	 * 优先级,voice数量不足时只会抢占优先级不高于此值的voice
+	 * 
+	 * @param priority
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * 最近一次play得到的voice句柄
+	 * 
+	 * @return
+	 */
+	public int getLastVoice() {
+		return lastVoice;
+	}
+
+}
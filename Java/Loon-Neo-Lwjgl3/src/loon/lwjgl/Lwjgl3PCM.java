@@ -0,0 +1,118 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.lwjgl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import loon.LSystem;
+import loon.jni.OggDecoder;
+
+/**
+ * 解码后的16位PCM数据(交错排列),可被多个Sound共享
+ */
+public class Lwjgl3PCM {
+
+	final short[] samples;
+
+	final int channels;
+
+	final int sampleRate;
+
+	final int frames;
+
+	public Lwjgl3PCM(short[] samples, int channels, int sampleRate) {
+		this.samples = samples;
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+		this.frames = samples.length / channels;
+	}
+
+	/**
+	 * 把ogg,wav等格式完整解码为PCM
+	 * 
+	 * @param path
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static Lwjgl3PCM decode(String path, InputStream in) throws IOException {
+		if ("ogg".equalsIgnoreCase(LSystem.getExtension(path))) {
+			OggDecoder decoder = new OggDecoder(in);
+			try {
+				return new Lwjgl3PCM(decoder.readAll(), decoder.getChannels(), decoder.getSampleRate());
+			} finally {
+				decoder.close();
+			}
+		}
+		try {
+			AudioInputStream ais = AudioSystem.getAudioInputStream(in);
+			AudioFormat baseFormat = ais.getFormat();
+			AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, baseFormat.getSampleRate(), 16,
+					baseFormat.getChannels(), baseFormat.getChannels() * 2, baseFormat.getSampleRate(), false);
+			if (!format.matches(baseFormat)) {
+				ais = AudioSystem.getAudioInputStream(format, ais);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int len; (len = ais.read(buffer)) > 0;) {
+				out.write(buffer, 0, len);
+			}
+			ais.close();
+			byte[] bytes = out.toByteArray();
+			short[] samples = new short[bytes.length / 2];
+			for (int i = 0, j = 0; i < samples.length; i++, j += 2) {
+				samples[i] = (short) ((bytes[j] & 0xFF) | (bytes[j + 1] << 8));
+			}
+			return new Lwjgl3PCM(samples, format.getChannels(), (int) format.getSampleRate());
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public float getDuration() {
+		return (float) frames / sampleRate;
+	}
+
+	public long getByteSize() {
+		return samples.length * 2L;
+	}
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.lwjgl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按最近使用顺序淘汰的PCM缓存,以解码后的字节数限制大小,同一路径的音效只解码一次
+ */
+public class Lwjgl3PCMCache {
+
+	private final LinkedHashMap<String, Lwjgl3PCM> cache = new LinkedHashMap<String, Lwjgl3PCM>(16, 0.75f, true);
+
+	private long maxBytes;
+
+	private long bytes;
+
+	private int hits, misses, evictions;
+
+	public Lwjgl3PCMCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public synchronized Lwjgl3PCM get(String key) {
+		Lwjgl3PCM pcm = cache.get(key);
+		if (pcm != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return pcm;
+	}
+
+	public synchronized boolean contains(String key) {
+		return cache.containsKey(key);
+	}
+
+	public synchronized void put(String key, Lwjgl3PCM pcm) {
+		Lwjgl3PCM old = cache.put(key, pcm);
+		if (old != null) {
+			bytes -= old.getByteSize();
+		}
+		bytes += pcm.getByteSize();
+		trim();
+	}
+
+	private void trim() {
+		// 正在播放的声音仍持有数据引用,淘汰只影响之后的加载
+		Iterator<Map.Entry<String, Lwjgl3PCM>> it = cache.entrySet().iterator();
+		while (bytes > maxBytes && cache.size() > 1 && it.hasNext()) {
+			bytes -= it.next().getValue().getByteSize();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized void setMaxBytes(long max) {
+		this.maxBytes = max;
+		trim();
+	}
+
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized int getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		bytes = 0;
+	}
+
+}
@@ -0,0 +1,78 @@
+package loon.lwjgl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import loon.LRelease;
+import loon.physics.PParallelExecutor;
+
+/**
+ * 基于ForkJoinPool的物理并行执行器,用法:world.setParallelExecutor(new Lwjgl3PhysExecutor())
+ */
+public class Lwjgl3PhysExecutor implements PParallelExecutor, LRelease {
+
+	private static class Batch extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Task task;
+
+		private final int from, to;
+
+		Batch(Task task, int from, int to) {
+			this.task = task;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				task.run(from);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Batch(task, from, mid), new Batch(task, mid, to));
+		}
+	}
+
+	private final ForkJoinPool pool;
+
+	private final int threads;
+
+	public Lwjgl3PhysExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            固定的线程数量
+	 */
+	public Lwjgl3PhysExecutor(int threads) {
+		this.threads = Math.max(1, threads);
+		this.pool = new ForkJoinPool(this.threads);
+	}
+
+	@Override
+	public int getThreadCount() {
+		return threads;
+	}
+
+	@Override
+	public void invokeAll(Task task, int count) {
+		if (count <= 0) {
+			return;
+		}
+		if (count == 1) {
+			task.run(0);
+			return;
+		}
+		pool.invoke(new Batch(task, 0, count));
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+}
@@ -24,7 +24,6 @@ import java.io.OutputStream;
 
 import loon.action.ActionControl;
 import loon.action.sprite.Sprites;
-import loon.canvas.Image;
 import loon.canvas.LColor;
 import loon.component.Desktop;
 import loon.font.IFont;
@@ -32,25 +31,24 @@ import loon.opengl.GL20;
 import loon.opengl.GLEx;
 import loon.utils.ArrayByte;
 import loon.utils.ArrayByteOutput;
-import loon.utils.GLUtils;
 import loon.utils.GifEncoder;
 import loon.utils.MathUtils;
 import loon.utils.StringUtils;
 import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.recorder.FrameEncoder;
+import loon.utils.recorder.GifFrameEncoder;
+import loon.utils.recorder.ScreenRecorder;
 import loon.utils.reply.Port;
-import loon.utils.timer.LTimer;
 import loon.utils.timer.LTimerContext;
 
 public class Display extends LSystemView {
 
 	private GifEncoder gifEncoder;
 
-	private boolean videoScreenToGif;
+	private ScreenRecorder videoRecorder;
 
 	private ArrayByteOutput videoCache;
 
-	private final LTimer videoDelay = new LTimer();
-
 	/**
 	 * 返回video的缓存结果(不设置out对象时才会有效)
 	 * 
@@ -76,7 +74,7 @@ public class Display extends LSystemView {
 	 * @return
 	 */
 	public GifEncoder startVideo(OutputStream output) {
-		return startVideo(output, LSystem.isDesktop() ? LSystem.SECOND : LSystem.SECOND + LSystem.SECOND / 2);
+		return startVideo(output, getVideoDelay());
 	}
 
 	/**
@@ -87,28 +85,54 @@ public class Display extends LSystemView {
 	 * @return
 	 */
 	public GifEncoder startVideo(OutputStream output, long delay) {
+		GifFrameEncoder encoder = new GifFrameEncoder();
+		startVideo(encoder, output, delay);
+		return gifEncoder = encoder.getGifEncoder();
+	}
+
+	/**
+	 * 使用指定的帧编码器开始录像(比如RawFrameEncoder或PngFrameEncoder),截图在渲染线程完成,编码在后台完成
+	 * 
+	 * @param encoder
+	 * @param output
+	 * @param delay
+	 * @return
+	 */
+	public ScreenRecorder startVideo(FrameEncoder encoder, OutputStream output, long delay) {
 		stopVideo();
-		videoDelay.setDelay(delay);
-		gifEncoder = new GifEncoder();
-		gifEncoder.start(output);
-		gifEncoder.setDelay((int) delay);
-		videoScreenToGif = true;
-		return gifEncoder;
+		if (videoRecorder == null) {
+			videoRecorder = new ScreenRecorder();
+		}
+		gifEncoder = null;
+		videoRecorder.start(encoder, output, delay);
+		return videoRecorder;
+	}
+
+	private long getVideoDelay() {
+		return LSystem.isDesktop() ? LSystem.SECOND : LSystem.SECOND + LSystem.SECOND / 2;
 	}
 
 	/**
-	 * 结束录像
+	 * 结束录像(剩余未编码的帧会在此时编码完成)
 	 * 
 	 * @return
 	 */
 	public GifEncoder stopVideo() {
-		if (gifEncoder != null) {
-			gifEncoder.finish();
+		if (videoRecorder != null) {
+			videoRecorder.stop();
 		}
-		videoScreenToGif = false;
 		return gifEncoder;
 	}
 
+	/**
+	 * 返回屏幕录像器(可查询截取,编码与丢弃的帧数)
+	 * 
+	 * @return
+	 */
+	public ScreenRecorder getVideoRecorder() {
+		return videoRecorder;
+	}
+
 	private final RealtimeProcessManager manager;
 
 	// 为了方便直接转码到C#和C++，无法使用匿名内部类(也就是在构造内直接构造实现的方式)，只能都写出具体类来……
@@ -201,6 +225,88 @@ public class Display extends LSystemView {
 		}
 	}
 
+	/**
+	 * 调试信息的文字缓存,在复用的字符数组中拼接,内容与上一帧相同时直接返回已有字符串
+	 */
+	private final static class DebugText {
+
+		private char[] chars = new char[64];
+
+		private int length;
+
+		private String text;
+
+		private int textLength = -1;
+
+		DebugText begin() {
+			length = 0;
+			return this;
+		}
+
+		DebugText append(char c) {
+			if (length == chars.length) {
+				char[] tmp = new char[chars.length * 2];
+				System.arraycopy(chars, 0, tmp, 0, length);
+				chars = tmp;
+			}
+			chars[length++] = c;
+			return this;
+		}
+
+		DebugText append(String s) {
+			for (int i = 0, size = s.length(); i < size; i++) {
+				append(s.charAt(i));
+			}
+			return this;
+		}
+
+		DebugText append(long v) {
+			if (v < 0) {
+				append('-');
+				v = -v;
+			}
+			if (v >= 10) {
+				append(v / 10);
+			}
+			return append((char) ('0' + (v % 10)));
+		}
+
+		/**
+		 * 以一位小数的形式追加tenths/10
+		 * 
+		 * @param tenths
+		 * @return
+		 */
+		DebugText appendTenths(long tenths) {
+			append(tenths / 10);
+			append('.');
+			return append((char) ('0' + (tenths % 10)));
+		}
+
+		String end() {
+			if (text != null && textLength == length) {
+				boolean same = true;
+				for (int i = 0; i < length; i++) {
+					if (text.charAt(i) != chars[i]) {
+						same = false;
+						break;
+					}
+				}
+				if (same) {
+					return text;
+				}
+			}
+			textLength = length;
+			return text = new String(chars, 0, length);
+		}
+	}
+
+	private final DebugText fpsText = new DebugText();
+
+	private final DebugText memoryText = new DebugText();
+
+	private final DebugText spriteText = new DebugText();
+
 	private Runtime runtime;
 
 	private long frameCount;
@@ -335,7 +441,8 @@ public class Display extends LSystemView {
 			// 显示fps速度
 			if (debug || setting.isFPS) {
 				tickFrames();
-				fpsFont.drawString(glEx, "FPS:" + frameRate, 5, 5, 0, LColor.white);
+				fpsFont.drawString(glEx, fpsText.begin().append("FPS:").append(frameRate).end(), 5, 5, 0,
+						LColor.white);
 			}
 			// 显示内存
 			if (debug || setting.isMemory) {
@@ -344,14 +451,14 @@ public class Display extends LSystemView {
 				}
 				long totalMemory = runtime.totalMemory();
 				long currentMemory = totalMemory - runtime.freeMemory();
-				String memory = ((float) ((currentMemory * 10) >> 20) / 10) + " of "
-						+ ((float) ((runtime.maxMemory() * 10) >> 20) / 10) + " MB";
-				fpsFont.drawString(glEx, "MEMORY:" + memory, 5, 25, 0, LColor.white);
+				memoryText.begin().append("MEMORY:").appendTenths((currentMemory * 10) >> 20).append(" of ")
+						.appendTenths((runtime.maxMemory() * 10) >> 20).append(" MB");
+				fpsFont.drawString(glEx, memoryText.end(), 5, 25, 0, LColor.white);
 			}
 			if (debug || setting.isSprites) {
-				fpsFont.drawString(glEx,
-						"SPRITE:" + Sprites.allSpritesCount() + "," + " DESKTOP:" + Desktop.allDesktopCount(), 5, 45, 0,
-						LColor.white);
+				spriteText.begin().append("SPRITE:").append(Sprites.allSpritesCount()).append(", DESKTOP:")
+						.append(Desktop.allDesktopCount());
+				fpsFont.drawString(glEx, spriteText.end(), 5, 45, 0, LColor.white);
 			}
 			// 若打印日志到界面,很可能挡住游戏界面内容,所以isDisplayLog为true并且debug才显示
 			if (debug && setting.isDisplayLog) {
@@ -360,28 +467,9 @@ public class Display extends LSystemView {
 			process.drawEmulator(glEx);
 			process.unload();
 
-			// 如果存在屏幕录像设置
-			if (videoScreenToGif && !LSystem.PAUSED && gifEncoder != null) {
-				if (videoDelay.action(clock)) {
-					Image tmp = GLUtils.getScreenshot();
-					Image image = null;
-					if (LSystem.isDesktop()) {
-						image = tmp;
-					} else {
-						// 因为内存和速度关系,考虑到全平台录制,因此默认只录屏幕大小的一半(否则在手机上绝对抗不了5分钟以上……)
-						image = Image.getResize(tmp, (int) (process.getWidth() * 0.5f),
-								(int) (process.getHeight() * 0.5f));
-					}
-					gifEncoder.addFrame(image);
-					if (tmp != null) {
-						tmp.close();
-						tmp = null;
-					}
-					if (image != null) {
-						image.close();
-						image = null;
-					}
-				}
+			// 如果存在屏幕录像设置(只在渲染线程复制画面,编码在后台进行)
+			if (videoRecorder != null && videoRecorder.isRecording() && !LSystem.PAUSED) {
+				videoRecorder.capture(clock);
 			}
 
 		} finally {
@@ -131,19 +131,26 @@ public class LProcess extends PlayerUtils {
 		LSTRDictionary.get().setAsyn(game.isHTML5());
 	}
 
-	private final static void callUpdateable(final TArray<Updateable> list) {
-		TArray<Updateable> loadCache;
+	// 执行load与unload时使用的缓存,避免每次复制新的集合
+	private final TArray<Updateable> _loadCache = new TArray<Updateable>(10);
+
+	private final TArray<Updateable> _unloadCache = new TArray<Updateable>(10);
+
+	private final static void callUpdateable(final TArray<Updateable> list, final TArray<Updateable> loadCache) {
 		synchronized (list) {
-			loadCache = new TArray<Updateable>(list);
+			loadCache.addAll(list);
 			list.clear();
 		}
-		for (int i = 0, size = loadCache.size; i < size; i++) {
-			Updateable _running = loadCache.get(i);
-			synchronized (_running) {
-				_running.action(null);
+		try {
+			for (int i = 0, size = loadCache.size; i < size; i++) {
+				Updateable _running = loadCache.get(i);
+				synchronized (_running) {
+					_running.action(null);
+				}
 			}
+		} finally {
+			loadCache.clear();
 		}
-		loadCache = null;
 	}
 
 	public final SysInputFactory getCurrentSysInput() {
@@ -174,7 +181,7 @@ public class LProcess extends PlayerUtils {
 		if (isInstance) {
 			final int count = loads.size;
 			if (count > 0) {
-				callUpdateable(loads);
+				callUpdateable(loads, _loadCache);
 			}
 		}
 	}
@@ -205,7 +212,7 @@ public class LProcess extends PlayerUtils {
 		if (isInstance) {
 			final int count = unloads.size;
 			if (count > 0) {
-				callUpdateable(unloads);
+				callUpdateable(unloads, _unloadCache);
 			}
 		}
 	}
@@ -491,6 +491,62 @@ public class LSystem {
 		return shader;
 	}
 
+	/**
+	 * 多纹理批处理用的默认着色器,每个顶点附带纹理单元序号,最多同时使用units张纹理(u_texture0至u_textureN)
+	 * 
+	 * @param units
+	 * @return
+	 */
+	static public ShaderProgram createMultiTextureShader(int units) {
+		String vertexShader = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" //
+				+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" //
+				+ "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" //
+				+ "attribute float " + ShaderProgram.TEXINDEX_ATTRIBUTE + ";\n" //
+				+ "uniform mat4 u_projTrans;\n" //
+				+ "varying vec4 v_color;\n" //
+				+ "varying vec2 v_texCoords;\n" //
+				+ "varying float v_texIndex;\n" //
+				+ "\n" //
+				+ "void main()\n" //
+				+ "{\n" //
+				+ "   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" //
+				+ "   v_color.a = v_color.a * (255.0/254.0);\n" //
+				+ "   v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" //
+				+ "   v_texIndex = " + ShaderProgram.TEXINDEX_ATTRIBUTE + ";\n" //
+				+ "   gl_Position =  u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" //
+				+ "}\n";
+		StringBuilder fragmentShader = new StringBuilder();
+		fragmentShader.append("#ifdef GL_ES\n" //
+				+ "#define LOWP lowp\n" //
+				+ "precision mediump float;\n" //
+				+ "#else\n" //
+				+ "#define LOWP \n" //
+				+ "#endif\n" //
+				+ "varying LOWP vec4 v_color;\n" //
+				+ "varying vec2 v_texCoords;\n" //
+				+ "varying float v_texIndex;\n");
+		for (int i = 0; i < units; i++) {
+			fragmentShader.append("uniform sampler2D u_texture" + i + ";\n");
+		}
+		fragmentShader.append("void main()\n{\n  vec4 c;\n");
+		// GLSL ES 1.0不支持以变量索引采样器数组,因此逐个判断
+		for (int i = 0; i < units; i++) {
+			if (i == 0) {
+				fragmentShader.append("  if (v_texIndex < 0.5) {\n");
+			} else if (i == units - 1) {
+				fragmentShader.append("  else {\n");
+			} else {
+				fragmentShader.append("  else if (v_texIndex < " + i + ".5) {\n");
+			}
+			fragmentShader.append("    c = texture2D(u_texture" + i + ", v_texCoords);\n  }\n");
+		}
+		fragmentShader.append("  gl_FragColor = v_color * c;\n}");
+		ShaderProgram shader = new ShaderProgram(vertexShader, fragmentShader.toString());
+		if (shader.isCompiled() == false)
+			throw new IllegalArgumentException("Error compiling shader: " + shader.getLog());
+		return shader;
+	}
+
 	static public String createGlobalVertexShader(boolean hasNormals, boolean hasColors, int numTexCoords) {
 		String shader = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
 				+ (hasNormals ? "attribute vec3 " + ShaderProgram.NORMAL_ATTRIBUTE + ";\n" : "")
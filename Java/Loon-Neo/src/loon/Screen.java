@@ -72,6 +72,7 @@ import loon.opengl.LTextureImage;
 import loon.utils.ArrayByte;
 import loon.utils.ArrayMap;
 import loon.utils.CollectionUtils;
+import loon.utils.DispatchArray;
 import loon.utils.GLUtils;
 import loon.utils.MathUtils;
 import loon.utils.TArray;
@@ -2332,11 +2333,11 @@ public abstract class Screen extends PlayerUtils implements SysInput, LRelease,
 
 	private boolean initLoopEvents = false;
 
-	private TArray<FrameLoopEvent> loopEvents;
+	private DispatchArray<FrameLoopEvent> loopEvents;
 
 	private void allocateLoopEvents() {
 		if (loopEvents == null) {
-			loopEvents = new TArray<FrameLoopEvent>();
+			loopEvents = new DispatchArray<FrameLoopEvent>();
 		}
 	}
 
@@ -2372,7 +2373,7 @@ public abstract class Screen extends PlayerUtils implements SysInput, LRelease,
 	public void removeFrameLoop(FrameLoopEvent event) {
 		allocateLoopEvents();
 		loopEvents.remove(event);
-		initLoopEvents = (loopEvents.size <= 0);
+		initLoopEvents = !loopEvents.isEmpty();
 	}
 
 	public void clearFrameLoop() {
@@ -2426,24 +2427,23 @@ public abstract class Screen extends PlayerUtils implements SysInput, LRelease,
 		}
 		// 处理直接加入screen中的循环
 		if (initLoopEvents) {
-			if (loopEvents != null && loopEvents.size > 0) {
-				final TArray<FrameLoopEvent> toUpdated;
-				synchronized (this.loopEvents) {
-					toUpdated = new TArray<FrameLoopEvent>(this.loopEvents);
-				}
-				final TArray<FrameLoopEvent> deadEvents = new TArray<FrameLoopEvent>();
-				for (FrameLoopEvent eve : toUpdated) {
+			if (loopEvents != null && !loopEvents.isEmpty()) {
+				// 遍历复用的快照,只在集合变化后才重新复制
+				final int size = loopEvents.begin();
+				int deadCount = 0;
+				for (int i = 0; i < size; i++) {
+					FrameLoopEvent eve = loopEvents.get(i);
 					eve.call(elapsedTime, this);
 					if (eve.isDead()) {
-						deadEvents.add(eve);
+						deadCount++;
 					}
 				}
-				if (deadEvents.size > 0) {
-					for (FrameLoopEvent dead : deadEvents) {
+				for (int i = 0; i < size && deadCount > 0; i++) {
+					FrameLoopEvent dead = loopEvents.get(i);
+					if (dead.isDead()) {
 						dead.completed();
-					}
-					synchronized (this.loopEvents) {
-						this.loopEvents.removeAll(deadEvents);
+						loopEvents.remove(dead);
+						deadCount--;
 					}
 				}
 			}
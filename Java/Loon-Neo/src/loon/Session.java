@@ -36,7 +36,13 @@ public class Session implements Bundle<String> {
 	private boolean isPersisted = false;
 
 	private String loadData() {
-		String result = _save.getItem(name);
+		return decodeData(_save.getItem(name));
+	}
+
+	private String decodeData(String result) {
+		if (result == null) {
+			return null;
+		}
 		if (Base64Coder.isBase64(result)) {
 			try {
 				result = new String(Base64Coder.decode(result), LSystem.ENCODING);
@@ -48,6 +54,10 @@ public class Session implements Bundle<String> {
 	}
 
 	private void saveData(String result) {
+		_save.setItem(name, encodeData(result));
+	}
+
+	private String encodeData(String result) {
 		if (!Base64Coder.isBase64(result)) {
 			try {
 				result = new String(Base64Coder.encode(result.getBytes()), LSystem.ENCODING);
@@ -55,7 +65,15 @@ public class Session implements Bundle<String> {
 				result = new String(Base64Coder.encode(result.getBytes()));
 			}
 		}
-		_save.setItem(name, result);
+		return result;
+	}
+
+	private String recordKey(String recordName) {
+		return name + "." + recordName;
+	}
+
+	private String indexKey() {
+		return name + ".records";
 	}
 
 	private void removeData() {
@@ -76,6 +94,8 @@ public class Session implements Bundle<String> {
 
 		private boolean active;
 
+		private boolean dirty = true;
+
 		public Record(String name) {
 			this.values = new String[0];
 			this.name = name;
@@ -124,6 +144,7 @@ public class Session implements Bundle<String> {
 				this.values = res;
 			}
 			this.values[index] = value;
+			this.dirty = true;
 		}
 
 		public String encode() {
@@ -149,11 +170,29 @@ public class Session implements Bundle<String> {
 
 	private TArray<Record> recordsList;
 
+	// 按记录分别保存时,已删除但尚未从存储中移除的记录名
+	private final TArray<String> removedRecords = new TArray<String>();
+
+	private boolean dirtyOnly;
+
+	private boolean indexChanged = true;
+
 	public Session(String name) {
 		this(name, true);
 	}
 
 	public Session(String name, boolean gain) {
+		this(name, gain, false);
+	}
+
+	/**
+	 * @param name
+	 * @param gain
+	 *            是否立即读取已保存的数据
+	 * @param dirtyOnly
+	 *            为true时每条记录单独保存,save只写入发生变化的记录(参见setDirtyOnly)
+	 */
+	public Session(String name, boolean gain, boolean dirtyOnly) {
 		if (name == null) {
 			throw LSystem.runThrow("session name can not exist !");
 		}
@@ -166,6 +205,7 @@ public class Session implements Bundle<String> {
 		this.name = name;
 		this.records = new ArrayMap(10);
 		this.recordsList = new TArray<Record>(10);
+		this.dirtyOnly = dirtyOnly;
 		if (gain) {
 			load();
 		}
@@ -175,6 +215,65 @@ public class Session implements Bundle<String> {
 		return isPersisted;
 	}
 
+	/**
+	 * 设定为true时,每条记录以"session名.记录名"单独保存,save只写入修改过的记录并在一个Save.Batch中提交,
+	 * 不再每次重新编码整个session(首次保存时会把旧格式的数据迁移过来)
+	 * 
+	 * @param dirty
+	 * @return
+	 */
+	public Session setDirtyOnly(boolean dirty) {
+		synchronized (recordsList) {
+			if (this.dirtyOnly != dirty) {
+				this.dirtyOnly = dirty;
+				markAllDirty();
+			}
+		}
+		return this;
+	}
+
+	public boolean isDirtyOnly() {
+		return dirtyOnly;
+	}
+
+	/**
+	 * 返回尚未保存的记录数量
+	 * 
+	 * @return
+	 */
+	public int getDirtyCount() {
+		synchronized (recordsList) {
+			int count = 0;
+			for (int i = 0; i < recordsList.size; i++) {
+				if (recordsList.get(i).dirty) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private void markAllDirty() {
+		for (int i = 0; i < recordsList.size; i++) {
+			recordsList.get(i).dirty = true;
+		}
+		indexChanged = true;
+	}
+
+	private void addRecord(Record record) {
+		records.put(record.name, record);
+		recordsList.add(record);
+		removedRecords.removeValue(record.name, false);
+		indexChanged = true;
+	}
+
+	private void removedRecord(String recordName) {
+		if (!removedRecords.contains(recordName, false)) {
+			removedRecords.add(recordName);
+		}
+		indexChanged = true;
+	}
+
 	public int loadEncodeSession(String encode) {
 		if (!StringUtils.isEmpty(encode)) {
 			String[] parts = StringUtils.split(encode, flag);
@@ -222,8 +321,7 @@ public class Session implements Bundle<String> {
 			Record record = (Record) records.get(name);
 			if (record == null) {
 				record = new Record(name);
-				records.put(name, record);
-				recordsList.add(record);
+				addRecord(record);
 			}
 			record.set(index, value);
 		}
@@ -258,8 +356,7 @@ public class Session implements Bundle<String> {
 			Record record = (Record) records.get(name);
 			if (record == null) {
 				record = new Record(name);
-				records.put(name, record);
-				recordsList.add(record);
+				addRecord(record);
 			}
 			int id = record.size();
 			record.set(id++, value);
@@ -322,7 +419,9 @@ public class Session implements Bundle<String> {
 
 	public void delete(String name) {
 		synchronized (recordsList) {
-			records.remove(name);
+			if (records.remove(name) != null) {
+				removedRecord(name);
+			}
 			for (int i = 0; i < recordsList.size; i++) {
 				Record record = recordsList.get(i);
 				if (record.name.equals(name)) {
@@ -395,6 +494,7 @@ public class Session implements Bundle<String> {
 				records.put(record.name, record);
 				recordsList.add(record);
 			}
+			indexChanged = true;
 			return n;
 		}
 	}
@@ -420,8 +520,7 @@ public class Session implements Bundle<String> {
 		synchronized (recordsList) {
 			Record record = new Record(name);
 			record.active = true;
-			records.put(name, record);
-			recordsList.add(record);
+			addRecord(record);
 		}
 	}
 
@@ -430,6 +529,7 @@ public class Session implements Bundle<String> {
 			Record record = (Record) records.remove(name);
 			if (record != null) {
 				recordsList.remove(record);
+				removedRecord(name);
 			}
 		}
 	}
@@ -451,8 +551,7 @@ public class Session implements Bundle<String> {
 			Record record = new Record(name);
 			record.active = false;
 			record.set(0, "1");
-			records.put(name, record);
-			recordsList.add(record);
+			addRecord(record);
 		}
 	}
 
@@ -461,12 +560,83 @@ public class Session implements Bundle<String> {
 	}
 
 	public void save() {
+		if (dirtyOnly) {
+			saveDirty();
+			return;
+		}
 		String result = encode();
 		if (!StringUtils.isEmpty(result)) {
 			saveData(result);
 		}
 	}
 
+	private void saveDirty() {
+		synchronized (recordsList) {
+			Save.Batch batch = null;
+			for (int i = 0; i < recordsList.size; i++) {
+				Record record = recordsList.get(i);
+				if (record.dirty) {
+					if (batch == null) {
+						batch = _save.startBatch();
+					}
+					batch.setItem(recordKey(record.name), encodeData(record.encode()));
+					record.dirty = false;
+				}
+			}
+			for (int i = 0; i < removedRecords.size; i++) {
+				if (batch == null) {
+					batch = _save.startBatch();
+				}
+				batch.removeItem(recordKey(removedRecords.get(i)));
+			}
+			removedRecords.clear();
+			if (indexChanged) {
+				if (batch == null) {
+					batch = _save.startBatch();
+				}
+				StringBuffer sbr = new StringBuffer();
+				for (int i = 0; i < recordsList.size; i++) {
+					sbr.append(recordsList.get(i).name).append(flag);
+				}
+				batch.setItem(indexKey(), encodeData(sbr.toString()));
+				// 旧格式的整体数据已经迁移到按记录保存
+				if (_save.getItem(name) != null) {
+					batch.removeItem(name);
+				}
+				indexChanged = false;
+			}
+			if (batch != null) {
+				batch.commit();
+			}
+		}
+	}
+
+	private int loadDirty(String index) {
+		synchronized (recordsList) {
+			records.clear();
+			recordsList.clear();
+			removedRecords.clear();
+			String[] names = StringUtils.split(index, flag);
+			for (int i = 0; i < names.length; i++) {
+				if (StringUtils.isEmpty(names[i])) {
+					continue;
+				}
+				String data = decodeData(_save.getItem(recordKey(names[i])));
+				if (StringUtils.isEmpty(data)) {
+					continue;
+				}
+				String[] parts = StringUtils.split(data, flag);
+				Record record = new Record(parts[0]);
+				record.decode(parts, 1);
+				record.dirty = false;
+				records.put(record.name, record);
+				recordsList.add(record);
+			}
+			indexChanged = false;
+			return recordsList.size;
+		}
+	}
+
 	public ArrayMap getRecords(int index) {
 		ArrayMap result = new ArrayMap(records.size());
 		for (int i = 0; i < records.size(); i++) {
@@ -477,11 +647,17 @@ public class Session implements Bundle<String> {
 	}
 
 	public int load() {
+		if (dirtyOnly && _save != null) {
+			String index = decodeData(_save.getItem(indexKey()));
+			if (!StringUtils.isEmpty(index)) {
+				return loadDirty(index);
+			}
+		}
 		return loadEncodeSession(loadData());
 	}
 
 	public Session cpy() {
-		return new Session(name);
+		return new Session(name, true, dirtyOnly);
 	}
 
 	public void dispose(String name) {
@@ -489,8 +665,7 @@ public class Session implements Bundle<String> {
 			clear(name);
 			Record record = new Record(name);
 			record.active = false;
-			records.put(name, record);
-			recordsList.add(record);
+			addRecord(record);
 		}
 	}
 
@@ -500,8 +675,14 @@ public class Session implements Bundle<String> {
 				records.clear();
 			}
 			if (recordsList != null) {
+				for (int i = 0; i < recordsList.size; i++) {
+					removedRecord(recordsList.get(i).name);
+				}
 				recordsList.clear();
 			}
+			if (dirtyOnly) {
+				saveDirty();
+			}
 			removeData();
 		} catch (Exception e) {
 		}
@@ -10,6 +10,8 @@ public class ActionControl {
 
 	private Actions actions;
 
+	private ActionTweenBatch tweens;
+
 	private boolean pause;
 
 	public static ActionControl get() {
@@ -25,10 +27,15 @@ public class ActionControl {
 	}
 
 	private final void call(long elapsedTime) {
-		if (pause || actions.getCount() == 0) {
+		if (pause) {
 			return;
 		}
-		actions.update(elapsedTime);
+		if (actions.getCount() > 0) {
+			actions.update(elapsedTime);
+		}
+		if (tweens.size() > 0) {
+			tweens.update(elapsedTime);
+		}
 	}
 
 	public static final void update(long elapsedTime) {
@@ -39,6 +46,16 @@ public class ActionControl {
 
 	private ActionControl() {
 		actions = new Actions();
+		tweens = new ActionTweenBatch();
+	}
+
+	/**
+	 * 批量补间动画,适合大量简单的位移,缩放,旋转与透明度变化
+	 * 
+	 * @return
+	 */
+	public ActionTweenBatch getTweens() {
+		return tweens;
 	}
 
 	public void addAction(ActionEvent action, ActionBind obj, boolean paused) {
@@ -51,6 +68,7 @@ public class ActionControl {
 
 	public void removeAllActions(ActionBind actObject) {
 		actions.removeAllActions(actObject);
+		tweens.kill(actObject);
 	}
 
 	public boolean containsKey(ActionBind actObject) {
@@ -58,7 +76,7 @@ public class ActionControl {
 	}
 
 	public boolean isCompleted(ActionBind actObject) {
-		return actions.isCompleted(actObject);
+		return actions.isCompleted(actObject) && !tweens.contains(actObject);
 	}
 	
 	public int getCount() {
@@ -107,6 +125,7 @@ public class ActionControl {
 
 	public void clear() {
 		actions.clear();
+		tweens.clear();
 	}
 
 	public void stop() {
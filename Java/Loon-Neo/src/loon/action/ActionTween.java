@@ -31,11 +31,13 @@ public class ActionTween extends ActionTweenBase<ActionTween> {
 		@Override
 		public void onPool(ActionTween obj) {
 			obj.reset();
+			obj.pooled = true;
 		}
 
 		@Override
 		public void onUnPool(ActionTween obj) {
 			obj.reset();
+			obj.pooled = false;
 		}
 	};
 
@@ -45,6 +47,11 @@ public class ActionTween extends ActionTweenBase<ActionTween> {
 		protected ActionTween create() {
 			return new ActionTween();
 		}
+
+		@Override
+		protected boolean contains(ActionTween obj) {
+			return obj.pooled;
+		}
 	};
 
 	/**
@@ -136,6 +143,8 @@ public class ActionTween extends ActionTweenBase<ActionTween> {
 	private Easing equation;
 	private ActionPath path;
 
+	private boolean pooled;
+
 	private boolean isFrom;
 	private boolean isRelative;
 	private boolean isRepeat;
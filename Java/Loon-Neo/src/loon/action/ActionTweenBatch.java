@@ -0,0 +1,471 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action;
+
+import loon.LSystem;
+import loon.utils.Easing;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 批量补间动画,以数组组(起点,终点,时长,已用时间,缓动id,目标)保存全部活动补间并在一次循环中推进,
+ * 已完成的补间在同一次遍历中压缩移除,运行期间不创建对象.适合同时存在成千上万个简单位移,缩放,旋转,透明度变化的场合.
+ *
+ * <pre>
+ * ActionControl.get().getTweens().moveTo(sprite, 100, 200, 0.5f, Easing.QUAD_INOUT);
+ * </pre>
+ */
+public class ActionTweenBatch {
+
+	private final static int FLAG_STARTED = 1;
+
+	private final static int FLAG_DONE = 2;
+
+	private final static int FLAG_KILLED = 4;
+
+	private final static int FLAG_FIXED_START = 8;
+
+	private static Easing[] easings = new Easing[32];
+
+	private static int easingCount;
+
+	/**
+	 * 获得缓动函数在批量补间中的id
+	 *
+	 * @param easing
+	 * @return
+	 */
+	public static int getEasingId(Easing easing) {
+		if (easing == null) {
+			easing = Easing.NONE;
+		}
+		synchronized (ActionTweenBatch.class) {
+			for (int i = 0; i < easingCount; i++) {
+				if (easings[i] == easing) {
+					return i;
+				}
+			}
+			if (easingCount == easings.length) {
+				Easing[] tmp = new Easing[easingCount * 2];
+				System.arraycopy(easings, 0, tmp, 0, easingCount);
+				easings = tmp;
+			}
+			easings[easingCount] = easing;
+			return easingCount++;
+		}
+	}
+
+	private int size;
+
+	private int nextHandle = 1;
+
+	private boolean paused;
+
+	private ActionBind[] targets;
+
+	private ActionListener[] listeners;
+
+	private int[] handles;
+
+	private int[] types;
+
+	private int[] easingIds;
+
+	private int[] flags;
+
+	private float[] startA, startB, endA, endB;
+
+	private float[] durations, delays, elapsed;
+
+	private final TArray<ActionListener> finishedListeners = new TArray<ActionListener>();
+
+	private final TArray<ActionBind> finishedTargets = new TArray<ActionBind>();
+
+	public ActionTweenBatch() {
+		this(128);
+	}
+
+	public ActionTweenBatch(int capacity) {
+		allocate(MathUtils.max(capacity, 8));
+	}
+
+	private void allocate(int capacity) {
+		targets = copy(targets, new ActionBind[capacity]);
+		listeners = copy(listeners, new ActionListener[capacity]);
+		handles = copy(handles, capacity);
+		types = copy(types, capacity);
+		easingIds = copy(easingIds, capacity);
+		flags = copy(flags, capacity);
+		startA = copy(startA, capacity);
+		startB = copy(startB, capacity);
+		endA = copy(endA, capacity);
+		endB = copy(endB, capacity);
+		durations = copy(durations, capacity);
+		delays = copy(delays, capacity);
+		elapsed = copy(elapsed, capacity);
+	}
+
+	private <T> T[] copy(T[] src, T[] dst) {
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, size);
+		}
+		return dst;
+	}
+
+	private int[] copy(int[] src, int capacity) {
+		int[] dst = new int[capacity];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, size);
+		}
+		return dst;
+	}
+
+	private float[] copy(float[] src, int capacity) {
+		float[] dst = new float[capacity];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, size);
+		}
+		return dst;
+	}
+
+	/**
+	 * 从目标当前数值补间到指定数值
+	 *
+	 * @param target
+	 *            操作对象
+	 * @param tweenType
+	 *            ActionType中的POSITION,SCALE,ROTATION或ALPHA
+	 * @param a
+	 *            第一个终点值(POSITION为x,SCALE为scaleX)
+	 * @param b
+	 *            第二个终点值(POSITION为y,SCALE为scaleY,单值类型忽略)
+	 * @param duration
+	 *            持续时间(秒)
+	 * @param delay
+	 *            延迟时间(秒)
+	 * @param easing
+	 * @param listener
+	 * @return 补间的句柄
+	 */
+	public int to(ActionBind target, int tweenType, float a, float b,
+			float duration, float delay, Easing easing, ActionListener listener) {
+		int index = add(target, tweenType, a, b, duration, delay, easing,
+				listener);
+		return handles[index];
+	}
+
+	public int to(ActionBind target, int tweenType, float a, float b,
+			float duration, Easing easing) {
+		return to(target, tweenType, a, b, duration, 0f, easing, null);
+	}
+
+	public int to(ActionBind target, int tweenType, float value,
+			float duration, Easing easing) {
+		return to(target, tweenType, value, value, duration, 0f, easing, null);
+	}
+
+	/**
+	 * 从指定起点补间到指定终点
+	 *
+	 * @param target
+	 * @param tweenType
+	 * @param sa
+	 * @param sb
+	 * @param ea
+	 * @param eb
+	 * @param duration
+	 * @param delay
+	 * @param easing
+	 * @param listener
+	 * @return 补间的句柄
+	 */
+	public int fromTo(ActionBind target, int tweenType, float sa, float sb,
+			float ea, float eb, float duration, float delay, Easing easing,
+			ActionListener listener) {
+		int index = add(target, tweenType, ea, eb, duration, delay, easing,
+				listener);
+		startA[index] = sa;
+		startB[index] = sb;
+		flags[index] |= FLAG_FIXED_START;
+		return handles[index];
+	}
+
+	public int moveTo(ActionBind target, float x, float y, float duration,
+			Easing easing) {
+		return to(target, ActionType.POSITION, x, y, duration, easing);
+	}
+
+	public int scaleTo(ActionBind target, float sx, float sy, float duration,
+			Easing easing) {
+		return to(target, ActionType.SCALE, sx, sy, duration, easing);
+	}
+
+	public int rotateTo(ActionBind target, float rotation, float duration,
+			Easing easing) {
+		return to(target, ActionType.ROTATION, rotation, duration, easing);
+	}
+
+	public int fadeTo(ActionBind target, float alpha, float duration,
+			Easing easing) {
+		return to(target, ActionType.ALPHA, alpha, duration, easing);
+	}
+
+	private int add(ActionBind target, int tweenType, float a, float b,
+			float duration, float delay, Easing easing, ActionListener listener) {
+		if (target == null) {
+			throw LSystem.runThrow("ActionBind is null !");
+		}
+		switch (tweenType) {
+		case ActionType.POSITION:
+		case ActionType.SCALE:
+		case ActionType.ROTATION:
+		case ActionType.ALPHA:
+			break;
+		default:
+			throw LSystem.runThrow("Unsupported tween type: " + tweenType);
+		}
+		if (size == targets.length) {
+			allocate(size * 2);
+		}
+		final int index = size++;
+		targets[index] = target;
+		listeners[index] = listener;
+		handles[index] = nextHandle++;
+		if (nextHandle == Integer.MAX_VALUE) {
+			nextHandle = 1;
+		}
+		types[index] = tweenType;
+		easingIds[index] = getEasingId(easing);
+		flags[index] = 0;
+		startA[index] = startB[index] = 0f;
+		endA[index] = a;
+		endB[index] = b;
+		durations[index] = MathUtils.max(0f, duration);
+		delays[index] = MathUtils.max(0f, delay);
+		elapsed[index] = 0f;
+		return index;
+	}
+
+	/**
+	 * 推进全部补间
+	 *
+	 * @param elapsedTime
+	 *            经过的时间(毫秒)
+	 */
+	public void update(long elapsedTime) {
+		if (paused || size == 0) {
+			return;
+		}
+		final float delta = elapsedTime / 1000f;
+		// 回调中可能添加新补间并扩容数组,因此这里不缓存数组引用,新补间从下一帧开始推进
+		final int count = size;
+		for (int i = 0; i < count && i < size; i++) {
+			int flag = flags[i];
+			if ((flag & (FLAG_DONE | FLAG_KILLED)) != 0) {
+				continue;
+			}
+			float time = elapsed[i] + delta;
+			elapsed[i] = time;
+			time -= delays[i];
+			if (time < 0) {
+				continue;
+			}
+			final ActionBind target = targets[i];
+			final int type = types[i];
+			if ((flag & FLAG_STARTED) == 0) {
+				flag |= FLAG_STARTED;
+				if ((flag & FLAG_FIXED_START) == 0) {
+					switch (type) {
+					case ActionType.POSITION:
+						startA[i] = target.getX();
+						startB[i] = target.getY();
+						break;
+					case ActionType.SCALE:
+						startA[i] = target.getScaleX();
+						startB[i] = target.getScaleY();
+						break;
+					case ActionType.ROTATION:
+						startA[i] = target.getRotation();
+						break;
+					case ActionType.ALPHA:
+						startA[i] = target.getAlpha();
+						break;
+					}
+				}
+				if (listeners[i] != null) {
+					listeners[i].start(target);
+				}
+			}
+			final float duration = durations[i];
+			float progress;
+			if (time >= duration) {
+				progress = 1f;
+				flag |= FLAG_DONE;
+			} else {
+				progress = easings[easingIds[i]].apply(time, duration, false);
+			}
+			flags[i] |= flag;
+			final float a = startA[i] + (endA[i] - startA[i]) * progress;
+			switch (type) {
+			case ActionType.POSITION:
+				target.setLocation(a, startB[i] + (endB[i] - startB[i])
+						* progress);
+				break;
+			case ActionType.SCALE:
+				target.setScale(a, startB[i] + (endB[i] - startB[i])
+						* progress);
+				break;
+			case ActionType.ROTATION:
+				target.setRotation(a);
+				break;
+			case ActionType.ALPHA:
+				target.setAlpha(a);
+				break;
+			}
+			if (listeners[i] != null) {
+				listeners[i].process(target);
+			}
+		}
+		compact();
+	}
+
+	/**
+	 * 一次遍历移除已完成或被终止的补间,完成回调在压缩后统一触发(回调中可以安全地添加新补间)
+	 */
+	private void compact() {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int flag = flags[i];
+			if ((flag & (FLAG_DONE | FLAG_KILLED)) != 0) {
+				if ((flag & FLAG_DONE) != 0 && listeners[i] != null) {
+					finishedListeners.add(listeners[i]);
+					finishedTargets.add(targets[i]);
+				}
+				continue;
+			}
+			if (count != i) {
+				targets[count] = targets[i];
+				listeners[count] = listeners[i];
+				handles[count] = handles[i];
+				types[count] = types[i];
+				easingIds[count] = easingIds[i];
+				flags[count] = flag;
+				startA[count] = startA[i];
+				startB[count] = startB[i];
+				endA[count] = endA[i];
+				endB[count] = endB[i];
+				durations[count] = durations[i];
+				delays[count] = delays[i];
+				elapsed[count] = elapsed[i];
+			}
+			count++;
+		}
+		for (int i = count; i < size; i++) {
+			targets[i] = null;
+			listeners[i] = null;
+		}
+		size = count;
+		if (finishedListeners.size > 0) {
+			for (int i = 0; i < finishedListeners.size; i++) {
+				finishedListeners.get(i).stop(finishedTargets.get(i));
+			}
+			finishedListeners.clear();
+			finishedTargets.clear();
+		}
+	}
+
+	/**
+	 * 终止指定句柄的补间(保持当前数值)
+	 *
+	 * @param handle
+	 * @return
+	 */
+	public boolean kill(int handle) {
+		for (int i = 0; i < size; i++) {
+			if (handles[i] == handle) {
+				flags[i] |= FLAG_KILLED;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 终止指定对象的全部补间
+	 *
+	 * @param target
+	 * @return
+	 */
+	public int kill(ActionBind target) {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (targets[i] == target && (flags[i] & FLAG_KILLED) == 0) {
+				flags[i] |= FLAG_KILLED;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public boolean isActive(int handle) {
+		for (int i = 0; i < size; i++) {
+			if (handles[i] == handle) {
+				return (flags[i] & (FLAG_DONE | FLAG_KILLED)) == 0;
+			}
+		}
+		return false;
+	}
+
+	public boolean contains(ActionBind target) {
+		for (int i = 0; i < size; i++) {
+			if (targets[i] == target
+					&& (flags[i] & (FLAG_DONE | FLAG_KILLED)) == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return targets.length;
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			targets[i] = null;
+			listeners[i] = null;
+		}
+		size = 0;
+	}
+
+}
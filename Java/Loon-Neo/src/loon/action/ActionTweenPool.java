@@ -23,7 +23,7 @@ abstract class ActionTweenPool<T> {
 	public T get() {
 		T obj = null;
 		try {
-			obj = _objects.isEmpty() ? create() : _objects.removeIndex(0);
+			obj = _objects.isEmpty() ? create() : _objects.pop();
 		} catch (Exception e) {}
 		if (obj == null) {
 			obj = create();
@@ -36,7 +36,7 @@ abstract class ActionTweenPool<T> {
 
 	public void free(T obj) {
 		if (obj == null) return;
-		if (!_objects.contains(obj)) {
+		if (!contains(obj)) {
 			if (_callback != null){
 				_callback.onPool(obj);
 			}
@@ -44,6 +44,16 @@ abstract class ActionTweenPool<T> {
 		}
 	}
 
+	/**
+	 * 判断对象是否已在池中,子类可用对象自身的标记替代线性查找
+	 * 
+	 * @param obj
+	 * @return
+	 */
+	protected boolean contains(T obj) {
+		return _objects.contains(obj);
+	}
+
 	public void clear() {
 		_objects.clear();
 	}
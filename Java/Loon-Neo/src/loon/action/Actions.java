@@ -106,7 +106,7 @@ public class Actions {
 	public void addAction(ActionEvent action, ActionBind actObject,
 			boolean paused) {
 		ActionElement element = (ActionElement) actions.get(actObject);
-		if (element == null) {
+		if (element == null || element.removed) {
 			element = new ActionElement(actObject, paused);
 			actions.put(actObject, element);
 		}
@@ -115,6 +115,7 @@ public class Actions {
 	}
 
 	private void deleteElement(ActionElement element) {
+		element.removed = true;
 		element.actions.clear();
 		actions.remove(element.key);
 	}
@@ -134,6 +135,11 @@ public class Actions {
 	}
 
 	private void removeAction(int index, ActionElement element) {
+		if (element.updating) {
+			// 遍历中只置空,由stepElement统一压缩
+			element.actions.set(index, null);
+			return;
+		}
 		element.actions.removeIndex(index);
 		if (element.actionIndex >= index) {
 			element.actionIndex--;
@@ -151,10 +157,10 @@ public class Actions {
 		ActionElement element = (ActionElement) actions.get(actObject);
 		if (element != null) {
 			if (element.actions != null) {
-				int limit = element.actions.size;
-				for (int i = 0; i < limit; i++) {
+				for (int i = element.actions.size - 1; i > -1; i--) {
 					ActionEvent a = element.actions.get(i);
-					if (a.getTag() == tag && a.getOriginal() == actObject) {
+					if (a != null && a.getTag() == tag
+							&& a.getOriginal() == actObject) {
 						removeAction(i, element);
 					}
 				}
@@ -183,7 +189,7 @@ public class Actions {
 				int limit = element.actions.size;
 				for (int i = 0; i < limit; i++) {
 					ActionEvent a = element.actions.get(i);
-					if (a.getTag() == tag)
+					if (a != null && a.getTag() == tag)
 						return a;
 				}
 			}
@@ -192,39 +198,57 @@ public class Actions {
 	}
 
 	public void update(long elapsedTime) {
-		int size = actions.size();
-		for (int i = size - 1; i > -1; --i) {
+		for (int i = actions.size() - 1; i > -1; --i) {
 			ActionElement currentTarget = (ActionElement) actions.get(i);
 			if (currentTarget == null) {
 				continue;
 			}
-			synchronized (currentTarget) {
-				if (!currentTarget.paused) {
-					for (currentTarget.actionIndex = 0; currentTarget.actionIndex < currentTarget.actions.size; currentTarget.actionIndex++) {
-						currentTarget.currentAction = currentTarget.actions
-								.get(currentTarget.actionIndex);
-						if (currentTarget.currentAction == null) {
-							continue;
-						}
-						if (!currentTarget.currentAction.isInit) {
-							currentTarget.currentAction.isInit = true;
-							currentTarget.currentAction.onLoad();
-						}
-						currentTarget.currentAction.step(elapsedTime);
-						if (currentTarget.currentAction.isComplete()) {
-							currentTarget.currentAction.stop();
-							removeAction(currentTarget.currentAction);
-						}
-						currentTarget.currentAction = null;
-					}
-				}
-				if (currentTarget.actions.isEmpty()) {
-					deleteElement(currentTarget);
-				}
+			if (!currentTarget.paused) {
+				stepElement(currentTarget, elapsedTime);
+			}
+			if (!currentTarget.removed && currentTarget.actions.isEmpty()) {
+				deleteElement(currentTarget);
 			}
 		}
 	}
 
+	/**
+	 * 执行单个对象的全部动作,已完成的动作在同一次遍历中压缩移除
+	 * 
+	 * @param element
+	 * @param elapsedTime
+	 */
+	private void stepElement(ActionElement element, long elapsedTime) {
+		final TArray<ActionEvent> list = element.actions;
+		int count = 0;
+		element.updating = true;
+		for (element.actionIndex = 0; element.actionIndex < list.size; element.actionIndex++) {
+			ActionEvent action = list.get(element.actionIndex);
+			if (action == null) {
+				continue;
+			}
+			element.currentAction = action;
+			if (!action.isInit) {
+				action.isInit = true;
+				action.onLoad();
+			}
+			action.step(elapsedTime);
+			if (action.isComplete()) {
+				action.stop();
+			} else if (list.get(element.actionIndex) == action) {
+				list.set(count++, action);
+			}
+			if (element.removed) {
+				break;
+			}
+		}
+		element.updating = false;
+		element.currentAction = null;
+		if (!element.removed) {
+			list.truncate(count);
+		}
+	}
+
 	public void paused(boolean pause, ActionBind actObject) {
 		ActionElement element = (ActionElement) actions.get(actObject);
 		if (element != null) {
@@ -270,6 +294,8 @@ public class Actions {
 
 		private ActionEvent currentAction;
 
+		private boolean updating, removed;
+
 		public ActionElement(ActionBind k, boolean v) {
 			this.actions = new TArray<ActionEvent>(
 					CollectionUtils.INITIAL_CAPACITY);
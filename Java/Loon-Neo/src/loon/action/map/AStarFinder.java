@@ -20,8 +20,6 @@
  */
 package loon.action.map;
 
-import java.util.HashSet;
-
 import loon.LRelease;
 import loon.LSystem;
 import loon.action.map.heuristics.Closest;
@@ -34,7 +32,7 @@ import loon.action.map.heuristics.Manhattan;
 import loon.action.map.heuristics.Mixing;
 import loon.event.Updateable;
 import loon.geom.Vector2f;
-import loon.utils.IntMap;
+import loon.utils.IntArray;
 import loon.utils.TArray;
 
 public class AStarFinder implements Updateable, LRelease {
@@ -55,12 +53,49 @@ public class AStarFinder implements Updateable, LRelease {
 
 	public final static AStarFindHeuristic ASTAR_DIAGONAL_SHORT = new DiagonalShort();
 
-	private final static IntMap<TArray<Vector2f>> finderLazy = new IntMap<TArray<Vector2f>>(
-			100);
+	/**
+	 * 普通A*寻径
+	 */
+	public final static int MODE_ASTAR = 0;
+
+	/**
+	 * Jump Point Search寻径(八方向,每格消耗一致的地图)
+	 */
+	public final static int MODE_JUMP_POINT = 1;
+
+	/**
+	 * 分层(HPA*)寻径,预先计算地图区块与入口
+	 */
+	public final static int MODE_HIERARCHICAL = 2;
+
+	public static AStarFinderEngine createEngine(int mode) {
+		switch (mode) {
+		case MODE_JUMP_POINT:
+			return new JumpPointFinderEngine();
+		case MODE_HIERARCHICAL:
+			return new HierarchicalFinderEngine();
+		default:
+			return new AStarFinderEngine();
+		}
+	}
 
-	private final static int makeLazyKey(AStarFindHeuristic heuristic,
-			int[][] map, int[] limits, int sx, int sy, int ex, int ey,
-			boolean flag) {
+	private final static AStarFinderCache finderCache = new AStarFinderCache();
+
+	private final static AStarFinderEngine finderEngine = new AStarFinderEngine();
+
+	private final static AStarFinderPath emptyPath = new AStarFinderPath(
+			new IntArray(0), 1);
+
+	/**
+	 * 静态find方法共用的寻径缓存(可查询命中,未命中与淘汰次数)
+	 *
+	 * @return
+	 */
+	public static AStarFinderCache getCache() {
+		return finderCache;
+	}
+
+	private final static int makeMapRevision(int[][] map, int[] limits) {
 		int hashCode = 1;
 		int w = map.length;
 		int h = map[0].length;
@@ -74,64 +109,80 @@ public class AStarFinder implements Updateable, LRelease {
 				hashCode = LSystem.unite(hashCode, limits[i]);
 			}
 		}
-		hashCode = LSystem.unite(hashCode, heuristic.getType());
-		hashCode = LSystem.unite(hashCode, sx);
-		hashCode = LSystem.unite(hashCode, sy);
-		hashCode = LSystem.unite(hashCode, ex);
-		hashCode = LSystem.unite(hashCode, ey);
-		hashCode = LSystem.unite(hashCode, flag);
 		return hashCode;
 	}
 
-	public static TArray<Vector2f> find(AStarFindHeuristic heuristic,
-			int[][] maps, int[] limits, int x1, int y1, int x2, int y2,
-			boolean flag) {
+	private static AStarFinderPath findCompact(Object owner, int revision,
+			AStarFindHeuristic heuristic, Field2D field, int[] limits, int x1,
+			int y1, int x2, int y2, boolean flag) {
 		heuristic = (heuristic == null ? ASTAR_MANHATTAN : heuristic);
-		synchronized (finderLazy) {
-			if (finderLazy.size >= LSystem.DEFAULT_MAX_CACHE_SIZE * 10) {
-				finderLazy.clear();
-			}
-			int key = makeLazyKey(heuristic, maps, limits, x1, y1, x2, y2, flag);
-			TArray<Vector2f> result = finderLazy.get(key);
-			if (result == null) {
-				AStarFinder astar = new AStarFinder(heuristic);
-				Field2D fieldMap = new Field2D(maps);
+		AStarFinderPath result = finderCache.get(owner, revision,
+				heuristic.getType(), MODE_ASTAR, x1, y1, x2, y2, flag);
+		if (result == null) {
+			if (field == null) {
+				field = new Field2D((int[][]) owner);
 				if (limits != null) {
-					fieldMap.setLimit(limits);
+					field.setLimit(limits);
 				}
-				Vector2f start = new Vector2f(x1, y1);
-				Vector2f over = new Vector2f(x2, y2);
-				result = astar.calc(fieldMap, start, over, flag);
-				finderLazy.put(key, result);
-				astar.close();
-			}
-			if (result != null) {
-				TArray<Vector2f> newResult = new TArray<Vector2f>();
-				newResult.addAll(result);
-				result = newResult;
 			}
-			if (result == null) {
-				return new TArray<Vector2f>();
+			synchronized (finderEngine) {
+				IntArray indexs = finderEngine.searchIndex(field, heuristic,
+						x1, y1, x2, y2, flag, false);
+				result = (indexs == null ? emptyPath : new AStarFinderPath(
+						indexs, field.getWidth()));
 			}
-			return new TArray<Vector2f>(result);
+			finderCache.put(owner, revision, heuristic.getType(), MODE_ASTAR,
+					x1, y1, x2, y2, flag, result);
 		}
+		return result;
+	}
+
+	/**
+	 * 查询路径并返回只读的紧凑路径(结果被缓存且由多个调用者共享),无法到达时返回空路径
+	 *
+	 * @param heuristic
+	 * @param field
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param flag
+	 * @return
+	 */
+	public static AStarFinderPath findCompact(AStarFindHeuristic heuristic,
+			Field2D field, int x1, int y1, int x2, int y2, boolean flag) {
+		return findCompact(field, field.getRevision(), heuristic, field, null,
+				x1, y1, x2, y2, flag);
+	}
+
+	public static AStarFinderPath findCompact(AStarFindHeuristic heuristic,
+			int[][] maps, int[] limits, int x1, int y1, int x2, int y2,
+			boolean flag) {
+		return findCompact(maps, makeMapRevision(maps, limits), heuristic,
+				null, limits, x1, y1, x2, y2, flag);
+	}
+
+	public static TArray<Vector2f> find(AStarFindHeuristic heuristic,
+			int[][] maps, int[] limits, int x1, int y1, int x2, int y2,
+			boolean flag) {
+		return findCompact(heuristic, maps, limits, x1, y1, x2, y2, flag)
+				.toVectors();
 	}
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic,
 			int[][] maps, int x1, int y1, int x2, int y2, boolean flag) {
-		return find(heuristic, maps, x1, y1, x2, y2, flag);
+		return find(heuristic, maps, null, x1, y1, x2, y2, flag);
 	}
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic,
 			Field2D maps, int x1, int y1, int x2, int y2, boolean flag) {
-		return find(heuristic, maps.getMap(), maps.getLimit(), x1, y1, x2, y2,
-				flag);
+		return findCompact(heuristic, maps, x1, y1, x2, y2, flag).toVectors();
 	}
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic,
 			Field2D maps, Vector2f start, Vector2f goal, boolean flag) {
-		return find(heuristic, maps.getMap(), maps.getLimit(), start.x(),
-				start.y(), goal.x(), goal.y(), flag);
+		return findCompact(heuristic, maps, start.x(), start.y(), goal.x(),
+				goal.y(), flag).toVectors();
 	}
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic,
@@ -140,15 +191,11 @@ public class AStarFinder implements Updateable, LRelease {
 				flag);
 	}
 
-	private Vector2f goal;
-
-	private TArray<ScoredPath> pathes;
-
-	private TArray<Vector2f> path;
+	private AStarFinderEngine engine;
 
-	private HashSet<Vector2f> visitedCache;
+	private boolean ownsEngine;
 
-	private ScoredPath spath;
+	private int finderMode = MODE_ASTAR;
 
 	private boolean flying, flag;
 
@@ -211,44 +258,18 @@ public class AStarFinder implements Updateable, LRelease {
 	}
 
 	public TArray<Vector2f> findPath() {
-		Vector2f start = new Vector2f(startX, startY);
-		Vector2f over = new Vector2f(endX, endY);
-		return calc(field, start, over, flag);
+		return calc(field, startX, startY, endX, endY, flag);
 	}
 
-	private TArray<Vector2f> calc(Field2D field, Vector2f start, Vector2f goal,
-			boolean flag) {
-		if (start.equals(goal)) {
-			TArray<Vector2f> v = new TArray<Vector2f>();
-			v.add(start);
-			return v;
-		}
-		this.goal = goal;
-		if (visitedCache == null) {
-			visitedCache = new HashSet<Vector2f>();
-		} else {
-			visitedCache.clear();
-		}
-		if (pathes == null) {
-			pathes = new TArray<ScoredPath>();
-		} else {
-			pathes.clear();
-		}
-		visitedCache.add(start);
-		if (path == null) {
-			path = new TArray<Vector2f>();
-		} else {
-			path.clear();
+	private TArray<Vector2f> calc(Field2D field, int sx, int sy, int ex,
+			int ey, boolean flag) {
+		if (engine == null) {
+			engine = createEngine(finderMode);
+			ownsEngine = true;
 		}
-		path.add(start);
-		if (spath == null) {
-			spath = new ScoredPath(0, path);
-		} else {
-			spath.score = 0;
-			spath.path = path;
-		}
-		pathes.add(spath);
-		return astar(field, flag);
+		engine.setOverflow(overflow);
+		return engine.search(field, findHeuristic == null ? ASTAR_MANHATTAN
+				: findHeuristic, sx, sy, ex, ey, flag, flying);
 	}
 
 	private int overflow = 4096;
@@ -261,49 +282,39 @@ public class AStarFinder implements Updateable, LRelease {
 		return this.overflow;
 	}
 
-	private TArray<Vector2f> astar(Field2D field, boolean flag) {
-		for (int j = 0; pathes.size > 0; j++) {
-			if (j > overflow) {
-				pathes.clear();
-				continue;
-			}
-			ScoredPath spath = pathes.removeIndex(0);
-			Vector2f current = spath.path.get(spath.path.size - 1);
-			if (current.equals(goal)) {
-				return new TArray<Vector2f>(spath.path);
-			}
-			TArray<Vector2f> list = field.neighbors(current, flag);
-			int size = list.size;
-			for (int i = 0; i < size; i++) {
-				Vector2f next = list.get(i);
-				if (visitedCache.contains(next)) {
-					continue;
-				}
-				visitedCache.add(next);
-				if (!field.isHit(next) && !flying) {
-					continue;
-				}
-				TArray<Vector2f> path = new TArray<Vector2f>(spath.path);
-				path.add(next);
-				float score = spath.score
-						+ findHeuristic
-								.getScore(goal.x, goal.y, next.x, next.y);
-				insert(score, path);
-			}
+	public void setFinderMode(int mode) {
+		if (this.finderMode != mode) {
+			this.finderMode = mode;
+			closeEngine();
 		}
-		return null;
 	}
 
-	private void insert(float score, TArray<Vector2f> path) {
-		int size = pathes.size;
-		for (int i = 0; i < size; i++) {
-			ScoredPath spath = pathes.get(i);
-			if (spath.score >= score) {
-				pathes.add(new ScoredPath(score, path));
-				return;
-			}
+	public int getFinderMode() {
+		return finderMode;
+	}
+
+	/**
+	 * 使用外部提供的寻径引擎(比如多个查询共享同一个HierarchicalFinderEngine),
+	 * 此时close不会释放该引擎
+	 *
+	 * @param e
+	 */
+	public void setEngine(AStarFinderEngine e) {
+		closeEngine();
+		this.engine = e;
+		this.ownsEngine = false;
+	}
+
+	public AStarFinderEngine getEngine() {
+		return engine;
+	}
+
+	private void closeEngine() {
+		if (engine != null && ownsEngine) {
+			engine.close();
 		}
-		pathes.add(new ScoredPath(score, path));
+		engine = null;
+		ownsEngine = false;
 	}
 
 	public int getStartX() {
@@ -333,36 +344,7 @@ public class AStarFinder implements Updateable, LRelease {
 		}
 	}
 
-	private class ScoredPath {
-
-		private float score;
-
-		private TArray<Vector2f> path;
-
-		ScoredPath(float score, TArray<Vector2f> path) {
-			this.score = score;
-			this.path = path;
-		}
-
-	}
-
 	public void close() {
-		try {
-			if (path == null) {
-				path.clear();
-				path = null;
-			}
-			if (pathes != null) {
-				pathes.clear();
-				pathes = null;
-			}
-			if (visitedCache != null) {
-				visitedCache.clear();
-				visitedCache = null;
-			}
-			spath = null;
-			goal = null;
-		} catch (Throwable e) {
-		}
+		closeEngine();
 	}
 }
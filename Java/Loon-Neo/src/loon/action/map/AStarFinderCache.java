@@ -0,0 +1,271 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+
+/**
+ * 有上限的LRU寻径结果缓存,同时限制缓存条目数量与路径占用的总格数.
+ *
+ * 每条缓存记录所属地图(Field2D或int[][])及其版本号,地图版本改变后(比如Field2D.setType或setMap),
+ * 只有该地图上的缓存会在下次命中时失效,其它地图的缓存不受影响.
+ */
+public class AStarFinderCache implements LRelease {
+
+	private final static class Entry {
+
+		int key;
+
+		Object owner;
+
+		int revision;
+
+		int heuristic, mode;
+
+		int startX, startY, endX, endY;
+
+		boolean flag;
+
+		AStarFinderPath path;
+
+		Entry prev, next;
+
+		boolean same(Object o, int h, int m, int sx, int sy, int ex, int ey,
+				boolean f) {
+			return owner == o && heuristic == h && mode == m && startX == sx
+					&& startY == sy && endX == ex && endY == ey && flag == f;
+		}
+	}
+
+	private final IntMap<Entry> entries;
+
+	private Entry head, tail;
+
+	private int maxEntries;
+
+	private int maxCells;
+
+	private int cells;
+
+	private int hits, misses, evictions, invalidations;
+
+	public AStarFinderCache() {
+		this(LSystem.DEFAULT_MAX_CACHE_SIZE * 10, 256 * 256);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            最多缓存的路径数量
+	 * @param maxCells
+	 *            所有缓存路径合计最多占用的格数
+	 */
+	public AStarFinderCache(int maxEntries, int maxCells) {
+		this.maxEntries = MathUtils.max(1, maxEntries);
+		this.maxCells = MathUtils.max(1, maxCells);
+		this.entries = new IntMap<Entry>(this.maxEntries);
+	}
+
+	private final static int makeKey(Object owner, int heuristic, int mode,
+			int sx, int sy, int ex, int ey, boolean flag) {
+		int hashCode = 1;
+		hashCode = LSystem.unite(hashCode, System.identityHashCode(owner));
+		hashCode = LSystem.unite(hashCode, heuristic);
+		hashCode = LSystem.unite(hashCode, mode);
+		hashCode = LSystem.unite(hashCode, sx);
+		hashCode = LSystem.unite(hashCode, sy);
+		hashCode = LSystem.unite(hashCode, ex);
+		hashCode = LSystem.unite(hashCode, ey);
+		hashCode = LSystem.unite(hashCode, flag);
+		return hashCode;
+	}
+
+	/**
+	 * 获得缓存的路径,不存在或地图版本已改变时返回null
+	 */
+	public synchronized AStarFinderPath get(Object owner, int revision,
+			int heuristic, int mode, int sx, int sy, int ex, int ey,
+			boolean flag) {
+		int key = makeKey(owner, heuristic, mode, sx, sy, ex, ey, flag);
+		Entry e = entries.get(key);
+		if (e == null || !e.same(owner, heuristic, mode, sx, sy, ex, ey, flag)) {
+			misses++;
+			return null;
+		}
+		if (e.revision != revision) {
+			invalidations++;
+			misses++;
+			remove(e);
+			return null;
+		}
+		hits++;
+		if (e != head) {
+			unlink(e);
+			linkFirst(e);
+		}
+		return e.path;
+	}
+
+	public synchronized void put(Object owner, int revision, int heuristic,
+			int mode, int sx, int sy, int ex, int ey, boolean flag,
+			AStarFinderPath path) {
+		int key = makeKey(owner, heuristic, mode, sx, sy, ex, ey, flag);
+		Entry old = entries.get(key);
+		if (old != null) {
+			remove(old);
+		}
+		if (path.weight() > maxCells) {
+			return;
+		}
+		Entry e = new Entry();
+		e.key = key;
+		e.owner = owner;
+		e.revision = revision;
+		e.heuristic = heuristic;
+		e.mode = mode;
+		e.startX = sx;
+		e.startY = sy;
+		e.endX = ex;
+		e.endY = ey;
+		e.flag = flag;
+		e.path = path;
+		entries.put(key, e);
+		linkFirst(e);
+		cells += path.weight();
+		for (; tail != null && (entries.size > maxEntries || cells > maxCells);) {
+			evictions++;
+			remove(tail);
+		}
+	}
+
+	/**
+	 * 移除指定地图的全部缓存
+	 *
+	 * @param owner
+	 */
+	public synchronized void invalidate(Object owner) {
+		for (Entry e = head; e != null;) {
+			Entry next = e.next;
+			if (e.owner == owner) {
+				invalidations++;
+				remove(e);
+			}
+			e = next;
+		}
+	}
+
+	private void remove(Entry e) {
+		unlink(e);
+		entries.remove(e.key);
+		cells -= e.path.weight();
+		e.owner = null;
+		e.path = null;
+	}
+
+	private void linkFirst(Entry e) {
+		e.prev = null;
+		e.next = head;
+		if (head != null) {
+			head.prev = e;
+		}
+		head = e;
+		if (tail == null) {
+			tail = e;
+		}
+	}
+
+	private void unlink(Entry e) {
+		if (e.prev != null) {
+			e.prev.next = e.next;
+		} else {
+			head = e.next;
+		}
+		if (e.next != null) {
+			e.next.prev = e.prev;
+		} else {
+			tail = e.prev;
+		}
+		e.prev = null;
+		e.next = null;
+	}
+
+	public synchronized void setMaxEntries(int max) {
+		this.maxEntries = MathUtils.max(1, max);
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public synchronized void setMaxCells(int max) {
+		this.maxCells = MathUtils.max(1, max);
+	}
+
+	public int getMaxCells() {
+		return maxCells;
+	}
+
+	public synchronized int size() {
+		return entries.size;
+	}
+
+	public synchronized int getCells() {
+		return cells;
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized int getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int getInvalidations() {
+		return invalidations;
+	}
+
+	public synchronized void resetStats() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		invalidations = 0;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		head = null;
+		tail = null;
+		cells = 0;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * A*寻径的核心实现,以Field2D网格索引(y * width + x)为节点,open表使用二叉堆(按f = g + h排序),
+ * 父节点与g值存放于与地图等大的基本类型数组中,只在抵达终点时回溯生成路径.
+ *
+ * 所有缓存数组会在多次查询间重复使用(以generation标记代替清空),因此同一实例不可被多线程同时调用.
+ */
+public class AStarFinderEngine implements LRelease {
+
+	protected final static int[] OFFSET_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	protected final static int[] OFFSET_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private int capacity;
+
+	protected int width, height;
+
+	protected int generation;
+
+	protected int[] visited;
+
+	protected int[] parents;
+
+	protected float[] gcosts;
+
+	protected float[] fcosts;
+
+	protected int[] heap;
+
+	protected int[] heapIndex;
+
+	protected int heapSize;
+
+	protected int expanded;
+
+	protected int overflow = 4096;
+
+	protected float pathCost;
+
+	private int boundX, boundY, boundWidth = -1, boundHeight = -1;
+
+	protected final IntArray indexPath = new IntArray(64);
+
+	public AStarFinderEngine() {
+		this(0, 0);
+	}
+
+	public AStarFinderEngine(int width, int height) {
+		ensureCapacity(width, height);
+	}
+
+	protected void ensureCapacity(int w, int h) {
+		this.width = w;
+		this.height = h;
+		int size = w * h;
+		if (size > capacity || visited == null) {
+			capacity = size;
+			visited = new int[size];
+			parents = new int[size];
+			gcosts = new float[size];
+			fcosts = new float[size];
+			heap = new int[size];
+			heapIndex = new int[size];
+			generation = 0;
+		}
+	}
+
+	protected void nextGeneration() {
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			for (int i = 0; i < capacity; i++) {
+				visited[i] = 0;
+			}
+			generation = 1;
+		}
+		heapSize = 0;
+		expanded = 0;
+		pathCost = 0;
+	}
+
+	/**
+	 * 限制查询只在指定的网格区域内进行(超出区域的格子视为不可通过)
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void setBounds(int x, int y, int w, int h) {
+		this.boundX = x;
+		this.boundY = y;
+		this.boundWidth = w;
+		this.boundHeight = h;
+	}
+
+	public void resetBounds() {
+		this.boundX = 0;
+		this.boundY = 0;
+		this.boundWidth = -1;
+		this.boundHeight = -1;
+	}
+
+	/**
+	 * 查询路径,并返回经过的网格索引(y * width + x),由起点至终点排列,未找到路径时返回null
+	 *
+	 * 返回的IntArray为引擎内部缓存,下次查询时会被覆盖
+	 *
+	 * @param field
+	 * @param heuristic
+	 * @param sx
+	 * @param sy
+	 * @param ex
+	 * @param ey
+	 * @param flag
+	 *            是否允许斜向移动
+	 * @param flying
+	 *            是否忽略地图障碍
+	 * @return
+	 */
+	public IntArray searchIndex(Field2D field, AStarFindHeuristic heuristic,
+			int sx, int sy, int ex, int ey, boolean flag, boolean flying) {
+		final int w = field.getWidth();
+		final int h = field.getHeight();
+		final int minX = boundWidth < 0 ? 0 : MathUtils.max(0, boundX);
+		final int minY = boundHeight < 0 ? 0 : MathUtils.max(0, boundY);
+		final int maxX = boundWidth < 0 ? w : MathUtils.min(w, boundX
+				+ boundWidth);
+		final int maxY = boundHeight < 0 ? h : MathUtils.min(h, boundY
+				+ boundHeight);
+		if (w <= 0 || h <= 0 || sx < minX || sy < minY || ex < minX
+				|| ey < minY || sx >= maxX || sy >= maxY || ex >= maxX
+				|| ey >= maxY) {
+			return null;
+		}
+		ensureCapacity(w, h);
+		nextGeneration();
+		indexPath.clear();
+		final int start = sy * w + sx;
+		final int goal = ey * w + ex;
+		if (start == goal) {
+			indexPath.add(start);
+			return indexPath;
+		}
+		final int dirs = flag ? 8 : 4;
+		final int gen = generation;
+		final int[] visited = this.visited;
+		final int[] parents = this.parents;
+		final float[] gcosts = this.gcosts;
+		final float[] fcosts = this.fcosts;
+		final int[] heapIndex = this.heapIndex;
+
+		visited[start] = gen;
+		parents[start] = -1;
+		gcosts[start] = 0;
+		fcosts[start] = heuristic.getScore(ex, ey, sx, sy);
+		push(start);
+
+		for (; heapSize > 0;) {
+			if (expanded++ > overflow) {
+				return null;
+			}
+			final int current = pop();
+			if (current == goal) {
+				pathCost = gcosts[goal];
+				return buildPath(goal);
+			}
+			final int cx = current % w;
+			final int cy = current / w;
+			final float cg = gcosts[current];
+			for (int i = 0; i < dirs; i++) {
+				final int nx = cx + OFFSET_X[i];
+				final int ny = cy + OFFSET_Y[i];
+				if (nx < minX || ny < minY || nx >= maxX || ny >= maxY) {
+					continue;
+				}
+				final int next = ny * w + nx;
+				final boolean seen = visited[next] == gen;
+				if (seen && heapIndex[next] < 0) {
+					continue;
+				}
+				if (!flying && !field.isHit(nx, ny)) {
+					continue;
+				}
+				final float g = cg + heuristic.getScore(cx, cy, nx, ny);
+				if (!seen) {
+					visited[next] = gen;
+					parents[next] = current;
+					gcosts[next] = g;
+					fcosts[next] = g + heuristic.getScore(ex, ey, nx, ny);
+					push(next);
+				} else if (g < gcosts[next]) {
+					parents[next] = current;
+					fcosts[next] += g - gcosts[next];
+					gcosts[next] = g;
+					siftUp(heapIndex[next]);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 查询路径,并以Vector2f集合形式返回,未找到路径时返回null
+	 *
+	 * @param field
+	 * @param heuristic
+	 * @param sx
+	 * @param sy
+	 * @param ex
+	 * @param ey
+	 * @param flag
+	 * @param flying
+	 * @return
+	 */
+	public TArray<Vector2f> search(Field2D field, AStarFindHeuristic heuristic,
+			int sx, int sy, int ex, int ey, boolean flag, boolean flying) {
+		IntArray result = searchIndex(field, heuristic, sx, sy, ex, ey, flag,
+				flying);
+		if (result == null) {
+			return null;
+		}
+		return toVectors(result, width);
+	}
+
+	public static TArray<Vector2f> toVectors(IntArray indexs, int width) {
+		final int size = indexs.length;
+		TArray<Vector2f> path = new TArray<Vector2f>(size);
+		for (int i = 0; i < size; i++) {
+			int idx = indexs.items[i];
+			path.add(new Vector2f(idx % width, idx / width));
+		}
+		return path;
+	}
+
+	protected IntArray buildPath(int goal) {
+		IntArray result = indexPath;
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			result.add(idx);
+		}
+		result.reverse();
+		return result;
+	}
+
+	protected void push(int node) {
+		int pos = heapSize++;
+		heap[pos] = node;
+		heapIndex[node] = pos;
+		siftUp(pos);
+	}
+
+	protected int pop() {
+		final int[] heap = this.heap;
+		int result = heap[0];
+		heapIndex[result] = -1;
+		int last = heap[--heapSize];
+		if (heapSize > 0) {
+			heap[0] = last;
+			heapIndex[last] = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	protected void siftUp(int pos) {
+		final int[] heap = this.heap;
+		final int node = heap[pos];
+		final float score = fcosts[node];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			int other = heap[parent];
+			if (fcosts[other] <= score) {
+				break;
+			}
+			heap[pos] = other;
+			heapIndex[other] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int[] heap = this.heap;
+		final int size = heapSize;
+		final int node = heap[pos];
+		final float score = fcosts[node];
+		for (;;) {
+			int child = (pos << 1) + 1;
+			if (child >= size) {
+				break;
+			}
+			int right = child + 1;
+			if (right < size && fcosts[heap[right]] < fcosts[heap[child]]) {
+				child = right;
+			}
+			int other = heap[child];
+			if (fcosts[other] >= score) {
+				break;
+			}
+			heap[pos] = other;
+			heapIndex[other] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * 最近一次查询展开的节点数量
+	 *
+	 * @return
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * 最近一次成功查询的路径总消耗
+	 *
+	 * @return
+	 */
+	public float getPathCost() {
+		return pathCost;
+	}
+
+	public int getOverflow() {
+		return overflow;
+	}
+
+	public void setOverflow(int overflow) {
+		this.overflow = overflow;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void close() {
+		visited = null;
+		parents = null;
+		gcosts = null;
+		fcosts = null;
+		heap = null;
+		heapIndex = null;
+		capacity = 0;
+		heapSize = 0;
+		indexPath.clear();
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.TArray;
+
+/**
+ * 只读的紧凑路径,以网格索引(y * width + x)保存路径上的每一格,可被多个调用者共享而无需复制
+ */
+public final class AStarFinderPath {
+
+	private final int[] cells;
+
+	private final int width;
+
+	AStarFinderPath(IntArray indexs, int width) {
+		this.cells = indexs.toArray();
+		this.width = width;
+	}
+
+	public int size() {
+		return cells.length;
+	}
+
+	public boolean isEmpty() {
+		return cells.length == 0;
+	}
+
+	public int getIndex(int i) {
+		return cells[i];
+	}
+
+	public int getX(int i) {
+		return cells[i] % width;
+	}
+
+	public int getY(int i) {
+		return cells[i] / width;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 转化为Vector2f集合(每次调用都会生成新集合)
+	 * 
+	 * @return
+	 */
+	public TArray<Vector2f> toVectors() {
+		TArray<Vector2f> path = new TArray<Vector2f>(cells.length);
+		for (int i = 0; i < cells.length; i++) {
+			path.add(new Vector2f(cells[i] % width, cells[i] / width));
+		}
+		return path;
+	}
+
+	/**
+	 * 路径占用的int数量,用于缓存的内存统计
+	 * 
+	 * @return
+	 */
+	int weight() {
+		return cells.length;
+	}
+
+}
@@ -21,22 +21,21 @@
 package loon.action.map;
 
 import loon.geom.Vector2f;
-import loon.utils.LIterator;
-import loon.utils.SortedList;
 import loon.utils.TArray;
-import loon.utils.processes.RealtimeProcess;
-import loon.utils.processes.RealtimeProcessManager;
-import loon.utils.timer.LTimerContext;
 
+/**
+ * 寻径池,同步查询直接在调用线程中执行,异步查询交由AStarFinderService在后台线程(或按帧分批)执行,
+ * 结果在游戏线程中回调AStarFinderListener
+ */
 public class AStarFinderPool {
 
 	private Field2D field;
 
-	private RealtimeProcess pathfinderProcess;
+	private AStarFinderService service;
 
-	private boolean running;
+	private int finderMode = AStarFinder.MODE_ASTAR;
 
-	private TaskQueue pathQueue = new TaskQueue();
+	private AStarFinderEngine engine;
 
 	public AStarFinderPool(int[][] maps) {
 		this(new Field2D(maps));
@@ -44,49 +43,66 @@ public class AStarFinderPool {
 
 	public AStarFinderPool(Field2D field) {
 		this.field = field;
-		this.running = true;
-		pathfinderProcess = new RealtimeProcess("AStarProcess") {
-
-			@Override
-			public void run(LTimerContext time) {
-				if (running) {
-					emptyPathQueue();
-					kill();
-				}
-			}
-		};
-		pathfinderProcess.sleep(1000000);
-		RealtimeProcessManager.get().addProcess(pathfinderProcess);
+		this.service = new AStarFinderService(field);
 	}
 
 	public void run() {
 
 	}
 
-	private void emptyPathQueue() {
-		AStarFinder task;
-		for (; (task = pathQueue.poll()) != null;) {
-			task.action(task);
+	/**
+	 * 设定寻径模式(AStarFinder.MODE_ASTAR,MODE_JUMP_POINT或MODE_HIERARCHICAL),
+	 * 池中所有同步查询共享同一个寻径引擎
+	 *
+	 * @param mode
+	 */
+	public void setFinderMode(int mode) {
+		if (this.finderMode != mode || engine == null) {
+			this.finderMode = mode;
+			if (engine != null) {
+				engine.close();
+			}
+			engine = AStarFinder.createEngine(mode);
+		}
+		service.setFinderMode(mode);
+	}
+
+	public int getFinderMode() {
+		return finderMode;
+	}
+
+	private AStarFinder bindEngine(AStarFinder finder) {
+		if (engine == null) {
+			engine = AStarFinder.createEngine(finderMode);
 		}
+		finder.setEngine(engine);
+		return finder;
+	}
+
+	public AStarFinderService getService() {
+		return service;
 	}
 
 	public void stop() {
-		running = true;
-		pathfinderProcess.kill();
+		service.close();
+	}
+
+	public AStarFinderRequest search(AStarFindHeuristic heuristic, int startx,
+			int starty, int endx, int endy, boolean flying, boolean flag,
+			int priority, AStarFinderListener callback) {
+		if (service.isClosed()) {
+			service = new AStarFinderService(field);
+			service.setFinderMode(finderMode);
+		}
+		return service.submit(heuristic, startx, starty, endx, endy, flying,
+				flag, priority, callback);
 	}
 
 	public void search(AStarFindHeuristic heuristic, int startx, int starty,
 			int endx, int endy, boolean flying, boolean flag,
 			AStarFinderListener callback) {
-		AStarFinder pathfinderTask = new AStarFinder(heuristic, field, startx,
-				starty, endx, endy, flying, flag, callback);
-		AStarFinder existing = pathQueue.contains(pathfinderTask);
-		if (existing != null) {
-			existing.update(pathfinderTask);
-		} else {
-			pathQueue.add(pathfinderTask);
-		}
-		pathfinderProcess.kill();
+		search(heuristic, startx, starty, endx, endy, flying, flag, 0,
+				callback);
 	}
 
 	public void search(AStarFindHeuristic heuristic, int startx, int starty,
@@ -97,8 +113,8 @@ public class AStarFinderPool {
 	public TArray<Vector2f> search(AStarFindHeuristic heuristic, int startX,
 			int startY, int endX, int endY, boolean flying, boolean flag) {
 		TArray<Vector2f> result = null;
-		AStarFinder astar = new AStarFinder(heuristic, field, startX, startY,
-				endX, endY, flying, flag);
+		AStarFinder astar = bindEngine(new AStarFinder(heuristic, field,
+				startX, startY, endX, endY, flying, flag));
 		result = astar.findPath();
 		astar.close();
 		return result;
@@ -107,33 +123,11 @@ public class AStarFinderPool {
 	public TArray<Vector2f> search(AStarFindHeuristic heuristic, int startX,
 			int startY, int endX, int endY, boolean flying) {
 		TArray<Vector2f> result = null;
-		AStarFinder astar = new AStarFinder(heuristic, field, startX, startY,
-				endX, endY, flying, false);
+		AStarFinder astar = bindEngine(new AStarFinder(heuristic, field,
+				startX, startY, endX, endY, flying, false));
 		result = astar.findPath();
 		astar.close();
 		return result;
 	}
 
-	class TaskQueue {
-
-		private SortedList<AStarFinder> queue = new SortedList<AStarFinder>();
-
-		public synchronized AStarFinder contains(AStarFinder element) {
-			for (LIterator<AStarFinder> it = queue.listIterator(); it.hasNext();) {
-				AStarFinder af = it.next();
-				if (af.equals(element)) {
-					return af;
-				}
-			}
-			return null;
-		}
-
-		public synchronized AStarFinder poll() {
-			return queue.poll();
-		}
-
-		public synchronized void add(AStarFinder t) {
-			queue.add(t);
-		}
-	}
 }
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.geom.Vector2f;
+import loon.utils.TArray;
+
+/**
+ * 提交给AStarFinderService的寻径请求,可用于查询状态或取消查询.
+ *
+ * 参数完全相同的请求会被合并为同一个对象,因此取消时会同时取消所有合并进来的监听.
+ */
+public class AStarFinderRequest {
+
+	final static int PENDING = 0;
+
+	final static int RUNNING = 1;
+
+	final static int DONE = 2;
+
+	final static int CANCELLED = 3;
+
+	final AStarFindHeuristic heuristic;
+
+	final int startX, startY, endX, endY;
+
+	final boolean flying, flag;
+
+	final TArray<AStarFinderListener> listeners = new TArray<AStarFinderListener>(
+			2);
+
+	Field2D snapshot;
+
+	int revision;
+
+	int priority;
+
+	long order;
+
+	volatile int state = PENDING;
+
+	TArray<Vector2f> result;
+
+	AStarFinderRequest(AStarFindHeuristic heuristic, int sx, int sy, int ex,
+			int ey, boolean flying, boolean flag, int priority) {
+		this.heuristic = heuristic;
+		this.startX = sx;
+		this.startY = sy;
+		this.endX = ex;
+		this.endY = ey;
+		this.flying = flying;
+		this.flag = flag;
+		this.priority = priority;
+	}
+
+	boolean same(AStarFindHeuristic h, int sx, int sy, int ex, int ey,
+			boolean fly, boolean f) {
+		return heuristic.getType() == h.getType() && startX == sx
+				&& startY == sy && endX == ex && endY == ey && flying == fly
+				&& flag == f;
+	}
+
+	/**
+	 * 取消查询,已取消的请求不会再回调监听
+	 */
+	public void cancel() {
+		if (state != DONE) {
+			state = CANCELLED;
+		}
+	}
+
+	public boolean isCancelled() {
+		return state == CANCELLED;
+	}
+
+	public boolean isDone() {
+		return state == DONE;
+	}
+
+	/**
+	 * 查询结果,查询未完成或未找到路径时为null
+	 *
+	 * @return
+	 */
+	public TArray<Vector2f> getResult() {
+		return result;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public int getStartX() {
+		return startX;
+	}
+
+	public int getStartY() {
+		return startY;
+	}
+
+	public int getEndX() {
+		return endX;
+	}
+
+	public int getEndY() {
+		return endY;
+	}
+
+}
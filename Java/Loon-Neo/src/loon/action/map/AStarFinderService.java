@@ -0,0 +1,549 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LGame;
+import loon.LRelease;
+import loon.LSystem;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+import loon.utils.processes.RealtimeProcess;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 寻径服务,在平台支持异步时(JavaSE,Lwjgl3,Android等)由数量受限的后台线程执行查询,
+ * 不支持时(GWT等)则在游戏线程中按每帧时间预算分批执行.
+ *
+ * 查询针对提交时Field2D的只读快照进行,通过setType修改的瓦片会在没有进行中的查询时直接写入原快照
+ * (HierarchicalFinderEngine因此只需重建受影响的区块),仍有查询进行或地图被整体替换时才复制新快照;
+ * 参数完全相同的请求会被合并,请求可设置优先级或被取消,查询结果统一通过RealtimeProcessManager在游戏线程中回调AStarFinderListener.
+ */
+public class AStarFinderService implements Field2DListener, LRelease {
+
+	private class FinderWorker implements Runnable {
+
+		private final AStarFinderEngine engine;
+
+		private final int mode;
+
+		FinderWorker(AStarFinderEngine engine, int mode) {
+			this.engine = engine;
+			this.mode = mode;
+		}
+
+		@Override
+		public void run() {
+			boolean finished = false;
+			try {
+				for (AStarFinderRequest req; (req = nextRequest(engine, mode)) != null;) {
+					execute(req, engine);
+				}
+				finished = true;
+			} finally {
+				if (!finished) {
+					workerFailed(engine, mode);
+				}
+			}
+		}
+	}
+
+	private class FinderProcess extends RealtimeProcess {
+
+		FinderProcess() {
+			super("AStarFinderService", 0);
+		}
+
+		@Override
+		public void run(LTimerContext time) {
+			frameUpdate();
+		}
+	}
+
+	private final Field2D field;
+
+	private Field2D snapshot;
+
+	private boolean snapshotDirty = true;
+
+	private final IntArray changedTiles = new IntArray();
+
+	private int searching;
+
+	private int snapshotRevision;
+
+	private final TArray<AStarFinderRequest> pending = new TArray<AStarFinderRequest>();
+
+	private final TArray<AStarFinderRequest> active = new TArray<AStarFinderRequest>();
+
+	private final TArray<AStarFinderRequest> completed = new TArray<AStarFinderRequest>();
+
+	private final TArray<AStarFinderRequest> delivering = new TArray<AStarFinderRequest>();
+
+	private final TArray<AStarFinderListener> deliverListeners = new TArray<AStarFinderListener>();
+
+	private final TArray<AStarFinderEngine> freeEngines = new TArray<AStarFinderEngine>();
+
+	private final FinderProcess process;
+
+	private AStarFinderEngine localEngine;
+
+	private int finderMode = AStarFinder.MODE_ASTAR;
+
+	private int maxWorkers;
+
+	private int runningWorkers;
+
+	private long frameBudget = 4;
+
+	private long requestOrder;
+
+	private boolean closed;
+
+	private int frameSearches, lastFrameSearches, lastFrameDelivered;
+
+	private long lastFrameSearchTime, lastFrameDeliverTime;
+
+	private int totalSearches, totalDeduped, totalCancelled;
+
+	public AStarFinderService(Field2D field) {
+		this(field, 2);
+	}
+
+	public AStarFinderService(Field2D field, int maxWorkers) {
+		this.field = field;
+		this.maxWorkers = MathUtils.max(1, maxWorkers);
+		this.field.addListener(this);
+		this.process = new FinderProcess();
+		RealtimeProcessManager.get().addProcess(process);
+	}
+
+	@Override
+	public synchronized void onTypeChanged(Field2D f, int tileX, int tileY) {
+		if (snapshotDirty) {
+			return;
+		}
+		if (changedTiles.length >= ((field.getWidth() * field.getHeight()) >> 2)) {
+			snapshotDirty = true;
+			changedTiles.clear();
+			return;
+		}
+		changedTiles.add(tileX);
+		changedTiles.add(tileY);
+	}
+
+	@Override
+	public synchronized void onMapChanged(Field2D f) {
+		snapshotDirty = true;
+		changedTiles.clear();
+	}
+
+	/**
+	 * 获得当前快照,只在持有锁时调用.没有进行中的查询时修改的瓦片直接写入原快照,
+	 * 由快照通知正在监听它的寻径引擎(如HierarchicalFinderEngine)局部更新
+	 *
+	 * @return
+	 */
+	private Field2D snapshot() {
+		if (!snapshotDirty && snapshot != null && changedTiles.length > 0) {
+			if (searching == 0) {
+				for (int i = 0; i < changedTiles.length; i += 2) {
+					int tileX = changedTiles.get(i);
+					int tileY = changedTiles.get(i + 1);
+					snapshot.setType(tileY, tileX, field.getType(tileY, tileX));
+				}
+				changedTiles.clear();
+				snapshotRevision++;
+			} else {
+				snapshotDirty = true;
+			}
+		}
+		if (snapshotDirty || snapshot == null) {
+			Field2D copy = new Field2D(field);
+			int[] limit = field.getLimit();
+			if (limit != null) {
+				int[] newLimit = new int[limit.length];
+				System.arraycopy(limit, 0, newLimit, 0, limit.length);
+				copy.setLimit(newLimit);
+			}
+			snapshot = copy;
+			snapshotDirty = false;
+			changedTiles.clear();
+		}
+		return snapshot;
+	}
+
+	public AStarFinderRequest submit(AStarFindHeuristic heuristic, int startX,
+			int startY, int endX, int endY, boolean flying, boolean flag,
+			AStarFinderListener callback) {
+		return submit(heuristic, startX, startY, endX, endY, flying, flag, 0,
+				callback);
+	}
+
+	/**
+	 * 提交寻径请求
+	 *
+	 * @param heuristic
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flying
+	 * @param flag
+	 * @param priority
+	 *            数值越大越先执行
+	 * @param callback
+	 * @return
+	 */
+	public AStarFinderRequest submit(AStarFindHeuristic heuristic, int startX,
+			int startY, int endX, int endY, boolean flying, boolean flag,
+			int priority, AStarFinderListener callback) {
+		heuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN
+				: heuristic);
+		AStarFinderRequest req;
+		AStarFinderEngine engine = null;
+		int mode;
+		synchronized (this) {
+			if (closed) {
+				return null;
+			}
+			Field2D current = snapshot();
+			for (int i = 0; i < active.size; i++) {
+				AStarFinderRequest other = active.get(i);
+				if (other.snapshot == current
+						&& other.revision == snapshotRevision
+						&& other.state != AStarFinderRequest.CANCELLED
+						&& other.same(heuristic, startX, startY, endX, endY,
+								flying, flag)) {
+					if (callback != null) {
+						other.listeners.add(callback);
+					}
+					if (priority > other.priority
+							&& other.state == AStarFinderRequest.PENDING) {
+						pending.removeValue(other, true);
+						other.priority = priority;
+						enqueue(other);
+					}
+					totalDeduped++;
+					return other;
+				}
+			}
+			req = new AStarFinderRequest(heuristic, startX, startY, endX,
+					endY, flying, flag, priority);
+			req.snapshot = current;
+			req.revision = snapshotRevision;
+			req.order = requestOrder++;
+			if (callback != null) {
+				req.listeners.add(callback);
+			}
+			active.add(req);
+			enqueue(req);
+			searching++;
+			if (runningWorkers < maxWorkers && isAsync()) {
+				runningWorkers++;
+				engine = freeEngines.size > 0 ? freeEngines.pop()
+						: AStarFinder.createEngine(finderMode);
+			}
+			mode = finderMode;
+		}
+		if (engine != null) {
+			LSystem.base().invokeAsync(new FinderWorker(engine, mode));
+		}
+		return req;
+	}
+
+	/**
+	 * 按优先级从低到高排列,队尾为下一个执行的请求
+	 *
+	 * @param req
+	 */
+	private void enqueue(AStarFinderRequest req) {
+		int idx = pending.size;
+		for (; idx > 0; idx--) {
+			AStarFinderRequest other = pending.get(idx - 1);
+			if (other.priority > req.priority
+					|| (other.priority == req.priority && other.order < req.order)) {
+				continue;
+			}
+			break;
+		}
+		pending.insert(idx, req);
+	}
+
+	private synchronized AStarFinderRequest nextRequest() {
+		for (; pending.size > 0;) {
+			AStarFinderRequest req = pending.pop();
+			if (req.state == AStarFinderRequest.CANCELLED) {
+				totalCancelled++;
+				searching--;
+				active.removeValue(req, true);
+				continue;
+			}
+			req.state = AStarFinderRequest.RUNNING;
+			return req;
+		}
+		return null;
+	}
+
+	/**
+	 * 后台线程获取下一个请求,没有请求时在同一锁内结束该线程,以免submit误认为线程仍在运行
+	 *
+	 * @param engine
+	 * @param mode
+	 * @return
+	 */
+	private synchronized AStarFinderRequest nextRequest(
+			AStarFinderEngine engine, int mode) {
+		AStarFinderRequest req = nextRequest();
+		if (req == null) {
+			workerFinished(engine, mode);
+		}
+		return req;
+	}
+
+	private synchronized void workerFinished(AStarFinderEngine engine,
+			int mode) {
+		runningWorkers--;
+		if (!closed && engine != null && mode == finderMode) {
+			freeEngines.add(engine);
+		} else if (engine != null) {
+			engine.close();
+		}
+	}
+
+	/**
+	 * 后台线程异常结束时,若仍有等待中的请求则重新启动一个线程
+	 *
+	 * @param engine
+	 * @param mode
+	 */
+	private void workerFailed(AStarFinderEngine engine, int mode) {
+		AStarFinderEngine next = null;
+		int nextMode;
+		synchronized (this) {
+			runningWorkers--;
+			if (engine != null) {
+				engine.close();
+			}
+			if (!closed && pending.size > 0 && runningWorkers < maxWorkers
+					&& isAsync()) {
+				runningWorkers++;
+				next = freeEngines.size > 0 ? freeEngines.pop()
+						: AStarFinder.createEngine(finderMode);
+			}
+			nextMode = finderMode;
+		}
+		if (next != null) {
+			LSystem.base().invokeAsync(new FinderWorker(next, nextMode));
+		}
+	}
+
+	private void execute(AStarFinderRequest req, AStarFinderEngine engine) {
+		req.result = engine.search(req.snapshot, req.heuristic, req.startX,
+				req.startY, req.endX, req.endY, req.flag, req.flying);
+		synchronized (this) {
+			totalSearches++;
+			frameSearches++;
+			searching--;
+			completed.add(req);
+		}
+	}
+
+	private boolean isAsync() {
+		LGame game = LSystem.base();
+		return game != null && game.isAsyncSupported();
+	}
+
+	private void frameUpdate() {
+		long searchStart = TimeUtils.millis();
+		if (!isAsync()) {
+			if (localEngine == null) {
+				localEngine = AStarFinder.createEngine(finderMode);
+			}
+			for (AStarFinderRequest req; (req = nextRequest()) != null;) {
+				execute(req, localEngine);
+				if (TimeUtils.millis() - searchStart >= frameBudget) {
+					break;
+				}
+			}
+		}
+		long deliverStart = TimeUtils.millis();
+		synchronized (this) {
+			delivering.addAll(completed);
+			completed.clear();
+			this.lastFrameSearches = frameSearches;
+			this.frameSearches = 0;
+		}
+		int delivered = 0;
+		for (int i = 0; i < delivering.size; i++) {
+			AStarFinderRequest req = delivering.get(i);
+			synchronized (this) {
+				active.removeValue(req, true);
+				if (req.state == AStarFinderRequest.CANCELLED) {
+					totalCancelled++;
+					continue;
+				}
+				req.state = AStarFinderRequest.DONE;
+				deliverListeners.addAll(req.listeners);
+			}
+			for (int j = 0; j < deliverListeners.size; j++) {
+				deliverListeners.get(j).pathFound(req.result);
+			}
+			deliverListeners.clear();
+			req.snapshot = null;
+			delivered++;
+		}
+		delivering.clear();
+		long now = TimeUtils.millis();
+		this.lastFrameSearchTime = deliverStart - searchStart;
+		this.lastFrameDelivered = delivered;
+		this.lastFrameDeliverTime = now - deliverStart;
+	}
+
+	/**
+	 * 设定寻径模式(AStarFinder.MODE_ASTAR,MODE_JUMP_POINT或MODE_HIERARCHICAL)
+	 *
+	 * @param mode
+	 */
+	public synchronized void setFinderMode(int mode) {
+		if (this.finderMode != mode) {
+			this.finderMode = mode;
+			for (int i = 0; i < freeEngines.size; i++) {
+				freeEngines.get(i).close();
+			}
+			freeEngines.clear();
+			if (localEngine != null) {
+				localEngine.close();
+				localEngine = null;
+			}
+		}
+	}
+
+	public int getFinderMode() {
+		return finderMode;
+	}
+
+	public synchronized void setMaxWorkers(int max) {
+		this.maxWorkers = MathUtils.max(1, max);
+	}
+
+	public int getMaxWorkers() {
+		return maxWorkers;
+	}
+
+	/**
+	 * 不支持异步时,每帧用于寻径的最长时间(毫秒)
+	 *
+	 * @param millis
+	 */
+	public void setFrameBudget(long millis) {
+		this.frameBudget = MathUtils.max(1, (int) millis);
+	}
+
+	public long getFrameBudget() {
+		return frameBudget;
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size;
+	}
+
+	public synchronized int getRunningWorkers() {
+		return runningWorkers;
+	}
+
+	/**
+	 * 上一帧内完成的查询数量(包括后台线程完成的查询)
+	 *
+	 * @return
+	 */
+	public int getLastFrameSearches() {
+		return lastFrameSearches;
+	}
+
+	/**
+	 * 上一帧在游戏线程中用于寻径的时间(毫秒),异步时为0
+	 *
+	 * @return
+	 */
+	public long getLastFrameSearchTime() {
+		return lastFrameSearchTime;
+	}
+
+	public int getLastFrameDelivered() {
+		return lastFrameDelivered;
+	}
+
+	public long getLastFrameDeliverTime() {
+		return lastFrameDeliverTime;
+	}
+
+	public synchronized int getTotalSearches() {
+		return totalSearches;
+	}
+
+	public synchronized int getTotalDeduped() {
+		return totalDeduped;
+	}
+
+	public synchronized int getTotalCancelled() {
+		return totalCancelled;
+	}
+
+	public Field2D getField() {
+		return field;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (int i = 0; i < pending.size; i++) {
+				pending.get(i).cancel();
+			}
+			pending.clear();
+			active.clear();
+			changedTiles.clear();
+			searching = 0;
+			completed.clear();
+			for (int i = 0; i < freeEngines.size; i++) {
+				freeEngines.get(i).close();
+			}
+			freeEngines.clear();
+		}
+		if (localEngine != null) {
+			localEngine.close();
+			localEngine = null;
+		}
+		field.removeListener(this);
+		process.kill();
+	}
+
+}
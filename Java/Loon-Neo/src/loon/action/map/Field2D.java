@@ -199,6 +199,10 @@ public class Field2D implements Config {
 
 	private int width, height;
 
+	private TArray<Field2DListener> listeners;
+
+	private int revision;
+
 	public Field2D(Field2D field) {
 		cpy(field);
 	}
@@ -317,6 +321,7 @@ public class Field2D implements Config {
 
 	public void setLimit(int[] limit) {
 		this.limit = limit;
+		notifyMapChanged();
 	}
 
 	public int getType(int x, int y) {
@@ -329,7 +334,11 @@ public class Field2D implements Config {
 
 	public void setType(int x, int y, int tile) {
 		try {
-			this.data[x][y] = tile;
+			if (this.data[x][y] != tile) {
+				this.data[x][y] = tile;
+				// data为[行][列]排列,寻径时y为行,x为列
+				notifyTypeChanged(y, x);
+			}
 		} catch (Exception e) {
 		}
 	}
@@ -340,6 +349,61 @@ public class Field2D implements Config {
 
 	public void setMap(int[][] data) {
 		this.data = data;
+		notifyMapChanged();
+	}
+
+	public void addListener(Field2DListener listener) {
+		if (listener == null) {
+			return;
+		}
+		if (listeners == null) {
+			listeners = new TArray<Field2DListener>(4);
+		}
+		if (!listeners.contains(listener, true)) {
+			listeners.add(listener);
+		}
+	}
+
+	public void removeListener(Field2DListener listener) {
+		if (listeners != null) {
+			listeners.removeValue(listener, true);
+		}
+	}
+
+	/**
+	 * 地图版本号,每次通过setType,setMap或setLimit修改地图时递增
+	 * 
+	 * @return
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * 直接修改了getMap()返回的数组后,调用此函数以通知地图已改变
+	 */
+	public void markChanged() {
+		notifyMapChanged();
+	}
+
+	private void notifyTypeChanged(int tileX, int tileY) {
+		revision++;
+		if (listeners == null) {
+			return;
+		}
+		for (int i = 0, size = listeners.size; i < size; i++) {
+			listeners.get(i).onTypeChanged(this, tileX, tileY);
+		}
+	}
+
+	private void notifyMapChanged() {
+		revision++;
+		if (listeners == null) {
+			return;
+		}
+		for (int i = 0, size = listeners.size; i < size; i++) {
+			listeners.get(i).onMapChanged(this);
+		}
 	}
 
 	public boolean isHit(Vector2f point) {
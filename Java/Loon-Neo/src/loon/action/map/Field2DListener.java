@@ -0,0 +1,44 @@
+/**
+ * Copyright 2008 - 2017
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+/**
+ * Field2D地图数据变化时的监听器
+ */
+public interface Field2DListener {
+
+	/**
+	 * 单个瓦片类型改变(tileX与tileY为寻径所用的列与行坐标)
+	 * 
+	 * @param field
+	 * @param tileX
+	 * @param tileY
+	 */
+	void onTypeChanged(Field2D field, int tileX, int tileY);
+
+	/**
+	 * 整个地图或限制条件被替换
+	 * 
+	 * @param field
+	 */
+	void onMapChanged(Field2D field);
+
+}
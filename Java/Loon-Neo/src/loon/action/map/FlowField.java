@@ -0,0 +1,468 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.utils.IntArray;
+
+/**
+ * 流场(Dijkstra地图),针对一个或多个目标点对整张Field2D执行一次搜索,得到每一格到最近目标的消耗(integration
+ * field)以及下一步的移动方向(direction field),此后任意数量的单位都能以O(1)查询移动方向,
+ * 适合塔防等大量单位前往同一目标的场合.
+ *
+ * 数据全部以基本类型数组保存,Field2D通过setType修改瓦片后,只修复受影响的部分.
+ */
+public class FlowField implements Field2DListener, LRelease {
+
+	public final static int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final static int STRAIGHT_COST = 10;
+
+	private final static int DIAGONAL_COST = 14;
+
+	private final static int[] OFFSET_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] OFFSET_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private final static int[] DIRECTIONS = { Config.TUP, Config.TRIGHT,
+			Config.TDOWN, Config.TLEFT, Config.LEFT, Config.UP, Config.RIGHT,
+			Config.DOWN };
+
+	private final static byte NONE = -1;
+
+	private final static byte GOAL = -2;
+
+	private Field2D field;
+
+	private int width, height;
+
+	private boolean diagonal;
+
+	private int[] costs;
+
+	private byte[] directions;
+
+	private int[] heap;
+
+	private int[] heapIndex;
+
+	private int heapSize;
+
+	private int[] marks;
+
+	private int mark;
+
+	private final IntArray goals = new IntArray(4);
+
+	private final IntArray changed = new IntArray(16);
+
+	private final IntArray affected = new IntArray(64);
+
+	private boolean dirtyAll = true;
+
+	private int buildCount, repairCount;
+
+	public FlowField(Field2D field) {
+		this(field, true);
+	}
+
+	public FlowField(Field2D field, boolean diagonal) {
+		this.field = field;
+		this.diagonal = diagonal;
+		this.field.addListener(this);
+	}
+
+	/**
+	 * 清空并设定唯一的目标点
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public FlowField setGoal(int x, int y) {
+		goals.clear();
+		return addGoal(x, y);
+	}
+
+	/**
+	 * 添加目标点(单位会前往距离最近的目标)
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public FlowField addGoal(int x, int y) {
+		if (x >= 0 && y >= 0 && x < field.getWidth() && y < field.getHeight()) {
+			int idx = y * field.getWidth() + x;
+			if (!goals.contains(idx)) {
+				goals.add(idx);
+				dirtyAll = true;
+			}
+		}
+		return this;
+	}
+
+	public FlowField clearGoals() {
+		goals.clear();
+		dirtyAll = true;
+		return this;
+	}
+
+	public int getGoalCount() {
+		return goals.length;
+	}
+
+	public void setDiagonal(boolean d) {
+		if (this.diagonal != d) {
+			this.diagonal = d;
+			this.dirtyAll = true;
+		}
+	}
+
+	public boolean isDiagonal() {
+		return diagonal;
+	}
+
+	@Override
+	public void onTypeChanged(Field2D f, int tileX, int tileY) {
+		if (!dirtyAll && f == field) {
+			changed.add(tileY * width + tileX);
+		}
+	}
+
+	@Override
+	public void onMapChanged(Field2D f) {
+		dirtyAll = true;
+	}
+
+	/**
+	 * 重建或修复流场,查询函数会自动调用
+	 */
+	public void update() {
+		if (dirtyAll || width != field.getWidth()
+				|| height != field.getHeight()) {
+			build();
+		} else if (changed.length > 0) {
+			repair();
+		}
+	}
+
+	private void ensureCapacity() {
+		width = field.getWidth();
+		height = field.getHeight();
+		int size = width * height;
+		if (costs == null || costs.length < size) {
+			costs = new int[size];
+			directions = new byte[size];
+			heap = new int[size];
+			heapIndex = new int[size];
+			marks = new int[size];
+			mark = 0;
+		}
+	}
+
+	private boolean passable(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height
+				&& field.isHit(x, y);
+	}
+
+	private void build() {
+		ensureCapacity();
+		final int size = width * height;
+		for (int i = 0; i < size; i++) {
+			costs[i] = UNREACHABLE;
+			directions[i] = NONE;
+			heapIndex[i] = -1;
+		}
+		heapSize = 0;
+		for (int i = 0; i < goals.length; i++) {
+			int g = goals.items[i];
+			if (passable(g % width, g / width)) {
+				costs[g] = 0;
+				directions[g] = GOAL;
+				push(g);
+			}
+		}
+		propagate();
+		changed.clear();
+		dirtyAll = false;
+		buildCount++;
+	}
+
+	private void repair() {
+		if (++mark == Integer.MAX_VALUE) {
+			for (int i = 0; i < marks.length; i++) {
+				marks[i] = 0;
+			}
+			mark = 1;
+		}
+		affected.clear();
+		for (int i = 0; i < changed.length; i++) {
+			int idx = changed.items[i];
+			if (marks[idx] != mark) {
+				marks[idx] = mark;
+				affected.add(idx);
+			}
+		}
+		changed.clear();
+		// 收集所有经由被修改瓦片抵达目标的格子
+		final int dirs = diagonal ? 8 : 4;
+		for (int i = 0; i < affected.length; i++) {
+			int idx = affected.items[i];
+			int x = idx % width;
+			int y = idx / width;
+			for (int d = 0; d < dirs; d++) {
+				int nx = x + OFFSET_X[d];
+				int ny = y + OFFSET_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				int n = ny * width + nx;
+				int nd = directions[n];
+				if (marks[n] != mark && nd >= 0 && nx + OFFSET_X[nd] == x
+						&& ny + OFFSET_Y[nd] == y) {
+					marks[n] = mark;
+					affected.add(n);
+				}
+			}
+		}
+		for (int i = 0; i < affected.length; i++) {
+			int idx = affected.items[i];
+			costs[idx] = UNREACHABLE;
+			directions[idx] = NONE;
+		}
+		heapSize = 0;
+		for (int i = 0; i < affected.length; i++) {
+			int idx = affected.items[i];
+			int x = idx % width;
+			int y = idx / width;
+			heapIndex[idx] = -1;
+			if (!passable(x, y)) {
+				continue;
+			}
+			if (goals.contains(idx)) {
+				costs[idx] = 0;
+				directions[idx] = GOAL;
+				push(idx);
+				continue;
+			}
+			for (int d = 0; d < dirs; d++) {
+				int nx = x + OFFSET_X[d];
+				int ny = y + OFFSET_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				int n = ny * width + nx;
+				if (costs[n] == UNREACHABLE) {
+					continue;
+				}
+				int cost = costs[n] + (d < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+				if (cost < costs[idx]) {
+					costs[idx] = cost;
+					directions[idx] = (byte) d;
+				}
+			}
+			if (costs[idx] != UNREACHABLE) {
+				push(idx);
+			}
+		}
+		propagate();
+		repairCount++;
+	}
+
+	private void propagate() {
+		final int dirs = diagonal ? 8 : 4;
+		final int[] costs = this.costs;
+		for (; heapSize > 0;) {
+			final int current = pop();
+			final int x = current % width;
+			final int y = current / width;
+			final int base = costs[current];
+			for (int d = 0; d < dirs; d++) {
+				final int nx = x + OFFSET_X[d];
+				final int ny = y + OFFSET_Y[d];
+				if (!passable(nx, ny)) {
+					continue;
+				}
+				final int n = ny * width + nx;
+				final int cost = base + (d < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+				if (cost < costs[n]) {
+					costs[n] = cost;
+					// 反向:从n出发应朝current移动
+					directions[n] = (byte) (d < 4 ? (d + 2) % 4 : 4 + (d - 2) % 4);
+					if (heapIndex[n] >= 0) {
+						siftUp(heapIndex[n]);
+					} else {
+						push(n);
+					}
+				}
+			}
+		}
+	}
+
+	private void push(int node) {
+		int pos = heapSize++;
+		heap[pos] = node;
+		heapIndex[node] = pos;
+		siftUp(pos);
+	}
+
+	private int pop() {
+		int result = heap[0];
+		heapIndex[result] = -1;
+		int last = heap[--heapSize];
+		if (heapSize > 0) {
+			heap[0] = last;
+			heapIndex[last] = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	private void siftUp(int pos) {
+		final int node = heap[pos];
+		final int score = costs[node];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			int other = heap[parent];
+			if (costs[other] <= score) {
+				break;
+			}
+			heap[pos] = other;
+			heapIndex[other] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int size = heapSize;
+		final int node = heap[pos];
+		final int score = costs[node];
+		for (;;) {
+			int child = (pos << 1) + 1;
+			if (child >= size) {
+				break;
+			}
+			int right = child + 1;
+			if (right < size && costs[heap[right]] < costs[heap[child]]) {
+				child = right;
+			}
+			int other = heap[child];
+			if (costs[other] >= score) {
+				break;
+			}
+			heap[pos] = other;
+			heapIndex[other] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	private int indexOf(int x, int y) {
+		update();
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return -1;
+		}
+		return y * width + x;
+	}
+
+	/**
+	 * 返回从指定格子前往目标的下一步方向(Config中的方向常量),已在目标点或无法到达时返回Config.EMPTY
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getDirection(int x, int y) {
+		int idx = indexOf(x, y);
+		if (idx == -1 || directions[idx] < 0) {
+			return Config.EMPTY;
+		}
+		return DIRECTIONS[directions[idx]];
+	}
+
+	public int getDirectionX(int x, int y) {
+		int idx = indexOf(x, y);
+		if (idx == -1 || directions[idx] < 0) {
+			return 0;
+		}
+		return OFFSET_X[directions[idx]];
+	}
+
+	public int getDirectionY(int x, int y) {
+		int idx = indexOf(x, y);
+		if (idx == -1 || directions[idx] < 0) {
+			return 0;
+		}
+		return OFFSET_Y[directions[idx]];
+	}
+
+	/**
+	 * 到最近目标的消耗(直线一格为10,斜向一格为14),无法到达时返回UNREACHABLE
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getCost(int x, int y) {
+		int idx = indexOf(x, y);
+		return idx == -1 ? UNREACHABLE : costs[idx];
+	}
+
+	public boolean isReachable(int x, int y) {
+		return getCost(x, y) != UNREACHABLE;
+	}
+
+	public boolean isGoal(int x, int y) {
+		int idx = indexOf(x, y);
+		return idx != -1 && directions[idx] == GOAL;
+	}
+
+	public Field2D getField() {
+		return field;
+	}
+
+	public int getBuildCount() {
+		return buildCount;
+	}
+
+	public int getRepairCount() {
+		return repairCount;
+	}
+
+	@Override
+	public void close() {
+		field.removeListener(this);
+		costs = null;
+		directions = null;
+		heap = null;
+		heapIndex = null;
+		marks = null;
+		goals.clear();
+		changed.clear();
+		affected.clear();
+		dirtyAll = true;
+	}
+
+}
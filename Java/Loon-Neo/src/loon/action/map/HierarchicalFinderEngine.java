@@ -0,0 +1,561 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+
+/**
+ * HPA*(分层A*)寻径,将Field2D切分为固定大小的区块,预先计算区块边界上的入口以及区块内入口间的消耗,
+ * 查询时先在入口构成的抽象图上寻径,再逐段在区块内细化为完整路径.
+ *
+ * 当Field2D通过setType修改瓦片时,只重建受影响区块及其相邻区块的入口与消耗,而不重建整张图.
+ */
+public class HierarchicalFinderEngine extends AStarFinderEngine implements
+		Field2DListener {
+
+	private final static int MAX_ENTRANCE_WIDTH = 6;
+
+	private static class Cluster {
+
+		int x, y, width, height;
+
+		final IntArray nodes = new IntArray(16);
+
+		// 每个节点最多对应两个相邻区块中的入口(位于区块拐角时)
+		final IntArray partners = new IntArray(32);
+
+		float[] costs;
+
+		int indexOf(int cell) {
+			for (int i = 0; i < nodes.length; i++) {
+				if (nodes.items[i] == cell) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void addNode(int cell, int partner) {
+			int idx = indexOf(cell);
+			if (idx == -1) {
+				nodes.add(cell);
+				partners.add(partner);
+				partners.add(-1);
+			} else {
+				partners.set(idx * 2 + 1, partner);
+			}
+		}
+	}
+
+	private final AStarFinderEngine local = new AStarFinderEngine();
+
+	private final IntArray abstractPath = new IntArray(32);
+
+	private int clusterSize;
+
+	private Field2D field;
+
+	private AStarFindHeuristic graphHeuristic;
+
+	private boolean graphFlag;
+
+	private int fieldWidth, fieldHeight;
+
+	private int clustersX, clustersY;
+
+	private Cluster[] clusters;
+
+	private IntArray[] hborders;
+
+	private IntArray[] vborders;
+
+	private boolean[] dirty;
+
+	private boolean dirtyAll = true, anyDirty;
+
+	private float[] startCosts = new float[16];
+
+	private float[] goalCosts = new float[16];
+
+	private int rebuildCount;
+
+	public HierarchicalFinderEngine() {
+		this(10);
+	}
+
+	public HierarchicalFinderEngine(int clusterSize) {
+		super();
+		this.clusterSize = MathUtils.max(2, clusterSize);
+	}
+
+	public void setClusterSize(int size) {
+		size = MathUtils.max(2, size);
+		if (size != clusterSize) {
+			this.clusterSize = size;
+			this.dirtyAll = true;
+		}
+	}
+
+	public int getClusterSize() {
+		return clusterSize;
+	}
+
+	@Override
+	public void onTypeChanged(Field2D f, int tileX, int tileY) {
+		if (f != field || dirtyAll || clusters == null) {
+			return;
+		}
+		if (tileX < 0 || tileY < 0 || tileX >= fieldWidth
+				|| tileY >= fieldHeight) {
+			return;
+		}
+		dirty[(tileY / clusterSize) * clustersX + (tileX / clusterSize)] = true;
+		anyDirty = true;
+	}
+
+	@Override
+	public void onMapChanged(Field2D f) {
+		if (f == field) {
+			dirtyAll = true;
+		}
+	}
+
+	private void ensureGraph(Field2D f, AStarFindHeuristic heuristic,
+			boolean flag) {
+		if (f != field) {
+			if (field != null) {
+				field.removeListener(this);
+			}
+			field = f;
+			field.addListener(this);
+			dirtyAll = true;
+		}
+		if (graphHeuristic != heuristic || graphFlag != flag
+				|| fieldWidth != f.getWidth() || fieldHeight != f.getHeight()) {
+			dirtyAll = true;
+		}
+		if (dirtyAll) {
+			buildAll(heuristic, flag);
+		} else if (anyDirty) {
+			for (int i = 0; i < dirty.length; i++) {
+				if (dirty[i]) {
+					dirty[i] = false;
+					rebuildCluster(i % clustersX, i / clustersX);
+				}
+			}
+			anyDirty = false;
+		}
+	}
+
+	private void buildAll(AStarFindHeuristic heuristic, boolean flag) {
+		graphHeuristic = heuristic;
+		graphFlag = flag;
+		fieldWidth = field.getWidth();
+		fieldHeight = field.getHeight();
+		clustersX = (fieldWidth + clusterSize - 1) / clusterSize;
+		clustersY = (fieldHeight + clusterSize - 1) / clusterSize;
+		final int count = clustersX * clustersY;
+		clusters = new Cluster[count];
+		dirty = new boolean[count];
+		for (int cy = 0; cy < clustersY; cy++) {
+			for (int cx = 0; cx < clustersX; cx++) {
+				Cluster c = new Cluster();
+				c.x = cx * clusterSize;
+				c.y = cy * clusterSize;
+				c.width = MathUtils.min(clusterSize, fieldWidth - c.x);
+				c.height = MathUtils.min(clusterSize, fieldHeight - c.y);
+				clusters[cy * clustersX + cx] = c;
+			}
+		}
+		hborders = new IntArray[MathUtils.max(0, clustersX - 1) * clustersY];
+		vborders = new IntArray[clustersX * MathUtils.max(0, clustersY - 1)];
+		for (int i = 0; i < hborders.length; i++) {
+			hborders[i] = new IntArray(8);
+			buildHorizontalBorder(i % (clustersX - 1), i / (clustersX - 1));
+		}
+		for (int i = 0; i < vborders.length; i++) {
+			vborders[i] = new IntArray(8);
+			buildVerticalBorder(i % clustersX, i / clustersX);
+		}
+		for (int cy = 0; cy < clustersY; cy++) {
+			for (int cx = 0; cx < clustersX; cx++) {
+				buildClusterNodes(cx, cy);
+			}
+		}
+		dirtyAll = false;
+		anyDirty = false;
+		rebuildCount++;
+	}
+
+	private void rebuildCluster(int cx, int cy) {
+		if (cx > 0) {
+			buildHorizontalBorder(cx - 1, cy);
+		}
+		if (cx < clustersX - 1) {
+			buildHorizontalBorder(cx, cy);
+		}
+		if (cy > 0) {
+			buildVerticalBorder(cx, cy - 1);
+		}
+		if (cy < clustersY - 1) {
+			buildVerticalBorder(cx, cy);
+		}
+		buildClusterNodes(cx, cy);
+		if (cx > 0) {
+			buildClusterNodes(cx - 1, cy);
+		}
+		if (cx < clustersX - 1) {
+			buildClusterNodes(cx + 1, cy);
+		}
+		if (cy > 0) {
+			buildClusterNodes(cx, cy - 1);
+		}
+		if (cy < clustersY - 1) {
+			buildClusterNodes(cx, cy + 1);
+		}
+		rebuildCount++;
+	}
+
+	/**
+	 * 区块(cx,cy)与(cx+1,cy)之间的纵向边界
+	 */
+	private void buildHorizontalBorder(int cx, int cy) {
+		IntArray border = hborders[cy * (clustersX - 1) + cx];
+		border.clear();
+		Cluster c = clusters[cy * clustersX + cx];
+		final int x0 = c.x + c.width - 1;
+		final int x1 = x0 + 1;
+		int runStart = -1;
+		for (int y = c.y; y <= c.y + c.height; y++) {
+			boolean open = y < c.y + c.height && field.isHit(x0, y)
+					&& field.isHit(x1, y);
+			if (open && runStart == -1) {
+				runStart = y;
+			} else if (!open && runStart != -1) {
+				int len = y - runStart;
+				if (len < MAX_ENTRANCE_WIDTH) {
+					int my = runStart + len / 2;
+					border.add(my * fieldWidth + x0);
+					border.add(my * fieldWidth + x1);
+				} else {
+					border.add(runStart * fieldWidth + x0);
+					border.add(runStart * fieldWidth + x1);
+					border.add((y - 1) * fieldWidth + x0);
+					border.add((y - 1) * fieldWidth + x1);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/**
+	 * 区块(cx,cy)与(cx,cy+1)之间的横向边界
+	 */
+	private void buildVerticalBorder(int cx, int cy) {
+		IntArray border = vborders[cy * clustersX + cx];
+		border.clear();
+		Cluster c = clusters[cy * clustersX + cx];
+		final int y0 = c.y + c.height - 1;
+		final int y1 = y0 + 1;
+		int runStart = -1;
+		for (int x = c.x; x <= c.x + c.width; x++) {
+			boolean open = x < c.x + c.width && field.isHit(x, y0)
+					&& field.isHit(x, y1);
+			if (open && runStart == -1) {
+				runStart = x;
+			} else if (!open && runStart != -1) {
+				int len = x - runStart;
+				if (len < MAX_ENTRANCE_WIDTH) {
+					int mx = runStart + len / 2;
+					border.add(y0 * fieldWidth + mx);
+					border.add(y1 * fieldWidth + mx);
+				} else {
+					border.add(y0 * fieldWidth + runStart);
+					border.add(y1 * fieldWidth + runStart);
+					border.add(y0 * fieldWidth + x - 1);
+					border.add(y1 * fieldWidth + x - 1);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	private void collectBorder(Cluster c, IntArray border, boolean first) {
+		for (int i = 0; i < border.length; i += 2) {
+			int a = border.items[i];
+			int b = border.items[i + 1];
+			if (first) {
+				c.addNode(a, b);
+			} else {
+				c.addNode(b, a);
+			}
+		}
+	}
+
+	private void buildClusterNodes(int cx, int cy) {
+		Cluster c = clusters[cy * clustersX + cx];
+		c.nodes.clear();
+		c.partners.clear();
+		if (cx > 0) {
+			collectBorder(c, hborders[cy * (clustersX - 1) + cx - 1], false);
+		}
+		if (cx < clustersX - 1) {
+			collectBorder(c, hborders[cy * (clustersX - 1) + cx], true);
+		}
+		if (cy > 0) {
+			collectBorder(c, vborders[(cy - 1) * clustersX + cx], false);
+		}
+		if (cy < clustersY - 1) {
+			collectBorder(c, vborders[cy * clustersX + cx], true);
+		}
+		final int size = c.nodes.length;
+		if (c.costs == null || c.costs.length < size * size) {
+			c.costs = new float[MathUtils.max(16, size * size)];
+		}
+		local.setBounds(c.x, c.y, c.width, c.height);
+		local.setOverflow(c.width * c.height);
+		for (int i = 0; i < size; i++) {
+			c.costs[i * size + i] = 0;
+			int a = c.nodes.items[i];
+			for (int j = i + 1; j < size; j++) {
+				int b = c.nodes.items[j];
+				float cost = localCost(a, b);
+				c.costs[i * size + j] = cost;
+				c.costs[j * size + i] = cost;
+			}
+		}
+		local.resetBounds();
+	}
+
+	private float localCost(int from, int to) {
+		IntArray result = local.searchIndex(field, graphHeuristic, from
+				% fieldWidth, from / fieldWidth, to % fieldWidth, to
+				/ fieldWidth, graphFlag, false);
+		return result == null ? -1 : local.getPathCost();
+	}
+
+	private int clusterIndexOf(int cell) {
+		return ((cell / fieldWidth) / clusterSize) * clustersX
+				+ ((cell % fieldWidth) / clusterSize);
+	}
+
+	@Override
+	public IntArray searchIndex(Field2D field, AStarFindHeuristic heuristic,
+			int sx, int sy, int ex, int ey, boolean flag, boolean flying) {
+		final int w = field.getWidth();
+		final int h = field.getHeight();
+		if (flying || w <= 0 || h <= 0) {
+			return super.searchIndex(field, heuristic, sx, sy, ex, ey, flag,
+					flying);
+		}
+		if (sx < 0 || sy < 0 || ex < 0 || ey < 0 || sx >= w || sy >= h
+				|| ex >= w || ey >= h) {
+			return null;
+		}
+		ensureGraph(field, heuristic, flag);
+		final int start = sy * w + sx;
+		final int goal = ey * w + ex;
+		final int startCluster = clusterIndexOf(start);
+		final int goalCluster = clusterIndexOf(goal);
+		if (startCluster == goalCluster) {
+			return super.searchIndex(field, heuristic, sx, sy, ex, ey, flag,
+					false);
+		}
+		final Cluster sc = clusters[startCluster];
+		final Cluster gc = clusters[goalCluster];
+		final int scSize = sc.nodes.length;
+		final int gcSize = gc.nodes.length;
+		if (startCosts.length < scSize) {
+			startCosts = new float[scSize];
+		}
+		if (goalCosts.length < gcSize) {
+			goalCosts = new float[gcSize];
+		}
+		local.setOverflow(clusterSize * clusterSize);
+		local.setBounds(sc.x, sc.y, sc.width, sc.height);
+		for (int i = 0; i < scSize; i++) {
+			startCosts[i] = localCost(start, sc.nodes.items[i]);
+		}
+		local.setBounds(gc.x, gc.y, gc.width, gc.height);
+		for (int i = 0; i < gcSize; i++) {
+			goalCosts[i] = localCost(gc.nodes.items[i], goal);
+		}
+		local.resetBounds();
+
+		ensureCapacity(w, h);
+		nextGeneration();
+		indexPath.clear();
+		visited[start] = generation;
+		parents[start] = -1;
+		gcosts[start] = 0;
+		fcosts[start] = heuristic.getScore(ex, ey, sx, sy);
+		push(start);
+
+		for (; heapSize > 0;) {
+			if (expanded++ > overflow) {
+				return null;
+			}
+			final int current = pop();
+			if (current == goal) {
+				pathCost = gcosts[goal];
+				return refinePath(goal, heuristic, flag);
+			}
+			final float cg = gcosts[current];
+			if (current == start) {
+				for (int i = 0; i < scSize; i++) {
+					if (startCosts[i] >= 0) {
+						relax(current, sc.nodes.items[i], cg + startCosts[i],
+								heuristic, ex, ey);
+					}
+				}
+			}
+			final int ci = clusterIndexOf(current);
+			final Cluster c = clusters[ci];
+			final int li = c.indexOf(current);
+			if (li == -1) {
+				continue;
+			}
+			final int size = c.nodes.length;
+			for (int j = 0; j < size; j++) {
+				float cost = c.costs[li * size + j];
+				if (j != li && cost >= 0) {
+					relax(current, c.nodes.items[j], cg + cost, heuristic, ex,
+							ey);
+				}
+			}
+			for (int k = 0; k < 2; k++) {
+				int partner = c.partners.items[li * 2 + k];
+				if (partner != -1) {
+					relax(current, partner,
+							cg + heuristic.getScore(current % w, current / w,
+									partner % w, partner / w), heuristic, ex,
+							ey);
+				}
+			}
+			if (ci == goalCluster && goalCosts[li] >= 0) {
+				relax(current, goal, cg + goalCosts[li], heuristic, ex, ey);
+			}
+		}
+		return null;
+	}
+
+	private void relax(int current, int next, float g,
+			AStarFindHeuristic heuristic, int ex, int ey) {
+		final boolean seen = visited[next] == generation;
+		if (seen && heapIndex[next] < 0) {
+			return;
+		}
+		if (!seen) {
+			visited[next] = generation;
+			parents[next] = current;
+			gcosts[next] = g;
+			fcosts[next] = g
+					+ heuristic.getScore(ex, ey, next % width, next / width);
+			push(next);
+		} else if (g < gcosts[next]) {
+			parents[next] = current;
+			fcosts[next] += g - gcosts[next];
+			gcosts[next] = g;
+			siftUp(heapIndex[next]);
+		}
+	}
+
+	private IntArray refinePath(int goal, AStarFindHeuristic heuristic,
+			boolean flag) {
+		abstractPath.clear();
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			abstractPath.add(idx);
+		}
+		abstractPath.reverse();
+		IntArray result = indexPath;
+		result.clear();
+		result.add(abstractPath.get(0));
+		for (int i = 1; i < abstractPath.length; i++) {
+			int from = abstractPath.get(i - 1);
+			int to = abstractPath.get(i);
+			int ci = clusterIndexOf(from);
+			if (ci != clusterIndexOf(to)) {
+				result.add(to);
+				continue;
+			}
+			Cluster c = clusters[ci];
+			local.setBounds(c.x, c.y, c.width, c.height);
+			local.setOverflow(c.width * c.height);
+			IntArray segment = local.searchIndex(field, heuristic, from
+					% width, from / width, to % width, to / width, flag, false);
+			if (segment == null) {
+				local.resetBounds();
+				return null;
+			}
+			for (int j = 1; j < segment.length; j++) {
+				result.add(segment.items[j]);
+			}
+		}
+		local.resetBounds();
+		return result;
+	}
+
+	/**
+	 * 当前抽象图中的入口节点数量
+	 *
+	 * @return
+	 */
+	public int getNodeCount() {
+		if (clusters == null) {
+			return 0;
+		}
+		int count = 0;
+		for (int i = 0; i < clusters.length; i++) {
+			count += clusters[i].nodes.length;
+		}
+		return count;
+	}
+
+	public int getClusterCount() {
+		return clusters == null ? 0 : clusters.length;
+	}
+
+	/**
+	 * 抽象图(全部或单个区块)被重建的次数
+	 *
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		local.close();
+		if (field != null) {
+			field.removeListener(this);
+			field = null;
+		}
+		clusters = null;
+		hborders = null;
+		vborders = null;
+		dirty = null;
+		dirtyAll = true;
+	}
+
+}
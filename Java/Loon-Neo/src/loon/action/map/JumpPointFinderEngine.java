@@ -0,0 +1,293 @@
+/**
+ * Copyright 2008 - 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+
+/**
+ * Jump Point Search寻径,适用于八方向且每格消耗一致的网格地图,只将跳跃点放入open表,
+ * 以大幅减少开阔地图上的节点展开数量,返回的路径会补全为逐格的完整路径.
+ *
+ * 当不允许斜向移动(flag为false)时,退化为普通A*查询.
+ */
+public class JumpPointFinderEngine extends AStarFinderEngine {
+
+	private final static float SQRT2 = MathUtils.sqrt(2f);
+
+	private final IntArray jumpPoints = new IntArray(32);
+
+	private final int[] neighbours = new int[16];
+
+	private Field2D field;
+
+	private boolean flying;
+
+	private int goalX, goalY;
+
+	public JumpPointFinderEngine() {
+		super();
+	}
+
+	public JumpPointFinderEngine(int width, int height) {
+		super(width, height);
+	}
+
+	@Override
+	public IntArray searchIndex(Field2D field, AStarFindHeuristic heuristic,
+			int sx, int sy, int ex, int ey, boolean flag, boolean flying) {
+		if (!flag) {
+			return super.searchIndex(field, heuristic, sx, sy, ex, ey, flag,
+					flying);
+		}
+		final int w = field.getWidth();
+		final int h = field.getHeight();
+		if (w <= 0 || h <= 0 || sx < 0 || sy < 0 || ex < 0 || ey < 0
+				|| sx >= w || sy >= h || ex >= w || ey >= h) {
+			return null;
+		}
+		ensureCapacity(w, h);
+		nextGeneration();
+		indexPath.clear();
+		this.field = field;
+		this.flying = flying;
+		this.goalX = ex;
+		this.goalY = ey;
+		final int start = sy * w + sx;
+		final int goal = ey * w + ex;
+		if (start == goal) {
+			indexPath.add(start);
+			return indexPath;
+		}
+		final int gen = generation;
+
+		visited[start] = gen;
+		parents[start] = -1;
+		gcosts[start] = 0;
+		fcosts[start] = heuristic.getScore(ex, ey, sx, sy);
+		push(start);
+
+		try {
+			for (; heapSize > 0;) {
+				if (expanded++ > overflow) {
+					return null;
+				}
+				final int current = pop();
+				if (current == goal) {
+					pathCost = gcosts[goal];
+					return expandPath(goal);
+				}
+				final int cx = current % w;
+				final int cy = current / w;
+				final int count = findNeighbours(current, cx, cy);
+				for (int i = 0; i < count; i += 2) {
+					final int nx = neighbours[i];
+					final int ny = neighbours[i + 1];
+					final int jump = jump(nx, ny, cx, cy);
+					if (jump == -1) {
+						continue;
+					}
+					final boolean seen = visited[jump] == gen;
+					if (seen && heapIndex[jump] < 0) {
+						continue;
+					}
+					final int jx = jump % w;
+					final int jy = jump / w;
+					final float g = gcosts[current] + octile(cx, cy, jx, jy);
+					if (!seen) {
+						visited[jump] = gen;
+						parents[jump] = current;
+						gcosts[jump] = g;
+						fcosts[jump] = g + heuristic.getScore(ex, ey, jx, jy);
+						push(jump);
+					} else if (g < gcosts[jump]) {
+						parents[jump] = current;
+						fcosts[jump] += g - gcosts[jump];
+						gcosts[jump] = g;
+						siftUp(heapIndex[jump]);
+					}
+				}
+			}
+		} finally {
+			this.field = null;
+		}
+		return null;
+	}
+
+	private final static float octile(int x1, int y1, int x2, int y2) {
+		int dx = MathUtils.abs(x2 - x1);
+		int dy = MathUtils.abs(y2 - y1);
+		return dx < dy ? SQRT2 * dx + (dy - dx) : SQRT2 * dy + (dx - dy);
+	}
+
+	private boolean walkable(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return false;
+		}
+		return flying || field.isHit(x, y);
+	}
+
+	private int findNeighbours(int node, int x, int y) {
+		int count = 0;
+		final int[] list = neighbours;
+		final int parent = parents[node];
+		if (parent == -1) {
+			for (int i = 0; i < 8; i++) {
+				int nx = x + OFFSET_X[i];
+				int ny = y + OFFSET_Y[i];
+				if (walkable(nx, ny)) {
+					list[count++] = nx;
+					list[count++] = ny;
+				}
+			}
+			return count;
+		}
+		final int dx = MathUtils.sign(x - (parent % width));
+		final int dy = MathUtils.sign(y - (parent / width));
+		if (dx != 0 && dy != 0) {
+			if (walkable(x, y + dy)) {
+				list[count++] = x;
+				list[count++] = y + dy;
+			}
+			if (walkable(x + dx, y)) {
+				list[count++] = x + dx;
+				list[count++] = y;
+			}
+			if (walkable(x + dx, y + dy)) {
+				list[count++] = x + dx;
+				list[count++] = y + dy;
+			}
+			if (!walkable(x - dx, y)) {
+				list[count++] = x - dx;
+				list[count++] = y + dy;
+			}
+			if (!walkable(x, y - dy)) {
+				list[count++] = x + dx;
+				list[count++] = y - dy;
+			}
+		} else if (dx != 0) {
+			list[count++] = x + dx;
+			list[count++] = y;
+			if (!walkable(x, y + 1)) {
+				list[count++] = x + dx;
+				list[count++] = y + 1;
+			}
+			if (!walkable(x, y - 1)) {
+				list[count++] = x + dx;
+				list[count++] = y - 1;
+			}
+		} else {
+			list[count++] = x;
+			list[count++] = y + dy;
+			if (!walkable(x + 1, y)) {
+				list[count++] = x + 1;
+				list[count++] = y + dy;
+			}
+			if (!walkable(x - 1, y)) {
+				list[count++] = x - 1;
+				list[count++] = y + dy;
+			}
+		}
+		return count;
+	}
+
+	private int jump(int x, int y, int px, int py) {
+		final int dx = x - px;
+		final int dy = y - py;
+		if (dx != 0 && dy != 0) {
+			for (;;) {
+				if (!walkable(x, y)) {
+					return -1;
+				}
+				if (x == goalX && y == goalY) {
+					return y * width + x;
+				}
+				if ((walkable(x - dx, y + dy) && !walkable(x - dx, y))
+						|| (walkable(x + dx, y - dy) && !walkable(x, y - dy))) {
+					return y * width + x;
+				}
+				if (jumpStraight(x + dx, y, dx, 0) != -1
+						|| jumpStraight(x, y + dy, 0, dy) != -1) {
+					return y * width + x;
+				}
+				x += dx;
+				y += dy;
+			}
+		}
+		return jumpStraight(x, y, dx, dy);
+	}
+
+	private int jumpStraight(int x, int y, int dx, int dy) {
+		for (;;) {
+			if (!walkable(x, y)) {
+				return -1;
+			}
+			if (x == goalX && y == goalY) {
+				return y * width + x;
+			}
+			if (dx != 0) {
+				if ((walkable(x + dx, y + 1) && !walkable(x, y + 1))
+						|| (walkable(x + dx, y - 1) && !walkable(x, y - 1))) {
+					return y * width + x;
+				}
+			} else {
+				if ((walkable(x + 1, y + dy) && !walkable(x + 1, y))
+						|| (walkable(x - 1, y + dy) && !walkable(x - 1, y))) {
+					return y * width + x;
+				}
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+
+	private IntArray expandPath(int goal) {
+		jumpPoints.clear();
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			jumpPoints.add(idx);
+		}
+		jumpPoints.reverse();
+		IntArray result = indexPath;
+		int last = jumpPoints.get(0);
+		result.add(last);
+		for (int i = 1; i < jumpPoints.length; i++) {
+			int next = jumpPoints.get(i);
+			int x = last % width;
+			int y = last / width;
+			int tx = next % width;
+			int ty = next / width;
+			int dx = MathUtils.sign(tx - x);
+			int dy = MathUtils.sign(ty - y);
+			while (x != tx || y != ty) {
+				if (x != tx) {
+					x += dx;
+				}
+				if (y != ty) {
+					y += dy;
+				}
+				result.add(y * width + x);
+			}
+			last = next;
+		}
+		return result;
+	}
+
+}
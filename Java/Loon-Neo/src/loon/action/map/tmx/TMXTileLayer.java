@@ -1,9 +1,8 @@
 package loon.action.map.tmx;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import loon.LSystem;
@@ -11,6 +10,7 @@ import loon.action.map.Field2D;
 import loon.action.map.TileMapConfig;
 import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.utils.Base64Coder;
+import loon.utils.IntArray;
 import loon.utils.MathUtils;
 import loon.utils.TArray;
 import loon.utils.xml.XMLElement;
@@ -25,11 +25,36 @@ public class TMXTileLayer extends TMXMapLayer {
 		NONE, GZIP, ZLIB
 	}
 
-	private TMXMapTile[] tileMap;
+	// 图块数据以原始gid(含翻转标记)紧凑存储,不再为每个格子创建对象
+	private int[] tileData;
+
+	// 超过此数量图块的图层,base64与csv数据将按行延迟解码
+	public static int LAZY_DECODE_SIZE = 1024 * 1024;
+
+	private final TMXMapTile tileView = new TMXMapTile(0, 0, -1);
+
+	private volatile int decodedRows;
+
+	private Exception decodeError;
+
+	private InputStream pendingStream;
+
+	private String pendingCSV;
+
+	private int pendingPos;
+
+	private byte[] rowBuffer;
 
 	private Encoding encoding;
 	private Compression compression;
 
+	// 以环形数组记录最近被修改的图块,供渲染器只重建受影响的区块(每个渲染器各自记录已处理的修改次数)
+	private final static int MAX_MODIFIED = 256;
+
+	private final int[] modifiedTiles = new int[MAX_MODIFIED];
+
+	private int modCount;
+
 	public TMXTileLayer(TMXMap map) {
 		super(map, "", 0, 0, map.getWidth(), map.getHeight(), 1.0f, true,
 				TmxLayerType.TILE);
@@ -52,7 +77,9 @@ public class TMXTileLayer extends TMXMapLayer {
 		if (nodes != null)
 			properties.parse(nodes);
 
-		tileMap = new TMXMapTile[width * height];
+		tileData = new int[width * height];
+		decodedRows = 0;
+		decodeError = null;
 
 		XMLElement dataElement = element.getChildrenByName("data");
 
@@ -107,127 +134,323 @@ public class TMXTileLayer extends TMXMapLayer {
 	private void parseXML(XMLElement element) {
 		XMLElement nodes = element.getChildrenByName("tile");
 		TArray<XMLElement> list = nodes.list();
-		for (int tileCount = 0; tileCount < list.size; tileCount++) {
+		int size = MathUtils.min(list.size, tileData.length);
+		for (int tileCount = 0; tileCount < size; tileCount++) {
 			XMLElement tileElement = list.get(tileCount);
+			// 没有gid属性的tile为空图块(0,与Tiled格式一致).旧实现默认取-1,去掉翻转标记后会被当作最后一个图块集中的图块
+			tileData[tileCount] = MathUtils.parseUnsignedInt(tileElement
+					.getAttribute("gid", "0"));
+		}
+		decodedRows = height;
+	}
 
-			int gid = MathUtils.parseUnsignedInt(tileElement.getAttribute(
-					"gid", "-1"));
-
-			int tileSetIndex = map.findTileSetIndex(gid);
-
-			if (tileSetIndex != -1) {
-				TMXTileSet tileSet = map.getTileset(tileSetIndex);
-				tileMap[tileCount] = new TMXMapTile(gid, tileSet.getFirstGID(),
-						tileSetIndex);
-			} else
-				tileMap[tileCount] = new TMXMapTile(gid, 0, -1);
+	private void parseBase64(String base64) throws Exception {
+		pendingStream = openStream(base64, compression);
+		if (tileData.length <= LAZY_DECODE_SIZE) {
+			decodeRows(height);
 		}
 	}
 
-	private static int byteToInt(byte b) {
-		return b & 0xFF;
+	private void parseCSV(String csv) {
+		pendingCSV = csv;
+		pendingPos = 0;
+		if (tileData.length <= LAZY_DECODE_SIZE) {
+			decodeRows(height);
+		}
 	}
 
-	private void parseBase64(String base64) throws Exception {
-		byte[] bytes = Base64Coder.decodeBase64(base64.toCharArray());
-		InputStream is = null;
-		if (compression == null || compression == Compression.NONE) {
-			is = new ByteArrayInputStream(bytes);
-		} else if (compression == Compression.GZIP) {
-			is = new BufferedInputStream(new GZIPInputStream(
-					new ByteArrayInputStream(bytes), bytes.length));
+	/**
+	 * 打开base64(可能经过gzip或zlib压缩)图块数据的解码流,解码过程中不产生中间字符串或字节数组
+	 * 
+	 * @param base64
+	 * @param compression
+	 * @return
+	 * @throws Exception
+	 */
+	public static InputStream openStream(CharSequence base64,
+			Compression compression) throws Exception {
+		InputStream is = Base64Coder.decodeStream(base64);
+		if (compression == Compression.GZIP) {
+			is = new GZIPInputStream(is, 4096);
 		} else if (compression == Compression.ZLIB) {
-			is = new BufferedInputStream(new InflaterInputStream(
-					new ByteArrayInputStream(bytes)));
+			is = new InflaterInputStream(is, new Inflater(), 4096);
 		}
-		byte[] temp = new byte[4];
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				int read = is.read(temp);
-				while (read < temp.length) {
-					int curr = is.read(temp, read, temp.length - read);
-					if (curr == -1)
-						break;
-					read += curr;
+		return is;
+	}
+
+	/**
+	 * 从解码流中读取count个小端序gid到out中
+	 * 
+	 * @param is
+	 * @param out
+	 * @param offset
+	 * @param count
+	 * @param buffer
+	 *            至少count*4字节的缓存
+	 * @throws Exception
+	 */
+	public static void readTiles(InputStream is, int[] out, int offset,
+			int count, byte[] buffer) throws Exception {
+		final int size = count * 4;
+		int read = 0;
+		while (read < size) {
+			int curr = is.read(buffer, read, size - read);
+			if (curr == -1) {
+				break;
+			}
+			read += curr;
+		}
+		if (read != size) {
+			throw LSystem
+					.runThrow("Error Reading TMX Layer Data: Premature end of tile data");
+		}
+		for (int i = 0, j = 0; i < count; i++, j += 4) {
+			out[offset + i] = (buffer[j] & 0xFF) | (buffer[j + 1] & 0xFF) << 8
+					| (buffer[j + 2] & 0xFF) << 16 | (buffer[j + 3] & 0xFF) << 24;
+		}
+	}
+
+	/**
+	 * 从csv文本的pos处开始,直接解析count个gid到out中,返回解析结束的位置
+	 * 
+	 * @param csv
+	 * @param pos
+	 * @param out
+	 * @param offset
+	 * @param count
+	 * @return
+	 */
+	public static int readTiles(String csv, int pos, int[] out, int offset,
+			int count) {
+		final int len = csv.length();
+		for (int i = 0; i < count; i++) {
+			while (pos < len) {
+				char ch = csv.charAt(pos);
+				if (ch >= '0' && ch <= '9') {
+					break;
 				}
-				if (read != temp.length) {
-					throw LSystem.runThrow(
-							"Error Reading TMX Layer Data: Premature end of tile data");
+				pos++;
+			}
+			long value = 0;
+			while (pos < len) {
+				char ch = csv.charAt(pos);
+				if (ch < '0' || ch > '9') {
+					break;
 				}
-				int gid = byteToInt(temp[0]) | byteToInt(temp[1]) << 8
-						| byteToInt(temp[2]) << 16 | byteToInt(temp[3]) << 24;
-
-				int tileSetIndex = map.findTileSetIndex(gid);
+				value = value * 10 + (ch - '0');
+				pos++;
+			}
+			out[offset + i] = (int) value;
+		}
+		return pos;
+	}
 
-				if (tileSetIndex != -1) {
-					TMXTileSet tileSet = map.getTileset(tileSetIndex);
-					tileMap[y * width + x] = new TMXMapTile(gid,
-							tileSet.getFirstGID(), tileSetIndex);
-				} else {
-					tileMap[y * width + x] = new TMXMapTile(gid, 0, -1);
+	/**
+	 * 确保前rows行已经解码(延迟解码时按行推进,压缩数据只能顺序解压)
+	 * 
+	 * @param rows
+	 */
+	private void decodeRows(int rows) {
+		if (rows > height) {
+			rows = height;
+		}
+		if (rows <= decodedRows) {
+			return;
+		}
+		synchronized (this) {
+			if (rows <= decodedRows) {
+				return;
+			}
+			if (decodeError != null) {
+				throw LSystem.runThrow("Error Reading TMX Layer Data: "
+						+ decodeError.getMessage(), decodeError);
+			}
+			// 一次至少解码16行,避免逐行推进的开销
+			if (rows < height) {
+				rows = MathUtils.min(height, MathUtils.max(rows, decodedRows + 16));
+			}
+			int offset = decodedRows * width;
+			int count = (rows - decodedRows) * width;
+			try {
+				if (pendingStream != null) {
+					if (rowBuffer == null || rowBuffer.length < width * 64) {
+						rowBuffer = new byte[width * 64];
+					}
+					int step = rowBuffer.length / 4;
+					for (int i = 0; i < count; i += step) {
+						readTiles(pendingStream, tileData, offset + i,
+								MathUtils.min(step, count - i), rowBuffer);
+					}
+				} else if (pendingCSV != null) {
+					pendingPos = readTiles(pendingCSV, pendingPos, tileData,
+							offset, count);
 				}
+			} catch (Exception e) {
+				// 解码失败后图层不再推进,之后每次访问未解码的行都会抛出同一错误
+				decodeError = e;
+				closePending();
+				throw LSystem.runThrow("Error Reading TMX Layer Data: "
+						+ e.getMessage(), e);
+			}
+			decodedRows = rows;
+			if (decodedRows >= height) {
+				closePending();
 			}
 		}
 	}
 
-	private void parseCSV(String csv) {
-		String[] tokens = csv.split(",");
-		int tileCount = 0;
+	private void closePending() {
+		if (pendingStream != null) {
+			try {
+				pendingStream.close();
+			} catch (Exception e) {
+			}
+			pendingStream = null;
+		}
+		pendingCSV = null;
+		pendingPos = 0;
+		rowBuffer = null;
+	}
 
-		for (String token : tokens) {
-			int gid = MathUtils.parseUnsignedInt(token.trim());
+	/**
+	 * 确保指定区域的图块已解码(延迟解码模式下使用,数据按行顺序解码)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void decodeRegion(int x, int y, int w, int h) {
+		decodeRows(y + h);
+	}
 
-			int tileSetIndex = map.findTileSetIndex(gid);
+	/**
+	 * 延迟解码时图块数据是否已损坏
+	 * 
+	 * @return
+	 */
+	public boolean isDecodeFailed() {
+		return decodeError != null;
+	}
 
-			if (tileSetIndex != -1) {
-				TMXTileSet tileSet = map.getTileset(tileSetIndex);
-				tileMap[tileCount] = new TMXMapTile(gid, tileSet.getFirstGID(),
-						tileSetIndex);
-			} else {
-				tileMap[tileCount] = new TMXMapTile(gid, 0, -1);
-			}
+	public void decodeAll() {
+		decodeRows(height);
+	}
+
+	public boolean isDecoded() {
+		return decodedRows >= height;
+	}
+
+	public int getDecodedRows() {
+		return decodedRows;
+	}
 
-			tileCount++;
+	private int index(int x, int y) {
+		if (y >= decodedRows) {
+			decodeRows(y + 1);
 		}
+		return y * width + x;
 	}
 
 	public void setTileGID(int x, int y, int gid) {
-		int tileSetIndex = map.findTileSetIndex(gid);
-		if (tileSetIndex != -1) {
-			TMXTileSet tileSet = map.getTileset(tileSetIndex);
-			tileMap[y * width + x] = new TMXMapTile(gid, tileSet.getFirstGID(),
-					tileSetIndex);
-		} else {
-			tileMap[y * width + x] = new TMXMapTile(gid, 0, -1);
+		tileData[index(x, y)] = gid;
+		modified(y * width + x);
+	}
+
+	private void modified(int index) {
+		modifiedTiles[modCount & (MAX_MODIFIED - 1)] = index;
+		modCount++;
+	}
+
+	/**
+	 * 图块数据的修改次数
+	 * 
+	 * @return
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * 获得修改次数从sinceModCount至今被修改的图块索引(y * width + x),不改变图层状态,
+	 * 因此多个渲染器可以各自记录已处理的修改次数.返回false时表示修改过多已无法逐个列出,应视为整个图层都已变化
+	 * 
+	 * @param sinceModCount
+	 * @param out
+	 * @return
+	 */
+	public boolean getModifiedTiles(int sinceModCount, IntArray out) {
+		final int count = modCount - sinceModCount;
+		if (count < 0 || count > MAX_MODIFIED) {
+			return false;
 		}
+		for (int i = sinceModCount; i != modCount; i++) {
+			out.add(modifiedTiles[i & (MAX_MODIFIED - 1)]);
+		}
+		return true;
+	}
+
+	/**
+	 * 返回含翻转标记的原始gid
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getRawTileGID(int x, int y) {
+		return tileData[index(x, y)];
+	}
+
+	/**
+	 * 返回图层的原始gid数组(含翻转标记,按y * width + x排列),延迟解码时会先解码全部数据
+	 * 
+	 * @return
+	 */
+	public int[] getTileData() {
+		decodeAll();
+		return tileData;
 	}
 
 	public int getTileID(int x, int y) {
-		return tileMap[y * width + x].getID();
+		return getTile(x, y).getID();
 	}
 
 	public int getTileGID(int x, int y) {
-		return tileMap[y * width + x].getGID();
+		return (int) (getRawTileGID(x, y) & ~(TMXMap.FLIPPED_HORIZONTALLY_FLAG
+				| TMXMap.FLIPPED_VERTICALLY_FLAG | TMXMap.FLIPPED_DIAGONALLY_FLAG));
 	}
 
 	public int getTileTileSetIndex(int x, int y) {
-		return tileMap[y * width + x].getTileSetID();
+		return map.findTileSetIndex(getRawTileGID(x, y));
 	}
 
 	public boolean isTileFlippedHorizontally(int x, int y) {
-		return tileMap[y * width + x].isFlippedHorizontally();
+		return (getRawTileGID(x, y) & TMXMap.FLIPPED_HORIZONTALLY_FLAG) != 0;
 	}
 
 	public boolean isTileFlippedVertically(int x, int y) {
-		return tileMap[y * width + x].isFlippedVertically();
+		return (getRawTileGID(x, y) & TMXMap.FLIPPED_VERTICALLY_FLAG) != 0;
 	}
 
 	public boolean isTileFlippedDiagonally(int x, int y) {
-		return tileMap[y * width + x].isFlippedDiagonally();
+		return (getRawTileGID(x, y) & TMXMap.FLIPPED_DIAGONALLY_FLAG) != 0;
 	}
 
+	/**
+	 * 获得指定位置的图块视图,返回的对象会被复用,需要保存时请自行复制
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
 	public TMXMapTile getTile(int x, int y) {
-		return tileMap[y * width + x];
+		int gid = getRawTileGID(x, y);
+		int tileSetIndex = map.findTileSetIndex(gid);
+		if (tileSetIndex != -1) {
+			return tileView.set(gid, map.getTileset(tileSetIndex).getFirstGID(),
+					tileSetIndex);
+		}
+		return tileView.set(gid, 0, -1);
 	}
 
 	public Encoding getEncoding() {
@@ -251,18 +474,20 @@ public class TMXTileLayer extends TMXMapLayer {
 	}
 
 	private Field2D newField2D(int mode) {
+		decodeAll();
 		int[][] tmp = new int[width][height];
 		for (int x = 0; x < width; x++) {
 			for (int y = 0; y < height; y++) {
+				TMXMapTile tile = getTile(x, y);
 				switch (mode) {
 				case 0:
-					tmp[x][y] = tileMap[y * width + x].getGID();
+					tmp[x][y] = tile.getGID();
 					break;
 				case 1:
-					tmp[x][y] = tileMap[y * width + x].getTileSetID();
+					tmp[x][y] = tile.getTileSetID();
 					break;
 				default:
-					tmp[x][y] = tileMap[y * width + x].getID();
+					tmp[x][y] = tile.getID();
 					break;
 				}
 			}
@@ -9,6 +9,7 @@ import loon.action.map.tmx.TMXTileLayer;
 import loon.action.map.tmx.TMXTileSet;
 import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
+import loon.geom.Vector2f;
 import loon.opengl.BlendState;
 import loon.opengl.GLEx;
 import loon.utils.MathUtils;
@@ -19,6 +20,16 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 		super(map);
 	}
 
+	@Override
+	protected void tileToLayer(int x, int y, float tileWidth,
+			float tileHeight, Vector2f out) {
+		float nx = x;
+		if (y % 2 == 1) {
+			nx = x + 0.5f;
+		}
+		out.set(nx * tileWidth * 0.75f, y * tileWidth * 0.5f);
+	}
+
 	@Override
 	protected void renderImageLayer(GLEx g, TMXImageLayer imageLayer) {
 		if (!imageLayer.isVisible()) {
@@ -48,6 +59,10 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 	@Override
 	protected void renderTileLayer(GLEx g, TMXTileLayer tileLayer) {
 		synchronized (this) {
+			if (chunked) {
+				renderTileChunks(g, tileLayer);
+				return;
+			}
 			if (!tileLayer.isVisible()) {
 				return;
 			}
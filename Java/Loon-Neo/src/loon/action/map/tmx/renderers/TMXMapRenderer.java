@@ -3,6 +3,8 @@ package loon.action.map.tmx.renderers;
 import loon.LObject;
 import loon.LSystem;
 import loon.LTexture;
+import loon.LTextureBatch;
+import loon.LTextureBatch.Cache;
 import loon.LTextures;
 import loon.action.map.Field2D;
 import loon.action.map.tmx.TMXImageLayer;
@@ -11,12 +13,18 @@ import loon.action.map.tmx.TMXMapLayer;
 import loon.action.map.tmx.TMXTileLayer;
 import loon.action.map.tmx.TMXTileSet;
 import loon.action.map.tmx.tiles.TMXAnimationFrame;
+import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
 import loon.action.sprite.ISprite;
 import loon.canvas.LColor;
 import loon.geom.RectBox;
+import loon.geom.Vector2f;
+import loon.opengl.BlendState;
 import loon.opengl.GLEx;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
+import loon.utils.TArray;
 import loon.utils.TimeUtils;
 
 public abstract class TMXMapRenderer extends LObject<ISprite> implements 
@@ -30,6 +38,7 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements
 
 		private int currentFrameIndex;
 		private float elapsedDuration;
+		private int version;
 
 		public TileAnimator(TMXTile tile) {
 			this.tile = tile;
@@ -46,16 +55,505 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements
 				currentFrameIndex = (currentFrameIndex + 1)
 						% tile.getFrames().size;
 				elapsedDuration = 0;
+				version++;
 			}
 		}
 
+		public int getVersion() {
+			return version;
+		}
+
 		public TMXAnimationFrame getCurrentFrame() {
 			return tile.getFrames().get(currentFrameIndex);
 		}
 	}
 
+	/**
+	 * 图层中一块固定大小的区域,按图块集纹理分别缓存静态顶点
+	 */
+	protected static class TileChunk {
+
+		int startX, startY, endX, endY;
+
+		float minX, minY, maxX, maxY;
+
+		boolean dirty = true;
+
+		LTexture[] textures;
+
+		Cache[] caches;
+
+		int cacheCount;
+
+		TArray<TileAnimator> animators;
+
+		int animVersion;
+
+		int lastVisible;
+
+		int animVersion() {
+			int v = 0;
+			if (animators != null) {
+				for (int i = 0; i < animators.size; i++) {
+					v += animators.get(i).getVersion();
+				}
+			}
+			return v;
+		}
+
+		void free() {
+			for (int i = 0; i < cacheCount; i++) {
+				if (caches[i] != null) {
+					caches[i].close();
+					caches[i] = null;
+				}
+				textures[i] = null;
+			}
+			cacheCount = 0;
+			dirty = true;
+		}
+	}
+
+	protected static class TileChunkLayer {
+
+		int cols, rows;
+
+		int modCount;
+
+		TileChunk[] chunks;
+
+		void free() {
+			for (TileChunk chunk : chunks) {
+				chunk.free();
+			}
+		}
+	}
+
+	protected boolean chunked = true;
+
+	protected int chunkSize = 16;
+
+	// 区块连续多少帧不可见后释放其缓存
+	protected int chunkKeepFrames = 120;
+
+	private int chunkFrame;
+
+	private int visibleChunks;
+
+	private int chunkRebuilds;
+
+	private ObjectMap<TMXTileLayer, TileChunkLayer> chunkLayers = new ObjectMap<TMXTileLayer, TileChunkLayer>();
+
+	private ObjectMap<String, LTextureBatch> chunkBatches = new ObjectMap<String, LTextureBatch>();
+
+	private Vector2f chunkTemp = new Vector2f();
+
+	private final IntArray modifiedTemp = new IntArray();
+
+	private float viewMinX, viewMinY, viewMaxX, viewMaxY;
+
 	protected abstract void renderTileLayer(GLEx gl, TMXTileLayer tileLayer);
 
+	/**
+	 * 图块左上角在图层本地坐标中的位置(不含地图位置、缩放与旋转)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param tileWidth
+	 * @param tileHeight
+	 * @param out
+	 */
+	protected abstract void tileToLayer(int x, int y, float tileWidth,
+			float tileHeight, Vector2f out);
+
+	/**
+	 * 区块绘制时图块是否使用图块集自身的大小(否则使用地图的图块大小)
+	 * 
+	 * @return
+	 */
+	protected boolean chunkTileSetSize() {
+		return true;
+	}
+
+	protected float chunkUVCorrection() {
+		return 0.2f;
+	}
+
+	/**
+	 * 按区块渲染图块层,只绘制与屏幕相交的区块,区块中的图块或动画帧变化时才重建其顶点缓存
+	 * 
+	 * @param g
+	 * @param tileLayer
+	 */
+	protected void renderTileChunks(GLEx g, TMXTileLayer tileLayer) {
+		if (!tileLayer.isVisible()) {
+			return;
+		}
+		float opacity = tileLayer.getOpacity();
+		if (opacity <= 0f) {
+			return;
+		}
+		if (opacity > 1f) {
+			opacity = 1f;
+		}
+		TileChunkLayer layer = chunkLayers.get(tileLayer);
+		if (layer == null) {
+			layer = createChunkLayer(tileLayer);
+			chunkLayers.put(tileLayer, layer);
+		}
+		if (layer.modCount != tileLayer.getModCount()) {
+			IntArray list = modifiedTemp;
+			list.clear();
+			if (!tileLayer.getModifiedTiles(layer.modCount, list)) {
+				for (TileChunk chunk : layer.chunks) {
+					chunk.dirty = true;
+				}
+			} else {
+				for (int i = 0; i < list.length; i++) {
+					int index = list.get(i);
+					int cx = (index % tileLayer.getWidth()) / chunkSize;
+					int cy = (index / tileLayer.getWidth()) / chunkSize;
+					layer.chunks[cy * layer.cols + cx].dirty = true;
+				}
+			}
+			layer.modCount = tileLayer.getModCount();
+		}
+		chunkFrame++;
+		updateChunkView();
+
+		final float ox = _location.x * scaleX;
+		final float oy = _location.y * scaleY;
+		final float ax = getWidth() / 2;
+		final float ay = getHeight() / 2;
+
+		float tmpAlpha = baseColor.a;
+		baseColor.a *= opacity;
+		try {
+			for (TileChunk chunk : layer.chunks) {
+				if (chunk.maxX < viewMinX || chunk.minX > viewMaxX
+						|| chunk.maxY < viewMinY || chunk.minY > viewMaxY) {
+					if (chunk.cacheCount > 0
+							&& chunkFrame - chunk.lastVisible > chunkKeepFrames) {
+						chunk.free();
+					}
+					continue;
+				}
+				chunk.lastVisible = chunkFrame;
+				visibleChunks++;
+				if (!chunk.dirty && chunk.animators != null
+						&& chunk.animVersion != chunk.animVersion()) {
+					chunk.dirty = true;
+				}
+				if (chunk.dirty) {
+					buildChunk(tileLayer, chunk, ox, oy, ax, ay);
+					continue;
+				}
+				for (int i = 0; i < chunk.cacheCount; i++) {
+					LTextureBatch batch = chunkBatch(chunk.textures[i]);
+					batch.postCache(chunk.caches[i], baseColor, ox, oy,
+							scaleX, scaleY, ax, ay, _rotation);
+				}
+			}
+		} finally {
+			baseColor.a = tmpAlpha;
+		}
+	}
+
+	private TileChunkLayer createChunkLayer(TMXTileLayer tileLayer) {
+		TileChunkLayer layer = new TileChunkLayer();
+		int width = tileLayer.getWidth();
+		int height = tileLayer.getHeight();
+		layer.cols = (width + chunkSize - 1) / chunkSize;
+		layer.rows = (height + chunkSize - 1) / chunkSize;
+		layer.chunks = new TileChunk[layer.cols * layer.rows];
+		layer.modCount = tileLayer.getModCount();
+		float tileWidth = map.getTileWidth();
+		float tileHeight = map.getTileHeight();
+		if (chunkTileSetSize()) {
+			for (TMXTileSet tileSet : map.getTileSets()) {
+				tileWidth = MathUtils.max(tileWidth, tileSet.getTileWidth());
+				tileHeight = MathUtils.max(tileHeight, tileSet.getTileHeight());
+			}
+		}
+		for (int cy = 0; cy < layer.rows; cy++) {
+			for (int cx = 0; cx < layer.cols; cx++) {
+				TileChunk chunk = new TileChunk();
+				chunk.startX = cx * chunkSize;
+				chunk.startY = cy * chunkSize;
+				chunk.endX = MathUtils.min(chunk.startX + chunkSize, width);
+				chunk.endY = MathUtils.min(chunk.startY + chunkSize, height);
+				chunk.minX = chunk.minY = Float.MAX_VALUE;
+				chunk.maxX = chunk.maxY = -Float.MAX_VALUE;
+				for (int x = chunk.startX; x < chunk.endX; x++) {
+					for (int y = chunk.startY; y < chunk.endY; y++) {
+						tileToLayer(x, y, tileWidth, tileHeight, chunkTemp);
+						chunk.minX = MathUtils.min(chunk.minX, chunkTemp.x);
+						chunk.minY = MathUtils.min(chunk.minY, chunkTemp.y);
+						chunk.maxX = MathUtils.max(chunk.maxX, chunkTemp.x
+								+ tileWidth);
+						chunk.maxY = MathUtils.max(chunk.maxY, chunkTemp.y
+								+ tileHeight);
+					}
+				}
+				layer.chunks[cy * layer.cols + cx] = chunk;
+			}
+		}
+		return layer;
+	}
+
+	/**
+	 * 将屏幕范围换算到图层本地坐标
+	 */
+	private void updateChunkView() {
+		final float w = LSystem.viewSize.getWidth();
+		final float h = LSystem.viewSize.getHeight();
+		viewMinX = viewMinY = Float.MAX_VALUE;
+		viewMaxX = viewMaxY = -Float.MAX_VALUE;
+		viewToLayer(0, 0);
+		viewToLayer(w, 0);
+		viewToLayer(0, h);
+		viewToLayer(w, h);
+	}
+
+	private void viewToLayer(float sx, float sy) {
+		float lx = (sx - _location.x * scaleX) / scaleX;
+		float ly = (sy - _location.y * scaleY) / scaleY;
+		if (_rotation != 0) {
+			float ax = getWidth() / 2;
+			float ay = getHeight() / 2;
+			float cos = MathUtils.cosDeg(-_rotation);
+			float sin = MathUtils.sinDeg(-_rotation);
+			float dx = lx - ax;
+			float dy = ly - ay;
+			lx = cos * dx - sin * dy + ax;
+			ly = sin * dx + cos * dy + ay;
+		}
+		viewMinX = MathUtils.min(viewMinX, lx);
+		viewMinY = MathUtils.min(viewMinY, ly);
+		viewMaxX = MathUtils.max(viewMaxX, lx);
+		viewMaxY = MathUtils.max(viewMaxY, ly);
+	}
+
+	private LTextureBatch chunkBatch(LTexture texture) {
+		LTextureBatch batch = chunkBatches.get(texture.getSource());
+		if (batch == null) {
+			batch = new LTextureBatch(texture, MathUtils.min(chunkSize
+					* chunkSize, 5460));
+			batch.setBlendState(BlendState.AlphaBlend);
+			chunkBatches.put(texture.getSource(), batch);
+		}
+		return batch;
+	}
+
+	private void buildChunk(TMXTileLayer tileLayer, TileChunk chunk, float ox,
+			float oy, float ax, float ay) {
+		chunk.free();
+		if (chunk.animators != null) {
+			chunk.animators.clear();
+		}
+		chunkRebuilds++;
+		int tileSetCount = map.getNumTileSets();
+		if (chunk.textures == null || chunk.textures.length < tileSetCount) {
+			chunk.textures = new LTexture[tileSetCount];
+			chunk.caches = new Cache[tileSetCount];
+		}
+		for (int index = 0; index < tileSetCount; index++) {
+			TMXTileSet tileSet = map.getTileset(index);
+			LTexture texture = textureMap.get(tileSet.getImage().getSource());
+			LTextureBatch batch = null;
+			for (int x = chunk.startX; x < chunk.endX; x++) {
+				for (int y = chunk.startY; y < chunk.endY; y++) {
+					TMXMapTile mapTile = tileLayer.getTile(x, y);
+					if (mapTile == null || mapTile.getTileSetID() != index) {
+						continue;
+					}
+					if (batch == null) {
+						batch = chunkBatch(texture);
+						batch.begin();
+						batch.setBlendState(BlendState.AlphaBlend);
+						batch.setColor(baseColor);
+					}
+					TMXTile tile = tileSet.getTile(mapTile.getGID()
+							- tileSet.getFirstGID());
+					int tileID = mapTile.getGID() - tileSet.getFirstGID();
+					if (tile != null && tile.isAnimated()) {
+						TileAnimator animator = tileAnimators.get(tile);
+						tileID = animator.getCurrentFrame().getTileID();
+						if (chunk.animators == null) {
+							chunk.animators = new TArray<TileAnimator>();
+						}
+						if (!chunk.animators.contains(animator)) {
+							chunk.animators.add(animator);
+						}
+					}
+					addChunkTile(batch, texture, tileSet, mapTile, tileID, x,
+							y);
+				}
+			}
+			if (batch != null) {
+				batch.commit(ox, oy, scaleX, scaleY, ax, ay, _rotation);
+				chunk.textures[chunk.cacheCount] = texture;
+				chunk.caches[chunk.cacheCount] = batch.newCache();
+				chunk.cacheCount++;
+			}
+		}
+		chunk.animVersion = chunk.animVersion();
+		chunk.dirty = false;
+	}
+
+	private void addChunkTile(LTextureBatch batch, LTexture texture,
+			TMXTileSet tileSet, TMXMapTile mapTile, int tileID, int x, int y) {
+		float tileWidth = chunkTileSetSize() ? tileSet.getTileWidth() : map
+				.getTileWidth();
+		float tileHeight = chunkTileSetSize() ? tileSet.getTileHeight() : map
+				.getTileHeight();
+
+		int numColsPerRow = tileSet.getImage().getWidth()
+				/ tileSet.getTileWidth();
+
+		int tileSetCol = tileID % numColsPerRow;
+		int tileSetRow = tileID / numColsPerRow;
+
+		float srcX = (tileSet.getMargin() + (tileSet.getTileWidth() + tileSet
+				.getSpacing()) * tileSetCol);
+		float srcY = (tileSet.getMargin() + (tileSet.getTileHeight() + tileSet
+				.getSpacing()) * tileSetRow);
+		float srcWidth = srcX + tileWidth;
+		float srcHeight = srcY + tileHeight;
+
+		float xOff = srcX * batch.getInvTexWidth() + texture.xOff;
+		float widthRatio = srcWidth * batch.getInvTexWidth();
+		float yOff = srcY * batch.getInvTexHeight() + texture.yOff;
+		float heightRatio = srcHeight * batch.getInvTexHeight();
+
+		boolean flipX = mapTile.isFlippedHorizontally();
+		boolean flipY = mapTile.isFlippedVertically();
+		boolean flipZ = mapTile.isFlippedDiagonally();
+
+		if (flipZ) {
+			flipX = !flipX;
+			flipY = !flipY;
+		}
+
+		if (flipX) {
+			float temp = xOff;
+			xOff = widthRatio;
+			widthRatio = temp;
+		}
+
+		if (flipY) {
+			float temp = yOff;
+			yOff = heightRatio;
+			heightRatio = temp;
+		}
+
+		float uvCorrectionX = (chunkUVCorrection() / tileSet.getImage()
+				.getWidth());
+		float uvCorrectionY = (chunkUVCorrection() / tileSet.getImage()
+				.getHeight());
+
+		tileToLayer(x, y, tileWidth, tileHeight, chunkTemp);
+		float posX = chunkTemp.x;
+		float posY = chunkTemp.y;
+
+		batch.glVertex2f(posX, posY);
+		batch.glColor4f();
+		batch.glTexCoord2f(xOff + uvCorrectionX, yOff + uvCorrectionY);
+
+		batch.glVertex2f(flipZ ? posX + tileWidth : posX, flipZ ? posY : posY
+				+ tileHeight);
+		batch.glColor4f();
+		batch.glTexCoord2f(xOff + uvCorrectionX, heightRatio - uvCorrectionY);
+
+		batch.glVertex2f(posX + tileWidth, posY + tileHeight);
+		batch.glColor4f();
+		batch.glTexCoord2f(widthRatio - uvCorrectionX, heightRatio
+				- uvCorrectionY);
+
+		batch.glVertex2f(flipZ ? posX : posX + tileWidth, flipZ ? posY
+				+ tileHeight : posY);
+		batch.glColor4f();
+		batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff + uvCorrectionY);
+	}
+
+	/**
+	 * 是否按区块缓存渲染图块层(默认开启),关闭后使用逐帧遍历图块的旧方式
+	 * 
+	 * @param c
+	 */
+	public void setChunked(boolean c) {
+		this.chunked = c;
+	}
+
+	public boolean isChunked() {
+		return chunked;
+	}
+
+	/**
+	 * 设定区块边长(以图块计),修改后所有区块重新生成
+	 * 
+	 * @param size
+	 */
+	public void setChunkSize(int size) {
+		size = MathUtils.max(1, MathUtils.min(size, 73));
+		if (size != chunkSize) {
+			chunkSize = size;
+			freeChunks();
+			for (LTextureBatch batch : chunkBatches.values()) {
+				batch.close();
+			}
+			chunkBatches.clear();
+		}
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * 标记全部区块需要重建(例如修改了图块集或纹理之后)
+	 */
+	public void invalidateChunks() {
+		for (TileChunkLayer layer : chunkLayers.values()) {
+			for (TileChunk chunk : layer.chunks) {
+				chunk.dirty = true;
+			}
+		}
+	}
+
+	public void freeChunks() {
+		for (TileChunkLayer layer : chunkLayers.values()) {
+			layer.free();
+		}
+		chunkLayers.clear();
+	}
+
+	public int getChunkCount() {
+		int count = 0;
+		for (TileChunkLayer layer : chunkLayers.values()) {
+			count += layer.chunks.length;
+		}
+		return count;
+	}
+
+	/**
+	 * 上一帧绘制的区块数
+	 * 
+	 * @return
+	 */
+	public int getVisibleChunkCount() {
+		return visibleChunks;
+	}
+
+	/**
+	 * 累计的区块重建次数
+	 * 
+	 * @return
+	 */
+	public int getChunkRebuildCount() {
+		return chunkRebuilds;
+	}
+
 	protected abstract void renderImageLayer(GLEx gl, TMXImageLayer imageLayer);
 
 	protected TMXMap map;
@@ -101,6 +599,10 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements
 			return new TMXIsometricMapRenderer(map);
 		case ORTHOGONAL:
 			return new TMXOrthogonalMapRenderer(map);
+		case STAGGERED:
+			return new TMXStaggeredMapRenderer(map);
+		case HEXAGONAL:
+			return new TMXHexagonalMapRenderer(map);
 		default:
 			break;
 		}
@@ -197,6 +699,7 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements
 		baseColor.a = _alpha;
 		g.setColor(baseColor);
 		renderBackgroundColor(g);
+		visibleChunks = 0;
 		float ox = getX();
 		float oy = getY();
 		setLocation(ox + offsetX, oy + offsetY);
@@ -223,6 +726,7 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements
 		baseColor.a = _alpha;
 		g.setColor(baseColor);
 		renderBackgroundColor(g);
+		visibleChunks = 0;
 		for (TMXMapLayer mapLayer : map.getLayers()) {
 			if (mapLayer instanceof TMXTileLayer) {
 				renderTileLayer(g, (TMXTileLayer) mapLayer);
@@ -304,6 +808,11 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements
 	@Override
 	public void close() {
 		visible = false;
+		freeChunks();
+		for (LTextureBatch batch : chunkBatches.values()) {
+			batch.close();
+		}
+		chunkBatches.clear();
 		if (textureMap != null) {
 			textureMap.clear();
 		}
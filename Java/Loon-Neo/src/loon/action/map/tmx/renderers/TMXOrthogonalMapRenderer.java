@@ -9,6 +9,7 @@ import loon.action.map.tmx.TMXTileLayer;
 import loon.action.map.tmx.TMXTileSet;
 import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
+import loon.geom.Vector2f;
 import loon.opengl.BlendState;
 import loon.opengl.GLEx;
 import loon.utils.MathUtils;
@@ -19,6 +20,17 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 		super(map);
 	}
 
+	@Override
+	protected void tileToLayer(int x, int y, float tileWidth,
+			float tileHeight, Vector2f out) {
+		out.set(x * map.getTileWidth(), y * map.getTileHeight());
+	}
+
+	@Override
+	protected boolean chunkTileSetSize() {
+		return false;
+	}
+
 	protected void renderImageLayer(GLEx g, TMXImageLayer imageLayer) {
 		if (!imageLayer.isVisible()) {
 			return;
@@ -42,6 +54,10 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 
 	protected void renderTileLayer(GLEx g, TMXTileLayer tileLayer) {
 		synchronized (this) {
+			if (chunked) {
+				renderTileChunks(g, tileLayer);
+				return;
+			}
 			if (!tileLayer.isVisible()) {
 				return;
 			}
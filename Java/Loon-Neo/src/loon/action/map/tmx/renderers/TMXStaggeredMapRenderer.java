@@ -27,6 +27,19 @@ public class TMXStaggeredMapRenderer extends TMXMapRenderer {
 		return tempVector.addSelf(map.getWidth() * map.getTileWidth() / 2, 0);
 	}
 
+	@Override
+	protected void tileToLayer(int x, int y, float tileWidth,
+			float tileHeight, Vector2f out) {
+		out.set((x - y) * map.getTileWidth() / 2 + map.getWidth()
+				* map.getTileWidth() / 2 - tileWidth / 2, (x + y)
+				* map.getTileHeight() / 2);
+	}
+
+	@Override
+	protected float chunkUVCorrection() {
+		return 0.5f;
+	}
+
 	@Override
 	protected void renderImageLayer(GLEx g, TMXImageLayer imageLayer) {
 		if (!imageLayer.isVisible()) {
@@ -56,6 +69,10 @@ public class TMXStaggeredMapRenderer extends TMXMapRenderer {
 	@Override
 	protected void renderTileLayer(GLEx g, TMXTileLayer tileLayer) {
 		synchronized (this) {
+			if (chunked) {
+				renderTileChunks(g, tileLayer);
+				return;
+			}
 			if (!tileLayer.isVisible()) {
 				return;
 			}
@@ -15,7 +15,21 @@ public class TMXMapTile
 
     public TMXMapTile(int gid, int tileSetFirstID, int tileSetID)
     {
+        set(gid, tileSetFirstID, tileSetID);
+    }
 
+    /**
+     * 重设图块数据(TMXTileLayer.getTile返回的图块会被复用)
+     * 
+     * id为去掉翻转标记后的gid减去图块集的firstGID,旧实现直接用原始gid计算,翻转过的图块id会是错误的负数
+     * 
+     * @param gid 含翻转标记的原始gid
+     * @param tileSetFirstID
+     * @param tileSetID
+     * @return
+     */
+    public TMXMapTile set(int gid, int tileSetFirstID, int tileSetID)
+    {
         this.tileSetID = tileSetID;
 
         flippedHorizontally = (gid & TMXMap.FLIPPED_HORIZONTALLY_FLAG) != 0;
@@ -23,7 +37,8 @@ public class TMXMapTile
         flippedDiagonally = (gid & TMXMap.FLIPPED_DIAGONALLY_FLAG) != 0;
 
         this.gid = (int) (gid & ~(TMXMap.FLIPPED_HORIZONTALLY_FLAG | TMXMap.FLIPPED_VERTICALLY_FLAG | TMXMap.FLIPPED_DIAGONALLY_FLAG));
-        this.id = gid - tileSetFirstID;
+        this.id = this.gid - tileSetFirstID;
+        return this;
     }
 
     public int getTileSetID()
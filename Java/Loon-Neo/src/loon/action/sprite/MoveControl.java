@@ -4,6 +4,7 @@ import loon.LRelease;
 import loon.action.ActionBind;
 import loon.action.map.Config;
 import loon.action.map.Field2D;
+import loon.action.map.FlowField;
 import loon.action.map.TileMap;
 import loon.utils.processes.RealtimeProcess;
 import loon.utils.processes.RealtimeProcessManager;
@@ -26,6 +27,8 @@ public class MoveControl implements LRelease {
 
 	private Field2D _map;
 
+	private FlowField _flowField;
+
 	public MoveControl(ActionBind bind, TileMap map) {
 		this(bind, map.getField());
 	}
@@ -51,7 +54,25 @@ public class MoveControl implements LRelease {
 		return this._direction;
 	}
 
+	/**
+	 * 设定流场,设定后角色会自动沿流场方向移动(而非使用手动设定的方向)
+	 * 
+	 * @param field
+	 */
+	public void setFlowField(FlowField field) {
+		this._flowField = field;
+	}
+
+	public FlowField getFlowField() {
+		return _flowField;
+	}
+
 	public final void call() {
+		if (_flowField != null) {
+			int tileX = _map.pixelsToTilesWidth(_bind.getX() + _map.getTileWidth() / 2f);
+			int tileY = _map.pixelsToTilesHeight(_bind.getY() + _map.getTileHeight() / 2f);
+			this._direction = _flowField.getDirection(tileX, tileY);
+		}
 		move(_bind, _map, _direction);
 	}
 
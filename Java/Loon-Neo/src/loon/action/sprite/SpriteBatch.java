@@ -65,6 +65,25 @@ public class SpriteBatch extends PixmapFImpl {
 
 	private LTexture colorTexture;
 
+	// GLES2.0保证片段着色器至少可使用8个纹理单元
+	public final static int MAX_TEXTURE_UNITS = 8;
+
+	private int maxTextureUnits = 1;
+
+	private int multiShaderUnits = 0;
+
+	private ShaderProgram multiShader;
+
+	private float[] multiVertices;
+
+	private final LTexture[] textureUnits = new LTexture[MAX_TEXTURE_UNITS];
+
+	private int usedUnits = 0;
+
+	private int[] runs = new int[32];
+
+	private int numRuns = 0;
+
 	public static class TextureLine {
 
 		private Vector2f pstart = new Vector2f();
@@ -414,11 +433,10 @@ public class SpriteBatch extends PixmapFImpl {
 		}
 		renderCalls = 0;
 		LSystem.base().graphics().gl.glDepthMask(false);
-		if (customShader != null) {
-			customShader.begin();
-		} else {
-			shader.begin();
+		if (isMultiTexture()) {
+			loadMultiTexture();
 		}
+		currentShader().begin();
 		setupMatrices();
 		drawing = true;
 	}
@@ -428,9 +446,106 @@ public class SpriteBatch extends PixmapFImpl {
 	}
 
 	public void setBlendState(BlendState state) {
+		if (drawing && state != lastBlendState) {
+			submit();
+		}
 		this.lastBlendState = state;
 	}
 
+	/**
+	 * 设定同时绑定的纹理单元数量(1为默认的单纹理批处理),多纹理模式下顶点附带纹理序号,
+	 * 只有纹理单元用尽或混合模式变化时才会提交渲染,以减少多张图集交错绘制时的渲染次数
+	 * 
+	 * @param units
+	 */
+	public void setMultiTexture(int units) {
+		units = MathUtils.max(1, MathUtils.min(units, MAX_TEXTURE_UNITS));
+		if (units == maxTextureUnits) {
+			return;
+		}
+		if (drawing) {
+			submit();
+			currentShader().end();
+		}
+		maxTextureUnits = units;
+		clearUnits();
+		lastTexture = null;
+		if (drawing) {
+			if (isMultiTexture()) {
+				loadMultiTexture();
+			}
+			currentShader().begin();
+			setupMatrices();
+		}
+	}
+
+	public int getMultiTexture() {
+		return maxTextureUnits;
+	}
+
+	public boolean isMultiTexture() {
+		return maxTextureUnits > 1 && customShader == null;
+	}
+
+	private void loadMultiTexture() {
+		if (multiShader == null || multiShaderUnits != maxTextureUnits) {
+			if (multiShader != null) {
+				multiShader.close();
+			}
+			multiShader = LSystem.createMultiTextureShader(maxTextureUnits);
+			multiShaderUnits = maxTextureUnits;
+		}
+		if (multiVertices == null) {
+			multiVertices = new float[size * 24];
+		}
+	}
+
+	private ShaderProgram currentShader() {
+		if (customShader != null) {
+			return customShader;
+		}
+		return isMultiTexture() ? multiShader : shader;
+	}
+
+	private void clearUnits() {
+		for (int i = 0; i < usedUnits; i++) {
+			textureUnits[i] = null;
+		}
+		usedUnits = 0;
+		numRuns = 0;
+	}
+
+	private void useTextureUnit(LTexture texture) {
+		int unit = -1;
+		for (int i = 0; i < usedUnits; i++) {
+			if (textureUnits[i] == texture) {
+				unit = i;
+				break;
+			}
+		}
+		if (unit == -1) {
+			if (usedUnits == maxTextureUnits) {
+				submit();
+				clearUnits();
+			}
+			unit = usedUnits++;
+			textureUnits[unit] = texture;
+		}
+		if (numRuns > 0 && runs[(numRuns - 1) * 2] == idx) {
+			runs[(numRuns - 1) * 2 + 1] = unit;
+		} else if (numRuns == 0 || runs[(numRuns - 1) * 2 + 1] != unit) {
+			if (numRuns * 2 == runs.length) {
+				int[] tmp = new int[runs.length * 2];
+				System.arraycopy(runs, 0, tmp, 0, runs.length);
+				runs = tmp;
+			}
+			runs[numRuns * 2] = idx;
+			runs[numRuns * 2 + 1] = unit;
+			numRuns++;
+		}
+		lastTexture = texture;
+	}
+
 	public void end() {
 		if (!isLoaded) {
 			return;
@@ -442,13 +557,10 @@ public class SpriteBatch extends PixmapFImpl {
 			submit();
 		}
 		lastTexture = null;
+		clearUnits();
 		drawing = false;
 		LSystem.base().graphics().gl.glDepthMask(true);
-		if (customShader != null) {
-			customShader.end();
-		} else {
-			shader.end();
-		}
+		currentShader().end();
 		LSystem.mainBeginDraw();
 	}
 
@@ -470,6 +582,18 @@ public class SpriteBatch extends PixmapFImpl {
 			texture.loadTexture();
 		}
 		LTexture tex2d = LTexture.firstFather(texture);
+		if (isMultiTexture()) {
+			if (idx == vertices.length) {
+				submit();
+			}
+			LTexture target = tex2d != null ? tex2d : texture;
+			if (target != lastTexture) {
+				useTextureUnit(target);
+			}
+			invTexWidth = (1f / texture.width()) * texture.widthRatio;
+			invTexHeight = (1f / texture.height()) * texture.heightRatio;
+			return true;
+		}
 		if (tex2d != null) {
 			if (tex2d != lastTexture) {
 				submit();
@@ -509,7 +633,21 @@ public class SpriteBatch extends PixmapFImpl {
 				maxSpritesInBatch = spritesInBatch;
 			}
 			int count = spritesInBatch * 6;
-			GLUtils.bindTexture(gl, lastTexture);
+			boolean multi = isMultiTexture() && usedUnits > 0;
+			if (multi) {
+				for (int i = 1; i < usedUnits; i++) {
+					LTexture tex = textureUnits[i];
+					if (!tex.isLoaded()) {
+						tex.loadTexture();
+					}
+					gl.glActiveTexture(GL20.GL_TEXTURE0 + i);
+					gl.glBindTexture(GL20.GL_TEXTURE_2D, tex.getID());
+				}
+				gl.glActiveTexture(GL20.GL_TEXTURE0);
+				GLUtils.bindTexture(gl, textureUnits[0]);
+			} else {
+				GLUtils.bindTexture(gl, lastTexture);
+			}
 			switch (lastBlendState) {
 			case Additive:
 				GLUtils.setBlendMode(gl, LSystem.MODE_ALPHA_ONE);
@@ -526,12 +664,55 @@ public class SpriteBatch extends PixmapFImpl {
 			case Null:
 				break;
 			}
-			mesh.post(name, size, customShader != null ? customShader : shader, vertices, idx, count);
+			if (multi) {
+				mesh.post(name, size, multiShader, multiVertices, fillMultiVertices(), count, true);
+			} else {
+				mesh.post(name, size, currentShader(), vertices, idx, count);
+			}
 		} finally {
 			GLUtils.setBlendMode(gl, old);
 			LSystem.mainBeginDraw();
 			idx = 0;
+			if (isMultiTexture()) {
+				clearUnits();
+				if (lastTexture != null) {
+					textureUnits[0] = lastTexture;
+					usedUnits = 1;
+					runs[0] = 0;
+					runs[1] = 0;
+					numRuns = 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 将默认的5位顶点数据展开为附带纹理单元序号的6位顶点数据
+	 * 
+	 * @return
+	 */
+	private int fillMultiVertices() {
+		final float[] src = vertices;
+		final float[] dst = multiVertices;
+		int run = 0;
+		float unit = runs[1];
+		int next = numRuns > 1 ? runs[2] : idx;
+		int j = 0;
+		for (int i = 0; i < idx; i += SpriteRegion.VERTEX_SIZE) {
+			while (i >= next) {
+				run++;
+				unit = runs[run * 2 + 1];
+				next = run + 1 < numRuns ? runs[(run + 1) * 2] : idx;
+			}
+			dst[j] = src[i];
+			dst[j + 1] = src[i + 1];
+			dst[j + 2] = src[i + 2];
+			dst[j + 3] = src[i + 3];
+			dst[j + 4] = src[i + 4];
+			dst[j + 5] = unit;
+			j += 6;
 		}
+		return j;
 	}
 
 	private final static String name = "batch";
@@ -543,11 +724,20 @@ public class SpriteBatch extends PixmapFImpl {
 		if (customShader != null) {
 			customShader.close();
 		}
+		if (multiShader != null) {
+			multiShader.close();
+			multiShader = null;
+		}
 	}
 
 	private void setupMatrices() {
 		final Matrix4 view = LSystem.base().graphics().getViewMatrix();
-		if (customShader != null) {
+		if (isMultiTexture()) {
+			multiShader.setUniformMatrix("u_projTrans", view);
+			for (int i = 0; i < maxTextureUnits; i++) {
+				multiShader.setUniformi("u_texture" + i, i);
+			}
+		} else if (customShader != null) {
 			customShader.setUniformMatrix("u_projTrans", view);
 			customShader.setUniformi("u_texture", 0);
 		} else {
@@ -558,6 +748,10 @@ public class SpriteBatch extends PixmapFImpl {
 
 	protected void switchTexture(LTexture texture) {
 		submit();
+		if (isMultiTexture()) {
+			clearUnits();
+			useTextureUnit(texture);
+		}
 		lastTexture = texture;
 		if (texture.isCopy()) {
 			invTexWidth = (1f / texture.width());
@@ -571,19 +765,16 @@ public class SpriteBatch extends PixmapFImpl {
 	public void setShader(ShaderProgram shader) {
 		if (drawing) {
 			submit();
-			if (customShader != null) {
-				customShader.end();
-			} else {
-				this.shader.end();
-			}
+			currentShader().end();
 		}
 		customShader = shader;
+		clearUnits();
+		lastTexture = null;
 		if (drawing) {
-			if (customShader != null) {
-				customShader.begin();
-			} else {
-				this.shader.begin();
+			if (isMultiTexture()) {
+				loadMultiTexture();
 			}
+			currentShader().begin();
 			setupMatrices();
 		}
 
@@ -1420,7 +1611,7 @@ public class SpriteBatch extends PixmapFImpl {
 
 	public void draw(LTexture texture, float[] spriteVertices, int offset, int length) {
 
-		if (checkTexture(texture)) {
+		if (!checkTexture(texture)) {
 			return;
 		}
 
@@ -519,11 +519,16 @@ public abstract class SpriteBatchScreen extends Screen implements Config {
 					PBody body = _bodys.get(o);
 					if (body != null) {
 						PShape shape = body.inner_shapes()[0];
-						final float rotation = (shape.getAngle() * MathUtils.RAD_TO_DEG) % 360;
+						// 固定步长模拟时使用插值后的位置,避免画面抖动
+						final Vector2f lerp = body.getInterpolatedPosition();
+						final Vector2f pos = body.getPosition();
+						final float rotation = ((shape.getAngle()
+								+ body.getInterpolatedAngle() - body.getAngle()) * MathUtils.RAD_TO_DEG) % 360;
 						AABB aabb = shape.getAABB();
 
-						o.setLocation(_manager.getScreenX(aabb.minX),
-								_manager.getScreenY(aabb.minY));
+						o.setLocation(
+								_manager.getScreenX(aabb.minX + lerp.x - pos.x),
+								_manager.getScreenY(aabb.minY + lerp.y - pos.y));
 						o.setRotation(rotation);
 					}
 				}
@@ -33,55 +33,8 @@ public class ConvolutionMatrix {
 		int height = src.getHeight();
 		Pixmap canvas = Pixmap.createImage(width, height);
 
-		int A, R, G, B;
-		int sumR, sumG, sumB;
-		int[][] pixels = new int[SIZE][SIZE];
-
-		for (int y = 0; y < height - 2; ++y) {
-			for (int x = 0; x < width - 2; ++x) {
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						pixels[i][j] = src.getPixel(x + i, y + j);
-					}
-				}
-
-				A = LColor.alpha(pixels[1][1]);
-
-				sumR = sumG = sumB = 0;
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						sumR += (LColor.red(pixels[i][j]) * matrix.matrix[i][j]);
-						sumG += (LColor.green(pixels[i][j]) * matrix.matrix[i][j]);
-						sumB += (LColor.blue(pixels[i][j]) * matrix.matrix[i][j]);
-					}
-				}
-
-				R = (int) (sumR / matrix.factor + matrix.offset);
-				if (R < 0) {
-					R = 0;
-				} else if (R > 255) {
-					R = 255;
-				}
-
-				G = (int) (sumG / matrix.factor + matrix.offset);
-				if (G < 0) {
-					G = 0;
-				} else if (G > 255) {
-					G = 255;
-				}
-
-				B = (int) (sumB / matrix.factor + matrix.offset);
-				if (B < 0) {
-					B = 0;
-				} else if (B > 255) {
-					B = 255;
-				}
-
-				canvas.setRGB(LColor.argb(A, R, G, B), x + 1, y + 1);
-			}
-		}
+		PixmapKernels.convolve3x3(src.getData(), canvas.getData(), width, height, matrix.matrix, matrix.factor,
+				matrix.offset);
 
 		src.close();
 		src = null;
@@ -94,55 +47,10 @@ public class ConvolutionMatrix {
 		int height = src.getHeight();
 		Canvas canvas = Image.createCanvas(width, height);
 
-		int A, R, G, B;
-		int sumR, sumG, sumB;
-		int[][] pixels = new int[SIZE][SIZE];
-
-		for (int y = 0; y < height - 2; ++y) {
-			for (int x = 0; x < width - 2; ++x) {
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						pixels[i][j] = src.getPixel(x + i, y + j);
-					}
-				}
-
-				A = LColor.alpha(pixels[1][1]);
-
-				sumR = sumG = sumB = 0;
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						sumR += (LColor.red(pixels[i][j]) * matrix.matrix[i][j]);
-						sumG += (LColor.green(pixels[i][j]) * matrix.matrix[i][j]);
-						sumB += (LColor.blue(pixels[i][j]) * matrix.matrix[i][j]);
-					}
-				}
-
-				R = (int) (sumR / matrix.factor + matrix.offset);
-				if (R < 0) {
-					R = 0;
-				} else if (R > 255) {
-					R = 255;
-				}
-
-				G = (int) (sumG / matrix.factor + matrix.offset);
-				if (G < 0) {
-					G = 0;
-				} else if (G > 255) {
-					G = 255;
-				}
-
-				B = (int) (sumB / matrix.factor + matrix.offset);
-				if (B < 0) {
-					B = 0;
-				} else if (B > 255) {
-					B = 255;
-				}
-
-				canvas.image.setPixel(LColor.argb(A, R, G, B), x + 1, y + 1);
-			}
-		}
+		int[] pixels = new int[width * height];
+		PixmapKernels.convolve3x3(src.getPixels(), pixels, width, height, matrix.matrix, matrix.factor,
+				matrix.offset);
+		canvas.image.setPixels(pixels, width, height);
 
 		src.close();
 		src = null;
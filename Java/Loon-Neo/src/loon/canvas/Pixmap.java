@@ -145,6 +145,14 @@ public class Pixmap extends Limit implements LRelease {
 		if (_isClosed) {
 			return this;
 		}
+		if (_composite == -1 && !xorMode && size == _width * _height) {
+			if (_baseAlpha != 1f) {
+				int ialpha = (int) (0xFF * MathUtils.clamp(_baseAlpha, 0, 1));
+				c = (ialpha << 24) | (c & 0xFFFFFF);
+			}
+			PixmapKernels.fill(_drawPixels, _width, 0, 0, _width, _height, c);
+			return this;
+		}
 		for (int i = 0; i < this.size; i++) {
 			drawPoint(_drawPixels, i, c);
 		}
@@ -1310,6 +1318,10 @@ public class Pixmap extends Limit implements LRelease {
 				System.arraycopy(currentPixels, (offsetY + size) * pixel._width + offsetX, _drawPixels,
 						(y + size) * _width + x, w);
 			}
+		} else if (_composite == -1 && !xorMode && _baseAlpha == 1f && clip.x <= 0 && clip.y <= 0
+				&& clip.x + clip.width >= _width && clip.y + clip.height >= _height) {
+			PixmapKernels.blit(currentPixels, pixel._width, offsetX, offsetY, _drawPixels, _width, x, y, w, h,
+					transparent);
 		} else {
 			int findIndex = y * _width + x;
 			int drawIndex = offsetY * pixel._width + offsetX;
@@ -1370,12 +1382,6 @@ public class Pixmap extends Limit implements LRelease {
 		if (_isClosed || img == null || img._isClosed) {
 			return this;
 		}
-
-		dstX += _translateX;
-		dstY += _translateY;
-		srcX += _translateX;
-		srcY += _translateY;
-
 		if (dstWidth <= 0 || dstHeight <= 0 || srcWidth <= 0 || srcHeight <= 0) {
 			return this;
 		}
@@ -1384,103 +1390,54 @@ public class Pixmap extends Limit implements LRelease {
 			return this;
 		}
 
-		int[] currentPixels = img.getData();
-
-		int spitch = img._width;
-		int dpitch = this._width;
-
-		float x_ratio = ((float) srcWidth - 1) / dstWidth;
-		float y_ratio = ((float) srcHeight - 1) / dstHeight;
-		float x_diff = 0F;
-		float y_diff = 0F;
-
-		int dx = dstX;
-		int dy = dstY;
-		int sx = srcX;
-		int sy = srcY;
-		int i = 0;
-		int j = 0;
-
-		for (; i < dstHeight; i++) {
-			sy = (int) (i * y_ratio) + srcY;
-			dy = i + dstY;
-			y_diff = (y_ratio * i + srcY) - sy;
-			if (sy < 0 || dy < 0) {
-				continue;
-			}
-			if (sy >= img._height || dy >= this._height) {
-				break;
-			}
-
-			for (j = 0; j < dstWidth; j++) {
-				sx = (int) (j * x_ratio) + srcX;
-				dx = j + dstX;
-				x_diff = (x_ratio * j + srcX) - sx;
-				if (sx < 0 || dx < 0) {
-					continue;
-				}
-				if (sx >= img._width || dx >= this._width) {
-					break;
-				}
+		dstX += _translateX;
+		dstY += _translateY;
 
-				int src_ptr = sx + sy * spitch;
-				int dst_ptr = dx + dy * dpitch;
-				int src_color = currentPixels[src_ptr];
-				int src_pixel = src_color;
-
-				if (src_pixel != _transparent) {
-					float ta = (1 - x_diff) * (1 - y_diff);
-					float tb = (x_diff) * (1 - y_diff);
-					float tc = (1 - x_diff) * (y_diff);
-					float td = (x_diff) * (y_diff);
-
-					int a = (int) (((src_pixel & 0xff000000) >> 24) * ta + ((src_pixel & 0xff000000) >> 24) * tb
-							+ ((src_pixel & 0xff000000) >> 24) * tc + ((src_pixel & 0xff000000) >> 24) * td) & 0xff;
-					int b = (int) (((src_pixel & 0xff0000) >> 16) * ta + ((src_pixel & 0xff0000) >> 16) * tb
-							+ ((src_pixel & 0xff0000) >> 16) * tc + ((src_pixel & 0xff0000) >> 16) * td) & 0xff;
-					int g = (int) (((src_pixel & 0xff00) >> 8) * ta + ((src_pixel & 0xff00) >> 8) * tb
-							+ ((src_pixel & 0xff00) >> 8) * tc + ((src_pixel & 0xff00) >> 8) * td) & 0xff;
-					int r = (int) ((src_pixel & 0xff) * ta + (src_pixel & 0xff) * tb + (src_pixel & 0xff) * tc
-							+ (src_pixel & 0xff) * td) & 0xff;
-
-					int dst_color = _drawPixels[dst_ptr];
-					drawPoint(_drawPixels, dst_ptr, blend(r, g, b, a, dst_color));
-				} else {
-					drawPoint(_drawPixels, dst_ptr, _transparent);
+		final PixmapKernels.ScaleAxis xs = new PixmapKernels.ScaleAxis(srcX, srcWidth, img._width, dstX, dstWidth,
+				_width);
+		final PixmapKernels.ScaleAxis ys = new PixmapKernels.ScaleAxis(srcY, srcHeight, img._height, dstY, dstHeight,
+				_height);
+		if (xs.isEmpty() || ys.isEmpty()) {
+			return this;
+		}
+		if (_composite == -1 && !xorMode && _baseAlpha == 1f) {
+			PixmapKernels.scale(img._drawPixels, img._width, xs, ys, _drawPixels, _width, dstX, dstY, _transparent);
+		} else {
+			final int[] src = img._drawPixels;
+			final int[] row = new int[xs.to - xs.from];
+			for (int i = ys.from; i < ys.to; i++) {
+				PixmapKernels.sampleRow(src, img._width, xs, ys, i, row);
+				int top = ys.index[i] * img._width;
+				int offset = (dstY + i) * _width + dstX + xs.from;
+				for (int k = 0; k < row.length; k++) {
+					// 基准源像素等于透明色时不绘制(保留原有的透明色跳过)
+					if (src[top + xs.index[xs.from + k]] == _transparent) {
+						continue;
+					}
+					drawPoint(_drawPixels, offset + k, PixmapKernels.blendOver(row[k], _drawPixels[offset + k]));
 				}
 			}
 		}
-
 		return this;
 	}
 
-	private int blend(int src_r, int src_g, int src_b, int src_a, int value) {
-		int dst_r = (value & 0x00FF0000) >> 16;
-		int dst_g = (value & 0x0000FF00) >> 8;
-		int dst_b = (value & 0x000000FF);
-		int dst_a = (value & 0xFF000000) >> 24;
-		if (src_a == _transparent && dst_a == _transparent) {
-			return _transparent;
-		}
-		if (dst_a == 0) {
-			return ((src_a << 24) | (src_b << 16) | (src_g << 8) | src_r);
-		}
-		dst_r = (int) (dst_r + src_a * (src_r - dst_r) / 255);
-		dst_g = (int) (dst_g + src_a * (src_g - dst_g) / 255);
-		dst_b = (int) (dst_b + src_a * (src_b - dst_b) / 255);
-		dst_a = (int) (((1.0f - (1.0f - src_a / 255.0f) * (1.0f - dst_a / 255.0f)) * 255));
-		return (int) ((dst_a << 24) | (dst_b << 16) | (dst_g << 8) | dst_r);
-	}
-
 	public Pixmap fillRect(int x, int y, int width, int height) {
 		if (_isClosed) {
 			return this;
 		}
-		int maxX = MathUtils.min(x + width - 1 + _translateX, clip.x + clip.width - 1);
-		int maxY = MathUtils.min(y + height - 1 + _translateY, clip.y + clip.height - 1);
-		for (int row = MathUtils.max(y + _translateY, clip.y), rowOffset = row
-				* width; row <= maxY; row++, rowOffset += width) {
-			for (int col = MathUtils.max(x + _translateX, clip.x); col <= maxX; col++) {
+		int minX = MathUtils.max(x + _translateX, MathUtils.max(clip.x, 0));
+		int minY = MathUtils.max(y + _translateY, MathUtils.max(clip.y, 0));
+		int maxX = MathUtils.min(x + width + _translateX, MathUtils.min(clip.x + clip.width, _width));
+		int maxY = MathUtils.min(y + height + _translateY, MathUtils.min(clip.y + clip.height, _height));
+		if (minX >= maxX || minY >= maxY) {
+			return this;
+		}
+		if (_composite == -1 && !xorMode) {
+			PixmapKernels.fill(_drawPixels, _width, minX, minY, maxX - minX, maxY - minY, _baseColor);
+			return this;
+		}
+		for (int row = minY, rowOffset = row * _width; row < maxY; row++, rowOffset += _width) {
+			for (int col = minX; col < maxX; col++) {
 				drawPoint(_drawPixels, col + rowOffset);
 			}
 		}
@@ -0,0 +1,375 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.canvas;
+
+import java.util.Arrays;
+
+import loon.physics.PParallelExecutor;
+import loon.utils.MathUtils;
+
+/**
+ * Pixmap使用的整数像素处理函数(定点缩放,混合,填充与3x3卷积),全部按行处理,
+ * 设置PParallelExecutor后像素数超过阈值的图像会按行分段并行执行.
+ */
+public final class PixmapKernels {
+
+	/**
+	 * 并行时每段最少处理的行数
+	 */
+	public static final int MIN_BAND_ROWS = 16;
+
+	private static final int CONVOLUTION_SHIFT = 12;
+
+	private static PParallelExecutor parallelExecutor;
+
+	private static int parallelThreshold = 256 * 256;
+
+	private PixmapKernels() {
+	}
+
+	/**
+	 * 按行分段执行的任务,index对应的行区间由总行数平均分配
+	 */
+	static abstract class Band implements PParallelExecutor.Task {
+
+		private final int start;
+
+		private final int end;
+
+		private int count = 1;
+
+		Band(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run(int index) {
+			int rows = end - start;
+			rows(start + (int) ((long) rows * index / count), start + (int) ((long) rows * (index + 1) / count));
+		}
+
+		abstract void rows(int from, int to);
+
+		void execute(int columns) {
+			int rows = end - start;
+			if (rows <= 0 || columns <= 0) {
+				return;
+			}
+			PParallelExecutor executor = parallelExecutor;
+			if (executor == null || rows < MIN_BAND_ROWS * 2 || (long) rows * columns < parallelThreshold) {
+				rows(start, end);
+				return;
+			}
+			count = MathUtils.min(executor.getThreadCount() * 4, rows / MIN_BAND_ROWS);
+			if (count <= 1) {
+				count = 1;
+				rows(start, end);
+			} else {
+				executor.invokeAll(this, count);
+			}
+		}
+	}
+
+	/**
+	 * 缩放时单个方向上目标坐标到源坐标的映射(16.16定点步长),from与to为有效的目标偏移区间
+	 */
+	static final class ScaleAxis {
+
+		final int from;
+
+		final int to;
+
+		final int[] index;
+
+		final int[] next;
+
+		final int[] frac;
+
+		ScaleAxis(int srcStart, int srcLength, int srcLimit, int dstStart, int dstLength, int dstLimit) {
+			this.index = new int[dstLength];
+			this.next = new int[dstLength];
+			this.frac = new int[dstLength];
+			final long step = ((long) (srcLength - 1) << 16) / dstLength;
+			final int last = MathUtils.min(srcStart + srcLength, srcLimit) - 1;
+			int begin = dstLength, end = dstLength;
+			for (int i = 0; i < dstLength; i++) {
+				long pos = step * i;
+				int s = srcStart + (int) (pos >> 16);
+				int d = dstStart + i;
+				if (s < 0 || d < 0) {
+					continue;
+				}
+				if (s >= srcLimit || d >= dstLimit) {
+					end = i;
+					break;
+				}
+				if (begin == dstLength) {
+					begin = i;
+				}
+				index[i] = s;
+				next[i] = s < last ? s + 1 : s;
+				frac[i] = (int) (pos >> 8) & 0xFF;
+			}
+			this.from = begin;
+			this.to = begin < end ? end : begin;
+		}
+
+		boolean isEmpty() {
+			return from >= to;
+		}
+	}
+
+	public static void setParallelExecutor(PParallelExecutor executor) {
+		parallelExecutor = executor;
+	}
+
+	public static PParallelExecutor getParallelExecutor() {
+		return parallelExecutor;
+	}
+
+	/**
+	 * 设置启用并行处理的最小像素数
+	 * 
+	 * @param pixels
+	 */
+	public static void setParallelThreshold(int pixels) {
+		parallelThreshold = MathUtils.max(0, pixels);
+	}
+
+	public static int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * 两个ARGB颜色按w/256线性插值(四通道打包为两组同时计算)
+	 * 
+	 * @param p
+	 * @param q
+	 * @param w
+	 *            0至256
+	 * @return
+	 */
+	public static int lerp(int p, int q, int w) {
+		final int iw = 256 - w;
+		final int rb = (((p & 0xFF00FF) * iw + (q & 0xFF00FF) * w) >>> 8) & 0xFF00FF;
+		final int ag = (((p >>> 8) & 0xFF00FF) * iw + ((q >>> 8) & 0xFF00FF) * w) & 0xFF00FF00;
+		return ag | rb;
+	}
+
+	/**
+	 * 以src的alpha将src混合到dst上(结果alpha为1-(1-sa)*(1-da))
+	 * 
+	 * @param src
+	 * @param dst
+	 * @return
+	 */
+	public static int blendOver(int src, int dst) {
+		final int sa = src >>> 24;
+		final int da = dst >>> 24;
+		if (sa == 0xFF || da == 0) {
+			return sa == 0 ? 0 : src;
+		}
+		if (sa == 0) {
+			return dst;
+		}
+		final int a = 0xFF - div255((0xFF - sa) * (0xFF - da));
+		return (a << 24) | (lerp(dst, src, sa + (sa >>> 7)) & 0xFFFFFF);
+	}
+
+	private static int div255(int v) {
+		v += 128;
+		return (v + (v >>> 8)) >>> 8;
+	}
+
+	/**
+	 * 以指定颜色填充像素数组中的矩形区域
+	 * 
+	 * @param pixels
+	 * @param stride
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param color
+	 */
+	public static void fill(final int[] pixels, final int stride, final int x, final int y, final int width,
+			final int height, final int color) {
+		new Band(y, y + height) {
+
+			@Override
+			void rows(int from, int to) {
+				for (int row = from, offset = from * stride + x; row < to; row++, offset += stride) {
+					Arrays.fill(pixels, offset, offset + width, color);
+				}
+			}
+		}.execute(width);
+	}
+
+	/**
+	 * 复制像素矩形区域,与key相同的源像素将被跳过
+	 * 
+	 * @param src
+	 * @param srcStride
+	 * @param srcX
+	 * @param srcY
+	 * @param dst
+	 * @param dstStride
+	 * @param dstX
+	 * @param dstY
+	 * @param width
+	 * @param height
+	 * @param key
+	 */
+	public static void blit(final int[] src, final int srcStride, final int srcX, final int srcY, final int[] dst,
+			final int dstStride, final int dstX, final int dstY, final int width, final int height, final int key) {
+		new Band(0, height) {
+
+			@Override
+			void rows(int from, int to) {
+				for (int i = from; i < to; i++) {
+					int s = (srcY + i) * srcStride + srcX;
+					int d = (dstY + i) * dstStride + dstX;
+					for (int end = s + width; s < end; s++, d++) {
+						int c = src[s];
+						if (c != key) {
+							dst[d] = c;
+						}
+					}
+				}
+			}
+		}.execute(width);
+	}
+
+	/**
+	 * 按行进行双线性采样,结果写入row[0]至row[xs.to-xs.from-1]
+	 * 
+	 * @param src
+	 * @param stride
+	 * @param xs
+	 * @param ys
+	 * @param i
+	 * @param row
+	 */
+	static void sampleRow(int[] src, int stride, ScaleAxis xs, ScaleAxis ys, int i, int[] row) {
+		final int[] index = xs.index, next = xs.next, frac = xs.frac;
+		final int top = ys.index[i] * stride;
+		final int bottom = ys.next[i] * stride;
+		final int fy = ys.frac[i];
+		for (int j = xs.from, k = 0; j < xs.to; j++, k++) {
+			int fx = frac[j];
+			int a = lerp(src[top + index[j]], src[top + next[j]], fx);
+			int b = lerp(src[bottom + index[j]], src[bottom + next[j]], fx);
+			row[k] = lerp(a, b, fy);
+		}
+	}
+
+	/**
+	 * 双线性缩放src并直接混合到dst(dstX,dstY为目标区域左上角),基准源像素等于transparent时跳过该目标像素
+	 */
+	static void scale(final int[] src, final int srcStride, final ScaleAxis xs, final ScaleAxis ys, final int[] dst,
+			final int dstStride, final int dstX, final int dstY, final int transparent) {
+		new Band(ys.from, ys.to) {
+
+			@Override
+			void rows(int from, int to) {
+				final int[] index = xs.index, next = xs.next, frac = xs.frac;
+				for (int i = from; i < to; i++) {
+					final int top = ys.index[i] * srcStride;
+					final int bottom = ys.next[i] * srcStride;
+					final int fy = ys.frac[i];
+					int offset = (dstY + i) * dstStride + dstX;
+					for (int j = xs.from; j < xs.to; j++) {
+						int base = src[top + index[j]];
+						if (base == transparent) {
+							continue;
+						}
+						int fx = frac[j];
+						int a = lerp(base, src[top + next[j]], fx);
+						int b = lerp(src[bottom + index[j]], src[bottom + next[j]], fx);
+						dst[offset + j] = blendOver(lerp(a, b, fy), dst[offset + j]);
+					}
+				}
+			}
+		}.execute(xs.to - xs.from);
+	}
+
+	/**
+	 * 3x3卷积(定点权重),只写入dst内部区域,alpha取自中心像素,matrix[i][j]对应x偏移i与y偏移j
+	 * 
+	 * @param src
+	 * @param dst
+	 * @param width
+	 * @param height
+	 * @param matrix
+	 * @param factor
+	 * @param offset
+	 */
+	public static void convolve3x3(final int[] src, final int[] dst, final int width, final int height,
+			float[][] matrix, float factor, float offset) {
+		if (width < 3 || height < 3) {
+			return;
+		}
+		final float scale = (1 << CONVOLUTION_SHIFT) / (factor == 0 ? 1f : factor);
+		final int[] weights = new int[9];
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				weights[j * 3 + i] = fixed(matrix[i][j] * scale);
+			}
+		}
+		final int bias = fixed(offset * (1 << CONVOLUTION_SHIFT));
+		new Band(0, height - 2) {
+
+			@Override
+			void rows(int from, int to) {
+				final int[] w = weights;
+				for (int y = from; y < to; y++) {
+					int p = y * width;
+					int out = p + width + 1;
+					for (int x = 0; x < width - 2; x++, p++, out++) {
+						int r = bias, g = bias, b = bias;
+						for (int k = 0, q = p; k < 9; k += 3, q += width) {
+							int c0 = src[q], c1 = src[q + 1], c2 = src[q + 2];
+							int w0 = w[k], w1 = w[k + 1], w2 = w[k + 2];
+							r += ((c0 >> 16) & 0xFF) * w0 + ((c1 >> 16) & 0xFF) * w1 + ((c2 >> 16) & 0xFF) * w2;
+							g += ((c0 >> 8) & 0xFF) * w0 + ((c1 >> 8) & 0xFF) * w1 + ((c2 >> 8) & 0xFF) * w2;
+							b += (c0 & 0xFF) * w0 + (c1 & 0xFF) * w1 + (c2 & 0xFF) * w2;
+						}
+						dst[out] = (src[p + width + 1] & 0xFF000000) | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+					}
+				}
+			}
+		}.execute(width);
+	}
+
+	private static int fixed(float v) {
+		return (int) (v < 0 ? v - 0.5f : v + 0.5f);
+	}
+
+	private static int clamp(int v) {
+		if (v <= 0) {
+			return 0;
+		}
+		v >>= CONVOLUTION_SHIFT;
+		return v > 0xFF ? 0xFF : v;
+	}
+
+}
@@ -89,6 +89,36 @@ public abstract class ActorLayer extends LContainer {
 		return this.cellSize;
 	}
 
+	/**
+	 * 切换碰撞检测实现(如SpatialHashCollisionChecker),已有角色会迁移到新的检测器中
+	 * 
+	 * @param checker
+	 */
+	public void setCollisionChecker(CollisionChecker checker) {
+		if (collisionChecker instanceof CollisionManager) {
+			((CollisionManager) collisionChecker).setCollisionChecker(checker);
+		}
+	}
+
+	public CollisionChecker getCollisionChecker() {
+		if (collisionChecker instanceof CollisionManager) {
+			return ((CollisionManager) collisionChecker).getCollisionChecker();
+		}
+		return collisionChecker;
+	}
+
+	/**
+	 * 使用空间哈希碰撞检测,适合大量移动角色的图层
+	 * 
+	 * @return
+	 */
+	public SpatialHashCollisionChecker useSpatialHash() {
+		if (collisionChecker instanceof CollisionManager) {
+			return ((CollisionManager) collisionChecker).useSpatialHash();
+		}
+		return null;
+	}
+
 	public void setCellSize(int cellSize) {
 		synchronized (collisionChecker) {
 			this.cellSize = cellSize;
@@ -760,12 +790,25 @@ public abstract class ActorLayer extends LContainer {
 					objects.clear();
 					objects = null;
 				}
+				// 保留用户设置的检测器实例(及其参数),只有默认的BSP检测器会重新创建
+				CollisionChecker checker = null;
+				if (collisionChecker instanceof CollisionManager) {
+					CollisionManager old = (CollisionManager) collisionChecker;
+					CollisionChecker current = old.getCollisionChecker();
+					if (current != null
+							&& current.getClass() != BSPCollisionChecker.class) {
+						checker = old.detachCollisionChecker();
+					}
+				}
 				if (collisionChecker != null) {
 					collisionChecker.dispose();
 					collisionChecker.clear();
 					collisionChecker = null;
 				}
-				this.collisionChecker = new CollisionManager();
+				CollisionManager manager = checker == null ? new CollisionManager()
+						: new CollisionManager(checker);
+				manager.initialize(cellSize);
+				this.collisionChecker = manager;
 				this.objects = new ActorTreeSet();
 			}
 		}
@@ -36,13 +36,84 @@ public class CollisionManager implements CollisionChecker {
 
 	private ObjectSet<String> collisionClasses = new ObjectSet<String>();
 
-	private CollisionChecker collisionChecker = new BSPCollisionChecker();
+	private CollisionChecker collisionChecker;
+
+	private int cellSize;
+
+	public CollisionManager() {
+		this(new BSPCollisionChecker());
+	}
+
+	public CollisionManager(CollisionChecker checker) {
+		this.collisionChecker = checker;
+	}
 
 	@Override
 	public void initialize(int cellSize) {
+		this.cellSize = cellSize;
 		this.collisionChecker.initialize(cellSize);
 	}
 
+	/**
+	 * 切换碰撞检测实现,已登记的角色会迁移到新的检测器中
+	 * 
+	 * @param checker
+	 */
+	public void setCollisionChecker(CollisionChecker checker) {
+		if (checker == null || checker == collisionChecker) {
+			return;
+		}
+		synchronized (CollisionManager.class) {
+			TArray<Actor> list = null;
+			if (collisionChecker != null) {
+				list = collisionChecker.getObjectsList();
+				collisionChecker.clear();
+				collisionChecker.dispose();
+			}
+			checker.initialize(cellSize);
+			if (list != null) {
+				for (int i = 0; i < list.size; i++) {
+					checker.addObject(list.get(i));
+				}
+			}
+			this.collisionChecker = checker;
+		}
+	}
+
+	public CollisionChecker getCollisionChecker() {
+		return collisionChecker;
+	}
+
+	/**
+	 * 清空并取出当前的碰撞检测器,之后dispose不会再释放它(供ActorLayer.reset保留用户设置的检测器)
+	 * 
+	 * @return
+	 */
+	CollisionChecker detachCollisionChecker() {
+		synchronized (CollisionManager.class) {
+			CollisionChecker checker = collisionChecker;
+			if (checker != null) {
+				checker.clear();
+			}
+			collisionChecker = null;
+			return checker;
+		}
+	}
+
+	/**
+	 * 使用空间哈希检测器替代默认的BSP检测器
+	 * 
+	 * @return
+	 */
+	public SpatialHashCollisionChecker useSpatialHash() {
+		if (collisionChecker instanceof SpatialHashCollisionChecker) {
+			return (SpatialHashCollisionChecker) collisionChecker;
+		}
+		SpatialHashCollisionChecker checker = new SpatialHashCollisionChecker();
+		setCollisionChecker(checker);
+		return checker;
+	}
+
 	@Override
 	public void clear() {
 		synchronized (CollisionManager.class) {
@@ -0,0 +1,744 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.component;
+
+import java.util.Iterator;
+
+import loon.geom.RectBox;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 基于均匀空间哈希的CollisionChecker实现,用于替代BSPCollisionChecker处理大量移动角色.
+ * 
+ * 所有角色按碰撞盒登记到固定尺寸的网格中,网格以不可变快照形式发布,读取不加锁,只会看到某一次发布的完整数据;
+ * 写入(添加,删除,移动)在同步块中进行.移动时若角色所占网格未变则无需任何操作,跨格移动的角色先进入待处理区,
+ * 待处理区满或调用rebuild时整体重建.也可通过setIncremental(false)改为每帧首次查询前批量重建.
+ */
+public class SpatialHashCollisionChecker implements CollisionChecker {
+
+	// 角色覆盖网格数超过此值时,不再拆分登记,改为逐一检查
+	private final static int MAX_ACTOR_CELLS = 32;
+
+	private final static int MIN_PENDING = 16;
+
+	private final static int MODE_POINT = 0;
+
+	private final static int MODE_INTERSECT = 1;
+
+	private final static int MODE_RANGE = 2;
+
+	private final static int MODE_NEIGHBOUR = 3;
+
+	private final static int MODE_PAIR = 4;
+
+	/**
+	 * 单个角色在检测器中的登记信息(存放于Actor.data)
+	 */
+	static final class Node {
+
+		final Actor actor;
+
+		final int serial;
+
+		Grid grid;
+
+		int gridIndex = -1;
+
+		int minX, minY, maxX, maxY;
+
+		boolean removed;
+
+		Node(Actor actor, int serial) {
+			this.actor = actor;
+			this.serial = serial;
+		}
+	}
+
+	/**
+	 * 一次发布的网格快照,除待处理区与moved标记外,发布后不再修改
+	 */
+	static final class Grid {
+
+		final float bucketSize;
+
+		final int mask;
+
+		final int[] keyX, keyY, start, count;
+
+		final Node[] nodes;
+
+		final int nodeCount;
+
+		final int[] minX, minY, maxX, maxY;
+
+		// 写入发生在pendingCount的volatile写之前,读取方需先读pendingCount再读moved
+		final boolean[] moved;
+
+		final int[] cells;
+
+		final int[] large;
+
+		final int largeCount;
+
+		final Node[] pending;
+
+		volatile int pendingCount;
+
+		Grid(float bucketSize, Node[] nodes, int nodeCount, int pendingSize) {
+			this.bucketSize = bucketSize;
+			this.nodes = nodes;
+			this.nodeCount = nodeCount;
+			this.minX = new int[nodeCount];
+			this.minY = new int[nodeCount];
+			this.maxX = new int[nodeCount];
+			this.maxY = new int[nodeCount];
+			this.moved = new boolean[nodeCount];
+			this.pending = new Node[pendingSize];
+			int total = 0;
+			int largeSize = 0;
+			for (int i = 0; i < nodeCount; i++) {
+				Node node = nodes[i];
+				RectBox r = node.actor.getBoundingRect();
+				int x0 = cell(r.x, bucketSize);
+				int y0 = cell(r.y, bucketSize);
+				int x1 = cell(r.x + r.width, bucketSize);
+				int y1 = cell(r.y + r.height, bucketSize);
+				minX[i] = node.minX = x0;
+				minY[i] = node.minY = y0;
+				maxX[i] = node.maxX = x1;
+				maxY[i] = node.maxY = y1;
+				node.grid = this;
+				node.gridIndex = i;
+				int area = (x1 - x0 + 1) * (y1 - y0 + 1);
+				if (area > MAX_ACTOR_CELLS) {
+					largeSize++;
+				} else {
+					total += area;
+				}
+			}
+			int capacity = MathUtils.nextPowerOfTwo(MathUtils.max(16, total * 2));
+			this.mask = capacity - 1;
+			this.keyX = new int[capacity];
+			this.keyY = new int[capacity];
+			this.start = new int[capacity];
+			this.count = new int[capacity];
+			this.cells = new int[total];
+			this.large = new int[largeSize];
+			int largeIndex = 0;
+			for (int i = 0; i < nodeCount; i++) {
+				if ((maxX[i] - minX[i] + 1) * (maxY[i] - minY[i] + 1) > MAX_ACTOR_CELLS) {
+					large[largeIndex++] = i;
+					continue;
+				}
+				for (int cy = minY[i]; cy <= maxY[i]; cy++) {
+					for (int cx = minX[i]; cx <= maxX[i]; cx++) {
+						count[slot(cx, cy, true)]++;
+					}
+				}
+			}
+			this.largeCount = largeIndex;
+			int offset = 0;
+			int[] fill = new int[capacity];
+			for (int i = 0; i < capacity; i++) {
+				start[i] = fill[i] = offset;
+				offset += count[i];
+			}
+			for (int i = 0; i < nodeCount; i++) {
+				if ((maxX[i] - minX[i] + 1) * (maxY[i] - minY[i] + 1) > MAX_ACTOR_CELLS) {
+					continue;
+				}
+				for (int cy = minY[i]; cy <= maxY[i]; cy++) {
+					for (int cx = minX[i]; cx <= maxX[i]; cx++) {
+						cells[fill[find(cx, cy)]++] = i;
+					}
+				}
+			}
+		}
+
+		int slot(int cx, int cy, boolean create) {
+			int idx = ((cx * 73856093) ^ (cy * 19349663)) & mask;
+			for (;;) {
+				if (count[idx] == 0) {
+					if (!create) {
+						return -1;
+					}
+					keyX[idx] = cx;
+					keyY[idx] = cy;
+					return idx;
+				}
+				if (keyX[idx] == cx && keyY[idx] == cy) {
+					return idx;
+				}
+				idx = (idx + 1) & mask;
+			}
+		}
+
+		int find(int cx, int cy) {
+			int idx = ((cx * 73856093) ^ (cy * 19349663)) & mask;
+			for (;;) {
+				if (count[idx] == 0) {
+					return -1;
+				}
+				if (keyX[idx] == cx && keyY[idx] == cy) {
+					return idx;
+				}
+				idx = (idx + 1) & mask;
+			}
+		}
+	}
+
+	private final TArray<Node> nodes = new TArray<Node>();
+
+	private volatile Grid grid;
+
+	private boolean dirty;
+
+	private boolean incremental = true;
+
+	private int cellSize = 1;
+
+	private float bucketSize;
+
+	private int serials;
+
+	private int rebuildCount;
+
+	static int cell(float v, float bucketSize) {
+		return MathUtils.floor(v / bucketSize);
+	}
+
+	public static Node getNodeForActor(Actor actor) {
+		return actor.data instanceof Node ? (Node) actor.data : null;
+	}
+
+	@Override
+	public synchronized void initialize(int cellSize) {
+		this.cellSize = cellSize;
+		this.dirty = true;
+	}
+
+	/**
+	 * 设定网格尺寸(像素),小于等于0时按角色平均大小自动计算
+	 * 
+	 * @param size
+	 */
+	public synchronized void setBucketSize(float size) {
+		this.bucketSize = size;
+		this.dirty = true;
+	}
+
+	public float getBucketSize() {
+		Grid g = grid;
+		return g == null ? bucketSize : g.bucketSize;
+	}
+
+	/**
+	 * 为true时角色跨格移动进入待处理区增量更新,为false时每次移动后在首次查询前整体重建
+	 * 
+	 * @param incremental
+	 */
+	public synchronized void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	public int size() {
+		return nodes.size;
+	}
+
+	@Override
+	public synchronized void addObject(Actor actor) {
+		if (getNodeForActor(actor) != null) {
+			return;
+		}
+		Node node = new Node(actor, serials++);
+		actor.data = node;
+		nodes.add(node);
+		if (incremental) {
+			addPending(node);
+		} else {
+			dirty = true;
+		}
+	}
+
+	@Override
+	public synchronized void removeObject(Actor actor) {
+		Node node = getNodeForActor(actor);
+		if (node == null) {
+			return;
+		}
+		node.removed = true;
+		if (node.grid != null && node.grid == grid && node.gridIndex >= 0) {
+			node.grid.moved[node.gridIndex] = true;
+		}
+		nodes.removeValue(node, true);
+		actor.data = null;
+	}
+
+	@Override
+	public void updateObjectLocation(Actor actor, float oldX, float oldY) {
+		updateObject(actor);
+	}
+
+	@Override
+	public void updateObjectSize(Actor actor) {
+		updateObject(actor);
+	}
+
+	private synchronized void updateObject(Actor actor) {
+		Node node = getNodeForActor(actor);
+		if (node == null) {
+			return;
+		}
+		Grid g = grid;
+		if (g == null || node.grid != g) {
+			return;
+		}
+		RectBox r = actor.getBoundingRect();
+		float bucket = g.bucketSize;
+		int x0 = cell(r.x, bucket);
+		int y0 = cell(r.y, bucket);
+		int x1 = cell(r.x + r.width, bucket);
+		int y1 = cell(r.y + r.height, bucket);
+		if (x0 == node.minX && y0 == node.minY && x1 == node.maxX
+				&& y1 == node.maxY) {
+			return;
+		}
+		if (!incremental) {
+			dirty = true;
+			return;
+		}
+		node.minX = x0;
+		node.minY = y0;
+		node.maxX = x1;
+		node.maxY = y1;
+		if (node.gridIndex >= 0) {
+			g.moved[node.gridIndex] = true;
+			node.gridIndex = -1;
+			addPending(node);
+		}
+	}
+
+	private void addPending(Node node) {
+		Grid g = grid;
+		if (g == null || dirty) {
+			dirty = true;
+			return;
+		}
+		int n = g.pendingCount;
+		if (n == g.pending.length) {
+			dirty = true;
+			return;
+		}
+		node.grid = g;
+		node.gridIndex = -1;
+		g.pending[n] = node;
+		g.pendingCount = n + 1;
+	}
+
+	/**
+	 * 按当前全部角色位置重建网格并发布
+	 */
+	public synchronized void rebuild() {
+		int size = nodes.size;
+		Node[] list = new Node[size];
+		float extent = 0;
+		for (int i = 0; i < size; i++) {
+			Node node = nodes.get(i);
+			list[i] = node;
+			if (bucketSize <= 0) {
+				RectBox r = node.actor.getBoundingRect();
+				extent += MathUtils.max(r.width, r.height);
+			}
+		}
+		float bucket = bucketSize;
+		if (bucket <= 0) {
+			float avg = size == 0 ? 0 : extent / size;
+			bucket = MathUtils.nextPowerOfTwo(MathUtils.max(16,
+					MathUtils.max(cellSize * 2, (int) (avg * 2))));
+		}
+		this.grid = new Grid(bucket, list, size, MathUtils.max(MIN_PENDING,
+				size / 8));
+		this.dirty = false;
+		this.rebuildCount++;
+	}
+
+	private Grid snapshot() {
+		Grid g = grid;
+		if (g == null || dirty) {
+			synchronized (this) {
+				if (grid == null || dirty) {
+					rebuild();
+				}
+				g = grid;
+			}
+		}
+		return g;
+	}
+
+	private static boolean accept(int mode, Actor a, String flag, Actor cmp,
+			float x, float y, float r, boolean diag) {
+		if (flag != null && !flag.equals(a.getFlag())) {
+			return false;
+		}
+		switch (mode) {
+		case MODE_POINT:
+			return a.containsPoint(x, y);
+		case MODE_INTERSECT:
+			return a.intersects(cmp);
+		case MODE_RANGE:
+			RectBox box = a.getRectBox();
+			float dx = box.getCenterX() - x;
+			float dy = box.getCenterY() - y;
+			return MathUtils.sqrt(dx * dx + dy * dy) <= r;
+		case MODE_NEIGHBOUR:
+			float ax = a.getX();
+			float ay = a.getY();
+			if (ax == x && ay == y) {
+				return false;
+			}
+			if (!diag) {
+				return MathUtils.abs(ax - x) + MathUtils.abs(ay - y) <= r;
+			}
+			return ax >= x - r && ay >= y - r && ax <= x + r && ay <= y + r;
+		case MODE_PAIR:
+			Node n = getNodeForActor(a);
+			Node c = getNodeForActor(cmp);
+			return n != null && c != null && n.serial > c.serial
+					&& a.intersects(cmp);
+		default:
+			return false;
+		}
+	}
+
+	private static boolean overlaps(Actor a, float x, float y, float w, float h) {
+		RectBox b = a.getBoundingRect();
+		return b.x <= x + w && b.x + b.width >= x && b.y <= y + h
+				&& b.y + b.height >= y;
+	}
+
+	/**
+	 * 在指定矩形覆盖的网格中查找满足条件的角色,out为null时返回第一个结果
+	 */
+	private Actor collect(Grid g, float rx, float ry, float rw, float rh,
+			int mode, String flag, Actor cmp, float x, float y, float r,
+			boolean diag, Actor ignore, TArray<Actor> out) {
+		// 无图像角色的碰撞盒位于格子右下角,而判定使用格子中心,查询范围因此外扩一格
+		rx -= cellSize;
+		ry -= cellSize;
+		rw += cellSize * 2;
+		rh += cellSize * 2;
+		// 范围与邻近查询以角色坐标判定,仅在cellSize为1时与像素碰撞盒一致,否则逐一检查
+		boolean position = mode == MODE_RANGE || mode == MODE_NEIGHBOUR;
+		// 先读取待处理数量,保证已进入待处理区的角色其moved标记可见,避免同一角色被计入两次
+		int pendingCount = g.pendingCount;
+		float bucket = g.bucketSize;
+		int qx0 = cell(rx, bucket);
+		int qy0 = cell(ry, bucket);
+		int qx1 = cell(rx + rw, bucket);
+		int qy1 = cell(ry + rh, bucket);
+		long area = (long) (qx1 - qx0 + 1) * (qy1 - qy0 + 1);
+		if (area > g.nodeCount || (position && cellSize != 1)) {
+			for (int i = 0; i < g.nodeCount; i++) {
+				if (g.moved[i]) {
+					continue;
+				}
+				Actor a = g.nodes[i].actor;
+				if (a != ignore && (position || overlaps(a, rx, ry, rw, rh))
+						&& accept(mode, a, flag, cmp, x, y, r, diag)) {
+					if (out == null) {
+						return a;
+					}
+					out.add(a);
+				}
+			}
+		} else {
+			for (int cy = qy0; cy <= qy1; cy++) {
+				for (int cx = qx0; cx <= qx1; cx++) {
+					int s = g.find(cx, cy);
+					if (s == -1) {
+						continue;
+					}
+					for (int i = g.start[s], end = i + g.count[s]; i < end; i++) {
+						int idx = g.cells[i];
+						Actor a = g.nodes[idx].actor;
+						if (a == ignore || g.moved[idx]) {
+							continue;
+						}
+						// 跨多格的角色只在与查询范围重叠的左上格中计入一次
+						if (cx != MathUtils.max(g.minX[idx], qx0)
+								|| cy != MathUtils.max(g.minY[idx], qy0)) {
+							continue;
+						}
+						if ((position || overlaps(a, rx, ry, rw, rh))
+								&& accept(mode, a, flag, cmp, x, y, r, diag)) {
+							if (out == null) {
+								return a;
+							}
+							out.add(a);
+						}
+					}
+				}
+			}
+			for (int i = 0; i < g.largeCount; i++) {
+				int idx = g.large[i];
+				Actor a = g.nodes[idx].actor;
+				if (a == ignore || g.moved[idx]) {
+					continue;
+				}
+				if ((position || overlaps(a, rx, ry, rw, rh))
+						&& accept(mode, a, flag, cmp, x, y, r, diag)) {
+					if (out == null) {
+						return a;
+					}
+					out.add(a);
+				}
+			}
+		}
+		for (int i = 0; i < pendingCount; i++) {
+			Node node = g.pending[i];
+			Actor a = node.actor;
+			if (a == ignore || node.removed) {
+				continue;
+			}
+			if ((position || overlaps(a, rx, ry, rw, rh))
+					&& accept(mode, a, flag, cmp, x, y, r, diag)) {
+				if (out == null) {
+					return a;
+				}
+				out.add(a);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 获得指定网格位置的角色,结果写入result
+	 * 
+	 * @return 本次写入数量
+	 */
+	public int getObjectsAt(float x, float y, String flag, TArray<Actor> result) {
+		float px = x * this.cellSize + this.cellSize / 2f;
+		float py = y * this.cellSize + this.cellSize / 2f;
+		int size = result.size;
+		collect(snapshot(), px, py, 1, 1, MODE_POINT, flag, null, px, py, 0,
+				false, null, result);
+		return result.size - size;
+	}
+
+	/**
+	 * 获得与指定角色相交的角色,结果写入result
+	 * 
+	 * @return 本次写入数量
+	 */
+	public int getIntersectingObjects(Actor actor, String flag,
+			TArray<Actor> result) {
+		RectBox rect = actor.getBoundingRect();
+		int size = result.size;
+		collect(snapshot(), rect.x, rect.y, rect.width, rect.height,
+				MODE_INTERSECT, flag, actor, 0, 0, 0, false, null, result);
+		return result.size - size;
+	}
+
+	/**
+	 * 获得指定范围内的角色,结果写入result
+	 * 
+	 * @return 本次写入数量
+	 */
+	public int getObjectsInRange(float x, float y, float r, String flag,
+			TArray<Actor> result) {
+		float halfCell = this.cellSize / 2;
+		float size = 2 * r * this.cellSize;
+		int count = result.size;
+		collect(snapshot(), (x - r) * this.cellSize + halfCell, (y - r)
+				* this.cellSize + halfCell, size, size, MODE_RANGE, flag, null,
+				x * this.cellSize + halfCell, y * this.cellSize + halfCell, r
+						* this.cellSize, false, null, result);
+		return result.size - count;
+	}
+
+	/**
+	 * 获得指定角色周边的角色,结果写入result
+	 * 
+	 * @return 本次写入数量
+	 */
+	public int getNeighbours(Actor actor, float distance, boolean diag,
+			String flag, TArray<Actor> result) {
+		float x = actor.getX();
+		float y = actor.getY();
+		float dPixel = distance * this.cellSize;
+		int size = result.size;
+		collect(snapshot(), x * this.cellSize - dPixel, y * this.cellSize
+				- dPixel, dPixel * 2 + 1, dPixel * 2 + 1, MODE_NEIGHBOUR, flag,
+				null, x, y, distance, diag, null, result);
+		return result.size - size;
+	}
+
+	/**
+	 * 一次获得当前图层中全部相互碰撞的角色对,按(a,b)顺序成对写入pairs
+	 * 
+	 * @param flag
+	 *            为null时检查全部角色,否则只检查此标记的角色
+	 * @param pairs
+	 * @return 碰撞对数量
+	 */
+	public int getCollisionPairs(String flag, TArray<Actor> pairs) {
+		Grid g = snapshot();
+		int size = pairs.size;
+		int pendingCount = g.pendingCount;
+		for (int i = 0; i < g.nodeCount; i++) {
+			if (!g.moved[i]) {
+				collectPairs(g, g.nodes[i].actor, flag, pairs);
+			}
+		}
+		for (int i = 0; i < pendingCount; i++) {
+			Node node = g.pending[i];
+			if (!node.removed) {
+				collectPairs(g, node.actor, flag, pairs);
+			}
+		}
+		return (pairs.size - size) / 2;
+	}
+
+	private void collectPairs(Grid g, Actor actor, String flag,
+			TArray<Actor> pairs) {
+		if (flag != null && !flag.equals(actor.getFlag())) {
+			return;
+		}
+		RectBox rect = actor.getBoundingRect();
+		int size = pairs.size;
+		collect(g, rect.x, rect.y, rect.width, rect.height, MODE_PAIR, flag,
+				actor, 0, 0, 0, false, actor, pairs);
+		for (int i = pairs.size - 1; i >= size; i--) {
+			pairs.insert(i, actor);
+		}
+	}
+
+	@Override
+	public TArray<Actor> getObjectsAt(float x, float y, String flag) {
+		TArray<Actor> result = new TArray<Actor>();
+		getObjectsAt(x, y, flag, result);
+		return result;
+	}
+
+	@Override
+	public TArray<Actor> getIntersectingObjects(Actor actor, String flag) {
+		TArray<Actor> result = new TArray<Actor>();
+		getIntersectingObjects(actor, flag, result);
+		return result;
+	}
+
+	@Override
+	public TArray<Actor> getObjectsInRange(float x, float y, float r,
+			String flag) {
+		TArray<Actor> result = new TArray<Actor>();
+		getObjectsInRange(x, y, r, flag, result);
+		return result;
+	}
+
+	@Override
+	public TArray<Actor> getNeighbours(Actor actor, float distance,
+			boolean diag, String flag) {
+		TArray<Actor> result = new TArray<Actor>();
+		getNeighbours(actor, distance, diag, flag, result);
+		return result;
+	}
+
+	@Override
+	public Actor getOnlyObjectAt(Actor object, float dx, float dy, String flag) {
+		float px = dx * this.cellSize + this.cellSize / 2f;
+		float py = dy * this.cellSize + this.cellSize / 2f;
+		return collect(snapshot(), px, py, 1, 1, MODE_POINT, flag, null, px,
+				py, 0, false, object, null);
+	}
+
+	@Override
+	public Actor getOnlyIntersectingObject(Actor actor, String flag) {
+		RectBox rect = actor.getBoundingRect();
+		return collect(snapshot(), rect.x, rect.y, rect.width, rect.height,
+				MODE_INTERSECT, flag, actor, 0, 0, 0, false, actor, null);
+	}
+
+	/**
+	 * 获得指定标记的全部角色,结果写入result
+	 * 
+	 * @return 本次写入数量
+	 */
+	public synchronized int getObjects(String flag, TArray<Actor> result) {
+		int size = result.size;
+		for (int i = 0; i < nodes.size; i++) {
+			Actor a = nodes.get(i).actor;
+			if (flag == null || flag.equals(a.getFlag())) {
+				result.add(a);
+			}
+		}
+		return result.size - size;
+	}
+
+	@Override
+	public TArray<Actor> getObjects(String flag) {
+		TArray<Actor> result = new TArray<Actor>();
+		getObjects(flag, result);
+		return result;
+	}
+
+	@Override
+	public TArray<Actor> getObjectsList() {
+		return getObjects((String) null);
+	}
+
+	@Override
+	public TArray<Actor> getActorsList() {
+		return getObjects((String) null);
+	}
+
+	@Override
+	public Iterator<Actor> getActorsIterator() {
+		return getActorsList().iterator();
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (int i = 0; i < nodes.size; i++) {
+			Actor a = nodes.get(i).actor;
+			if (a.data instanceof Node) {
+				a.data = null;
+			}
+		}
+		nodes.clear();
+		grid = null;
+		dirty = true;
+	}
+
+	@Override
+	public void dispose() {
+		clear();
+	}
+
+}
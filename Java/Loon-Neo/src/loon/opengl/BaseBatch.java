@@ -21,6 +21,7 @@
 package loon.opengl;
 
 import loon.LTexture;
+import loon.canvas.LColor;
 import loon.geom.Affine2f;
 
 public abstract class BaseBatch extends LTextureBind {
@@ -102,6 +103,50 @@ public abstract class BaseBatch extends LTextureBind {
 				top, sr, st, left, bottom, sl, sb, right, bottom, sr, sb);
 	}
 
+	/**
+	 * 提交三角化后的图形,全部顶点使用纹理中的同一个纹素(通常为白色纹素)取色.
+	 * 默认实现将每个三角形作为退化的四边形提交,顶点色彩只取三角形首个顶点
+	 * 
+	 * @param tex
+	 * @param tint
+	 * @param xf
+	 * @param mesh
+	 * @param u
+	 * @param v
+	 */
+	public void addShape(LTexture tex, int tint, Affine2f xf, ShapeMesh mesh,
+			float u, float v) {
+		if (tex == null || tex.isClose() || mesh == null || mesh.isEmpty()) {
+			return;
+		}
+		setTexture(tex);
+		final float[] verts = mesh.vertices;
+		final short[] elems = mesh.indices;
+		for (int i = 0; i < mesh.indexCount; i += 3) {
+			int a = elems[i] * 2, b = elems[i + 1] * 2, c = elems[i + 2] * 2;
+			int color = mesh.colored ? LColor.combine(tint,
+					mesh.colors[elems[i]]) : tint;
+			addQuad(color, xf.m00, xf.m01, xf.m10, xf.m11, xf.tx, xf.ty,
+					verts[a], verts[a + 1], u, v, verts[b], verts[b + 1], u, v,
+					verts[c], verts[c + 1], u, v, verts[c], verts[c + 1], u, v);
+		}
+	}
+
+	/**
+	 * 已提交到GPU的绘制次数
+	 * 
+	 * @return
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	public void resetDrawCalls() {
+		drawCalls = 0;
+	}
+
+	protected int drawCalls;
+
 	public abstract void addQuad(int tint, float m00, float m01, float m10,
 			float m11, float tx, float ty, float x1, float y1, float sx1,
 			float sy1, float x2, float y2, float sx2, float sy2, float x3,
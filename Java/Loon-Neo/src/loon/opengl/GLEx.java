@@ -1645,6 +1645,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		try {
 			glRenderer.end();
+			rendererDrawCalls++;
 		} finally {
 			restoreTx();
 			useBegin = false;
@@ -1652,6 +1653,245 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		return this;
 	}
 
+	private boolean useShapeBatch;
+
+	private LTexture shapeTex;
+
+	private float shapeU = 0.5f, shapeV = 0.5f;
+
+	private ShapeTessellator tessellator;
+
+	private final ShapeMesh tempMesh = new ShapeMesh();
+
+	private final Affine2f shapeTrans = new Affine2f();
+
+	private float[] shapePoints = new float[16];
+
+	private int rendererDrawCalls;
+
+	/**
+	 * 是否以三角形将图形提交到纹理批处理(与纹理共用一个批次,不再切换到GLRenderer)
+	 * 
+	 * @return
+	 */
+	public boolean isShapeBatch() {
+		return useShapeBatch;
+	}
+
+	public GLEx setShapeBatch(boolean shape) {
+		this.useShapeBatch = shape;
+		return this;
+	}
+
+	/**
+	 * 设定图形批处理取色使用的纹理区域(应为纯白色),若传入与精灵共用图集中的一块白色区域,则图形与精灵可以在同一次提交中完成
+	 * 
+	 * @param tex
+	 * @return
+	 */
+	public GLEx setShapeTexture(LTexture tex) {
+		this.shapeTex = tex;
+		if (tex == null) {
+			shapeU = shapeV = 0.5f;
+		} else {
+			// 取区域中心的纹素,避免线性过滤时采样到相邻像素
+			shapeU = (tex.xOff + tex.widthRatio) / 2f;
+			shapeV = (tex.yOff + tex.heightRatio) / 2f;
+		}
+		return this;
+	}
+
+	public LTexture getShapeTexture() {
+		return shapeTex == null ? colorTex : shapeTex;
+	}
+
+	/**
+	 * 图形三角化缓存
+	 * 
+	 * @return
+	 */
+	public ShapeTessellator getTessellator() {
+		if (tessellator == null) {
+			tessellator = new ShapeTessellator();
+		}
+		return tessellator;
+	}
+
+	/**
+	 * 当前批处理与GLRenderer的累计绘制次数
+	 * 
+	 * @return
+	 */
+	public int getDrawCalls() {
+		return batch.getDrawCalls() + rendererDrawCalls;
+	}
+
+	public GLEx resetDrawCalls() {
+		batch.resetDrawCalls();
+		rendererDrawCalls = 0;
+		return this;
+	}
+
+	/**
+	 * 提交网格到纹理批处理,网格坐标以(x,y)为原点
+	 * 
+	 * @param mesh
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public GLEx drawMesh(ShapeMesh mesh, float x, float y) {
+		if (isClosed || mesh == null) {
+			return this;
+		}
+		Affine2f xf = tx();
+		if (x != 0 || y != 0) {
+			xf = shapeTrans.set(xf).translate(x, y);
+		}
+		batch.addShape(getShapeTexture(), LColor.combine(fillColor, baseColor), xf, mesh, shapeU, shapeV);
+		return this;
+	}
+
+	private float[] shapePoints(int size) {
+		if (shapePoints.length < size) {
+			shapePoints = new float[size];
+		}
+		return shapePoints;
+	}
+
+	/**
+	 * 以批处理方式绘制多边形,坐标转为相对第一个点后作为缓存键,平移后的相同图形可直接复用三角化结果
+	 * 
+	 * @param xys
+	 * @param count
+	 * @param fill
+	 * @param closed
+	 */
+	private void batchPolygon(float[] xys, int count, boolean fill, boolean closed) {
+		if (count < 2) {
+			return;
+		}
+		final float ox = xys[0], oy = xys[1];
+		for (int i = 0; i < count; i++) {
+			xys[i * 2] -= ox;
+			xys[i * 2 + 1] -= oy;
+		}
+		ShapeTessellator t = getTessellator();
+		if (fill) {
+			t.key(ShapeTessellator.TYPE_POLYGON);
+		} else {
+			t.key(ShapeTessellator.TYPE_POLYLINE).push(lineWidth).push(closed ? 1 : 0);
+		}
+		t.push(xys, 0, count * 2);
+		ShapeMesh mesh = t.find();
+		if (mesh == null) {
+			mesh = t.create();
+			if (fill) {
+				ShapeTessellator.polygon(mesh, xys, count);
+			} else {
+				ShapeTessellator.polyline(mesh, xys, count, closed, lineWidth, lineWidth > 2f);
+			}
+		}
+		drawMesh(mesh, ox, oy);
+	}
+
+	private void batchPolygon(float[] xPoints, float[] yPoints, int nPoints, boolean fill) {
+		float[] xys = shapePoints(nPoints * 2);
+		for (int i = 0; i < nPoints; i++) {
+			xys[i * 2] = xPoints[i];
+			xys[i * 2 + 1] = yPoints[i];
+		}
+		batchPolygon(xys, nPoints, fill, true);
+	}
+
+	private void batchShape(Shape shape, float x, float y, boolean fill, boolean closed) {
+		float[] points = shape.getPoints();
+		int size = points.length;
+		if (size == 0) {
+			return;
+		}
+		if (size == 2) {
+			fillRectNative(points[0] + x, points[1] + y, lineWidth, lineWidth);
+			return;
+		}
+		float[] xys = shapePoints(size);
+		for (int i = 0; i < size; i += 2) {
+			xys[i] = points[i] + x;
+			xys[i + 1] = points[i + 1] + y;
+		}
+		batchPolygon(xys, size / 2, fill && size >= 6, closed && size >= 6);
+	}
+
+	private void batchArc(float x1, float y1, float width, float height, int segments, float start, float end,
+			boolean fill) {
+		float rx = width / 2f, ry = height / 2f;
+		ShapeTessellator t = getTessellator();
+		t.key(fill ? ShapeTessellator.TYPE_ELLIPSE : ShapeTessellator.TYPE_ELLIPSE_LINE).push(rx).push(ry)
+				.push(start).push(end).push(segments);
+		if (!fill) {
+			t.push(lineWidth);
+		}
+		ShapeMesh mesh = t.find();
+		if (mesh == null) {
+			mesh = t.create();
+			if (fill) {
+				ShapeTessellator.ellipse(mesh, 0, 0, rx, ry, start, end, segments);
+			} else {
+				ShapeTessellator.ellipseLine(mesh, 0, 0, rx, ry, start, end, segments, lineWidth);
+			}
+		}
+		drawMesh(mesh, x1 + rx, y1 + ry);
+	}
+
+	/**
+	 * 以渐变色填充矩形
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param start
+	 * @param end
+	 * @param vertical
+	 * @return
+	 */
+	public GLEx fillGradientRect(float x, float y, float width, float height, LColor start, LColor end,
+			boolean vertical) {
+		if (isClosed) {
+			return this;
+		}
+		ShapeMesh mesh = tempMesh.clear();
+		int a = mesh.addVertex(0, 0);
+		int b = mesh.addVertex(width, 0);
+		int c = mesh.addVertex(width, height);
+		int d = mesh.addVertex(0, height);
+		mesh.addTriangle(a, b, c);
+		mesh.addTriangle(a, c, d);
+		mesh.linearGradient(0, 0, vertical ? 0 : width, vertical ? height : 0, start.getARGB(), end.getARGB());
+		return drawMesh(mesh, x, y);
+	}
+
+	/**
+	 * 以径向渐变色填充椭圆
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param inner
+	 * @param outer
+	 * @return
+	 */
+	public GLEx fillGradientOval(float x, float y, float width, float height, LColor inner, LColor outer) {
+		if (isClosed) {
+			return this;
+		}
+		float rx = width / 2f, ry = height / 2f;
+		ShapeMesh mesh = ShapeTessellator.ellipse(tempMesh.clear(), 0, 0, rx, ry, 0, 360, 0);
+		mesh.radialGradient(0, 0, MathUtils.max(rx, ry), inner.getARGB(), outer.getARGB());
+		return drawMesh(mesh, x + rx, y + ry);
+	}
+
 	public GLEx drawLine(float x1, float y1, float x2, float y2) {
 		return $drawLine(x1, y1, x2, y2, true);
 	}
@@ -1673,6 +1913,10 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			} else {
 				y2++;
 			}
+			if (useShapeBatch) {
+				drawMesh(ShapeTessellator.line(tempMesh.clear(), x1, y1, x2, y2, lineWidth), 0, 0);
+				return this;
+			}
 			if (use) {
 				beginRenderer(GLType.Line);
 			}
@@ -1710,6 +1954,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		if (useAlltextures) {
 			drawShapeImpl(shape, x, y);
+		} else if (useShapeBatch) {
+			batchShape(shape, x, y, false, true);
 		} else {
 			float[] points = shape.getPoints();
 			if (points.length == 0) {
@@ -1772,6 +2018,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 				yps[j] = points[i + 1] + y;
 			}
 			drawPolylineImpl(xps, yps, len);
+		} else if (useShapeBatch) {
+			batchShape(shape, x, y, false, false);
 		} else {
 			float[] points = shape.getPoints();
 			if (points.length == 0) {
@@ -1810,6 +2058,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		if (useAlltextures) {
 			fillShapeImpl(shape, x, y);
+		} else if (useShapeBatch) {
+			batchShape(shape, x, y, true, true);
 		} else {
 			int argb = LColor.combine(fillColor, baseColor);
 			beginRenderer(GLType.Filled);
@@ -1903,6 +2153,17 @@ public class GLEx extends PixmapFImpl implements LRelease {
 	 */
 	public GLEx drawTriangle(final float x1, final float y1, final float x2, final float y2, final float x3,
 			final float y3) {
+		if (useShapeBatch) {
+			float[] xys = shapePoints(6);
+			xys[0] = x1;
+			xys[1] = y1;
+			xys[2] = x2;
+			xys[3] = y2;
+			xys[4] = x3;
+			xys[5] = y3;
+			batchPolygon(xys, 3, false, true);
+			return this;
+		}
 		beginRenderer(GLType.Line);
 		int argb = LColor.combine(fillColor, baseColor);
 		glRenderer.setColor(argb);
@@ -1923,6 +2184,17 @@ public class GLEx extends PixmapFImpl implements LRelease {
 	 */
 	public GLEx fillTriangle(final float x1, final float y1, final float x2, final float y2, final float x3,
 			final float y3) {
+		if (useShapeBatch) {
+			float[] xys = shapePoints(6);
+			xys[0] = x1;
+			xys[1] = y1;
+			xys[2] = x2;
+			xys[3] = y2;
+			xys[4] = x3;
+			xys[5] = y3;
+			batchPolygon(xys, 3, true, true);
+			return this;
+		}
 		beginRenderer(GLType.Filled);
 		int argb = LColor.combine(fillColor, baseColor);
 		glRenderer.setColor(argb);
@@ -2092,6 +2364,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 	public GLEx drawPoint(float x, float y) {
 		if (useAlltextures) {
 			drawPointImpl(x, y);
+		} else if (useShapeBatch) {
+			fillRectNative(x, y, lineWidth, lineWidth);
 		} else {
 			beginRenderer(GLType.Point);
 			int argb = LColor.combine(fillColor, baseColor);
@@ -2114,6 +2388,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			setColor(color);
 			drawPointImpl(x, y);
 			setColor(tmp);
+		} else if (useShapeBatch) {
+			batch.addQuad(getShapeTexture(), LColor.combine(baseColor, color), tx(), x, y, lineWidth, lineWidth);
 		} else {
 			beginRenderer(GLType.Point);
 			int argb = LColor.combine(baseColor, color);
@@ -2136,6 +2412,10 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			for (int i = 0; i < size; i++) {
 				drawPointImpl(x[i], y[i]);
 			}
+		} else if (useShapeBatch) {
+			for (int i = 0; i < size; i++) {
+				fillRectNative(x[i], y[i], lineWidth, lineWidth);
+			}
 		} else {
 			beginRenderer(GLType.Point);
 			int argb = LColor.combine(fillColor, baseColor);
@@ -2161,6 +2441,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		if (useAlltextures) {
 			fillPolygonImpl(xPoints, yPoints, nPoints);
+		} else if (useShapeBatch) {
+			batchPolygon(xPoints, yPoints, nPoints, true);
 		} else {
 			fill(new Polygon(xPoints, yPoints, nPoints));
 		}
@@ -2180,6 +2462,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		if (useAlltextures) {
 			drawPolygonImpl(xPoints, yPoints, nPoints);
+		} else if (useShapeBatch) {
+			batchPolygon(xPoints, yPoints, nPoints, false);
 		} else {
 			draw(new Polygon(xPoints, yPoints, nPoints));
 		}
@@ -2370,6 +2654,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		if (useAlltextures) {
 			drawArcImpl(x1, y1, width, height, start, end);
+		} else if (useShapeBatch) {
+			batchArc(x1, y1, width, height, segments, start, end, false);
 		} else {
 			while (end < start) {
 				end += 360;
@@ -2426,6 +2712,8 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		if (useAlltextures) {
 			fillArcImpl(x1, y1, width, height, start, end);
+		} else if (useShapeBatch) {
+			batchArc(x1, y1, width, height, segments, start, end, true);
 		} else {
 			while (end < start) {
 				end += 360;
@@ -24,16 +24,13 @@ import loon.LRelease;
 import loon.LSystem;
 import loon.canvas.LColor;
 import loon.font.LFont;
+import loon.utils.IntIntMap;
 import loon.utils.ObjectMap;
 import loon.utils.StringUtils;
-import loon.utils.ObjectMap.Entries;
-import loon.utils.ObjectMap.Entry;
 import loon.utils.TArray;
 
 public final class LSTRDictionary {
 
-	private final int CACHE_SIZE = LSystem.DEFAULT_MAX_CACHE_SIZE * 2;
-
 	private static LSTRDictionary instance;
 
 	public final static LSTRDictionary make() {
@@ -66,8 +63,6 @@ public final class LSTRDictionary {
 
 	private boolean tmp_asyn = true;
 
-	private final ObjectMap<String, LFont> cacheList = new ObjectMap<String, LFont>(20);
-
 	private final ObjectMap<String, Dict> fontList = new ObjectMap<String, Dict>(20);
 
 	private final ObjectMap<LFont, Dict> englishFontList = new ObjectMap<LFont, Dict>(20);
@@ -87,7 +82,7 @@ public final class LSTRDictionary {
 
 	public static class Dict implements LRelease {
 
-		TArray<Character> dicts;
+		IntIntMap dicts;
 
 		LSTRFont font;
 
@@ -96,7 +91,7 @@ public final class LSTRDictionary {
 		}
 
 		public Dict() {
-			dicts = new TArray<Character>(512);
+			dicts = new IntIntMap(512);
 		}
 
 		public LSTRFont getSTR() {
@@ -104,17 +99,39 @@ public final class LSTRDictionary {
 		}
 
 		public boolean include(String mes) {
-			final char[] chars = mes.toCharArray();
-			int size = chars.length;
-			for (int i = 0; i < size; i++) {
-				char flag = chars[i];
-				if (!dicts.contains(flag)) {
+			for (int i = 0, size = mes.length(); i < size; i++) {
+				if (!dicts.containsKey(mes.charAt(i))) {
 					return false;
 				}
 			}
 			return true;
 		}
 
+		/**
+		 * 记录新出现的字符,返回新增字符组成的字符串(无新增时返回null)
+		 * 
+		 * @param mes
+		 * @return
+		 */
+		String put(String mes) {
+			StringBuilder sbr = null;
+			for (int i = 0, size = mes.length(); i < size; i++) {
+				char flag = mes.charAt(i);
+				if (!dicts.containsKey(flag)) {
+					dicts.put(flag, dicts.size());
+					if (sbr == null) {
+						sbr = new StringBuilder();
+					}
+					sbr.append(flag);
+				}
+			}
+			return sbr == null ? null : sbr.toString();
+		}
+
+		public int size() {
+			return dicts == null ? 0 : dicts.size();
+		}
+
 		public boolean isClose() {
 			return font.isClose();
 		}
@@ -146,11 +163,6 @@ public final class LSTRDictionary {
 	}
 
 	public void clearStringLazy() {
-		synchronized (cacheList) {
-			if (cacheList != null) {
-				cacheList.clear();
-			}
-		}
 		synchronized (fontList) {
 			for (Dict d : fontList.values()) {
 				if (d != null) {
@@ -203,7 +215,9 @@ public final class LSTRDictionary {
 		return count == len;
 	}
 
-	private StringBuffer tmpBuffer = null;
+	private int rebuildCount = 0;
+
+	private int appendCount = 0;
 
 	public final Dict bind(final LFont font, final TArray<CharSequence> chars) {
 		CharSequence[] buffers = new CharSequence[chars.size];
@@ -238,71 +252,75 @@ public final class LSTRDictionary {
 			}
 			return (_lastDict = pDict);
 		}
-		final String message = StringUtils.unificationStrings(mes + ADDED);
-		if (cacheList.size > CACHE_SIZE) {
-			clearStringLazy();
-		}
 		synchronized (fontList) {
-			LFont cFont = cacheList.get(message);
-			if (cFont == null) {
-				for (Entries<String, LFont> it = cacheList.iterator(); it.hasNext();) {
-					Entry<String, LFont> obj = it.next();
-					String key = obj.key;
-					if (checkMessage(key, message)) {
-						cFont = obj.value;
-						break;
-					}
-				}
-			}
 			String fontFlag = font.getFontName() + "_" + font.getStyle() + "_" + font.getSize();
 			Dict pDict = fontList.get(fontFlag);
 			if (pDict != null && pDict.isClose()) {
 				fontList.remove(fontFlag);
 				pDict = null;
 			}
+			if (pDict == null) {
+				pDict = Dict.newDict();
+				fontList.put(fontFlag, pDict);
+			}
 			// 判定当前font与字体和已存在的文字图片纹理，是否和缓存的font适配
-			if ((cFont == null || pDict == null || (pDict != null && !pDict.include(mes)))) {
-				if (pDict == null) {
-					pDict = Dict.newDict();
-					fontList.put(fontFlag, pDict);
-				}
+			if (pDict.font == null || !pDict.include(mes)) {
 				synchronized (pDict) {
-					cacheList.put(message, font);
-					TArray<Character> charas = pDict.dicts;
-					int oldSize = charas.size;
-					char[] chars = message.toCharArray();
-					int size = chars.length;
-					for (int i = 0; i < size; i++) {
-						char flag = chars[i];
-						if (!charas.contains(flag)) {
-							charas.add(flag);
-						}
-					}
-					int newSize = charas.size;
-					// 如果旧有大小，不等于新的纹理字符大小，重新扩展LSTRFont纹理字符
-					if (oldSize != newSize) {
-						if (pDict.font != null) {
-							pDict.font.close();
-							pDict.font = null;
-						}
-						if (tmpBuffer == null) {
-							tmpBuffer = new StringBuffer(newSize);
-						} else {
-							tmpBuffer.delete(0, tmpBuffer.length());
-						}
-						for (int i = 0; i < newSize; i++) {
-							tmpBuffer.append(charas.get(i));
-						}
+					if (pDict.font == null) {
+						pDict.put(ADDED);
+						pDict.put(mes);
 						// 个别浏览器纹理同步会卡出国，只能异步……
-						pDict.font = new LSTRFont(font, tmpBuffer.toString(), tmp_asyn);
+						pDict.font = new LSTRFont(font, StringUtils.unificationStrings(mes + ADDED), tmp_asyn);
+						rebuildCount++;
+					} else {
+						// 只把新出现的字符追加到已有的纹理图集,不再重建整个LSTRFont
+						String added = pDict.put(mes);
+						if (added != null) {
+							pDict.font.appendChars(added);
+							appendCount++;
+						}
 					}
 				}
 			}
-
 			return (_lastDict = pDict);
 		}
 	}
 
+	/**
+	 * 整体创建LSTRFont纹理的次数
+	 * 
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	/**
+	 * 向已有纹理图集增量追加字符的次数
+	 * 
+	 * @return
+	 */
+	public int getAppendCount() {
+		return appendCount;
+	}
+
+	/**
+	 * 所有缓存字体纹理图集的页数
+	 * 
+	 * @return
+	 */
+	public int getAtlasPageCount() {
+		int count = 0;
+		synchronized (fontList) {
+			for (Dict d : fontList.values()) {
+				if (d != null && d.font != null) {
+					count += d.font.getPageCount();
+				}
+			}
+		}
+		return count;
+	}
+
 	public final void drawString(LFont font, String message, float x, float y, float angle, LColor c) {
 		Dict pDict = bind(font, message);
 		if (pDict.font != null) {
@@ -398,7 +416,6 @@ public final class LSTRDictionary {
 	}
 
 	public final void dispose() {
-		cacheList.clear();
 		clearStringLazy();
 		clearEnglishLazy();
 	}
@@ -33,8 +33,9 @@ import loon.font.LFont;
 import loon.font.TextLayout;
 import loon.geom.Affine2f;
 import loon.geom.PointI;
-import loon.utils.CharArray;
+import loon.utils.CollectionUtils;
 import loon.utils.GLUtils;
+import loon.utils.IntIntMap;
 import loon.utils.IntMap;
 import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
@@ -77,109 +78,255 @@ public class LSTRFont implements IFont {
 			if (strfont.additionalChars != null && strfont.additionalChars.length > strfont.totalCharSet) {
 				strfont.textureWidth *= 2;
 			}
-			Canvas canvas = LSystem.base().graphics().createCanvas(strfont.textureWidth, strfont.textureHeight);
-			canvas.setColor(LColor.white);
-			canvas.setFont(strfont.font);
-			int rowHeight = 0;
-			int positionX = 0;
-			int positionY = 0;
 			int customCharsLength = (strfont.additionalChars != null) ? strfont.additionalChars.length : 0;
 			strfont.totalCharSet = customCharsLength == 0 ? strfont.totalCharSet : 0;
-			StringBuilder sbr = new StringBuilder(strfont.totalCharSet);
-			int fixSize = strfont.fontSize / 5;
-			if (fixSize % 2 != 0) {
-				fixSize -= 1;
+			strfont.closePages();
+			char[] list = new char[strfont.totalCharSet + customCharsLength];
+			for (int i = 0; i < list.length; i++) {
+				list[i] = (i < strfont.totalCharSet) ? (char) i : strfont.additionalChars[i - strfont.totalCharSet];
 			}
-			final boolean clipFont = LSystem.USE_TRUEFONT_CLIP && strfont.fontSize < 20 && LSystem.isMobile();
-			// 本地字体怎么都不如ttf或者fnt字体清晰准确,差异太大，只能尽量保证显示效果……
-			for (int i = 0, size = strfont.totalCharSet + customCharsLength; i < size; i++) {
-				char ch = (i < strfont.totalCharSet) ? (char) i : strfont.additionalChars[i - strfont.totalCharSet];
+			strfont.packGlyphs(list, list.length);
+			strfont.uploadPages();
+			strfont.rebuildCount++;
+			strfont._initChars = true;
+			strfont.isDrawing = false;
+		}
 
-				TextLayout layout = strfont.font.getLayoutText(String.valueOf(ch));
+	}
 
-				int charwidth = layout.charWidth(ch);
+	private class AppendStringFont implements Updateable {
 
-				if (charwidth <= 0) {
-					charwidth = 1;
+		@Override
+		public void action(Object a) {
+			synchronized (LSTRFont.this) {
+				if (_isClose || pendingChars.length() == 0) {
+					appending = false;
+					return;
 				}
+				char[] list = pendingChars.toString().toCharArray();
+				pendingChars.delete(0, pendingChars.length());
+				packGlyphs(list, list.length);
+				uploadPages();
+				// 新增字符后旧的字符串缓存可能缺字,需要重新生成
+				clearDisplays();
+				text = text + new String(list);
+				appendCount++;
+				appending = false;
+			}
+		}
 
-				int charheight = (int) layout.getHeight();
-				if (charheight <= 0) {
-					charheight = strfont.fontSize;
-				}
-				IntObject newIntObject = new IntObject();
+	}
 
-				if (clipFont) {
-					if (StringUtils.isAlphabetLower(ch)) {
-						charwidth += fixSize;
-						charheight += fixSize;
-					}
-				} else {
-					if (ch == 'i' && charheight > 24) {
-						charheight -= 4;
-					}
-				}
+	/**
+	 * 纹理图集的单独一页,按行(shelf)方式依次摆放字符
+	 */
+	private class AtlasPage {
 
-				newIntObject.width = charwidth;
-				newIntObject.height = charheight;
-
-				if (clipFont) {
-					// 发现部分环境字体如果整体渲染到canvas的话，会导致纹理切的不整齐(实际上就是间距和从系统获取的不符合),
-					// 保险起见一个个字体粘贴……
-					Image image = getFontImage(layout, ch, charwidth, charheight);
-					canvas.draw(image, positionX, positionY);
-					image.close();
-					image = null;
-					if (positionX + newIntObject.width >= strfont.textureWidth) {
-						positionX = 0;
-						positionY += rowHeight;
-						rowHeight = 0;
-					}
-				} else {
-					// 一次渲染一整行本地字体到纹理，这样对系统开销最小，不过某些平台切的不整齐(实际上就是间距和从系统获取的不符合)
-					if (positionX + newIntObject.width >= strfont.textureWidth) {
-						layout = strfont.font.getLayoutText(sbr.toString());
-						canvas.fillText(layout, 0, positionY);
-						sbr.delete(0, sbr.length());
-						positionX = 0;
-						positionY += rowHeight;
-						rowHeight = 0;
-					}
-					sbr.append(ch);
-				}
+		Canvas canvas;
+
+		LTexture texture;
 
-				newIntObject.storedX = positionX;
-				newIntObject.storedY = positionY;
+		LTextureBatch batch;
 
-				if (newIntObject.height > strfont.fontHeight) {
-					strfont.fontHeight = newIntObject.height;
+		ObjectMap<String, Cache> displays = new ObjectMap<String, Cache>(256);
+
+		int cursorX, cursorY, rowHeight;
+
+		int usedArea;
+
+		boolean dirty;
+
+		boolean charSession;
+
+		AtlasPage() {
+			canvas = LSystem.base().graphics().createCanvas(textureWidth, textureHeight);
+			canvas.setColor(LColor.white);
+			canvas.setFont(font);
+		}
+
+		void clearDisplays() {
+			for (Cache cache : displays.values()) {
+				if (cache != null) {
+					cache.close();
 				}
+			}
+			displays.clear();
+		}
+
+		void close() {
+			clearDisplays();
+			if (batch != null) {
+				batch.close();
+				batch = null;
+			}
+			if (texture != null) {
+				texture.close(true);
+				texture = null;
+			}
+			if (canvas != null) {
+				canvas.close();
+				canvas = null;
+			}
+		}
+	}
 
-				if (newIntObject.height > rowHeight) {
-					rowHeight = newIntObject.height;
+	private AtlasPage newPage() {
+		if (pageCount == pages.length) {
+			AtlasPage[] tmp = new AtlasPage[pages.length * 2];
+			System.arraycopy(pages, 0, tmp, 0, pages.length);
+			pages = tmp;
+		}
+		return pages[pageCount++] = new AtlasPage();
+	}
+
+	/**
+	 * 将字符依次光栅化到当前页的空闲位置,当前页放不下时追加新页
+	 * 
+	 * @param list
+	 * @param count
+	 */
+	private void packGlyphs(char[] list, int count) {
+		AtlasPage page = pageCount == 0 ? newPage() : pages[pageCount - 1];
+		StringBuilder sbr = new StringBuilder(count);
+		int rowStartX = page.cursorX;
+		int fixSize = fontSize / 5;
+		if (fixSize % 2 != 0) {
+			fixSize -= 1;
+		}
+		final boolean clipFont = LSystem.USE_TRUEFONT_CLIP && fontSize < 20 && LSystem.isMobile();
+		// 本地字体怎么都不如ttf或者fnt字体清晰准确,差异太大，只能尽量保证显示效果……
+		for (int i = 0; i < count; i++) {
+			char ch = list[i];
+
+			TextLayout layout = font.getLayoutText(String.valueOf(ch));
+
+			int charwidth = layout.charWidth(ch);
+
+			if (charwidth <= 0) {
+				charwidth = 1;
+			}
+
+			int charheight = (int) layout.getHeight();
+			if (charheight <= 0) {
+				charheight = fontSize;
+			}
+			IntObject newIntObject = new IntObject();
+
+			if (clipFont) {
+				if (StringUtils.isAlphabetLower(ch)) {
+					charwidth += fixSize;
+					charheight += fixSize;
 				}
-				positionX += newIntObject.width;
-				if (i < strfont.totalCharSet) {
-					strfont.charArray[i] = newIntObject;
-				} else {
-					strfont.customChars.put(ch, newIntObject);
+			} else {
+				if (ch == 'i' && charheight > 24) {
+					charheight -= 4;
 				}
 			}
-			if (sbr.length() > 0) {
-				TextLayout layout = strfont.font.getLayoutText(sbr.toString());
-				canvas.fillText(layout, 0, positionY);
-				sbr = null;
+
+			newIntObject.width = charwidth;
+			newIntObject.height = charheight;
+
+			if (page.cursorX + newIntObject.width >= textureWidth) {
+				fillRow(page, sbr, rowStartX);
+				page.cursorX = 0;
+				page.cursorY += page.rowHeight;
+				page.rowHeight = 0;
+				rowStartX = 0;
+			}
+			if (page.cursorY + newIntObject.height > textureHeight && page.usedArea > 0) {
+				fillRow(page, sbr, rowStartX);
+				page = newPage();
+				rowStartX = 0;
 			}
-			LTextureBatch tmpbatch = strfont.fontBatch;
-			strfont.fontBatch = new LTextureBatch(strfont.texture = canvas.toTexture());
-			strfont.fontBatch.setBlendState(BlendState.AlphaBlend);
-			if (tmpbatch != null) {
-				tmpbatch.close();
+
+			if (clipFont) {
+				// 发现部分环境字体如果整体渲染到canvas的话，会导致纹理切的不整齐(实际上就是间距和从系统获取的不符合),
+				// 保险起见一个个字体粘贴……
+				Image image = getFontImage(layout, ch, charwidth, charheight);
+				page.canvas.draw(image, page.cursorX, page.cursorY);
+				image.close();
+				image = null;
+				page.dirty = true;
+			} else {
+				// 一次渲染一整行本地字体到纹理，这样对系统开销最小，不过某些平台切的不整齐(实际上就是间距和从系统获取的不符合)
+				sbr.append(ch);
 			}
-			strfont._initChars = true;
-			strfont.isDrawing = false;
+
+			newIntObject.storedX = page.cursorX;
+			newIntObject.storedY = page.cursorY;
+			newIntObject.page = pageCount - 1;
+
+			if (newIntObject.height > fontHeight) {
+				fontHeight = newIntObject.height;
+			}
+
+			if (newIntObject.height > page.rowHeight) {
+				page.rowHeight = newIntObject.height;
+			}
+			page.cursorX += newIntObject.width;
+			page.usedArea += newIntObject.width * newIntObject.height;
+			glyphCount++;
+			if (ch < totalCharSet) {
+				charArray[ch] = newIntObject;
+			} else {
+				customChars.put(ch, newIntObject);
+			}
+		}
+		fillRow(page, sbr, rowStartX);
+	}
+
+	private void fillRow(AtlasPage page, StringBuilder sbr, int x) {
+		if (sbr.length() > 0) {
+			TextLayout layout = font.getLayoutText(sbr.toString());
+			page.canvas.fillText(layout, x, page.cursorY);
+			sbr.delete(0, sbr.length());
+			page.dirty = true;
+		}
+	}
+
+	/**
+	 * 上传有变化的图集页,已存在的纹理只更新像素而不重建
+	 */
+	private void uploadPages() {
+		for (int i = 0; i < pageCount; i++) {
+			AtlasPage page = pages[i];
+			if (!page.dirty) {
+				continue;
+			}
+			if (page.texture == null) {
+				page.texture = page.canvas.image.createTexture(LTexture.Format.LINEAR);
+				page.batch = new LTextureBatch(page.texture);
+				page.batch.setBlendState(BlendState.AlphaBlend);
+			} else {
+				page.texture.update(page.canvas.image, false);
+			}
+			page.dirty = false;
+		}
+		if (pageCount > 0) {
+			texture = pages[0].texture;
+			fontBatch = pages[0].batch;
 		}
+	}
 
+	private void clearDisplays() {
+		for (int i = 0; i < pageCount; i++) {
+			pages[i].clearDisplays();
+		}
+	}
+
+	private void closePages() {
+		for (int i = 0; i < pageCount; i++) {
+			pages[i].close();
+			pages[i] = null;
+		}
+		pageCount = 0;
+		glyphCount = 0;
+		texture = null;
+		fontBatch = null;
+		customChars.clear();
+		for (int i = 0; i < charArray.length; i++) {
+			charArray[i] = null;
+		}
 	}
 
 	private Image getFontImage(TextLayout layout, char ch, int w, int h) {
@@ -205,8 +352,6 @@ public class LSTRFont implements IFont {
 
 	private float offsetX = 1, offsetY = 1;
 
-	private ObjectMap<String, Cache> displays;
-
 	private int totalCharSet = 256;
 
 	private IntMap<IntObject> customChars = new IntMap<IntObject>();
@@ -237,6 +382,26 @@ public class LSTRFont implements IFont {
 
 	private LTextureBatch fontBatch;
 
+	private AtlasPage[] pages = new AtlasPage[4];
+
+	private int pageCount = 0;
+
+	private int glyphCount = 0;
+
+	private int rebuildCount = 0;
+
+	private int appendCount = 0;
+
+	private boolean appending = false;
+
+	private final StringBuilder pendingChars = new StringBuilder();
+
+	private int sessionCount = 0;
+
+	private IntObject[] sessionGlyphs;
+
+	private float[] sessionValues;
+
 	private class IntObject {
 
 		public int width;
@@ -247,6 +412,8 @@ public class LSTRFont implements IFont {
 
 		public int storedY;
 
+		public int page;
+
 	}
 
 	private boolean _initChars = false;
@@ -284,7 +451,6 @@ public class LSTRFont implements IFont {
 	}
 
 	public LSTRFont(LFont font, char[] chs, boolean asyn) {
-		this.displays = new ObjectMap<String, Cache>(totalCharSet);
 		this.useCache = true;
 		this.font = font;
 		this.isasyn = asyn;
@@ -295,23 +461,26 @@ public class LSTRFont implements IFont {
 		this.totalCharSet = customCharsLength == 0 ? totalCharSet : 0;
 		if (chs != null && chs.length > 0) {
 			int size = chs.length;
-			CharArray chars = new CharArray();
+			IntIntMap exist = new IntIntMap(size);
+			char[] chars = new char[size];
+			int count = 0;
 			for (int i = 0; i < size; i++) {
 				char ch = chs[i];
-				if (!chars.contains(ch))
-					chars.add(ch);
+				if (!exist.containsKey(ch)) {
+					exist.put(ch, count);
+					chars[count++] = ch;
+				}
 			}
-			if (chs.length == chars.length) {
+			if (chs.length == count) {
 				this.additionalChars = chs;
 			} else {
-				this.additionalChars = chars.items;
+				this.additionalChars = CollectionUtils.copyOf(chars, count);
 			}
 			this.text = new String(additionalChars);
 			if (additionalChars != null && additionalChars.length > totalCharSet) {
 				textureWidth *= 2;
 			}
 			this.make(asyn);
-			chars = null;
 		}
 		if (StringUtils.isEmpty(text)) {
 			_isClose = true;
@@ -344,10 +513,139 @@ public class LSTRFont implements IFont {
 		}
 	}
 
+	/**
+	 * 追加字符到纹理图集,只光栅化尚未存在的字符,当前页用尽时自动增加新页,而不会重建整个字体纹理
+	 * 
+	 * @param chs
+	 */
+	public synchronized void appendChars(String chs) {
+		if (_isClose || StringUtils.isEmpty(chs)) {
+			return;
+		}
+		int oldSize = pendingChars.length();
+		for (int i = 0, size = chs.length(); i < size; i++) {
+			char ch = chs.charAt(i);
+			if (!_initChars && containsAdditional(ch)) {
+				continue;
+			}
+			if (_initChars && getGlyph(ch) != null) {
+				continue;
+			}
+			if (pendingChars.indexOf(String.valueOf(ch), oldSize) == -1) {
+				pendingChars.append(ch);
+			}
+		}
+		if (pendingChars.length() == oldSize) {
+			return;
+		}
+		if (!_initChars) {
+			// 纹理尚未生成,直接并入首次生成的字符中
+			String added = pendingChars.substring(oldSize);
+			pendingChars.delete(oldSize, pendingChars.length());
+			additionalChars = additionalChars == null ? added.toCharArray()
+					: (new String(additionalChars) + added).toCharArray();
+			text = new String(additionalChars);
+			return;
+		}
+		if (!appending) {
+			appending = true;
+			Updateable update = new AppendStringFont();
+			if (isasyn) {
+				LSystem.load(update);
+			} else {
+				update.action(null);
+			}
+		}
+	}
+
+	private boolean containsAdditional(char ch) {
+		if (ch < totalCharSet && (additionalChars == null || additionalChars.length == 0)) {
+			return true;
+		}
+		if (additionalChars != null) {
+			for (int i = 0; i < additionalChars.length; i++) {
+				if (additionalChars[i] == ch) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private IntObject getGlyph(int ch) {
+		if (ch < totalCharSet) {
+			return charArray[ch];
+		}
+		return customChars.get(ch);
+	}
+
+	public boolean containsChar(char ch) {
+		return getGlyph(ch) != null;
+	}
+
 	public LTexture getTexture() {
 		return texture;
 	}
 
+	public LTexture getTexture(int page) {
+		if (page < 0 || page >= pageCount) {
+			return null;
+		}
+		return pages[page].texture;
+	}
+
+	/**
+	 * 纹理图集页数
+	 * 
+	 * @return
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * 已光栅化的字符数
+	 * 
+	 * @return
+	 */
+	public int getGlyphCount() {
+		return glyphCount;
+	}
+
+	/**
+	 * 纹理图集的占用率(0-1),按全部页面面积计算
+	 * 
+	 * @return
+	 */
+	public float getAtlasOccupancy() {
+		if (pageCount == 0) {
+			return 0f;
+		}
+		long used = 0;
+		for (int i = 0; i < pageCount; i++) {
+			used += pages[i].usedArea;
+		}
+		return (float) used / ((long) textureWidth * textureHeight * pageCount);
+	}
+
+	/**
+	 * 整体重建纹理的次数
+	 * 
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	/**
+	 * 增量追加字符的次数
+	 * 
+	 * @return
+	 */
+	public int getAppendCount() {
+		return appendCount;
+	}
+
 	@Override
 	public void drawString(GLEx g, String chars, float x, float y, float sx, float sy, float ax, float ay,
 			float rotation, LColor c) {
@@ -394,91 +692,86 @@ public class LSTRFont implements IFont {
 		if (texture.isClose()) {
 			return;
 		}
-		if (displays.size > LSystem.DEFAULT_MAX_CACHE_SIZE) {
-			synchronized (displays) {
-				for (Cache cache : displays.values()) {
-					if (cache != null) {
-						cache.close();
-						cache = null;
-					}
-				}
-			}
-			displays.clear();
-		}
-
 		final float x = mx + _offset.x;
 		final float y = my + _offset.y;
-		this.intObject = null;
-		this.charCurrent = 0;
-		this.totalWidth = 0;
-		this.totalHeight = 0;
 		if (rotation != 0 && (ax == 0 && ay == 0)) {
 			TextLayout layout = font.getLayoutText(chars);
 			ax = layout.bounds.width / 2;
 			ay = layout.bounds.height;
 		}
-		if (useCache) {
-			display = displays.get(chars);
-			if (display == null) {
-				fontBatch.begin();
-				float old = fontBatch.getFloatColor();
-				fontBatch.setColor(c);
-				char[] charList = chars.toCharArray();
-				for (int i = 0; i < charList.length; i++) {
-					charCurrent = charList[i];
-					if (charCurrent < totalCharSet) {
-						intObject = charArray[charCurrent];
-					} else {
-						intObject = customChars.get(charCurrent);
-					}
-					if (charCurrent == newLineFlag) {
-						totalHeight += fontSize;
-						totalWidth = 0;
-					}
-					if (intObject != null) {
-						if ((i >= startIndex) || (i <= endIndex)) {
-							fontBatch.drawQuad(totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
-									(totalHeight + intObject.height) - offsetY, intObject.storedX, intObject.storedY,
-									intObject.storedX + intObject.width - offsetX,
-									intObject.storedY + intObject.height - offsetY);
-						}
-						totalWidth += intObject.width;
+		for (int p = 0; p < pageCount; p++) {
+			AtlasPage page = pages[p];
+			if (page.batch == null) {
+				continue;
+			}
+			if (useCache) {
+				if (page.displays.size > LSystem.DEFAULT_MAX_CACHE_SIZE) {
+					synchronized (page.displays) {
+						page.clearDisplays();
 					}
 				}
-				fontBatch.commit(x, y, sx, sy, ax, ay, rotation);
-				fontBatch.setColor(old);
-				displays.put(chars, display = fontBatch.newCache());
-			} else if (display != null && fontBatch != null && fontBatch.toTexture() != null) {
-				fontBatch.postCache(display, c, x, y, sx, sy, ax, ay, rotation);
-			}
-		} else {
-			fontBatch.begin();
-			float old = fontBatch.getFloatColor();
-			fontBatch.setColor(c);
-			char[] charList = chars.toCharArray();
-			for (int i = 0; i < charList.length; i++) {
-				charCurrent = charList[i];
-				if (charCurrent < totalCharSet) {
-					intObject = charArray[charCurrent];
-				} else {
-					intObject = customChars.get(charCurrent);
+				display = page.displays.get(chars);
+				if (display == null) {
+					if (pageCount > 1 && !usePage(chars, p)) {
+						continue;
+					}
+					LTextureBatch batch = page.batch;
+					batch.begin();
+					float old = batch.getFloatColor();
+					batch.setColor(c);
+					drawPage(batch, p, chars, startIndex, endIndex);
+					batch.commit(x, y, sx, sy, ax, ay, rotation);
+					batch.setColor(old);
+					page.displays.put(chars, display = batch.newCache());
+				} else if (display != null && page.batch.toTexture() != null) {
+					page.batch.postCache(display, c, x, y, sx, sy, ax, ay, rotation);
 				}
-				if (charCurrent == newLineFlag) {
-					totalHeight += fontSize;
-					totalWidth = 0;
+			} else {
+				if (pageCount > 1 && !usePage(chars, p)) {
+					continue;
 				}
-				if (intObject != null) {
-					if ((i >= startIndex) || (i <= endIndex)) {
-						fontBatch.drawQuad(totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
-								(totalHeight + intObject.height) - offsetY, intObject.storedX, intObject.storedY,
-								intObject.storedX + intObject.width - offsetX,
-								intObject.storedY + intObject.height - offsetY);
-					}
-					totalWidth += intObject.width;
+				LTextureBatch batch = page.batch;
+				batch.begin();
+				float old = batch.getFloatColor();
+				batch.setColor(c);
+				drawPage(batch, p, chars, startIndex, endIndex);
+				batch.setColor(old);
+				batch.commit(x, y, sx, sy, ax, ay, rotation);
+			}
+		}
+	}
+
+	private boolean usePage(String chars, int page) {
+		for (int i = 0, size = chars.length(); i < size; i++) {
+			IntObject obj = getGlyph(chars.charAt(i));
+			if (obj != null && obj.page == page) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void drawPage(LTextureBatch batch, int page, String chars, int startIndex, int endIndex) {
+		this.intObject = null;
+		this.charCurrent = 0;
+		this.totalWidth = 0;
+		this.totalHeight = 0;
+		for (int i = 0, size = chars.length(); i < size; i++) {
+			charCurrent = chars.charAt(i);
+			intObject = getGlyph(charCurrent);
+			if (charCurrent == newLineFlag) {
+				totalHeight += fontSize;
+				totalWidth = 0;
+			}
+			if (intObject != null) {
+				if (intObject.page == page && ((i >= startIndex) || (i <= endIndex))) {
+					batch.drawQuad(totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
+							(totalHeight + intObject.height) - offsetY, intObject.storedX, intObject.storedY,
+							intObject.storedX + intObject.width - offsetX,
+							intObject.storedY + intObject.height - offsetY);
 				}
+				totalWidth += intObject.width;
 			}
-			fontBatch.setColor(old);
-			fontBatch.commit(x, y, sx, sy, ax, ay, rotation);
 		}
 	}
 
@@ -536,7 +829,6 @@ public class LSTRFont implements IFont {
 		this.charCurrent = 0;
 		this.totalWidth = 0;
 		this.totalHeight = 0;
-		final LTexture texture = fontBatch.toTexture();
 		int old = gl.color();
 		char[] charList = chars.toCharArray();
 		final boolean anchor = ax != 0 || ay != 0;
@@ -580,7 +872,7 @@ public class LSTRFont implements IFont {
 
 				if (intObject != null) {
 					if ((i >= startIndex) || (i <= endIndex)) {
-						gl.draw(texture, x + totalWidth, y + totalHeight, intObject.width * sx, intObject.height * sy,
+						gl.draw(pages[intObject.page].texture, x + totalWidth, y + totalHeight, intObject.width * sx, intObject.height * sy,
 								StringUtils.isChinese((char) charCurrent) ? intObject.storedX - updateX
 										: intObject.storedX,
 								intObject.storedY, intObject.width, intObject.height - updateY, c);
@@ -620,26 +912,29 @@ public class LSTRFont implements IFont {
 			return;
 		}
 		this.charCurrent = c;
-		if (charCurrent < totalCharSet) {
-			intObject = charArray[charCurrent];
-		} else {
-			intObject = customChars.get(charCurrent);
-		}
+		intObject = getGlyph(charCurrent);
 		if (intObject != null) {
-			if (color != null) {
-				setImageColor(color);
+			// 字符可能分布在不同的图集页,先记录下来,在stopChar时按页提交
+			if (sessionGlyphs == null) {
+				sessionGlyphs = new IntObject[64];
+				sessionValues = new float[64 * 6];
+			} else if (sessionCount == sessionGlyphs.length) {
+				IntObject[] tmp = new IntObject[sessionCount * 2];
+				System.arraycopy(sessionGlyphs, 0, tmp, 0, sessionCount);
+				sessionGlyphs = tmp;
+				sessionValues = CollectionUtils.copyOf(sessionValues, sessionCount * 2 * 6);
 			}
-			if (c == newLineFlag) {
-				fontBatch.draw(colors, x, y + fontSize, intObject.width - offsetX, intObject.height - offsetY,
-						intObject.storedX, intObject.storedY, intObject.storedX + intObject.width - offsetX,
-						intObject.storedY + intObject.height - offsetY);
+			int idx = sessionCount * 6;
+			sessionGlyphs[sessionCount++] = intObject;
+			sessionValues[idx] = x;
+			sessionValues[idx + 1] = c == newLineFlag ? y + fontSize : y;
+			if (color != null) {
+				sessionValues[idx + 2] = color.r;
+				sessionValues[idx + 3] = color.g;
+				sessionValues[idx + 4] = color.b;
+				sessionValues[idx + 5] = 1f;
 			} else {
-				fontBatch.draw(colors, x, y, intObject.width - offsetX, intObject.height - offsetY, intObject.storedX,
-						intObject.storedY, intObject.storedX + intObject.width - offsetX,
-						intObject.storedY + intObject.height - offsetY);
-			}
-			if (colors != null) {
-				colors = null;
+				sessionValues[idx + 5] = 0f;
 			}
 		}
 	}
@@ -659,7 +954,7 @@ public class LSTRFont implements IFont {
 		if (texture.isClose()) {
 			return;
 		}
-		fontBatch.begin();
+		sessionCount = 0;
 	}
 
 	public void stopChar() {
@@ -681,9 +976,41 @@ public class LSTRFont implements IFont {
 		if (g != null) {
 			int old = GLUtils.getBlendMode();
 			GLUtils.setBlendMode(g, LSystem.MODE_NORMAL);
-			fontBatch.end();
+			for (int p = 0; p < pageCount; p++) {
+				AtlasPage page = pages[p];
+				page.charSession = false;
+				for (int i = 0; i < sessionCount; i++) {
+					if (sessionGlyphs[i].page == p) {
+						page.charSession = true;
+						break;
+					}
+				}
+				if (!page.charSession || page.batch == null) {
+					continue;
+				}
+				LTextureBatch batch = page.batch;
+				batch.begin();
+				for (int i = 0; i < sessionCount; i++) {
+					IntObject obj = sessionGlyphs[i];
+					if (obj.page != p) {
+						continue;
+					}
+					int idx = i * 6;
+					if (sessionValues[idx + 5] != 0f) {
+						setImageColor(sessionValues[idx + 2], sessionValues[idx + 3], sessionValues[idx + 4]);
+					}
+					batch.draw(colors, sessionValues[idx], sessionValues[idx + 1], obj.width - offsetX,
+							obj.height - offsetY, obj.storedX, obj.storedY, obj.storedX + obj.width - offsetX,
+							obj.storedY + obj.height - offsetY);
+					if (colors != null) {
+						colors = null;
+					}
+				}
+				batch.end();
+			}
 			GLUtils.setBlendMode(g, old);
 		}
+		sessionCount = 0;
 	}
 
 	private boolean processing() {
@@ -705,7 +1032,12 @@ public class LSTRFont implements IFont {
 		if (g != null) {
 			int old = GLUtils.getBlendMode();
 			GLUtils.setBlendMode(g, LSystem.MODE_NORMAL);
-			fontBatch.postLastCache();
+			for (int p = 0; p < pageCount; p++) {
+				AtlasPage page = pages[p];
+				if (page.charSession && page.batch != null) {
+					page.batch.postLastCache();
+				}
+			}
 			GLUtils.setBlendMode(g, old);
 		}
 	}
@@ -721,8 +1053,21 @@ public class LSTRFont implements IFont {
 		if (texture.isClose()) {
 			return null;
 		}
-		fontBatch.disposeLastCache();
-		return fontBatch.newCache();
+		Cache result = null;
+		for (int p = 0; p < pageCount; p++) {
+			LTextureBatch batch = pages[p].batch;
+			if (batch == null) {
+				continue;
+			}
+			batch.disposeLastCache();
+			if (pages[p].charSession) {
+				Cache cache = batch.newCache();
+				if (result == null) {
+					result = cache;
+				}
+			}
+		}
+		return result;
 	}
 
 	public LTextureBatch getFontBatch() {
@@ -920,21 +1265,13 @@ public class LSTRFont implements IFont {
 		if (_isClose) {
 			return;
 		}
-		for (Cache c : displays.values()) {
-			if (c != null) {
-				c.close();
-			}
-		}
-		displays.clear();
 		if (fontBatch != null) {
-			fontBatch.close();
 			LTextureBatch.isBatchCacheDitry = true;
 			LTextureBatch.clearBatchCaches();
 		}
-		if (texture != null) {
-			texture.close(true);
-		}
-		fontBatch = null;
+		closePages();
+		pendingChars.delete(0, pendingChars.length());
+		appending = false;
 		isDrawing = false;
 		_initChars = false;
 		_initDraw = -1;
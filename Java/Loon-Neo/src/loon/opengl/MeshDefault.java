@@ -53,6 +53,28 @@ public class MeshDefault {
 		return mesh;
 	}
 
+	/**
+	 * 多纹理批处理用的网格,在默认格式之后附带一个纹理单元序号
+	 */
+	public Mesh getMultiTextureMesh(String n, int size) {
+		final String name = n + size + "_multi";
+		Mesh mesh = meshLazy.get(name);
+		if (mesh == null) {
+			mesh = new Mesh(VertexDataType.VertexArray, false, size * 4,
+					size * 6, new VertexAttribute(Usage.Position, 2,
+							ShaderProgram.POSITION_ATTRIBUTE),
+					new VertexAttribute(Usage.ColorPacked, 4,
+							ShaderProgram.COLOR_ATTRIBUTE),
+					new VertexAttribute(Usage.TextureCoordinates, 2,
+							ShaderProgram.TEXCOORD_ATTRIBUTE + "0"),
+					new VertexAttribute(Usage.Generic, 1,
+							ShaderProgram.TEXINDEX_ATTRIBUTE));
+			resetIndices(size, mesh);
+			meshLazy.put(name, mesh);
+		}
+		return mesh;
+	}
+
 	private void resetIndices(int size, Mesh mesh) {
 		int len = size * 6;
 		short[] indices = new short[len];
@@ -88,6 +110,11 @@ public class MeshDefault {
 
 	public void post(final String name, final int size, ShaderProgram shader,
 			float[] vertices, int vertexIdx, int count) {
+		post(name, size, shader, vertices, vertexIdx, count, false);
+	}
+
+	public void post(final String name, final int size, ShaderProgram shader,
+			float[] vertices, int vertexIdx, int count, boolean multiTexture) {
 		// 防止与主画面渲染器GLEx冲突
 		this.running = LSystem.mainDrawRunning();
 		if (!running) {
@@ -96,7 +123,8 @@ public class MeshDefault {
 			LSystem.mainEndDraw();
 			stop_main_readering = true;
 		}
-		Mesh mesh = getMesh(name, size);
+		Mesh mesh = multiTexture ? getMultiTextureMesh(name, size) : getMesh(
+				name, size);
 		mesh.setVertices(vertices, 0, vertexIdx);
 		mesh.getIndicesBuffer().position(0);
 		mesh.getIndicesBuffer().limit(count);
@@ -280,6 +280,8 @@ public class ShaderProgram implements LRelease {
 
 	public static final String BINORMAL_ATTRIBUTE = "a_binormal";
 
+	public static final String TEXINDEX_ATTRIBUTE = "a_texIndex";
+
 	public static boolean pedantic = true;
 
 	private final static ObjectMap<LGame, TArray<ShaderProgram>> shaders = new ObjectMap<LGame, TArray<ShaderProgram>>();
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.canvas.LColor;
+import loon.utils.MathUtils;
+
+/**
+ * 图形三角化后的网格数据(顶点坐标,顶点色彩与三角索引),可直接提交到BaseBatch与纹理一同批处理
+ */
+public class ShapeMesh {
+
+	float[] vertices;
+
+	int[] colors;
+
+	short[] indices;
+
+	int vertexCount;
+
+	int indexCount;
+
+	boolean colored;
+
+	// 缓存使用的键值
+	float[] key;
+
+	int keyLength;
+
+	int hash;
+
+	ShapeMesh next;
+
+	// 缓存按最近使用排列的链表
+	ShapeMesh newer, older;
+
+	public ShapeMesh() {
+		this(32, 96);
+	}
+
+	public ShapeMesh(int vertexCount, int indexCount) {
+		this.vertices = new float[MathUtils.max(vertexCount, 4) * 2];
+		this.colors = new int[MathUtils.max(vertexCount, 4)];
+		this.indices = new short[MathUtils.max(indexCount, 6)];
+	}
+
+	public ShapeMesh clear() {
+		vertexCount = 0;
+		indexCount = 0;
+		colored = false;
+		return this;
+	}
+
+	public int addVertex(float x, float y) {
+		return addVertex(x, y, LColor.DEF_COLOR);
+	}
+
+	public int addVertex(float x, float y, int argb) {
+		if (vertexCount == colors.length) {
+			int size = colors.length * 2;
+			float[] tmpVertices = new float[size * 2];
+			System.arraycopy(vertices, 0, tmpVertices, 0, vertexCount * 2);
+			vertices = tmpVertices;
+			int[] tmpColors = new int[size];
+			System.arraycopy(colors, 0, tmpColors, 0, vertexCount);
+			colors = tmpColors;
+		}
+		final int idx = vertexCount++;
+		vertices[idx * 2] = x;
+		vertices[idx * 2 + 1] = y;
+		colors[idx] = argb;
+		if (argb != LColor.DEF_COLOR) {
+			colored = true;
+		}
+		return idx;
+	}
+
+	public void addTriangle(int a, int b, int c) {
+		if (indexCount + 3 > indices.length) {
+			short[] tmp = new short[indices.length * 2];
+			System.arraycopy(indices, 0, tmp, 0, indexCount);
+			indices = tmp;
+		}
+		indices[indexCount++] = (short) a;
+		indices[indexCount++] = (short) b;
+		indices[indexCount++] = (short) c;
+	}
+
+	/**
+	 * 按(x0,y0)到(x1,y1)的方向为全部顶点设置线性渐变色
+	 *
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param startColor
+	 * @param endColor
+	 * @return
+	 */
+	public ShapeMesh linearGradient(float x0, float y0, float x1, float y1,
+			int startColor, int endColor) {
+		final float dx = x1 - x0, dy = y1 - y0;
+		final float len2 = dx * dx + dy * dy;
+		for (int i = 0; i < vertexCount; i++) {
+			float t = len2 == 0 ? 0
+					: ((vertices[i * 2] - x0) * dx + (vertices[i * 2 + 1] - y0)
+							* dy)
+							/ len2;
+			colors[i] = lerp(startColor, endColor, t);
+		}
+		colored = true;
+		return this;
+	}
+
+	/**
+	 * 以(cx,cy)为圆心为全部顶点设置径向渐变色
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param radius
+	 * @param innerColor
+	 * @param outerColor
+	 * @return
+	 */
+	public ShapeMesh radialGradient(float cx, float cy, float radius,
+			int innerColor, int outerColor) {
+		for (int i = 0; i < vertexCount; i++) {
+			float dx = vertices[i * 2] - cx;
+			float dy = vertices[i * 2 + 1] - cy;
+			float t = radius <= 0 ? 1f : MathUtils.sqrt(dx * dx + dy * dy)
+					/ radius;
+			colors[i] = lerp(innerColor, outerColor, t);
+		}
+		colored = true;
+		return this;
+	}
+
+	private static int lerp(int c0, int c1, float t) {
+		if (t <= 0f) {
+			return c0;
+		}
+		if (t >= 1f) {
+			return c1;
+		}
+		int a = (int) (((c0 >>> 24) & 0xFF) + (((c1 >>> 24) & 0xFF) - ((c0 >>> 24) & 0xFF)) * t);
+		int r = (int) (((c0 >> 16) & 0xFF) + (((c1 >> 16) & 0xFF) - ((c0 >> 16) & 0xFF)) * t);
+		int g = (int) (((c0 >> 8) & 0xFF) + (((c1 >> 8) & 0xFF) - ((c0 >> 8) & 0xFF)) * t);
+		int b = (int) ((c0 & 0xFF) + ((c1 & 0xFF) - (c0 & 0xFF)) * t);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	public int[] getColors() {
+		return colors;
+	}
+
+	public short[] getIndices() {
+		return indices;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getIndexCount() {
+		return indexCount;
+	}
+
+	public int getTriangleCount() {
+		return indexCount / 3;
+	}
+
+	public boolean isColored() {
+		return colored;
+	}
+
+	public boolean isEmpty() {
+		return indexCount == 0;
+	}
+
+}
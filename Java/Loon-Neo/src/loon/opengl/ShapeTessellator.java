@@ -0,0 +1,556 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+
+/**
+ * 图形三角化工具,将线段(含线宽与圆角连接),椭圆,弧形与多边形转化为ShapeMesh,
+ * 并缓存常用图形的三角化结果(以图形参数为键,同参数图形只三角化一次)
+ */
+public class ShapeTessellator {
+
+	public final static int TYPE_POLYGON = 1;
+
+	public final static int TYPE_POLYLINE = 2;
+
+	public final static int TYPE_ELLIPSE = 3;
+
+	public final static int TYPE_ELLIPSE_LINE = 4;
+
+	/**
+	 * 依据半径估算圆弧的分段数
+	 *
+	 * @param radius
+	 * @return
+	 */
+	public static int segments(float radius) {
+		return MathUtils.clamp((int) (6 * MathUtils.sqrt(MathUtils.abs(radius))), 12, 128);
+	}
+
+	/**
+	 * 三角化一条指定宽度的线段
+	 *
+	 * @param mesh
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param width
+	 * @return
+	 */
+	public static ShapeMesh line(ShapeMesh mesh, float x0, float y0, float x1,
+			float y1, float width) {
+		float dx = x1 - x0, dy = y1 - y0;
+		float len = MathUtils.sqrt(dx * dx + dy * dy);
+		if (len == 0) {
+			return mesh;
+		}
+		float hw = width / 2f;
+		float nx = -dy / len * hw, ny = dx / len * hw;
+		int a = mesh.addVertex(x0 + nx, y0 + ny);
+		int b = mesh.addVertex(x1 + nx, y1 + ny);
+		int c = mesh.addVertex(x1 - nx, y1 - ny);
+		int d = mesh.addVertex(x0 - nx, y0 - ny);
+		mesh.addTriangle(a, b, c);
+		mesh.addTriangle(a, c, d);
+		return mesh;
+	}
+
+	/**
+	 * 三角化一条折线
+	 *
+	 * @param mesh
+	 * @param xys
+	 *            点集合(x,y交替)
+	 * @param count
+	 *            点数量
+	 * @param closed
+	 *            是否首尾相连
+	 * @param width
+	 *            线宽
+	 * @param round
+	 *            是否使用圆角连接(否则使用斜接)
+	 * @return
+	 */
+	public static ShapeMesh polyline(ShapeMesh mesh, float[] xys, int count,
+			boolean closed, float width, boolean round) {
+		if (count < 2) {
+			return mesh;
+		}
+		if (round) {
+			final int segs = count - (closed ? 0 : 1);
+			for (int i = 0; i < segs; i++) {
+				int j = (i + 1) % count;
+				line(mesh, xys[i * 2], xys[i * 2 + 1], xys[j * 2], xys[j * 2 + 1], width);
+			}
+			final float hw = width / 2f;
+			if (hw > 1f) {
+				final int circle = segments(hw);
+				for (int i = 0; i < count; i++) {
+					ellipse(mesh, xys[i * 2], xys[i * 2 + 1], hw, hw, 0, 360, circle);
+				}
+			}
+			return mesh;
+		}
+		return miterStrip(mesh, xys, count, closed, width);
+	}
+
+	private static ShapeMesh miterStrip(ShapeMesh mesh, float[] xys, int count,
+			boolean closed, float width) {
+		final float hw = width / 2f;
+		final float limit = hw * 4f;
+		final int first = mesh.vertexCount;
+		for (int i = 0; i < count; i++) {
+			float x = xys[i * 2], y = xys[i * 2 + 1];
+			int prev = i - 1, next = i + 1;
+			if (closed) {
+				prev = (prev + count) % count;
+				next = next % count;
+			}
+			float inX = 0, inY = 0, outX = 0, outY = 0;
+			if (prev >= 0) {
+				inX = x - xys[prev * 2];
+				inY = y - xys[prev * 2 + 1];
+				float l = MathUtils.sqrt(inX * inX + inY * inY);
+				if (l > 0) {
+					inX /= l;
+					inY /= l;
+				}
+			}
+			if (next < count) {
+				outX = xys[next * 2] - x;
+				outY = xys[next * 2 + 1] - y;
+				float l = MathUtils.sqrt(outX * outX + outY * outY);
+				if (l > 0) {
+					outX /= l;
+					outY /= l;
+				}
+			}
+			if (prev < 0) {
+				inX = outX;
+				inY = outY;
+			}
+			if (next >= count) {
+				outX = inX;
+				outY = inY;
+			}
+			float nx = -(inY + outY), ny = inX + outX;
+			float l = MathUtils.sqrt(nx * nx + ny * ny);
+			float offset = hw;
+			if (l < 0.0001f) {
+				nx = -inY;
+				ny = inX;
+			} else {
+				nx /= l;
+				ny /= l;
+				float dot = nx * -inY + ny * inX;
+				if (dot > 0.0001f) {
+					offset = MathUtils.min(hw / dot, limit);
+				}
+			}
+			mesh.addVertex(x + nx * offset, y + ny * offset);
+			mesh.addVertex(x - nx * offset, y - ny * offset);
+		}
+		final int segs = count - (closed ? 0 : 1);
+		for (int i = 0; i < segs; i++) {
+			int a = first + i * 2;
+			int b = first + ((i + 1) % count) * 2;
+			mesh.addTriangle(a, b, b + 1);
+			mesh.addTriangle(a, b + 1, a + 1);
+		}
+		return mesh;
+	}
+
+	/**
+	 * 三角化填充的椭圆或扇形(角度为度数)
+	 *
+	 * @param mesh
+	 * @param cx
+	 * @param cy
+	 * @param rx
+	 * @param ry
+	 * @param start
+	 * @param end
+	 * @param segments
+	 * @return
+	 */
+	public static ShapeMesh ellipse(ShapeMesh mesh, float cx, float cy,
+			float rx, float ry, float start, float end, int segments) {
+		while (end < start) {
+			end += 360;
+		}
+		final boolean full = end - start >= 360;
+		if (segments <= 0) {
+			segments = segments(MathUtils.max(rx, ry));
+		}
+		final int center = mesh.addVertex(cx, cy);
+		final float step = (end - start) / segments * MathUtils.DEG_TO_RAD;
+		final float begin = start * MathUtils.DEG_TO_RAD;
+		final int points = full ? segments : segments + 1;
+		final int first = mesh.vertexCount;
+		for (int i = 0; i < points; i++) {
+			float angle = begin + step * i;
+			mesh.addVertex(cx + MathUtils.cos(angle) * rx, cy + MathUtils.sin(angle) * ry);
+		}
+		for (int i = 0; i < segments; i++) {
+			int a = first + i;
+			int b = first + (full ? (i + 1) % points : i + 1);
+			mesh.addTriangle(center, a, b);
+		}
+		return mesh;
+	}
+
+	/**
+	 * 三角化椭圆或弧形的轮廓
+	 *
+	 * @param mesh
+	 * @param cx
+	 * @param cy
+	 * @param rx
+	 * @param ry
+	 * @param start
+	 * @param end
+	 * @param segments
+	 * @param width
+	 * @return
+	 */
+	public static ShapeMesh ellipseLine(ShapeMesh mesh, float cx, float cy,
+			float rx, float ry, float start, float end, int segments,
+			float width) {
+		while (end < start) {
+			end += 360;
+		}
+		final boolean full = end - start >= 360;
+		if (segments <= 0) {
+			segments = segments(MathUtils.max(rx, ry));
+		}
+		final int points = full ? segments : segments + 1;
+		final float step = (end - start) / segments * MathUtils.DEG_TO_RAD;
+		final float begin = start * MathUtils.DEG_TO_RAD;
+		final float hw = width / 2f;
+		final int first = mesh.vertexCount;
+		for (int i = 0; i < points; i++) {
+			float angle = begin + step * i;
+			float cos = MathUtils.cos(angle), sin = MathUtils.sin(angle);
+			mesh.addVertex(cx + cos * (rx + hw), cy + sin * (ry + hw));
+			mesh.addVertex(cx + cos * (rx - hw), cy + sin * (ry - hw));
+		}
+		for (int i = 0; i < segments; i++) {
+			int a = first + i * 2;
+			int b = first + (full ? (i + 1) % points : i + 1) * 2;
+			mesh.addTriangle(a, b, b + 1);
+			mesh.addTriangle(a, b + 1, a + 1);
+		}
+		return mesh;
+	}
+
+	private static int[] earIndices = new int[64];
+
+	/**
+	 * 以耳切法三角化一个简单多边形(支持凹多边形)
+	 *
+	 * @param mesh
+	 * @param xys
+	 *            点集合(x,y交替)
+	 * @param count
+	 *            点数量
+	 * @return
+	 */
+	public static ShapeMesh polygon(ShapeMesh mesh, float[] xys, int count) {
+		if (count < 3) {
+			return mesh;
+		}
+		final int first = mesh.vertexCount;
+		for (int i = 0; i < count; i++) {
+			mesh.addVertex(xys[i * 2], xys[i * 2 + 1]);
+		}
+		synchronized (ShapeTessellator.class) {
+			if (earIndices.length < count) {
+				earIndices = new int[count];
+			}
+			final int[] idx = earIndices;
+			float area = 0;
+			for (int i = 0, j = count - 1; i < count; j = i++) {
+				area += xys[j * 2] * xys[i * 2 + 1] - xys[i * 2] * xys[j * 2 + 1];
+			}
+			// 统一为逆时针顺序
+			if (area > 0) {
+				for (int i = 0; i < count; i++) {
+					idx[i] = i;
+				}
+			} else {
+				for (int i = 0; i < count; i++) {
+					idx[i] = count - 1 - i;
+				}
+			}
+			int n = count;
+			int guard = n * n;
+			int i = 0;
+			while (n > 3 && guard-- > 0) {
+				int p = idx[(i + n - 1) % n], c = idx[i % n], q = idx[(i + 1) % n];
+				if (isEar(xys, idx, n, p, c, q)) {
+					mesh.addTriangle(first + p, first + c, first + q);
+					for (int k = i % n; k < n - 1; k++) {
+						idx[k] = idx[k + 1];
+					}
+					n--;
+					i = MathUtils.max(0, (i % (n + 1)) - 1);
+				} else {
+					i++;
+				}
+			}
+			if (n > 3) {
+				// 自相交等无法耳切的情况,剩余部分按扇形处理
+				for (int k = 1; k < n - 1; k++) {
+					mesh.addTriangle(first + idx[0], first + idx[k], first + idx[k + 1]);
+				}
+			} else {
+				mesh.addTriangle(first + idx[0], first + idx[1], first + idx[2]);
+			}
+		}
+		return mesh;
+	}
+
+	private static boolean isEar(float[] xys, int[] idx, int n, int p, int c,
+			int q) {
+		final float ax = xys[p * 2], ay = xys[p * 2 + 1];
+		final float bx = xys[c * 2], by = xys[c * 2 + 1];
+		final float cx = xys[q * 2], cy = xys[q * 2 + 1];
+		if ((bx - ax) * (cy - ay) - (by - ay) * (cx - ax) <= 0) {
+			return false;
+		}
+		for (int k = 0; k < n; k++) {
+			int v = idx[k];
+			if (v == p || v == c || v == q) {
+				continue;
+			}
+			float px = xys[v * 2], py = xys[v * 2 + 1];
+			if ((bx - ax) * (py - ay) - (by - ay) * (px - ax) >= 0
+					&& (cx - bx) * (py - by) - (cy - by) * (px - bx) >= 0
+					&& (ax - cx) * (py - cy) - (ay - cy) * (px - cx) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private final IntMap<ShapeMesh> cache = new IntMap<ShapeMesh>();
+
+	private int maxCacheSize;
+
+	private int cacheSize;
+
+	private ShapeMesh newest, oldest;
+
+	private float[] key = new float[16];
+
+	private int keyLength;
+
+	private int hits, misses;
+
+	public ShapeTessellator() {
+		this(256);
+	}
+
+	public ShapeTessellator(int maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * 开始构建缓存键
+	 *
+	 * @param type
+	 * @return
+	 */
+	public ShapeTessellator key(int type) {
+		keyLength = 0;
+		return push(type);
+	}
+
+	public ShapeTessellator push(float v) {
+		if (keyLength == key.length) {
+			float[] tmp = new float[key.length * 2];
+			System.arraycopy(key, 0, tmp, 0, keyLength);
+			key = tmp;
+		}
+		key[keyLength++] = v;
+		return this;
+	}
+
+	public ShapeTessellator push(float[] vs, int offset, int len) {
+		for (int i = offset, size = offset + len; i < size; i++) {
+			push(vs[i]);
+		}
+		return this;
+	}
+
+	private int hashKey() {
+		int h = 17;
+		for (int i = 0; i < keyLength; i++) {
+			h = h * 31 + Float.floatToIntBits(key[i]);
+		}
+		return h;
+	}
+
+	private boolean sameKey(ShapeMesh mesh) {
+		if (mesh.keyLength != keyLength) {
+			return false;
+		}
+		final float[] k = mesh.key;
+		for (int i = 0; i < keyLength; i++) {
+			if (k[i] != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 查找当前键对应的缓存网格,不存在时返回null
+	 *
+	 * @return
+	 */
+	public ShapeMesh find() {
+		final int h = hashKey();
+		for (ShapeMesh mesh = cache.get(h); mesh != null; mesh = mesh.next) {
+			if (sameKey(mesh)) {
+				hits++;
+				if (mesh != newest) {
+					unlink(mesh);
+					linkNewest(mesh);
+				}
+				return mesh;
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * 以当前键创建一个空的缓存网格,由调用者填充三角数据.缓存已满时淘汰最久未使用的网格并复用其数组,
+	 * 因此不应在再次调用create后继续持有之前返回的网格
+	 *
+	 * @return
+	 */
+	public ShapeMesh create() {
+		ShapeMesh mesh = null;
+		for (; cacheSize >= maxCacheSize && oldest != null;) {
+			mesh = oldest;
+			evict(mesh);
+		}
+		if (mesh == null) {
+			mesh = new ShapeMesh();
+		} else {
+			mesh.clear();
+		}
+		final int h = hashKey();
+		mesh.hash = h;
+		if (mesh.key == null || mesh.key.length < keyLength) {
+			mesh.key = new float[keyLength];
+		}
+		mesh.keyLength = keyLength;
+		System.arraycopy(key, 0, mesh.key, 0, keyLength);
+		mesh.next = cache.get(h);
+		cache.put(h, mesh);
+		linkNewest(mesh);
+		cacheSize++;
+		return mesh;
+	}
+
+	private void evict(ShapeMesh mesh) {
+		ShapeMesh first = cache.get(mesh.hash);
+		if (first == mesh) {
+			if (mesh.next == null) {
+				cache.remove(mesh.hash);
+			} else {
+				cache.put(mesh.hash, mesh.next);
+			}
+		} else {
+			for (ShapeMesh m = first; m != null; m = m.next) {
+				if (m.next == mesh) {
+					m.next = mesh.next;
+					break;
+				}
+			}
+		}
+		mesh.next = null;
+		unlink(mesh);
+		cacheSize--;
+	}
+
+	private void linkNewest(ShapeMesh mesh) {
+		mesh.older = newest;
+		mesh.newer = null;
+		if (newest != null) {
+			newest.newer = mesh;
+		}
+		newest = mesh;
+		if (oldest == null) {
+			oldest = mesh;
+		}
+	}
+
+	private void unlink(ShapeMesh mesh) {
+		if (mesh.newer != null) {
+			mesh.newer.older = mesh.older;
+		} else {
+			newest = mesh.older;
+		}
+		if (mesh.older != null) {
+			mesh.older.newer = mesh.newer;
+		} else {
+			oldest = mesh.newer;
+		}
+		mesh.newer = mesh.older = null;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public int getMaxCacheSize() {
+		return maxCacheSize;
+	}
+
+	public void setMaxCacheSize(int size) {
+		this.maxCacheSize = size;
+		for (; cacheSize > maxCacheSize && oldest != null;) {
+			evict(oldest);
+		}
+	}
+
+	public int getHits() {
+		return hits;
+	}
+
+	public int getMisses() {
+		return misses;
+	}
+
+	public void clear() {
+		cache.clear();
+		newest = oldest = null;
+		cacheSize = 0;
+	}
+
+}
@@ -21,6 +21,7 @@
 package loon.opengl;
 
 import loon.LTexture;
+import loon.canvas.LColor;
 import loon.geom.Affine2f;
 import loon.opengl.ShaderProgram.Mini;
 import static loon.opengl.GL20.*;
@@ -210,6 +211,32 @@ public class TrilateralBatch extends BaseBatch {
 		addElems(vertIdx, indices, indicesOffset, indicesLen, indexBase);
 	}
 
+	@Override
+	public void addShape(LTexture tex, int tint, Affine2f xf, ShapeMesh mesh,
+			float u, float v) {
+		if (tex == null || tex.isClose() || mesh == null || mesh.isEmpty()) {
+			return;
+		}
+		setTexture(tex);
+		prepare(tint, xf);
+		final int vertIdx = beginPrimitive(mesh.vertexCount, mesh.indexCount);
+		final float[] verts = vertices, stables = stableAttrs, xys = mesh.vertices;
+		final int[] colors = mesh.colors;
+		final boolean colored = mesh.colored;
+		int offset = vertPos;
+		for (int i = 0, size = mesh.vertexCount; i < size; i++) {
+			if (colored) {
+				int argb = LColor.combine(tint, colors[i]);
+				stables[6] = (argb >> 16) & 0xFFFF;
+				stables[7] = argb & 0xFFFF;
+			}
+			offset = add(verts, add(verts, offset, stables), xys[i * 2],
+					xys[i * 2 + 1], u, v);
+		}
+		vertPos = offset;
+		addElems(vertIdx, mesh.indices, 0, mesh.indexCount, 0);
+	}
+
 	@Override
 	public void addQuad(int tint, float m00, float m01, float m10, float m11,
 			float tx, float ty, float x1, float y1, float sx1, float sy1,
@@ -270,6 +297,7 @@ public class TrilateralBatch extends BaseBatch {
 			gl.glBufferData(GL_ELEMENT_ARRAY_BUFFER, elemPos * 2,
 					gl.bufs.shortBuffer, GL_STREAM_DRAW);
 			gl.glDrawElements(GL_TRIANGLES, elemPos, GL_UNSIGNED_SHORT, 0);
+			drawCalls++;
 			vertPos = 0;
 			elemPos = 0;
 		}
@@ -221,6 +221,7 @@ public class UniformBatch extends BaseBatch {
 			gl.glUniform4fv(uData, quadCounter * BASE_VEC4S_PER_QUAD, data, 0);
 			gl.glDrawElements(GL_TRIANGLES, quadCounter * ELEMENTS_PER_QUAD,
 					GL_UNSIGNED_SHORT, 0);
+			drawCalls++;
 			quadCounter = 0;
 		}
 	}
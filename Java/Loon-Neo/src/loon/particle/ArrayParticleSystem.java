@@ -0,0 +1,688 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.particle;
+
+import loon.LSystem;
+import loon.LTexture;
+import loon.LTextures;
+import loon.action.sprite.Entity;
+import loon.canvas.LColor;
+import loon.geom.Affine2f;
+import loon.geom.Vector2f;
+import loon.opengl.BaseBatch;
+import loon.opengl.GLEx;
+import loon.opengl.TextureUtils;
+import loon.physics.PParallelExecutor;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 以基本类型数组保存粒子数据的粒子系统,由SimpleConfigurableEmitter(或SimpleParticleConfig读取的配置)驱动.
+ * 
+ * 每个发射器的粒子位置,速度,颜色,生命与尺寸存放在各自的float数组中,逐帧以紧凑循环更新,死亡粒子以末尾交换方式移除;
+ * 设置PParallelExecutor后粒子数量超过阈值时分段并行更新,绘制时直接写入GLEx当前批处理的顶点缓存.
+ */
+public class ArrayParticleSystem extends Entity {
+
+	private static final int DEFAULT_PARTICLES = 100;
+
+	private static final int MIN_BATCH = 512;
+
+	/**
+	 * 曲线数据展开为数组,避免逐粒子访问Vector2f
+	 */
+	static final class Curve {
+
+		float[] xs = new float[4];
+
+		float[] ys = new float[4];
+
+		int count;
+
+		boolean active;
+
+		void load(SimpleConfigurableEmitter.LinearInterpolator src) {
+			active = src.isActive();
+			if (!active) {
+				return;
+			}
+			TArray<Vector2f> curve = src.getCurve();
+			count = curve.size;
+			if (xs.length < count) {
+				xs = new float[count];
+				ys = new float[count];
+			}
+			for (int i = 0; i < count; i++) {
+				Vector2f v = curve.get(i);
+				xs[i] = v.x;
+				ys[i] = v.y;
+			}
+		}
+
+		float value(float t) {
+			for (int i = 1; i < count; i++) {
+				float x0 = xs[i - 1];
+				float x1 = xs[i];
+				if (t >= x0 && t <= x1) {
+					return ys[i - 1] + (t - x0) / (x1 - x0) * (ys[i] - ys[i - 1]);
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * 单个发射器的全部粒子
+	 */
+	static final class Block {
+
+		final SimpleConfigurableEmitter emitter;
+
+		final int capacity;
+
+		int count;
+
+		final float[] x, y, vx, vy, r, g, b, a, size, scaleY, life, originalLife;
+
+		float adjustX, adjustY, windStep, gravityStep, growthStep;
+
+		float startAlpha, endAlpha;
+
+		float[] colorPos = new float[4], colorR = new float[4],
+				colorG = new float[4], colorB = new float[4];
+
+		int colorCount;
+
+		final Curve alpha = new Curve(), sizes = new Curve(),
+				velocity = new Curve(), scale = new Curve();
+
+		Block(SimpleConfigurableEmitter emitter, int capacity) {
+			this.emitter = emitter;
+			this.capacity = capacity;
+			this.x = new float[capacity];
+			this.y = new float[capacity];
+			this.vx = new float[capacity];
+			this.vy = new float[capacity];
+			this.r = new float[capacity];
+			this.g = new float[capacity];
+			this.b = new float[capacity];
+			this.a = new float[capacity];
+			this.size = new float[capacity];
+			this.scaleY = new float[capacity];
+			this.life = new float[capacity];
+			this.originalLife = new float[capacity];
+		}
+
+		/**
+		 * 读取发射器本帧的参数,更新期间只读
+		 */
+		void prepare(long delta) {
+			SimpleConfigurableEmitter e = emitter;
+			adjustX = e.adjustx;
+			adjustY = e.adjusty;
+			windStep = e.windFactor.getValue(0) * 0.00005f * delta;
+			gravityStep = e.gravityFactor.getValue(0) * 0.00005f * delta;
+			growthStep = delta * e.growthFactor.getValue(0) * 0.001f;
+			startAlpha = e.startAlpha.getValue(0) / 255.0f;
+			endAlpha = e.endAlpha.getValue(0) / 255.0f;
+			TArray<SimpleConfigurableEmitter.ColorRecord> colors = e.colors;
+			colorCount = colors.size;
+			if (colorPos.length < colorCount) {
+				colorPos = new float[colorCount];
+				colorR = new float[colorCount];
+				colorG = new float[colorCount];
+				colorB = new float[colorCount];
+			}
+			for (int i = 0; i < colorCount; i++) {
+				SimpleConfigurableEmitter.ColorRecord rec = colors.get(i);
+				colorPos[i] = rec.pos;
+				colorR[i] = rec.col.r;
+				colorG[i] = rec.col.g;
+				colorB[i] = rec.col.b;
+			}
+			alpha.load(e.alpha);
+			sizes.load(e.size);
+			velocity.load(e.velocity);
+			scale.load(e.scaleY);
+		}
+
+		/**
+		 * 更新[from,to)区间的粒子,规则与SimpleConfigurableEmitter.updateParticle及SimpleParticle.update一致
+		 */
+		void step(int from, int to, long delta) {
+			final float[] x = this.x, y = this.y, vx = this.vx, vy = this.vy;
+			final float[] life = this.life, originalLife = this.originalLife;
+			for (int i = from; i < to; i++) {
+				float px = x[i] + adjustX;
+				float py = y[i] + adjustY;
+				float velx = vx[i] + windStep;
+				float vely = vy[i] + gravityStep;
+				float current = life[i];
+				float offset = current / originalLife[i];
+				float inv = 1 - offset;
+
+				int segment = -1;
+				for (int c = 0; c < colorCount - 1; c++) {
+					if (inv >= colorPos[c] && inv <= colorPos[c + 1]) {
+						segment = c;
+					}
+				}
+				if (segment != -1) {
+					float colOffset = 1 - (inv - colorPos[segment])
+							/ (colorPos[segment + 1] - colorPos[segment]);
+					float colInv = 1 - colOffset;
+					r[i] = colorR[segment] * colOffset + colorR[segment + 1]
+							* colInv;
+					g[i] = colorG[segment] * colOffset + colorG[segment + 1]
+							* colInv;
+					b[i] = colorB[segment] * colOffset + colorB[segment + 1]
+							* colInv;
+					a[i] = alpha.active ? alpha.value(inv) / 255.0f
+							: startAlpha * offset + endAlpha * inv;
+				}
+
+				if (sizes.active) {
+					size[i] = sizes.value(inv);
+				} else {
+					float s = size[i] + growthStep;
+					size[i] = s < 0 ? 0 : s;
+				}
+
+				if (velocity.active) {
+					float speed = MathUtils.sqrt(velx * velx + vely * vely);
+					if (speed != 0) {
+						float target = velocity.value(inv);
+						velx = velx * target / speed;
+						vely = vely * target / speed;
+					}
+				}
+
+				if (scale.active) {
+					scaleY[i] = scale.value(inv);
+				}
+
+				current -= delta;
+				if (current > 0) {
+					px += delta * velx;
+					py += delta * vely;
+				}
+				life[i] = current;
+				x[i] = px;
+				y[i] = py;
+				vx[i] = velx;
+				vy[i] = vely;
+			}
+		}
+
+		/**
+		 * 以末尾粒子填补死亡粒子,保持[0,count)连续
+		 */
+		void compact() {
+			int n = count;
+			for (int i = 0; i < n;) {
+				if (life[i] > 0) {
+					i++;
+					continue;
+				}
+				n--;
+				if (i != n) {
+					move(n, i);
+				}
+			}
+			count = n;
+		}
+
+		void move(int from, int to) {
+			x[to] = x[from];
+			y[to] = y[from];
+			vx[to] = vx[from];
+			vy[to] = vy[from];
+			r[to] = r[from];
+			g[to] = g[from];
+			b[to] = b[from];
+			a[to] = a[from];
+			size[to] = size[from];
+			scaleY[to] = scaleY[from];
+			life[to] = life[from];
+			originalLife[to] = originalLife[from];
+		}
+	}
+
+	private final PParallelExecutor.Task stepTask = new PParallelExecutor.Task() {
+
+		@Override
+		public void run(int index) {
+			blocks.get(taskBlocks[index]).step(taskFrom[index], taskTo[index],
+					stepDelta);
+		}
+	};
+
+	private final TArray<Block> blocks = new TArray<Block>();
+
+	private int maxParticlesPerEmitter;
+
+	private int state = LSystem.MODE_ADD;
+
+	private boolean usePoints;
+
+	private boolean removeCompletedEmitters = true;
+
+	private LTexture sprite;
+
+	private String defaultImageName;
+
+	private LColor mask;
+
+	private int pCount;
+
+	private PParallelExecutor parallelExecutor;
+
+	private int parallelThreshold = 4096;
+
+	private int[] taskBlocks = new int[16], taskFrom = new int[16],
+			taskTo = new int[16];
+
+	private long stepDelta;
+
+	private int lastIndex;
+
+	public ArrayParticleSystem(LTexture defaultSprite) {
+		this(defaultSprite, DEFAULT_PARTICLES);
+	}
+
+	public ArrayParticleSystem(LTexture defaultSprite, int maxParticles) {
+		this.maxParticlesPerEmitter = maxParticles;
+		this.sprite = defaultSprite;
+		this.setRepaint(true);
+	}
+
+	public ArrayParticleSystem(String defaultSpriteRef) {
+		this(defaultSpriteRef, DEFAULT_PARTICLES, null);
+	}
+
+	public ArrayParticleSystem(String defaultSpriteRef, int maxParticles,
+			LColor mask) {
+		this.maxParticlesPerEmitter = maxParticles;
+		this.mask = mask;
+		this.defaultImageName = defaultSpriteRef;
+		this.setRepaint(true);
+	}
+
+	public void addEmitter(SimpleConfigurableEmitter emitter) {
+		addEmitter(emitter, maxParticlesPerEmitter);
+	}
+
+	/**
+	 * 添加发射器
+	 * 
+	 * @param emitter
+	 * @param maxParticles
+	 *            此发射器可同时存在的粒子上限
+	 */
+	public void addEmitter(SimpleConfigurableEmitter emitter, int maxParticles) {
+		if (indexOf(emitter) == -1) {
+			blocks.add(new Block(emitter, maxParticles));
+		}
+	}
+
+	public void removeEmitter(SimpleConfigurableEmitter emitter) {
+		int idx = indexOf(emitter);
+		if (idx != -1) {
+			blocks.removeIndex(idx);
+		}
+	}
+
+	public void removeAllEmitters() {
+		blocks.clear();
+	}
+
+	public int getEmitterCount() {
+		return blocks.size;
+	}
+
+	public SimpleConfigurableEmitter getEmitter(int index) {
+		return blocks.get(index).emitter;
+	}
+
+	private int indexOf(SimpleConfigurableEmitter emitter) {
+		if (lastIndex < blocks.size && blocks.get(lastIndex).emitter == emitter) {
+			return lastIndex;
+		}
+		for (int i = 0; i < blocks.size; i++) {
+			if (blocks.get(i).emitter == emitter) {
+				return lastIndex = i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 生成一个粒子,发射器粒子已满时忽略
+	 * 
+	 * @return 是否生成成功
+	 */
+	public boolean emit(SimpleConfigurableEmitter emitter, float life,
+			float size, float x, float y, float vx, float vy, float r,
+			float g, float b, float a) {
+		int idx = indexOf(emitter);
+		if (idx == -1) {
+			return false;
+		}
+		Block block = blocks.get(idx);
+		int i = block.count;
+		if (i >= block.capacity) {
+			return false;
+		}
+		block.x[i] = x;
+		block.y[i] = y;
+		block.vx[i] = vx;
+		block.vy[i] = vy;
+		block.r[i] = r;
+		block.g[i] = g;
+		block.b[i] = b;
+		block.a[i] = a;
+		block.size[i] = size;
+		block.scaleY[i] = 1f;
+		block.life[i] = block.originalLife[i] = life;
+		block.count = i + 1;
+		return true;
+	}
+
+	public void releaseAll(SimpleConfigurableEmitter emitter) {
+		int idx = indexOf(emitter);
+		if (idx != -1) {
+			blocks.get(idx).count = 0;
+		}
+	}
+
+	public void moveAll(SimpleConfigurableEmitter emitter, float x, float y) {
+		int idx = indexOf(emitter);
+		if (idx == -1) {
+			return;
+		}
+		Block block = blocks.get(idx);
+		for (int i = 0; i < block.count; i++) {
+			block.x[i] += x;
+			block.y[i] += y;
+		}
+	}
+
+	/**
+	 * 设置并行执行器,为null时在当前线程中串行更新
+	 * 
+	 * @param executor
+	 */
+	public void setParallelExecutor(PParallelExecutor executor) {
+		this.parallelExecutor = executor;
+	}
+
+	public PParallelExecutor getParallelExecutor() {
+		return parallelExecutor;
+	}
+
+	/**
+	 * 粒子总数达到此值时才会并行更新
+	 * 
+	 * @param threshold
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = MathUtils.max(1, threshold);
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setRemoveCompletedEmitters(boolean remove) {
+		removeCompletedEmitters = remove;
+	}
+
+	public void setUsePoints(boolean usePoints) {
+		this.usePoints = usePoints;
+	}
+
+	public boolean usePoints() {
+		return usePoints;
+	}
+
+	public int getBlendingState() {
+		return state;
+	}
+
+	public void setBlendingState(int s) {
+		this.state = s;
+	}
+
+	public void setDefaultImageName(String ref) {
+		defaultImageName = ref;
+		sprite = null;
+	}
+
+	public int getParticleCount() {
+		return pCount;
+	}
+
+	public float getPositionX() {
+		return _location.x;
+	}
+
+	public float getPositionY() {
+		return _location.y;
+	}
+
+	public void setPosition(float x, float y) {
+		this.setLocation(x, y);
+	}
+
+	private void loadSystemParticleImage() {
+		try {
+			if (mask != null) {
+				sprite = TextureUtils.filterColor(defaultImageName, mask);
+			} else {
+				sprite = LTextures.loadTexture(defaultImageName);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			defaultImageName = null;
+		}
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < blocks.size; i++) {
+			Block block = blocks.get(i);
+			block.count = 0;
+			block.emitter.resetState();
+		}
+		super.reset();
+	}
+
+	@Override
+	public void onUpdate(long delta) {
+		update(delta);
+	}
+
+	/**
+	 * 推进全部发射器与粒子
+	 * 
+	 * @param delta
+	 */
+	public void update(long delta) {
+		if ((sprite == null) && (defaultImageName != null)) {
+			loadSystemParticleImage();
+		}
+		int live = 0;
+		for (int i = 0, size = blocks.size; i < size; i++) {
+			Block block = blocks.get(i);
+			SimpleConfigurableEmitter emitter = block.emitter;
+			if (emitter.isEnabled()) {
+				emitter.update(this, delta);
+				if (removeCompletedEmitters && emitter.completed()) {
+					continue;
+				}
+			}
+			blocks.set(live++, block);
+		}
+		blocks.truncate(live);
+		int total = 0;
+		for (int i = 0; i < blocks.size; i++) {
+			Block block = blocks.get(i);
+			if (block.emitter.isEnabled() && block.count > 0) {
+				block.prepare(delta);
+				block.emitter.addParticleCount(block.count);
+				total += block.count;
+			}
+		}
+		pCount = total;
+		if (total == 0) {
+			return;
+		}
+		int tasks = 0;
+		int batch = total;
+		if (parallelExecutor != null && parallelExecutor.getThreadCount() > 1
+				&& total >= parallelThreshold) {
+			batch = MathUtils.max(MIN_BATCH,
+					total / (parallelExecutor.getThreadCount() * 4));
+		}
+		for (int i = 0; i < blocks.size; i++) {
+			Block block = blocks.get(i);
+			if (!block.emitter.isEnabled()) {
+				continue;
+			}
+			for (int from = 0; from < block.count; from += batch) {
+				if (tasks == taskBlocks.length) {
+					int len = tasks * 2;
+					taskBlocks = copy(taskBlocks, len);
+					taskFrom = copy(taskFrom, len);
+					taskTo = copy(taskTo, len);
+				}
+				taskBlocks[tasks] = i;
+				taskFrom[tasks] = from;
+				taskTo[tasks] = MathUtils.min(block.count, from + batch);
+				tasks++;
+			}
+		}
+		stepDelta = delta;
+		if (tasks > 1 && parallelExecutor != null) {
+			parallelExecutor.invokeAll(stepTask, tasks);
+		} else {
+			for (int i = 0; i < tasks; i++) {
+				stepTask.run(i);
+			}
+		}
+		for (int i = 0; i < blocks.size; i++) {
+			Block block = blocks.get(i);
+			if (block.emitter.isEnabled()) {
+				block.compact();
+			}
+		}
+	}
+
+	private static int[] copy(int[] src, int len) {
+		int[] dst = new int[len];
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+
+	public void render(GLEx g) {
+		repaint(g, _location.x, _location.y);
+	}
+
+	@Override
+	public void repaint(GLEx g, float offsetX, float offsetY) {
+		if ((sprite == null) && (defaultImageName != null)) {
+			loadSystemParticleImage();
+		}
+		BaseBatch batch = g.batch();
+		Affine2f xf = g.tx();
+		float alpha = g.alpha();
+		int mode = g.getBlendMode();
+		int current = mode;
+		for (int n = 0; n < blocks.size; n++) {
+			Block block = blocks.get(n);
+			SimpleConfigurableEmitter emitter = block.emitter;
+			if (!emitter.isEnabled() || block.count == 0) {
+				continue;
+			}
+			int blend = emitter.useAdditive() ? LSystem.MODE_ADD : state;
+			// setBlendMode只改变GL状态,切换前需先提交已加入批处理的顶点
+			if (blend != current) {
+				batch.flush();
+				g.setBlendMode(blend);
+				current = blend;
+			}
+			final float[] x = block.x, y = block.y, size = block.size;
+			if (emitter.usePoints == SimpleParticle.USE_POINTS
+					|| (emitter.usePoints == SimpleParticle.INHERIT_POINTS && usePoints)) {
+				for (int i = 0; i < block.count; i++) {
+					g.drawPoint(offsetX + x[i], offsetY + y[i],
+							tint(block, i, alpha));
+				}
+				continue;
+			}
+			LTexture image = emitter.getImage();
+			if (image == null) {
+				image = sprite;
+			}
+			if (image == null || image.isClose()) {
+				continue;
+			}
+			batch.setTexture(image);
+			float sl = image.xOff, st = image.yOff;
+			float sr = image.widthRatio, sb = image.heightRatio;
+			boolean oriented = emitter.isOriented();
+			for (int i = 0; i < block.count; i++) {
+				float half = size[i] / 2;
+				float cx = offsetX + x[i];
+				float cy = offsetY + y[i];
+				int tint = tint(block, i, alpha);
+				if (!oriented) {
+					batch.addQuad(tint, xf.m00, xf.m01, xf.m10, xf.m11, xf.tx,
+							xf.ty, cx - half, cy - half, cx + half, cy + half,
+							sl, st, sr, sb);
+				} else {
+					float angle = MathUtils.atan2(y[i], x[i]);
+					float cos = MathUtils.cos(angle) * half;
+					float sin = MathUtils.sin(angle) * half;
+					batch.addQuad(tint, xf.m00, xf.m01, xf.m10, xf.m11, xf.tx,
+							xf.ty, cx - cos + sin, cy - sin - cos, sl, st, cx
+									+ cos + sin, cy + sin - cos, sr, st, cx
+									- cos - sin, cy - sin + cos, sl, sb, cx
+									+ cos - sin, cy + sin + cos, sr, sb);
+				}
+			}
+		}
+		if (current != mode) {
+			batch.flush();
+			g.setBlendMode(mode);
+		}
+	}
+
+	private static int tint(Block block, int i, float alpha) {
+		return LColor.argb(channel(block.a[i] * alpha), channel(block.r[i]),
+				channel(block.g[i]), channel(block.b[i]));
+	}
+
+	private static int channel(float v) {
+		return v <= 0 ? 0 : v >= 1 ? 255 : (int) (v * 255);
+	}
+
+}
@@ -91,6 +91,8 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 
 	private SimpleParticleSystem engine;
 
+	private ArrayParticleSystem arrayEngine;
+
 	private int leftToEmit;
 
 	protected boolean wrapUp = false;
@@ -184,7 +186,99 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 	@Override
 	public void update(SimpleParticleSystem system, long delta) {
 		this.engine = system;
+		int count = prepare(delta);
+		for (int i = 0; i < count; i++) {
+			SimpleParticle p = system.getNewParticle(this,
+					initialLife.random());
+			p.setSize(initialSize.random());
+			p.setPosition(x + xOffset.random(), y + yOffset.random());
+			p.setVelocity(0, 0, 0);
+
+			float dist = initialDistance.random();
+			float power = speed.random();
+			if ((dist != 0) || (power != 0)) {
+				float s = spread.getValue(0);
+				float ang = (s + angularOffset.getValue(0) - (spread.getValue() / 2)) - 90;
+
+				float xa = (MathUtils.cos(MathUtils.toDegrees(ang)) * dist);
+				float ya = (MathUtils.sin(MathUtils.toDegrees(ang)) * dist);
+				p.adjustPosition(xa, ya);
+
+				float xv = MathUtils.cos(MathUtils.toDegrees(ang));
+				float yv = MathUtils.sin(MathUtils.toDegrees(ang));
+				p.setVelocity(xv, yv, power * 0.001f);
+			}
+
+			if (image != null) {
+				p.setImage(image);
+			}
+
+			ColorRecord start = (ColorRecord) colors.get(0);
+			p.setColor(start.col.r, start.col.g, start.col.b,
+					startAlpha.getValue(0) / 255.0f);
+			p.setUsePoint(usePoints);
+			p.setOriented(useOriented);
+
+			if (emitCount.isEnabled()) {
+				leftToEmit--;
+				if (leftToEmit <= 0) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 由ArrayParticleSystem驱动的更新,生成规则与update(SimpleParticleSystem, long)一致
+	 * 
+	 * @param system
+	 * @param delta
+	 */
+	void update(ArrayParticleSystem system, long delta) {
+		this.arrayEngine = system;
+		int count = prepare(delta);
+		for (int i = 0; i < count; i++) {
+			float life = initialLife.random();
+			float particleSize = initialSize.random();
+			float px = x + xOffset.random();
+			float py = y + yOffset.random();
+			float vx = 0;
+			float vy = 0;
+
+			float dist = initialDistance.random();
+			float power = speed.random();
+			if ((dist != 0) || (power != 0)) {
+				float s = spread.getValue(0);
+				float ang = (s + angularOffset.getValue(0) - (spread.getValue() / 2)) - 90;
+				float cos = MathUtils.cos(MathUtils.toDegrees(ang));
+				float sin = MathUtils.sin(MathUtils.toDegrees(ang));
+				px += cos * dist;
+				py += sin * dist;
+				vx = cos * (power * 0.001f);
+				vy = sin * (power * 0.001f);
+			}
+
+			LColor start = colors.get(0).col;
+			system.emit(this, life, particleSize, px, py, vx, vy, start.r,
+					start.g, start.b, startAlpha.getValue(0) / 255.0f);
+
+			if (emitCount.isEnabled()) {
+				leftToEmit--;
+				if (leftToEmit <= 0) {
+					break;
+				}
+			}
+		}
+	}
+
+	void addParticleCount(int count) {
+		particleCount += count;
+	}
 
+	/**
+	 * 推进发射计时,返回本帧需要生成的粒子数量
+	 */
+	private int prepare(long delta) {
 		if (!adjust) {
 			adjustx = 0;
 			adjusty = 0;
@@ -208,67 +302,27 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 		particleCount = 0;
 
 		if (wrapUp) {
-			return;
+			return 0;
 		}
 
 		if (length.isEnabled()) {
 			if (timeout < 0) {
-				return;
+				return 0;
 			}
 			timeout -= delta;
 		}
 		if (emitCount.isEnabled()) {
 			if (leftToEmit <= 0) {
-				return;
+				return 0;
 			}
 		}
 
 		nextSpawn -= delta;
 		if (nextSpawn < 0) {
 			nextSpawn = (int) spawnInterval.random();
-			int count = (int) spawnCount.random();
-
-			for (int i = 0; i < count; i++) {
-				SimpleParticle p = system.getNewParticle(this,
-						initialLife.random());
-				p.setSize(initialSize.random());
-				p.setPosition(x + xOffset.random(), y + yOffset.random());
-				p.setVelocity(0, 0, 0);
-
-				float dist = initialDistance.random();
-				float power = speed.random();
-				if ((dist != 0) || (power != 0)) {
-					float s = spread.getValue(0);
-					float ang = (s + angularOffset.getValue(0) - (spread
-							.getValue() / 2)) - 90;
-			
-					float xa = (MathUtils.cos(MathUtils.toDegrees(ang)) * dist);
-					float ya = (MathUtils.sin(MathUtils.toDegrees(ang)) * dist);
-					p.adjustPosition(xa, ya);
-
-					float xv =  MathUtils.cos(MathUtils.toDegrees(ang));
-					float yv =  MathUtils.sin(MathUtils.toDegrees(ang));
-					p.setVelocity(xv, yv, power * 0.001f);
-				}
-
-				if (image != null) {
-					p.setImage(image);
-				}
-
-				ColorRecord start = (ColorRecord) colors.get(0);
-				p.setColor(start.col.r, start.col.g, start.col.b,
-						startAlpha.getValue(0) / 255.0f);
-				p.setUsePoint(usePoints);
-				p.setOriented(useOriented);
-
-				if (emitCount.isEnabled()) {
-					leftToEmit--;
-					if (leftToEmit <= 0) {
-						break;
-					}
-				}
-			}
+			return (int) spawnCount.random();
 		}
+		return 0;
 	}
 
 	@Override
@@ -337,7 +391,7 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 
 	@Override
 	public boolean completed() {
-		if (engine == null) {
+		if (engine == null && arrayEngine == null) {
 			return false;
 		}
 
@@ -373,6 +427,9 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 		if (engine != null) {
 			engine.releaseAll(this);
 		}
+		if (arrayEngine != null) {
+			arrayEngine.releaseAll(this);
+		}
 	}
 
 	public void replayCheck() {
@@ -381,6 +438,10 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 				if (engine.getParticleCount() == 0) {
 					replay();
 				}
+			} else if (arrayEngine != null) {
+				if (arrayEngine.getParticleCount() == 0) {
+					replay();
+				}
 			}
 		}
 	}
@@ -39,21 +39,10 @@ public class SimpleParticleConfig {
 	public static SimpleParticleSystem loadConfiguredSystem(String path,
 			ConfigurableEmitterFactory factory, SimpleParticleSystem system,
 			LColor mask) throws IOException {
-		if (factory == null) {
-			factory = new ConfigurableEmitterFactory() {
-				public SimpleConfigurableEmitter createEmitter(String name) {
-					return new SimpleConfigurableEmitter(name);
-				}
-			};
-		}
 		try {
-
-			XMLDocument doc = XMLParser.parse(path);
-			XMLElement docElement = doc.getRoot();
-
-			if (!docElement.getName().equals("system")) {
-				throw new IOException("Not a particle system file");
-			}
+			XMLElement docElement = loadSystemElement(path);
+			TArray<SimpleConfigurableEmitter> emitters = createEmitters(
+					docElement, factory);
 
 			if (system == null) {
 				system = new SimpleParticleSystem(LSystem.FRAMEWORK_IMG_NAME
@@ -68,15 +57,63 @@ public class SimpleParticleConfig {
 			boolean points = docElement.getBoolAttribute("points", false);
 			system.setUsePoints(points);
 
-			TArray<XMLElement> list = docElement.list();
-			for (int i = 0; i < list.size; i++) {
-				XMLElement em = list.get(i);
+			for (int i = 0; i < emitters.size; i++) {
+				system.addEmitter(emitters.get(i));
+			}
 
-				SimpleConfigurableEmitter emitter = factory
-						.createEmitter("new");
-				elementToEmitter(em, emitter);
+			system.setRemoveCompletedEmitters(false);
+			return system;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new IOException("Unable to load particle system config");
+		}
+	}
 
-				system.addEmitter(emitter);
+	public static ArrayParticleSystem loadArraySystem(String path)
+			throws IOException {
+		return loadArraySystem(path, null, null, null);
+	}
+
+	public static ArrayParticleSystem loadArraySystem(String path, LColor mask)
+			throws IOException {
+		return loadArraySystem(path, null, null, mask);
+	}
+
+	/**
+	 * 读取与loadConfiguredSystem相同格式的配置,生成以数组保存粒子的ArrayParticleSystem
+	 * 
+	 * @param path
+	 * @param factory
+	 * @param system
+	 * @param mask
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArrayParticleSystem loadArraySystem(String path,
+			ConfigurableEmitterFactory factory, ArrayParticleSystem system,
+			LColor mask) throws IOException {
+		try {
+			XMLElement docElement = loadSystemElement(path);
+			TArray<SimpleConfigurableEmitter> emitters = createEmitters(
+					docElement, factory);
+
+			if (system == null) {
+				system = new ArrayParticleSystem(LSystem.FRAMEWORK_IMG_NAME
+						+ "par.png", 2000, mask);
+			}
+			boolean additive = docElement.getBoolAttribute("additive", false);
+			if (additive) {
+				system.setBlendingState(LSystem.MODE_ADD);
+			} else {
+				system.setBlendingState(LSystem.MODE_ALPHA_ONE);
+			}
+			boolean points = docElement.getBoolAttribute("points", false);
+			system.setUsePoints(points);
+
+			for (int i = 0; i < emitters.size; i++) {
+				system.addEmitter(emitters.get(i));
 			}
 
 			system.setRemoveCompletedEmitters(false);
@@ -89,6 +126,36 @@ public class SimpleParticleConfig {
 		}
 	}
 
+	private static XMLElement loadSystemElement(String path) throws IOException {
+		XMLDocument doc = XMLParser.parse(path);
+		XMLElement docElement = doc.getRoot();
+		if (!docElement.getName().equals("system")) {
+			throw new IOException("Not a particle system file");
+		}
+		return docElement;
+	}
+
+	private static TArray<SimpleConfigurableEmitter> createEmitters(
+			XMLElement docElement, ConfigurableEmitterFactory factory) {
+		if (factory == null) {
+			factory = new ConfigurableEmitterFactory() {
+				public SimpleConfigurableEmitter createEmitter(String name) {
+					return new SimpleConfigurableEmitter(name);
+				}
+			};
+		}
+		TArray<XMLElement> list = docElement.list();
+		TArray<SimpleConfigurableEmitter> emitters = new TArray<SimpleConfigurableEmitter>(
+				list.size);
+		for (int i = 0; i < list.size; i++) {
+			XMLElement em = list.get(i);
+			SimpleConfigurableEmitter emitter = factory.createEmitter("new");
+			elementToEmitter(em, emitter);
+			emitters.add(emitter);
+		}
+		return emitters;
+	}
+
 	public static SimpleConfigurableEmitter loadEmitter(String path)
 			throws IOException {
 		return loadEmitter(path, null);
@@ -43,6 +43,8 @@ public class SimpleParticleSystem extends Entity {
 
 	private TArray<SimpleEmitter> removeMe = new TArray<SimpleEmitter>();
 
+	private TArray<SimpleEmitter> updateList = new TArray<SimpleEmitter>();
+
 	private class ParticlePool {
 		public SimpleParticle[] particles;
 		public TArray<SimpleParticle> available;
@@ -269,8 +271,9 @@ public class SimpleParticleSystem extends Entity {
 		}
 
 		removeMe.clear();
-		TArray<SimpleEmitter> emitters = new TArray<SimpleEmitter>(
-				this.emitters);
+		TArray<SimpleEmitter> emitters = updateList;
+		emitters.clear();
+		emitters.addAll(this.emitters);
 		for (int i = 0; i < emitters.size; i++) {
 			SimpleEmitter emitter = emitters.get(i);
 			if (emitter.isEnabled()) {
@@ -284,6 +287,7 @@ public class SimpleParticleSystem extends Entity {
 			}
 		}
 		this.emitters.removeAll(removeMe);
+		emitters.clear();
 
 		pCount = 0;
 
@@ -39,6 +39,15 @@ public class PBody {
 	Vector2f vel;
 	PPhysWorld w;
 	Object tag;
+	boolean sleeping;
+	float sleepTime;
+	int island;
+	Vector2f prevPos;
+	float prevAng;
+	Vector2f lerpPos;
+	float lerpAng;
+	boolean bullet;
+	float sweepX, sweepY, sweepAng;
 
 	public PBody(float angle, boolean fixate, PShape[] ss) {
 		pos = new Vector2f();
@@ -62,9 +71,13 @@ public class PBody {
 		}
 		fix = fixate;
 		calcMassData();
+		prevPos = new Vector2f(pos);
+		lerpPos = new Vector2f(pos);
+		prevAng = lerpAng = ang;
 	}
 
 	public void addShape(PShape s) {
+		wakeUp();
 		if (w != null) {
 			w.addShape(s);
 		}
@@ -85,6 +98,9 @@ public class PBody {
 		if (fix) {
 			return;
 		} else {
+			if (sleeping) {
+				wakeUp();
+			}
 			vel.x += fx * invM;
 			vel.y += fy * invM;
 			return;
@@ -95,6 +111,9 @@ public class PBody {
 		if (fix) {
 			return;
 		} else {
+			if (sleeping) {
+				wakeUp();
+			}
 			vel.x += fx * invM;
 			vel.y += fy * invM;
 			px -= pos.x;
@@ -108,6 +127,9 @@ public class PBody {
 		if (fix) {
 			return;
 		} else {
+			if (sleeping) {
+				wakeUp();
+			}
 			angVel += torque * invI;
 			return;
 		}
@@ -157,6 +179,10 @@ public class PBody {
 
 	}
 
+	public float getAngle() {
+		return ang;
+	}
+
 	public float getAngularVelocity() {
 		return angVel;
 	}
@@ -222,6 +248,7 @@ public class PBody {
 	}
 
 	public void removeShape(PShape s) {
+		wakeUp();
 		for (int i = 0; i < numShapes; i++) {
 			if (shapes[i] != s) {
 				continue;
@@ -239,6 +266,9 @@ public class PBody {
 	}
 
 	public void setAngularVelocity(float v) {
+		if (sleeping) {
+			wakeUp();
+		}
 		angVel = v;
 	}
 
@@ -247,15 +277,63 @@ public class PBody {
 			return;
 		} else {
 			fix = fixate;
+			wakeUp();
 			calcMassData();
 			return;
 		}
 	}
 
 	public void setVelocity(float vx, float vy) {
+		if (sleeping) {
+			wakeUp();
+		}
 		vel.set(vx, vy);
 	}
 
+	/**
+	 * 唤醒处于休眠状态的刚体(所在岛屿的其它刚体会在下一次step时一并唤醒)
+	 */
+	public void wakeUp() {
+		sleeping = false;
+		sleepTime = 0.0F;
+	}
+
+	public boolean isSleeping() {
+		return sleeping;
+	}
+
+	/**
+	 * 按上一次PPhysWorld.interpolate插值后的位置,固定步长模拟时用于平滑渲染
+	 *
+	 * @return
+	 */
+	public Vector2f getInterpolatedPosition() {
+		return lerpPos;
+	}
+
+	public float getInterpolatedAngle() {
+		return lerpAng;
+	}
+
+	/**
+	 * 标记为高速刚体,在PPhysWorld开启CCD_BULLET模式时进行连续碰撞检测,防止穿透
+	 *
+	 * @param b
+	 */
+	public void setBullet(boolean b) {
+		this.bullet = b;
+	}
+
+	public boolean isBullet() {
+		return bullet;
+	}
+
+	void syncInterpolation() {
+		prevPos.set(pos);
+		lerpPos.set(pos);
+		prevAng = lerpAng = ang;
+	}
+
 	void update() {
 		float twoPI = MathUtils.TWO_PI;
 		ang = (ang + twoPI) % twoPI;
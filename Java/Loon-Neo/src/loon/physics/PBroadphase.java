@@ -0,0 +1,40 @@
+/**
+ * Copyright 2013 The Loon Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package loon.physics;
+
+/**
+ * 物理世界的宽相位(broadphase)检测,负责快速找出AABB可能相交的形状对,再交由窄相位精确检测.
+ *
+ * 默认实现为PSweepAndPrune,形状分布在单一坐标轴上大量重叠时可改用PDynamicAABBTree或PSpatialHash.
+ */
+public interface PBroadphase {
+
+	void addShape(PShape s);
+
+	void removeShape(PShape s);
+
+	/**
+	 * 输出所有AABB可能相交的形状对,固定或休眠刚体之间的形状对可以省略
+	 *
+	 * @param listener
+	 */
+	void updatePairs(PBroadphaseListener listener);
+
+	int size();
+
+	void clear();
+
+}
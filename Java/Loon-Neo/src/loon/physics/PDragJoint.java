@@ -46,6 +46,11 @@ public class PDragJoint extends PJoint {
 		return b;
 	}
 
+	@Override
+	public PBody getBody1() {
+		return b;
+	}
+
 	public Vector2f getDragPoint() {
 		return dragPoint.cpy();
 	}
@@ -73,6 +78,7 @@ public class PDragJoint extends PJoint {
 
 	public void setDragPosition(float px, float py) {
 		dragPoint.set(px, py);
+		b.wakeUp();
 	}
 
 	public void setRelativeAnchorPoint(float relx, float rely) {
@@ -0,0 +1,446 @@
+/**
+ * Copyright 2013 The Loon Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package loon.physics;
+
+import loon.geom.AABB;
+import loon.utils.MathUtils;
+
+/**
+ * 动态AABB树宽相位,每个形状对应一个扩大(fat)后的AABB叶节点,形状移出扩大范围后才重新插入并旋转平衡,
+ * 适合形状数量多,分布不均匀且大多数形状移动缓慢的场景.
+ */
+public class PDynamicAABBTree implements PBroadphase {
+
+	private final static int NULL = -1;
+
+	private float margin;
+
+	private float[] minX, minY, maxX, maxY;
+
+	private int[] parents, child1, child2, heights;
+
+	private PShape[] shapes;
+
+	private int capacity;
+
+	private int root = NULL;
+
+	private int freeList;
+
+	private int leafCount;
+
+	private int[] stack;
+
+	private int reinsertCount;
+
+	public PDynamicAABBTree() {
+		this(0.1F);
+	}
+
+	/**
+	 * @param margin
+	 *            叶节点AABB向四周扩大的距离
+	 */
+	public PDynamicAABBTree(float margin) {
+		this.margin = margin;
+		this.stack = new int[64];
+		allocate(16);
+	}
+
+	private void allocate(int size) {
+		int old = capacity;
+		minX = copy(minX, size);
+		minY = copy(minY, size);
+		maxX = copy(maxX, size);
+		maxY = copy(maxY, size);
+		parents = copy(parents, size);
+		child1 = copy(child1, size);
+		child2 = copy(child2, size);
+		heights = copy(heights, size);
+		PShape[] newShapes = new PShape[size];
+		if (shapes != null) {
+			System.arraycopy(shapes, 0, newShapes, 0, old);
+		}
+		shapes = newShapes;
+		for (int i = old; i < size; i++) {
+			parents[i] = i + 1;
+			heights[i] = -1;
+		}
+		parents[size - 1] = NULL;
+		freeList = old;
+		capacity = size;
+	}
+
+	private static float[] copy(float[] src, int size) {
+		float[] dst = new float[size];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, src.length);
+		}
+		return dst;
+	}
+
+	private static int[] copy(int[] src, int size) {
+		int[] dst = new int[size];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, src.length);
+		}
+		return dst;
+	}
+
+	private int allocateNode() {
+		if (freeList == NULL) {
+			allocate(capacity * 2);
+		}
+		int node = freeList;
+		freeList = parents[node];
+		parents[node] = NULL;
+		child1[node] = NULL;
+		child2[node] = NULL;
+		heights[node] = 0;
+		shapes[node] = null;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		parents[node] = freeList;
+		heights[node] = -1;
+		shapes[node] = null;
+		freeList = node;
+	}
+
+	private boolean isLeaf(int node) {
+		return child1[node] == NULL;
+	}
+
+	private void setFat(int node, AABB aabb) {
+		minX[node] = aabb.minX - margin;
+		minY[node] = aabb.minY - margin;
+		maxX[node] = aabb.maxX + margin;
+		maxY[node] = aabb.maxY + margin;
+	}
+
+	private void union(int node, int a, int b) {
+		minX[node] = MathUtils.min(minX[a], minX[b]);
+		minY[node] = MathUtils.min(minY[a], minY[b]);
+		maxX[node] = MathUtils.max(maxX[a], maxX[b]);
+		maxY[node] = MathUtils.max(maxY[a], maxY[b]);
+	}
+
+	private float perimeter(int node) {
+		return (maxX[node] - minX[node]) + (maxY[node] - minY[node]);
+	}
+
+	private float unionPerimeter(int a, int b) {
+		return (MathUtils.max(maxX[a], maxX[b]) - MathUtils.min(minX[a], minX[b]))
+				+ (MathUtils.max(maxY[a], maxY[b]) - MathUtils.min(minY[a], minY[b]));
+	}
+
+	@Override
+	public void addShape(PShape s) {
+		if (s._proxy != NULL) {
+			return;
+		}
+		int leaf = allocateNode();
+		shapes[leaf] = s;
+		setFat(leaf, s._aabb);
+		s._proxy = leaf;
+		insertLeaf(leaf);
+		leafCount++;
+	}
+
+	@Override
+	public void removeShape(PShape s) {
+		int leaf = s._proxy;
+		if (leaf == NULL || leaf >= capacity || shapes[leaf] != s) {
+			return;
+		}
+		removeLeaf(leaf);
+		freeNode(leaf);
+		s._proxy = NULL;
+		leafCount--;
+	}
+
+	private void insertLeaf(int leaf) {
+		if (root == NULL) {
+			root = leaf;
+			parents[leaf] = NULL;
+			return;
+		}
+		// 以周长作为代价选择兄弟节点
+		int index = root;
+		while (!isLeaf(index)) {
+			int c1 = child1[index];
+			int c2 = child2[index];
+			float area = perimeter(index);
+			float combined = unionPerimeter(index, leaf);
+			float cost = 2.0F * combined;
+			float inheritance = 2.0F * (combined - area);
+			float cost1 = unionPerimeter(c1, leaf) + inheritance;
+			if (!isLeaf(c1)) {
+				cost1 -= perimeter(c1);
+			}
+			float cost2 = unionPerimeter(c2, leaf) + inheritance;
+			if (!isLeaf(c2)) {
+				cost2 -= perimeter(c2);
+			}
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		int sibling = index;
+		int oldParent = parents[sibling];
+		int newParent = allocateNode();
+		parents[newParent] = oldParent;
+		union(newParent, leaf, sibling);
+		heights[newParent] = heights[sibling] + 1;
+		if (oldParent != NULL) {
+			if (child1[oldParent] == sibling) {
+				child1[oldParent] = newParent;
+			} else {
+				child2[oldParent] = newParent;
+			}
+		} else {
+			root = newParent;
+		}
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parents[sibling] = newParent;
+		parents[leaf] = newParent;
+		refit(parents[leaf]);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == root) {
+			root = NULL;
+			return;
+		}
+		int parent = parents[leaf];
+		int grandParent = parents[parent];
+		int sibling = child1[parent] == leaf ? child2[parent] : child1[parent];
+		if (grandParent != NULL) {
+			if (child1[grandParent] == parent) {
+				child1[grandParent] = sibling;
+			} else {
+				child2[grandParent] = sibling;
+			}
+			parents[sibling] = grandParent;
+			freeNode(parent);
+			refit(grandParent);
+		} else {
+			root = sibling;
+			parents[sibling] = NULL;
+			freeNode(parent);
+		}
+	}
+
+	private void refit(int index) {
+		while (index != NULL) {
+			index = balance(index);
+			int c1 = child1[index];
+			int c2 = child2[index];
+			heights[index] = 1 + MathUtils.max(heights[c1], heights[c2]);
+			union(index, c1, c2);
+			index = parents[index];
+		}
+	}
+
+	private void replaceChild(int parent, int oldChild, int newChild) {
+		if (parent != NULL) {
+			if (child1[parent] == oldChild) {
+				child1[parent] = newChild;
+			} else {
+				child2[parent] = newChild;
+			}
+		} else {
+			root = newChild;
+		}
+	}
+
+	/**
+	 * 子树高度相差超过1时旋转,返回旋转后子树的根
+	 */
+	private int balance(int a) {
+		if (isLeaf(a) || heights[a] < 2) {
+			return a;
+		}
+		int b = child1[a];
+		int c = child2[a];
+		int diff = heights[c] - heights[b];
+		if (diff > 1) {
+			int f = child1[c];
+			int g = child2[c];
+			child1[c] = a;
+			parents[c] = parents[a];
+			parents[a] = c;
+			replaceChild(parents[c], a, c);
+			if (heights[f] > heights[g]) {
+				child2[c] = f;
+				child2[a] = g;
+				parents[g] = a;
+				union(a, b, g);
+				union(c, a, f);
+				heights[a] = 1 + MathUtils.max(heights[b], heights[g]);
+				heights[c] = 1 + MathUtils.max(heights[a], heights[f]);
+			} else {
+				child2[c] = g;
+				child2[a] = f;
+				parents[f] = a;
+				union(a, b, f);
+				union(c, a, g);
+				heights[a] = 1 + MathUtils.max(heights[b], heights[f]);
+				heights[c] = 1 + MathUtils.max(heights[a], heights[g]);
+			}
+			return c;
+		}
+		if (diff < -1) {
+			int d = child1[b];
+			int e = child2[b];
+			child1[b] = a;
+			parents[b] = parents[a];
+			parents[a] = b;
+			replaceChild(parents[b], a, b);
+			if (heights[d] > heights[e]) {
+				child2[b] = d;
+				child1[a] = e;
+				parents[e] = a;
+				union(a, c, e);
+				union(b, a, d);
+				heights[a] = 1 + MathUtils.max(heights[c], heights[e]);
+				heights[b] = 1 + MathUtils.max(heights[a], heights[d]);
+			} else {
+				child2[b] = e;
+				child1[a] = d;
+				parents[d] = a;
+				union(a, c, d);
+				union(b, a, e);
+				heights[a] = 1 + MathUtils.max(heights[c], heights[d]);
+				heights[b] = 1 + MathUtils.max(heights[a], heights[e]);
+			}
+			return b;
+		}
+		return a;
+	}
+
+	private static boolean isResting(PShape s) {
+		PBody b = s._parent;
+		return b == null || b.fix || b.sleeping;
+	}
+
+	@Override
+	public void updatePairs(PBroadphaseListener listener) {
+		// 只重新插入移出扩大范围的叶节点
+		for (int i = 0; i < capacity; i++) {
+			PShape s = shapes[i];
+			if (s == null || isResting(s)) {
+				continue;
+			}
+			AABB aabb = s._aabb;
+			if (aabb.minX < minX[i] || aabb.minY < minY[i]
+					|| aabb.maxX > maxX[i] || aabb.maxY > maxY[i]) {
+				removeLeaf(i);
+				setFat(i, aabb);
+				insertLeaf(i);
+				reinsertCount++;
+			}
+		}
+		for (int i = 0; i < capacity; i++) {
+			PShape s = shapes[i];
+			if (s == null || isResting(s)) {
+				continue;
+			}
+			query(i, s, listener);
+		}
+	}
+
+	private void query(int leaf, PShape s, PBroadphaseListener listener) {
+		if (root == NULL) {
+			return;
+		}
+		final AABB aabb = s._aabb;
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			int node = stack[--top];
+			if (aabb.minX > maxX[node] || aabb.maxX < minX[node]
+					|| aabb.minY > maxY[node] || aabb.maxY < minY[node]) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				// 两个形状都在运动时只由编号较小的一方输出
+				if (node != leaf && (node > leaf || isResting(shapes[node]))) {
+					listener.onPair(s, shapes[node]);
+				}
+				continue;
+			}
+			if (top + 2 > stack.length) {
+				int[] newStack = new int[stack.length * 2];
+				System.arraycopy(stack, 0, newStack, 0, top);
+				stack = newStack;
+			}
+			stack[top++] = child1[node];
+			stack[top++] = child2[node];
+		}
+	}
+
+	public void setMargin(float margin) {
+		this.margin = margin;
+	}
+
+	public float getMargin() {
+		return margin;
+	}
+
+	/**
+	 * 树的高度,用于检查平衡情况
+	 *
+	 * @return
+	 */
+	public int getHeight() {
+		return root == NULL ? 0 : heights[root];
+	}
+
+	/**
+	 * 累计重新插入叶节点的次数
+	 *
+	 * @return
+	 */
+	public int getReinsertCount() {
+		return reinsertCount;
+	}
+
+	@Override
+	public int size() {
+		return leafCount;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < capacity; i++) {
+			if (shapes[i] != null) {
+				shapes[i]._proxy = NULL;
+			}
+		}
+		minX = minY = maxX = maxY = null;
+		parents = child1 = child2 = heights = null;
+		shapes = null;
+		capacity = 0;
+		root = NULL;
+		leafCount = 0;
+		allocate(16);
+	}
+
+}
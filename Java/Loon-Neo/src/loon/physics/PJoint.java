@@ -24,6 +24,20 @@ public abstract class PJoint {
 		type = PJointType.NULL_JOINT;
 	}
 
+	/**
+	 * 关节连接的第一个刚体,用于构建休眠岛屿
+	 */
+	public PBody getBody1() {
+		return null;
+	}
+
+	/**
+	 * 关节连接的第二个刚体,不存在时返回null
+	 */
+	public PBody getBody2() {
+		return null;
+	}
+
 	public PJointType getJointType() {
 		return type;
 	}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2013 The Loon Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package loon.physics;
+
+/**
+ * 物理世界的并行执行器,由支持多线程的平台(JavaSE,Lwjgl3等)提供实现,
+ * 未设置时PPhysWorld在当前线程中串行执行.
+ */
+public interface PParallelExecutor {
+
+	public interface Task {
+
+		void run(int index);
+
+	}
+
+	/**
+	 * 并行执行线程数量
+	 *
+	 * @return
+	 */
+	int getThreadCount();
+
+	/**
+	 * 执行task.run(0)至task.run(count-1),全部完成后才返回
+	 *
+	 * @param task
+	 * @param count
+	 */
+	void invokeAll(Task task, int count);
+
+}
@@ -8,6 +8,7 @@ import loon.geom.Polygon;
 import loon.geom.RectBox;
 import loon.geom.Vector2f;
 import loon.utils.CollectionUtils;
+import loon.utils.MathUtils;
 
 public class PPhysManager {
 	public float scale;
@@ -18,6 +19,13 @@ public class PPhysManager {
 	public PPhysWorld world;
 	public boolean start;
 	public boolean enableGravity;
+
+	private boolean fixedStep;
+	private float fixedTimeStep = 1F / 60F;
+	private int maxSubSteps = 5;
+	private float accumulator;
+	private float alpha = 1F;
+	private int lastSubSteps;
 	public Vector2f gravity;
 
 	private boolean isCenterPos = false;
@@ -247,11 +255,93 @@ public class PPhysManager {
 		} else {
 			world.setGravity(0.0F, 0.0F);
 		}
-		if (start) {
-			world.step(dt);
-		} else {
+		if (!start) {
 			world.update();
+			return;
+		}
+		if (!fixedStep) {
+			world.step(dt);
+			lastSubSteps = 1;
+			alpha = 1F;
+			return;
+		}
+		accumulator += dt;
+		int steps = 0;
+		for (; accumulator >= fixedTimeStep && steps < maxSubSteps; steps++) {
+			world.step(fixedTimeStep);
+			accumulator -= fixedTimeStep;
+		}
+		// 超出最大步数的时间直接丢弃,避免低性能设备上越积越多
+		if (accumulator >= fixedTimeStep) {
+			accumulator %= fixedTimeStep;
 		}
+		lastSubSteps = steps;
+		alpha = accumulator / fixedTimeStep;
+		world.interpolate(alpha);
+	}
+
+	/**
+	 * 开启固定步长模拟,step传入的帧时间会累积并按固定步长分次执行,渲染时应使用PBody.getInterpolatedPosition
+	 *
+	 * @param timeStep
+	 *            固定步长(秒)
+	 * @param maxSubSteps
+	 *            每帧最多执行的步数
+	 */
+	public void setFixedTimeStep(float timeStep, int maxSubSteps) {
+		this.fixedTimeStep = MathUtils.max(0.0001F, timeStep);
+		this.maxSubSteps = MathUtils.max(1, maxSubSteps);
+		this.fixedStep = true;
+		this.accumulator = 0;
+	}
+
+	public void setFixedStep(boolean fixed) {
+		this.fixedStep = fixed;
+		this.accumulator = 0;
+	}
+
+	public boolean isFixedStep() {
+		return fixedStep;
+	}
+
+	public float getFixedTimeStep() {
+		return fixedTimeStep;
+	}
+
+	public int getMaxSubSteps() {
+		return maxSubSteps;
+	}
+
+	/**
+	 * 当前渲染位置在上一步与本步之间的插值比例
+	 *
+	 * @return
+	 */
+	public float getInterpolationAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * 上一次step实际执行的模拟步数
+	 *
+	 * @return
+	 */
+	public int getLastSubSteps() {
+		return lastSubSteps;
+	}
+
+	/**
+	 * 设定连续碰撞检测模式
+	 *
+	 * @param mode
+	 *            PPhysWorld.CCD_NONE,CCD_BULLET或CCD_ALL
+	 */
+	public void setContinuousCollision(int mode) {
+		world.setContinuousCollision(mode);
+	}
+
+	public int getContinuousCollision() {
+		return world.getContinuousCollision();
 	}
 
 	public PPhysWorld getWorld() {
@@ -262,6 +352,15 @@ public class PPhysManager {
 		this.world = world;
 	}
 
+	/**
+	 * 开启并行求解(需由平台提供执行器,为null时恢复串行)
+	 *
+	 * @param executor
+	 */
+	public void setParallelExecutor(PParallelExecutor executor) {
+		world.setParallelExecutor(executor);
+	}
+
 	public boolean isStart() {
 		return start;
 	}
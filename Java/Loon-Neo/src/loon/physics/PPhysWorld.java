@@ -15,15 +15,39 @@
  */
 package loon.physics;
 
+import loon.geom.AABB;
 import loon.geom.Vector2f;
 import loon.utils.CollectionUtils;
+import loon.utils.MathUtils;
 import loon.utils.TimeUtils;
 
+/**
+ * 物理世界,每次step依次执行刚体更新,碰撞检测与求解.
+ *
+ * 通过接触与关节相连的非固定刚体构成岛屿,岛屿内所有刚体的线速度与角速度持续低于阈值timeToSleep秒后,
+ * 整个岛屿进入休眠,休眠刚体不再积分,更新与参与求解,直到被施力,接触到运动中的刚体或被手动唤醒.
+ */
 public class PPhysWorld {
 
+	/**
+	 * 不进行连续碰撞检测
+	 */
+	public final static int CCD_NONE = 0;
+
+	/**
+	 * 只对setBullet(true)的刚体进行连续碰撞检测
+	 */
+	public final static int CCD_BULLET = 1;
+
+	/**
+	 * 对所有单步位移超过自身尺寸一半的刚体进行连续碰撞检测
+	 */
+	public final static int CCD_ALL = 2;
+
 	private PBody[] bodies;
 	private long collisionDetectionTime;
 	private long collisionSolveTime;
+	private long islandTime;
 	private Vector2f gravity;
 	private int iterations;
 	private PJoint[] joints;
@@ -32,11 +56,55 @@ public class PPhysWorld {
 	private int numShapes;
 	private int numSolvers;
 	private long positionUpdateTime;
-	private PSweepAndPrune sap;
+	private PBroadphase broadphase;
+	private int pairCount;
 	private PShape[] shapes;
 	private PSolver[] solvers;
 	private long totalStepTime;
 
+	private PSolver[] activeSolvers;
+	private int numActiveSolvers;
+	private PJoint[] activeJoints;
+	private int numActiveJoints;
+
+	private boolean sleepEnabled;
+	private float sleepLinearVelocity;
+	private float sleepAngularVelocity;
+	private float timeToSleep;
+
+	private PParallelExecutor parallelExecutor;
+	private int parallelThreshold;
+	private PShape[] pairShapes1;
+	private PShape[] pairShapes2;
+	private PSolver[] pairSolvers;
+	private int numPairs;
+	private int narrowBatches;
+	private float solveDt;
+	private int solveGroups;
+	private PSolver[] islandSolvers;
+	private PJoint[] islandJoints;
+	private int[] solverIslands;
+	private int[] jointIslands;
+	private int[] islandIds;
+	private int[] islandSolverStart;
+	private int[] islandJointStart;
+	private int[] groupSolverStart;
+	private int[] groupJointStart;
+
+	private int ccdMode;
+	private int ccdCount;
+	private PShape[] ccdShapes = new PShape[32];
+	private int numCcdShapes;
+	private final PContact[] ccdContacts = new PContact[2];
+
+	private int[] islandParents;
+	private float[] islandSleepTimes;
+	private int islandCount;
+	private int sleepingIslandCount;
+	private int sleepingBodyCount;
+	// 通过removeBody标记删除,尚未从数组中移除的刚体数量
+	private int removedCount;
+
 	public PPhysWorld() {
 		this.iterations = 10;
 		this.gravity = new Vector2f(0.0F, 9.80665F);
@@ -44,39 +112,96 @@ public class PPhysWorld {
 		this.joints = new PJoint[1024];
 		this.shapes = new PShape[1024];
 		this.solvers = new PSolver[1024];
-		this.sap = new PSweepAndPrune();
+		this.activeSolvers = new PSolver[1024];
+		this.activeJoints = new PJoint[1024];
+		this.islandParents = new int[1024];
+		this.islandSleepTimes = new float[1024];
+		this.broadphase = new PSweepAndPrune();
+		this.sleepEnabled = true;
+		this.sleepLinearVelocity = 0.12F;
+		this.sleepAngularVelocity = 0.1F;
+		this.timeToSleep = 0.5F;
+		this.parallelThreshold = 64;
 	}
 
 	public boolean removeBody(PBody b) {
 		return removeBody(b, false);
 	}
 
+	/**
+	 * 标记删除刚体及其形状,实际移除在下一次step或update中一次遍历完成,因此批量删除不再逐个移动数组
+	 * 
+	 * @param b
+	 * @param identity
+	 *            已无作用,刚体只按引用判断是否属于本世界
+	 * @return
+	 */
 	public boolean removeBody(PBody b, boolean identity) {
-		Object[] items = this.bodies;
-		if (identity || b == null) {
-			for (int i = 0; i < numBodies; i++) {
-				if (items[i] == b) {
-					removeBody(i);
-					return true;
-				}
+		if (b == null || b.w != this || b.rem) {
+			return false;
+		}
+		b.rem = true;
+		markShapesRemoved(b);
+		removedCount++;
+		return true;
+	}
+
+	/**
+	 * 立即移除所有已标记删除的刚体与形状(不更新其余刚体)
+	 */
+	private void removeMarked() {
+		int size = 0;
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (!b.rem) {
+				bodies[size++] = b;
 			}
-		} else {
-			for (int i = 0; i < numBodies; i++) {
-				if (b.equals(items[i])) {
-					removeBody(i);
-					return true;
-				}
+		}
+		for (int i = size; i < numBodies; i++) {
+			bodies[i] = null;
+		}
+		numBodies = size;
+		size = 0;
+		for (int i = 0; i < numShapes; i++) {
+			PShape s = shapes[i];
+			if (s._rem) {
+				broadphase.removeShape(s);
+				continue;
 			}
+			shapes[size++] = s;
 		}
-		return false;
+		for (int i = size; i < numShapes; i++) {
+			shapes[i] = null;
+		}
+		numShapes = size;
+		removedCount = 0;
 	}
 
 	public void addBody(PBody b) {
+		if (b.w == this && b.rem && removedCount > 0) {
+			// 删除尚未生效时重新加入,先移除旧的记录
+			removeMarked();
+		}
+		if (b.rem) {
+			b.rem = false;
+			for (int i = 0; i < b.numShapes; i++) {
+				PShape s = b.shapes[i];
+				s._rem = false;
+				if (s._type == PShapeType.CONCAVE_SHAPE) {
+					PConcavePolygonShape c = (PConcavePolygonShape) s;
+					for (int j = 0; j < c.numConvexes; j++) {
+						c.convexes[j]._rem = false;
+					}
+				}
+			}
+		}
 		if (numBodies + 1 >= bodies.length) {
 			bodies =  CollectionUtils
 					.copyOf(bodies, bodies.length * 2);
 		}
 		b.w = this;
+		b.wakeUp();
+		b.syncInterpolation();
 		for (int i = 0; i < b.numShapes; i++) {
 			addShape(b.shapes[i]);
 		}
@@ -89,6 +214,8 @@ public class PPhysWorld {
 			joints =  CollectionUtils.copyOf(joints,
 					joints.length * 2);
 		}
+		wakeUp(j.getBody1());
+		wakeUp(j.getBody2());
 		joints[numJoints] = j;
 		numJoints++;
 	}
@@ -106,7 +233,7 @@ public class PPhysWorld {
 					shapes.length * 2);
 		}
 		shapes[numShapes] = s;
-		s._sapAABB.set(sap, s, s._aabb);
+		broadphase.addShape(s);
 		numShapes++;
 	}
 
@@ -119,84 +246,307 @@ public class PPhysWorld {
 		numSolvers++;
 	}
 
+	private final static void wakeUp(PBody b) {
+		if (b != null && b.sleeping) {
+			b.wakeUp();
+		}
+	}
+
+	/**
+	 * 固定或休眠的刚体都不需要参与本帧的求解
+	 */
+	private final static boolean isResting(PBody b) {
+		return b == null || b.fix || b.sleeping;
+	}
+
 	private PCollisionChooser cc = new PCollisionChooser();
 
-	private void collide(long st) {
-		PSortableObject obj[] = sap.sort();
-		if (sap.checkX) {
-			for (int i = 0; i < sap.numObject; i++)
-				if (obj[i].begin) {
-					PSortableObject end = obj[i].aabb.endX;
-					PShape s1 = obj[i].parent;
-					int j = i;
-					do {
-						j++;
-						if (obj[j].begin) {
-							PShape s2 = obj[j].parent;
-							if ((!s1._parent.fix || !s2._parent.fix)
-									&& s1._parent != s2._parent
-									&& s1._aabb.isHit(s2._aabb))
-								collisionShape(s1, s2, cc);
-						}
-					} while (obj[j] != end && j < sap.numObject);
-				}
+	private final PBroadphaseListener pairListener = new PBroadphaseListener() {
 
-		} else {
-			for (int i = 0; i < sap.numObject; i++)
-				if (obj[i].begin) {
-					PSortableObject end = obj[i].aabb.endY;
-					PShape s1 = obj[i].parent;
-					int j = i;
-					do {
-						j++;
-						if (obj[j].begin) {
-							PShape s2 = obj[j].parent;
-							if ((!s1._parent.fix || !s2._parent.fix)
-									&& s1._parent != s2._parent
-									&& s1._aabb.isHit(s2._aabb))
-								collisionShape(s1, s2, cc);
-						}
-					} while (obj[j] != end && j < sap.numObject);
+		@Override
+		public void onPair(PShape s1, PShape s2) {
+			if ((!isResting(s1._parent) || !isResting(s2._parent))
+					&& s1._parent != s2._parent && s1._aabb.isHit(s2._aabb)) {
+				pairCount++;
+				if (isParallel()) {
+					addPair(s1, s2);
+				} else {
+					collisionShape(s1, s2, cc);
 				}
+			}
 		}
+	};
 
-		long en = nanoTime();
-		collisionDetectionTime = en - st;
-		for (int i = 0; i < numSolvers; i++) {
-			if (solvers[i].rem) {
-				removeSolver(i);
-				i--;
+	private void collide(long st) {
+		pairCount = 0;
+		numPairs = 0;
+		broadphase.updatePairs(pairListener);
+		if (numPairs > 0) {
+			narrowBatches = batchCount(numPairs);
+			invokeAll(narrowphaseTask, narrowBatches);
+			for (int i = 0; i < numPairs; i++) {
+				if (pairSolvers[i] != null) {
+					addSolver(pairSolvers[i]);
+				}
+				pairShapes1[i] = null;
+				pairShapes2[i] = null;
+				pairSolvers[i] = null;
 			}
+			numPairs = 0;
 		}
+		long en = nanoTime();
+		collisionDetectionTime = en - st;
+		compactSolvers();
 	}
-	
+
 	private final static long nanoTime(){
 		return TimeUtils.nanoTime();
 	}
 
 	private void collisionShape(PShape s1, PShape s2, PCollisionChooser cc) {
+		PSolver solver = narrowphase(s1, s2, cc);
+		if (solver != null) {
+			addSolver(solver);
+		}
+	}
+
+	/**
+	 * 窄相位检测,更新已有接触,产生新接触时返回新的PSolver(由调用者加入世界)
+	 */
+	private PSolver narrowphase(PShape s1, PShape s2, PCollisionChooser cc) {
+		PSolver found = null;
+		for (int f = 0; f < numSolvers; f++) {
+			PSolver solver = solvers[f];
+			if ((s1 == solver.s1 && s2 == solver.s2)
+					|| (s1 == solver.s2 && s2 == solver.s1)) {
+				found = solver;
+				break;
+			}
+		}
+		// 不同宽相位输出的顺序可能不同,已有接触时沿用其形状顺序
+		if (found != null) {
+			s1 = found.s1;
+			s2 = found.s2;
+		}
 		PContact cs[] = new PContact[2];
 		int num = cc.collide(s1, s2, cs);
 		if (num == 0) {
+			return null;
+		}
+		if (found != null) {
+			found.update(cs, num);
+			return null;
+		}
+		return new PSolver(s1, s2, cs, num);
+	}
+
+	/**
+	 * 更换宽相位实现,已加入的形状会转移到新的宽相位中
+	 *
+	 * @param bp
+	 */
+	public void setBroadphase(PBroadphase bp) {
+		if (bp == null || bp == broadphase) {
 			return;
 		}
-		boolean found = false;
-		for (int f = 0; f < numSolvers; f++) {
-			if (s1 != solvers[f].s1 || s2 != solvers[f].s2) {
-				continue;
+		for (int i = 0; i < numShapes; i++) {
+			broadphase.removeShape(shapes[i]);
+		}
+		broadphase.clear();
+		this.broadphase = bp;
+		for (int i = 0; i < numShapes; i++) {
+			broadphase.addShape(shapes[i]);
+		}
+	}
+
+	public PBroadphase getBroadphase() {
+		return broadphase;
+	}
+
+	/**
+	 * 上一次step中通过宽相位与AABB检测,进入窄相位的形状对数量
+	 *
+	 * @return
+	 */
+	public int getPairCount() {
+		return pairCount;
+	}
+
+	/**
+	 * 一次遍历移除失效的接触,休眠刚体之间(或休眠刚体与固定刚体之间)的接触保留到被唤醒为止
+	 */
+	private void compactSolvers() {
+		int size = 0;
+		for (int i = 0; i < numSolvers; i++) {
+			PSolver s = solvers[i];
+			boolean removed = s.s1._rem || s.s2._rem || s.b1.rem || s.b2.rem;
+			if (removed) {
+				wakeUp(s.b1);
+				wakeUp(s.b2);
+			} else if (!s.rem || (isResting(s.b1) && isResting(s.b2))) {
+				solvers[size++] = s;
 			}
-			solvers[f].update(cs, num);
-			found = true;
-			break;
 		}
+		for (int i = size; i < numSolvers; i++) {
+			solvers[i] = null;
+		}
+		numSolvers = size;
+	}
 
-		if (!found) {
-			PSolver solver = new PSolver(s1, s2, cs, num);
-			addSolver(solver);
+	/**
+	 * 唤醒与运动中刚体接触或相连的休眠刚体,并挑选出本帧需要求解的接触与关节
+	 */
+	private void prepareSolve() {
+		if (sleepingBodyCount > 0) {
+			for (int i = 0; i < numSolvers; i++) {
+				PSolver s = solvers[i];
+				if (s.b1.sleeping && !isResting(s.b2)) {
+					s.b1.wakeUp();
+				} else if (s.b2.sleeping && !isResting(s.b1)) {
+					s.b2.wakeUp();
+				}
+			}
+			for (int i = 0; i < numJoints; i++) {
+				PBody b1 = joints[i].getBody1();
+				PBody b2 = joints[i].getBody2();
+				if (b1 != null && b1.sleeping && b2 != null && !isResting(b2)) {
+					b1.wakeUp();
+				} else if (b2 != null && b2.sleeping && b1 != null
+						&& !isResting(b1)) {
+					b2.wakeUp();
+				}
+			}
 		}
+		if (activeSolvers.length < solvers.length) {
+			activeSolvers = new PSolver[solvers.length];
+		}
+		numActiveSolvers = 0;
+		for (int i = 0; i < numSolvers; i++) {
+			PSolver s = solvers[i];
+			if (!isResting(s.b1) || !isResting(s.b2)) {
+				activeSolvers[numActiveSolvers++] = s;
+			}
+		}
+		if (activeJoints.length < joints.length) {
+			activeJoints = new PJoint[joints.length];
+		}
+		numActiveJoints = 0;
+		for (int i = 0; i < numJoints; i++) {
+			PJoint j = joints[i];
+			PBody b1 = j.getBody1();
+			PBody b2 = j.getBody2();
+			if ((b1 == null && b2 == null) || !isResting(b1)
+					|| !isResting(b2)) {
+				activeJoints[numActiveJoints++] = j;
+			}
+		}
+		buildSolveGroups();
+	}
+
+	private int findIsland(int i) {
+		final int[] parents = islandParents;
+		int root = i;
+		for (; parents[root] != root;) {
+			root = parents[root];
+		}
+		for (; parents[i] != root;) {
+			int next = parents[i];
+			parents[i] = root;
+			i = next;
+		}
+		return root;
+	}
+
+	private void unionIsland(PBody b1, PBody b2) {
+		if (b1 == null || b2 == null || b1.fix || b2.fix) {
+			return;
+		}
+		int r1 = findIsland(b1.island);
+		int r2 = findIsland(b2.island);
+		if (r1 != r2) {
+			islandParents[r2] = r1;
+		}
+	}
+
+	/**
+	 * 以接触与关节构建岛屿(并查集),统计休眠计时并整体休眠或唤醒岛屿
+	 *
+	 * @param dt
+	 */
+	private void updateIslands(float dt) {
+		long st = nanoTime();
+		if (islandParents.length < numBodies) {
+			islandParents = new int[bodies.length];
+			islandSleepTimes = new float[bodies.length];
+		}
+		final int[] parents = islandParents;
+		final float[] times = islandSleepTimes;
+		final float linear = sleepLinearVelocity * sleepLinearVelocity;
+		final float angular = sleepAngularVelocity * sleepAngularVelocity;
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			b.island = i;
+			parents[i] = i;
+			times[i] = Float.MAX_VALUE;
+			if (b.fix || b.sleeping) {
+				continue;
+			}
+			if (!sleepEnabled || b.vel.len2() > linear
+					|| b.angVel * b.angVel > angular) {
+				b.sleepTime = 0.0F;
+			} else {
+				b.sleepTime += dt;
+			}
+		}
+		for (int i = 0; i < numSolvers; i++) {
+			unionIsland(solvers[i].b1, solvers[i].b2);
+		}
+		for (int i = 0; i < numJoints; i++) {
+			unionIsland(joints[i].getBody1(), joints[i].getBody2());
+		}
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (!b.fix) {
+				int root = findIsland(i);
+				times[root] = MathUtils.min(times[root], b.sleepTime);
+			}
+		}
+		int islands = 0, sleepingIslands = 0, sleepingBodies = 0;
+		for (int i = 0; i < numBodies; i++) {
+			if (!bodies[i].fix && parents[i] == i) {
+				islands++;
+				if (sleepEnabled && times[i] >= timeToSleep) {
+					sleepingIslands++;
+				}
+			}
+		}
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.fix) {
+				continue;
+			}
+			if (sleepEnabled && times[findIsland(i)] >= timeToSleep) {
+				if (!b.sleeping) {
+					b.sleeping = true;
+					b.vel.set(0.0F, 0.0F);
+					b.angVel = 0.0F;
+					b.syncInterpolation();
+				}
+				sleepingBodies++;
+			} else if (b.sleeping) {
+				b.wakeUp();
+			}
+		}
+		this.islandCount = islands;
+		this.sleepingIslandCount = sleepingIslands;
+		this.sleepingBodyCount = sleepingBodies;
+		islandTime = nanoTime() - st;
 	}
 
 	public PBody[] getBodies() {
+		if (removedCount > 0) {
+			removeMarked();
+		}
 		return  CollectionUtils.copyOf(bodies, numBodies);
 	}
 
@@ -205,7 +555,7 @@ public class PPhysWorld {
 	}
 
 	public int size() {
-		return numBodies;
+		return numBodies - removedCount;
 	}
 
 	public long getCollisionDetectionTime() {
@@ -216,6 +566,51 @@ public class PPhysWorld {
 		return collisionSolveTime;
 	}
 
+	/**
+	 * 上一次step中构建岛屿与处理休眠所用的时间(纳秒)
+	 *
+	 * @return
+	 */
+	public long getIslandTime() {
+		return islandTime;
+	}
+
+	/**
+	 * 上一次step时非固定刚体构成的岛屿数量
+	 *
+	 * @return
+	 */
+	public int getIslandCount() {
+		return islandCount;
+	}
+
+	public int getSleepingIslandCount() {
+		return sleepingIslandCount;
+	}
+
+	public int getSleepingBodyCount() {
+		return sleepingBodyCount;
+	}
+
+	public int getAwakeBodyCount() {
+		int count = 0;
+		for (int i = 0; i < numBodies; i++) {
+			if (!bodies[i].fix && !bodies[i].sleeping) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 上一次step中实际参与求解的接触数量
+	 *
+	 * @return
+	 */
+	public int getActiveSolverCount() {
+		return numActiveSolvers;
+	}
+
 	public Vector2f getGravity() {
 		return gravity.cpy();
 	}
@@ -244,9 +639,9 @@ public class PPhysWorld {
 		return totalStepTime;
 	}
 
-	private void removeBody(int index) {
-		for (int i = 0; i < bodies[index].numShapes; i++) {
-			PShape s = bodies[index].shapes[i];
+	private void markShapesRemoved(PBody b) {
+		for (int i = 0; i < b.numShapes; i++) {
+			PShape s = b.shapes[i];
 			if (s._type == PShapeType.CONCAVE_SHAPE) {
 				PConcavePolygonShape c = (PConcavePolygonShape) s;
 				for (int j = 0; j < c.numConvexes; j++) {
@@ -256,45 +651,79 @@ public class PPhysWorld {
 				s._rem = true;
 			}
 		}
-		if (index != numBodies - 1) {
-			System.arraycopy(bodies, index + 1, bodies, index, numBodies
-					- index - 1);
-		}
-		numBodies--;
 	}
 
-	private void removeJoint(int index) {
-		if (index != numJoints - 1) {
-			System.arraycopy(joints, index + 1, joints, index, numJoints
-					- index - 1);
+	/**
+	 * 一次遍历移除所有标记删除的刚体,形状与关节,并更新其余刚体
+	 *
+	 * @param dt
+	 *            大于0时为运动中的刚体施加重力
+	 */
+	private void compact(float dt) {
+		int size = 0;
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.rem) {
+				markShapesRemoved(b);
+				continue;
+			}
+			bodies[size++] = b;
+			if (b.sleeping) {
+				continue;
+			}
+			b.update();
+			if (dt > 0 && !b.fix) {
+				b.vel.x += gravity.x * dt;
+				b.vel.y += gravity.y * dt;
+			}
 		}
-		numJoints--;
-	}
+		for (int i = size; i < numBodies; i++) {
+			bodies[i] = null;
+		}
+		numBodies = size;
+		removedCount = 0;
 
-	private void removeShape(int index) {
-		if (shapes[index]._type == PShapeType.CONCAVE_SHAPE) {
-			PConcavePolygonShape c = (PConcavePolygonShape) shapes[index];
-			for (int i = 0; i < c.numConvexes; i++) {
-				c.convexes[i]._rem = true;
+		size = 0;
+		for (int i = 0; i < numShapes; i++) {
+			PShape s = shapes[i];
+			if (s._rem) {
+				if (s._type == PShapeType.CONCAVE_SHAPE) {
+					PConcavePolygonShape c = (PConcavePolygonShape) s;
+					for (int j = 0; j < c.numConvexes; j++) {
+						c.convexes[j]._rem = true;
+					}
+				}
+				broadphase.removeShape(s);
+				continue;
 			}
+			shapes[size++] = s;
 		}
-		shapes[index]._sapAABB.remove();
-		if (index != numShapes - 1) {
-			System.arraycopy(shapes, index + 1, shapes, index, numShapes
-					- index - 1);
+		for (int i = size; i < numShapes; i++) {
+			shapes[i] = null;
 		}
-		numShapes--;
-	}
+		numShapes = size;
 
-	private void removeSolver(int index) {
-		if (index != numSolvers - 1) {
-			System.arraycopy(solvers, index + 1, solvers, index, numSolvers
-					- index - 1);
+		size = 0;
+		for (int i = 0; i < numJoints; i++) {
+			PJoint j = joints[i];
+			if (j.rem) {
+				wakeUp(j.getBody1());
+				wakeUp(j.getBody2());
+				continue;
+			}
+			joints[size++] = j;
+			j.update();
+		}
+		for (int i = size; i < numJoints; i++) {
+			joints[i] = null;
 		}
-		numSolvers--;
+		numJoints = size;
 	}
 
 	public void setGravity(float gx, float gy) {
+		if (gravity.x != gx || gravity.y != gy) {
+			wakeUpAll();
+		}
 		gravity.set(gx, gy);
 	}
 
@@ -302,28 +731,104 @@ public class PPhysWorld {
 		this.iterations = iterations;
 	}
 
-	private void solve(float dt) {
-		long st = nanoTime();
-		for (int i = 0; i < numSolvers; i++) {
+	/**
+	 * 是否允许刚体休眠
+	 *
+	 * @param sleep
+	 */
+	public void setSleepEnabled(boolean sleep) {
+		this.sleepEnabled = sleep;
+		if (!sleep) {
+			wakeUpAll();
+		}
+	}
+
+	public boolean isSleepEnabled() {
+		return sleepEnabled;
+	}
+
+	/**
+	 * 设定休眠阈值
+	 *
+	 * @param linear
+	 *            线速度低于此值视为静止
+	 * @param angular
+	 *            角速度低于此值视为静止
+	 * @param time
+	 *            岛屿整体静止多少秒后进入休眠
+	 */
+	public void setSleepThreshold(float linear, float angular, float time) {
+		this.sleepLinearVelocity = linear;
+		this.sleepAngularVelocity = angular;
+		this.timeToSleep = time;
+	}
+
+	public float getSleepLinearVelocity() {
+		return sleepLinearVelocity;
+	}
+
+	public float getSleepAngularVelocity() {
+		return sleepAngularVelocity;
+	}
+
+	public float getTimeToSleep() {
+		return timeToSleep;
+	}
+
+	public void wakeUpAll() {
+		for (int i = 0; i < numBodies; i++) {
+			bodies[i].wakeUp();
+		}
+		sleepingBodyCount = 0;
+		sleepingIslandCount = 0;
+	}
+
+	private void solveVelocity(PSolver[] solvers, int sFrom, int sTo,
+			PJoint[] joints, int jFrom, int jTo, float dt) {
+		for (int i = sFrom; i < sTo; i++) {
 			solvers[i].preSolve();
 		}
-		for (int i = 0; i < numJoints; i++) {
+		for (int i = jFrom; i < jTo; i++) {
 			joints[i].preSolve(dt);
 		}
 		for (int j = 0; j < iterations; j++) {
-			for (int i = 0; i < numJoints; i++) {
+			for (int i = jFrom; i < jTo; i++) {
 				joints[i].solveVelocity(dt);
 			}
-			for (int i = 0; i < numSolvers; i++) {
+			for (int i = sFrom; i < sTo; i++) {
 				solvers[i].solveVelocity();
 			}
 		}
+	}
+
+	private void solvePosition(PSolver[] solvers, int sFrom, int sTo,
+			PJoint[] joints, int jFrom, int jTo) {
+		for (int j = 0; j < iterations; j++) {
+			for (int i = jFrom; i < jTo; i++) {
+				joints[i].solvePosition();
+			}
+			for (int i = sFrom; i < sTo; i++) {
+				solvers[i].solvePosition();
+			}
+		}
+	}
+
+	private void solve(float dt) {
+		long st = nanoTime();
+		prepareSolve();
+		solveDt = dt;
+		if (solveGroups > 0) {
+			invokeAll(velocityTask, solveGroups);
+		} else {
+			solveVelocity(activeSolvers, 0, numActiveSolvers, activeJoints, 0,
+					numActiveJoints, dt);
+		}
 
 		long en = nanoTime();
 		collisionSolveTime = en - st;
 		st = nanoTime();
 		for (int i = 0; i < numBodies; i++)
-			if (!bodies[i].fix) {
+			if (!bodies[i].fix && !bodies[i].sleeping) {
 				PBody b = bodies[i];
 				b.correctVel.x = b.vel.x * dt;
 				b.correctVel.y = b.vel.y * dt;
@@ -333,13 +838,11 @@ public class PPhysWorld {
 		en = nanoTime();
 		positionUpdateTime += en - st;
 		st = nanoTime();
-		for (int j = 0; j < iterations; j++) {
-			for (int i = 0; i < numJoints; i++) {
-				joints[i].solvePosition();
-			}
-			for (int i = 0; i < numSolvers; i++) {
-				solvers[i].solvePosition();
-			}
+		if (solveGroups > 0) {
+			invokeAll(positionTask, solveGroups);
+		} else {
+			solvePosition(activeSolvers, 0, numActiveSolvers, activeJoints, 0,
+					numActiveJoints);
 		}
 
 		en = nanoTime();
@@ -347,83 +850,477 @@ public class PPhysWorld {
 		st = nanoTime();
 		for (int i = 0; i < numBodies; i++) {
 			PBody b = bodies[i];
+			if (b.sleeping) {
+				continue;
+			}
 			if (b.fix) {
 				b.angVel = 0.0F;
 				b.vel.set(0.0F, 0.0F);
 			} else {
+				b.sweepX = b.pos.x;
+				b.sweepY = b.pos.y;
+				b.sweepAng = b.ang;
 				b.pos.x += b.correctVel.x;
 				b.pos.y += b.correctVel.y;
 				b.ang += b.correctAngVel;
 			}
 			b.update();
 		}
+		if (ccdMode != CCD_NONE) {
+			continuousCollision();
+		}
 
-		for (int i = 0; i < numJoints; i++) {
-			joints[i].update();
+		for (int i = 0; i < numActiveJoints; i++) {
+			activeJoints[i].update();
 		}
 		en = nanoTime();
 		positionUpdateTime += en - st;
 	}
 
-	public void step(float dt) {
-		long st = nanoTime();
-		for (int i = 0; i < numBodies; i++)
-			if (bodies[i].rem) {
-				removeBody(i);
-				i--;
-			} else {
-				bodies[i].update();
-				if (!bodies[i].fix) {
-					PBody b = bodies[i];
-					b.vel.x += gravity.x * dt;
-					b.vel.y += gravity.y * dt;
+	private final PParallelExecutor.Task narrowphaseTask = new PParallelExecutor.Task() {
+
+		@Override
+		public void run(int index) {
+			final int from = (int) ((long) index * numPairs / narrowBatches);
+			final int to = (int) ((long) (index + 1) * numPairs / narrowBatches);
+			final PCollisionChooser chooser = cc;
+			for (int i = from; i < to; i++) {
+				pairSolvers[i] = narrowphase(pairShapes1[i], pairShapes2[i],
+						chooser);
+			}
+		}
+	};
+
+	private final PParallelExecutor.Task velocityTask = new PParallelExecutor.Task() {
+
+		@Override
+		public void run(int index) {
+			solveVelocity(islandSolvers, groupSolverStart[index],
+					groupSolverStart[index + 1], islandJoints,
+					groupJointStart[index], groupJointStart[index + 1], solveDt);
+		}
+	};
+
+	private final PParallelExecutor.Task positionTask = new PParallelExecutor.Task() {
+
+		@Override
+		public void run(int index) {
+			solvePosition(islandSolvers, groupSolverStart[index],
+					groupSolverStart[index + 1], islandJoints,
+					groupJointStart[index], groupJointStart[index + 1]);
+		}
+	};
+
+	private boolean isParallel() {
+		return parallelExecutor != null && parallelExecutor.getThreadCount() > 1;
+	}
+
+	private int batchCount(int items) {
+		if (!isParallel() || items < parallelThreshold) {
+			return 1;
+		}
+		int max = parallelExecutor.getThreadCount() * 4;
+		return MathUtils.max(1, MathUtils.min(max, items / 16));
+	}
+
+	private void invokeAll(PParallelExecutor.Task task, int count) {
+		if (count <= 1 || parallelExecutor == null) {
+			for (int i = 0; i < count; i++) {
+				task.run(i);
+			}
+		} else {
+			parallelExecutor.invokeAll(task, count);
+		}
+	}
+
+	private void addPair(PShape s1, PShape s2) {
+		if (pairShapes1 == null || numPairs == pairShapes1.length) {
+			int size = pairShapes1 == null ? 256 : numPairs * 2;
+			PShape[] n1 = new PShape[size];
+			PShape[] n2 = new PShape[size];
+			PSolver[] ns = new PSolver[size];
+			if (pairShapes1 != null) {
+				System.arraycopy(pairShapes1, 0, n1, 0, numPairs);
+				System.arraycopy(pairShapes2, 0, n2, 0, numPairs);
+			}
+			pairShapes1 = n1;
+			pairShapes2 = n2;
+			pairSolvers = ns;
+		}
+		pairShapes1[numPairs] = s1;
+		pairShapes2[numPairs] = s2;
+		numPairs++;
+	}
+
+	private static int[] ensure(int[] array, int size) {
+		return (array == null || array.length < size) ? new int[MathUtils.max(
+				16, size)] : array;
+	}
+
+	private PBody islandBody(PBody b1, PBody b2) {
+		if (b1 != null && !b1.fix) {
+			return b1;
+		}
+		if (b2 != null && !b2.fix) {
+			return b2;
+		}
+		return null;
+	}
+
+	/**
+	 * 将本帧需要求解的接触与关节按岛屿排序并分组,不同岛屿之间没有共享的运动刚体,
+	 * 因此各组可以并行求解,且结果与线程数量无关
+	 */
+	private void buildSolveGroups() {
+		solveGroups = 0;
+		final int constraints = numActiveSolvers + numActiveJoints;
+		final int batches = batchCount(constraints);
+		if (batches <= 1) {
+			return;
+		}
+		if (islandParents.length < numBodies) {
+			islandParents = new int[bodies.length];
+			islandSleepTimes = new float[bodies.length];
+		}
+		for (int i = 0; i < numBodies; i++) {
+			bodies[i].island = i;
+			islandParents[i] = i;
+		}
+		for (int i = 0; i < numActiveSolvers; i++) {
+			unionIsland(activeSolvers[i].b1, activeSolvers[i].b2);
+		}
+		for (int i = 0; i < numActiveJoints; i++) {
+			unionIsland(activeJoints[i].getBody1(), activeJoints[i].getBody2());
+		}
+		islandIds = ensure(islandIds, numBodies);
+		for (int i = 0; i < numBodies; i++) {
+			islandIds[i] = -1;
+		}
+		solverIslands = ensure(solverIslands, numActiveSolvers);
+		jointIslands = ensure(jointIslands, numActiveJoints);
+		int count = 0;
+		for (int i = 0; i < numActiveSolvers; i++) {
+			PBody b = islandBody(activeSolvers[i].b1, activeSolvers[i].b2);
+			int root = findIsland(b.island);
+			if (islandIds[root] == -1) {
+				islandIds[root] = count++;
+			}
+			solverIslands[i] = islandIds[root];
+		}
+		int unbound = -1;
+		for (int i = 0; i < numActiveJoints; i++) {
+			PBody b = islandBody(activeJoints[i].getBody1(),
+					activeJoints[i].getBody2());
+			if (b == null) {
+				if (unbound == -1) {
+					unbound = count++;
 				}
+				jointIslands[i] = unbound;
+				continue;
+			}
+			int root = findIsland(b.island);
+			if (islandIds[root] == -1) {
+				islandIds[root] = count++;
+			}
+			jointIslands[i] = islandIds[root];
+		}
+		if (count <= 1) {
+			return;
+		}
+		islandSolverStart = ensure(islandSolverStart, count + 1);
+		islandJointStart = ensure(islandJointStart, count + 1);
+		for (int i = 0; i <= count; i++) {
+			islandSolverStart[i] = 0;
+			islandJointStart[i] = 0;
+		}
+		for (int i = 0; i < numActiveSolvers; i++) {
+			islandSolverStart[solverIslands[i] + 1]++;
+		}
+		for (int i = 0; i < numActiveJoints; i++) {
+			islandJointStart[jointIslands[i] + 1]++;
+		}
+		for (int i = 0; i < count; i++) {
+			islandSolverStart[i + 1] += islandSolverStart[i];
+			islandJointStart[i + 1] += islandJointStart[i];
+		}
+		if (islandSolvers == null || islandSolvers.length < activeSolvers.length) {
+			islandSolvers = new PSolver[activeSolvers.length];
+		}
+		if (islandJoints == null || islandJoints.length < activeJoints.length) {
+			islandJoints = new PJoint[activeJoints.length];
+		}
+		// 计数排序,保持岛屿内原有的求解顺序
+		for (int i = 0; i < numActiveSolvers; i++) {
+			islandSolvers[islandSolverStart[solverIslands[i]]++] = activeSolvers[i];
+		}
+		for (int i = 0; i < numActiveJoints; i++) {
+			islandJoints[islandJointStart[jointIslands[i]]++] = activeJoints[i];
+		}
+		for (int i = count; i > 0; i--) {
+			islandSolverStart[i] = islandSolverStart[i - 1];
+			islandJointStart[i] = islandJointStart[i - 1];
+		}
+		islandSolverStart[0] = 0;
+		islandJointStart[0] = 0;
+		final int groups = MathUtils.min(batches, count);
+		groupSolverStart = ensure(groupSolverStart, groups + 1);
+		groupJointStart = ensure(groupJointStart, groups + 1);
+		int group = 0;
+		groupSolverStart[0] = 0;
+		groupJointStart[0] = 0;
+		for (int i = 0; i < count && group < groups - 1; i++) {
+			int weight = islandSolverStart[i + 1] + islandJointStart[i + 1];
+			if (weight >= (long) constraints * (group + 1) / groups) {
+				group++;
+				groupSolverStart[group] = islandSolverStart[i + 1];
+				groupJointStart[group] = islandJointStart[i + 1];
 			}
+		}
+		group++;
+		groupSolverStart[group] = numActiveSolvers;
+		groupJointStart[group] = numActiveJoints;
+		solveGroups = group;
+	}
+
+	/**
+	 * 设定并行执行器,为null时(GWT,Android等平台的默认情况)使用串行求解.
+	 *
+	 * 开启后窄相位检测按碰撞对分批执行,约束求解按岛屿分组执行,结果与线程数量无关
+	 *
+	 * @param executor
+	 */
+	public void setParallelExecutor(PParallelExecutor executor) {
+		this.parallelExecutor = executor;
+	}
+
+	public PParallelExecutor getParallelExecutor() {
+		return parallelExecutor;
+	}
+
+	/**
+	 * 碰撞对或约束数量少于此值时不启用并行
+	 *
+	 * @param threshold
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = MathUtils.max(1, threshold);
+	}
 
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * 上一次step中并行求解的分组数量,为0时表示串行求解
+	 *
+	 * @return
+	 */
+	public int getSolveGroupCount() {
+		return solveGroups;
+	}
+
+	/**
+	 * 连续碰撞检测,沿本帧位移对高速刚体采样,发现穿过其它形状时把刚体退回到首次接触的位置,
+	 * 交由下一帧的接触求解处理
+	 */
+	private void continuousCollision() {
+		ccdCount = 0;
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.fix || b.sleeping || b.numShapes == 0
+					|| (ccdMode == CCD_BULLET && !b.bullet)) {
+				continue;
+			}
+			float mx = b.pos.x - b.sweepX;
+			float my = b.pos.y - b.sweepY;
+			float extent = MathUtils.min(b.aabb.maxX - b.aabb.minX, b.aabb.maxY
+					- b.aabb.minY) * 0.5F;
+			float dist2 = mx * mx + my * my;
+			if (extent <= 0 || dist2 <= extent * extent) {
+				continue;
+			}
+			sweep(b, mx, my, MathUtils.sqrt(dist2), extent);
+		}
+	}
+
+	private void sweep(PBody b, float mx, float my, float dist, float extent) {
+		final float endX = b.pos.x;
+		final float endY = b.pos.y;
+		final float endAng = b.ang;
+		final float minX = MathUtils.min(b.aabb.minX, b.aabb.minX - mx);
+		final float minY = MathUtils.min(b.aabb.minY, b.aabb.minY - my);
+		final float maxX = MathUtils.max(b.aabb.maxX, b.aabb.maxX - mx);
+		final float maxY = MathUtils.max(b.aabb.maxY, b.aabb.maxY - my);
+		numCcdShapes = 0;
 		for (int i = 0; i < numShapes; i++) {
-			if (shapes[i]._rem) {
-				removeShape(i);
-				i--;
+			PShape s = shapes[i];
+			AABB a = s._aabb;
+			if (s._parent == b || s._parent == null || a.minX > maxX
+					|| a.maxX < minX || a.minY > maxY || a.maxY < minY) {
+				continue;
 			}
+			if (numCcdShapes == ccdShapes.length) {
+				ccdShapes = CollectionUtils.copyOf(ccdShapes,
+						ccdShapes.length * 2);
+			}
+			ccdShapes[numCcdShapes++] = s;
 		}
-		for (int i = 0; i < numJoints; i++) {
-			if (joints[i].rem) {
-				removeJoint(i);
-				i--;
+		if (numCcdShapes == 0) {
+			return;
+		}
+		// 起点已经接触的形状由普通求解处理
+		moveTo(b, 0F, mx, my, endX, endY, endAng);
+		int size = 0;
+		for (int i = 0; i < numCcdShapes; i++) {
+			if (!isTouching(b, ccdShapes[i])) {
+				ccdShapes[size++] = ccdShapes[i];
+			}
+		}
+		numCcdShapes = size;
+		float hit = -1F;
+		float last = 0F;
+		if (numCcdShapes > 0) {
+			int samples = MathUtils.max(2, (int) (dist / extent) + 1);
+			for (int k = 1; k <= samples; k++) {
+				float t = (float) k / samples;
+				moveTo(b, t, mx, my, endX, endY, endAng);
+				if (isTouching(b)) {
+					hit = t;
+					break;
+				}
+				last = t;
+			}
+		}
+		if (hit < 0) {
+			moveTo(b, 1F, mx, my, endX, endY, endAng);
+			return;
+		}
+		for (int i = 0; i < 6; i++) {
+			float t = (last + hit) * 0.5F;
+			moveTo(b, t, mx, my, endX, endY, endAng);
+			if (isTouching(b)) {
+				hit = t;
 			} else {
-				joints[i].update();
+				last = t;
+			}
+		}
+		// 停在刚刚接触的位置,使下一帧能够产生接触并正常反弹
+		moveTo(b, hit, mx, my, endX, endY, endAng);
+		ccdCount++;
+	}
+
+	private void moveTo(PBody b, float t, float mx, float my, float endX,
+			float endY, float endAng) {
+		float it = 1F - t;
+		b.pos.x = endX - mx * it;
+		b.pos.y = endY - my * it;
+		float d = endAng - b.sweepAng;
+		if (d > MathUtils.PI) {
+			d -= MathUtils.TWO_PI;
+		} else if (d < -MathUtils.PI) {
+			d += MathUtils.TWO_PI;
+		}
+		b.ang = b.sweepAng + d * t;
+		b.update();
+	}
+
+	private boolean isTouching(PBody b) {
+		for (int i = 0; i < numCcdShapes; i++) {
+			if (isTouching(b, ccdShapes[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isTouching(PBody b, PShape other) {
+		for (int i = 0; i < b.numShapes; i++) {
+			PShape s = b.shapes[i];
+			if (s._type == PShapeType.CONCAVE_SHAPE) {
+				PConcavePolygonShape c = (PConcavePolygonShape) s;
+				for (int j = 0; j < c.numConvexes; j++) {
+					if (isTouching(c.convexes[j], other)) {
+						return true;
+					}
+				}
+			} else if (isTouching(s, other)) {
+				return true;
 			}
 		}
+		return false;
+	}
+
+	private boolean isTouching(PShape s, PShape other) {
+		return s._aabb.isHit(other._aabb) && cc.collide(s, other, ccdContacts) > 0;
+	}
+
+	/**
+	 * 设定连续碰撞检测模式(CCD_NONE,CCD_BULLET或CCD_ALL)
+	 *
+	 * @param mode
+	 */
+	public void setContinuousCollision(int mode) {
+		this.ccdMode = mode;
+	}
+
+	public int getContinuousCollision() {
+		return ccdMode;
+	}
+
+	/**
+	 * 上一次step中因连续碰撞检测被退回的刚体数量
+	 *
+	 * @return
+	 */
+	public int getContinuousCollisionCount() {
+		return ccdCount;
+	}
+
+	/**
+	 * 按alpha在上一次与本次step的刚体位置之间插值,结果由PBody.getInterpolatedPosition获得
+	 *
+	 * @param alpha
+	 *            0至1之间
+	 */
+	public void interpolate(float alpha) {
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.fix || b.sleeping) {
+				continue;
+			}
+			b.lerpPos.x = b.prevPos.x + (b.pos.x - b.prevPos.x) * alpha;
+			b.lerpPos.y = b.prevPos.y + (b.pos.y - b.prevPos.y) * alpha;
+			float d = b.ang - b.prevAng;
+			if (d > MathUtils.PI) {
+				d -= MathUtils.TWO_PI;
+			} else if (d < -MathUtils.PI) {
+				d += MathUtils.TWO_PI;
+			}
+			b.lerpAng = b.prevAng + d * alpha;
+		}
+	}
+
+	public void step(float dt) {
+		long st = nanoTime();
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (!b.sleeping) {
+				b.prevPos.set(b.pos);
+				b.prevAng = b.ang;
+			}
+		}
+		compact(dt);
 		long en = nanoTime();
 		positionUpdateTime = en - st;
 		collide(en);
 		solve(dt);
+		updateIslands(dt);
+		interpolate(1F);
 		long totalEn = nanoTime();
 		totalStepTime = totalEn - st;
 	}
 
 	public void update() {
-		for (int i = 0; i < numBodies; i++) {
-			if (bodies[i].rem) {
-				removeBody(i);
-				i--;
-			} else {
-				bodies[i].update();
-			}
-		}
-		for (int i = 0; i < numShapes; i++) {
-			if (shapes[i]._rem) {
-				removeShape(i);
-				i--;
-			}
-		}
-		for (int i = 0; i < numJoints; i++) {
-			if (joints[i].rem) {
-				removeJoint(i);
-				i--;
-			} else {
-				joints[i].update();
-			}
-		}
+		compact(0);
 	}
 }
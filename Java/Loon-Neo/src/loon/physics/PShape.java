@@ -36,6 +36,7 @@ public abstract class PShape {
 	boolean _rem;
 	float _rest;
 	PSortableAABB _sapAABB;
+	int _proxy = -1;
 	PShapeType _type;
 	LColor _color;
 	LColor _strokeColor;
@@ -21,6 +21,7 @@ public class PSortableObject {
 	boolean begin;
 	PShape parent;
 	float value;
+	boolean removed;
 
 	public PSortableObject(PShape s, PSortableAABB aabb, float value,
 			boolean begin) {
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2013 The Loon Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package loon.physics;
+
+import loon.geom.AABB;
+import loon.utils.MathUtils;
+
+/**
+ * 均匀网格(空间哈希)宽相位,每次检测时把形状按AABB放入覆盖的网格,只比较同一网格内的形状,
+ * 适合形状大小相近且数量很多的场景,网格大小应略大于常见形状的尺寸.
+ */
+public class PSpatialHash implements PBroadphase {
+
+	private float cellSize;
+
+	private float invCellSize;
+
+	private PShape[] shapes;
+
+	private int numShapes;
+
+	private int[] heads;
+
+	private int mask;
+
+	private int[] entryNext;
+
+	private int[] entryShape;
+
+	private int[] entryX;
+
+	private int[] entryY;
+
+	private int numEntries;
+
+	public PSpatialHash() {
+		this(2.0F);
+	}
+
+	/**
+	 * @param cellSize
+	 *            网格大小(物理世界坐标)
+	 */
+	public PSpatialHash(float cellSize) {
+		setCellSize(cellSize);
+		this.shapes = new PShape[64];
+		this.entryNext = new int[128];
+		this.entryShape = new int[128];
+		this.entryX = new int[128];
+		this.entryY = new int[128];
+		this.heads = new int[256];
+		this.mask = heads.length - 1;
+	}
+
+	public void setCellSize(float size) {
+		this.cellSize = MathUtils.max(0.0001F, size);
+		this.invCellSize = 1.0F / cellSize;
+	}
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	@Override
+	public void addShape(PShape s) {
+		if (s._proxy != -1) {
+			return;
+		}
+		if (numShapes == shapes.length) {
+			PShape[] newShapes = new PShape[shapes.length * 2];
+			System.arraycopy(shapes, 0, newShapes, 0, numShapes);
+			shapes = newShapes;
+		}
+		s._proxy = numShapes;
+		shapes[numShapes++] = s;
+	}
+
+	@Override
+	public void removeShape(PShape s) {
+		int idx = s._proxy;
+		if (idx < 0 || idx >= numShapes || shapes[idx] != s) {
+			return;
+		}
+		PShape last = shapes[--numShapes];
+		shapes[idx] = last;
+		last._proxy = idx;
+		shapes[numShapes] = null;
+		s._proxy = -1;
+	}
+
+	private int cell(float v) {
+		return MathUtils.floor(v * invCellSize);
+	}
+
+	private static int hash(int x, int y) {
+		return (x * 73856093) ^ (y * 19349663);
+	}
+
+	private void addEntry(int shape, int x, int y) {
+		if (numEntries == entryNext.length) {
+			int size = numEntries * 2;
+			entryNext = grow(entryNext, size);
+			entryShape = grow(entryShape, size);
+			entryX = grow(entryX, size);
+			entryY = grow(entryY, size);
+		}
+		int e = numEntries++;
+		int bucket = hash(x, y) & mask;
+		entryShape[e] = shape;
+		entryX[e] = x;
+		entryY[e] = y;
+		entryNext[e] = heads[bucket];
+		heads[bucket] = e;
+	}
+
+	private static int[] grow(int[] src, int size) {
+		int[] dst = new int[size];
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+
+	private static boolean isResting(PShape s) {
+		PBody b = s._parent;
+		return b == null || b.fix || b.sleeping;
+	}
+
+	@Override
+	public void updatePairs(PBroadphaseListener listener) {
+		int cells = 0;
+		for (int i = 0; i < numShapes; i++) {
+			AABB aabb = shapes[i]._aabb;
+			cells += (cell(aabb.maxX) - cell(aabb.minX) + 1)
+					* (cell(aabb.maxY) - cell(aabb.minY) + 1);
+		}
+		int size = heads.length;
+		for (; size < cells * 2;) {
+			size <<= 1;
+		}
+		if (size != heads.length) {
+			heads = new int[size];
+			mask = size - 1;
+		}
+		for (int i = 0; i < heads.length; i++) {
+			heads[i] = -1;
+		}
+		numEntries = 0;
+		for (int i = 0; i < numShapes; i++) {
+			AABB aabb = shapes[i]._aabb;
+			int x1 = cell(aabb.maxX);
+			int y1 = cell(aabb.maxY);
+			for (int y = cell(aabb.minY); y <= y1; y++) {
+				for (int x = cell(aabb.minX); x <= x1; x++) {
+					addEntry(i, x, y);
+				}
+			}
+		}
+		for (int i = 0; i < heads.length; i++) {
+			for (int a = heads[i]; a != -1; a = entryNext[a]) {
+				final int cx = entryX[a];
+				final int cy = entryY[a];
+				final PShape s1 = shapes[entryShape[a]];
+				final boolean rest1 = isResting(s1);
+				for (int b = entryNext[a]; b != -1; b = entryNext[b]) {
+					if (entryX[b] != cx || entryY[b] != cy) {
+						continue;
+					}
+					PShape s2 = shapes[entryShape[b]];
+					if (s1 == s2 || (rest1 && isResting(s2))) {
+						continue;
+					}
+					AABB a1 = s1._aabb;
+					AABB a2 = s2._aabb;
+					if (!a1.isHit(a2)) {
+						continue;
+					}
+					// 同一对形状可能同时出现在多个网格中,只在相交区域左上角所在的网格输出
+					if (cell(MathUtils.max(a1.minX, a2.minX)) != cx
+							|| cell(MathUtils.max(a1.minY, a2.minY)) != cy) {
+						continue;
+					}
+					listener.onPair(s1, s2);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return numShapes;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < numShapes; i++) {
+			shapes[i]._proxy = -1;
+			shapes[i] = null;
+		}
+		numShapes = 0;
+		numEntries = 0;
+	}
+
+}
@@ -17,10 +17,14 @@ package loon.physics;
 
 import loon.utils.CollectionUtils;
 
-public class PSweepAndPrune {
+/**
+ * 排序扫描(sweep and prune)宽相位,选择重叠较少的坐标轴进行插入排序,默认的宽相位实现
+ */
+public class PSweepAndPrune implements PBroadphase {
 
 	boolean checkX;
 	int numObject;
+	private int numRemoved;
 	private PSortableObject[] objsX;
 	private PSortableObject[] objsY;
 
@@ -29,6 +33,51 @@ public class PSweepAndPrune {
 		objsY = new PSortableObject[1024];
 	}
 
+	@Override
+	public void addShape(PShape s) {
+		s._sapAABB.set(this, s, s._aabb);
+	}
+
+	@Override
+	public void removeShape(PShape s) {
+		s._sapAABB.remove();
+	}
+
+	@Override
+	public void updatePairs(PBroadphaseListener listener) {
+		PSortableObject obj[] = sort();
+		for (int i = 0; i < numObject; i++) {
+			if (obj[i].begin) {
+				PSortableObject end = checkX ? obj[i].aabb.endX
+						: obj[i].aabb.endY;
+				PShape s1 = obj[i].parent;
+				int j = i;
+				do {
+					j++;
+					if (obj[j].begin) {
+						listener.onPair(s1, obj[j].parent);
+					}
+				} while (obj[j] != end && j < numObject);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return (numObject - numRemoved) / 2;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < numObject; i++) {
+			objsX[i].aabb.set = false;
+			objsX[i] = null;
+			objsY[i] = null;
+		}
+		numObject = 0;
+		numRemoved = 0;
+	}
+
 	void addObject(PSortableObject ox, PSortableObject oy) {
 		if (numObject + 1 >= objsX.length) {
 			objsX =  CollectionUtils.copyOf(objsX,
@@ -41,33 +90,40 @@ public class PSweepAndPrune {
 		numObject++;
 	}
 
+	/**
+	 * 仅做删除标记,在下一次sort时一次性压缩数组
+	 */
 	void removeObject(PSortableObject ox, PSortableObject oy) {
-		int indexX = -1;
-		int indexY = -1;
-		for (int i = 0; i < numObject; i++) {
-			if (objsX[i] != ox)
-				continue;
-			indexX = i;
-			break;
+		if (!ox.removed) {
+			ox.removed = true;
+			oy.removed = true;
+			numRemoved++;
 		}
+	}
 
-		if (indexX != -1 && indexX != numObject - 1)
-			System.arraycopy(objsX, indexX + 1, objsX, indexX, numObject
-					- indexX - 1);
+	private void compact() {
+		int sizeX = 0;
+		int sizeY = 0;
 		for (int i = 0; i < numObject; i++) {
-			if (objsY[i] != oy)
-				continue;
-			indexY = i;
-			break;
+			if (!objsX[i].removed) {
+				objsX[sizeX++] = objsX[i];
+			}
+			if (!objsY[i].removed) {
+				objsY[sizeY++] = objsY[i];
+			}
 		}
-
-		if (indexY != -1 && indexY != numObject - 1)
-			System.arraycopy(objsY, indexY + 1, objsY, indexY, numObject
-					- indexY - 1);
-		numObject--;
+		for (int i = sizeX; i < numObject; i++) {
+			objsX[i] = null;
+			objsY[i] = null;
+		}
+		numObject = sizeX;
+		numRemoved = 0;
 	}
 
 	PSortableObject[] sort() {
+		if (numRemoved > 0) {
+			compact();
+		}
 		PInsertionSorter.sort(objsX, numObject);
 		PInsertionSorter.sort(objsY, numObject);
 		int stack = 0;
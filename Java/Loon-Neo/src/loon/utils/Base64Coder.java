@@ -20,6 +20,8 @@
  */
 package loon.utils;
 
+import java.io.InputStream;
+
 import loon.LSystem;
 
 /**
@@ -252,6 +254,62 @@ public class Base64Coder {
 		return decodedData;
 	}
 
+	/**
+	 * 以流的方式逐字节解码BASE64字符,不产生中间字符数组与字节数组(非BASE64字符会被忽略)
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public static InputStream decodeStream(final CharSequence data) {
+		checking();
+		return new DecodeStream(data);
+	}
+
+	private static class DecodeStream extends InputStream {
+
+		private final CharSequence data;
+
+		private final int end;
+
+		private int pos, accum, shift;
+
+		DecodeStream(CharSequence data) {
+			this.data = data;
+			this.end = data.length();
+		}
+
+		@Override
+		public int read() {
+			while (pos < end) {
+				char ch = data.charAt(pos++);
+				int value = ch >= BASELENGTH ? -1 : BASE64_ALPHABET[ch];
+				if (value < 0) {
+					continue;
+				}
+				accum = (accum << 6) | value;
+				shift += 6;
+				if (shift >= 8) {
+					shift -= 8;
+					return (accum >> shift) & 0xff;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			int count = 0;
+			for (; count < len; count++) {
+				int v = read();
+				if (v == -1) {
+					return count == 0 ? -1 : count;
+				}
+				b[off + count] = (byte) v;
+			}
+			return count;
+		}
+	}
+
 	public static byte[] decode(String data) {
 		return decodeBase64(data.toCharArray());
 	}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils;
+
+/**
+ * 每帧分发用的双缓冲集合.增删操作作用于主数组并递增版本号,分发时若版本号未变化则直接复用上一次的快照,
+ * 分发过程中的增删不会影响正在遍历的快照,稳定状态下不产生任何对象分配.
+ * 
+ * <pre>
+ * int size = list.begin();
+ * for (int i = 0; i < size; i++) {
+ * 	list.get(i).call(...);
+ * }
+ * </pre>
+ */
+public class DispatchArray<T> {
+
+	private final TArray<T> items;
+
+	private Object[] snapshot;
+
+	private int snapshotSize;
+
+	private int generation;
+
+	private int snapshotGeneration = -1;
+
+	public DispatchArray() {
+		this(CollectionUtils.INITIAL_CAPACITY);
+	}
+
+	public DispatchArray(int capacity) {
+		this.items = new TArray<T>(capacity);
+		this.snapshot = new Object[MathUtils.max(capacity, 4)];
+	}
+
+	public void add(T item) {
+		synchronized (items) {
+			items.add(item);
+			generation++;
+		}
+	}
+
+	public void addAll(TArray<? extends T> list) {
+		synchronized (items) {
+			items.addAll(list);
+			generation++;
+		}
+	}
+
+	public boolean remove(T item) {
+		synchronized (items) {
+			boolean removed = items.remove(item);
+			if (removed) {
+				generation++;
+			}
+			return removed;
+		}
+	}
+
+	public void clear() {
+		synchronized (items) {
+			items.clear();
+			generation++;
+		}
+	}
+
+	public boolean contains(T item) {
+		synchronized (items) {
+			return items.contains(item);
+		}
+	}
+
+	public int size() {
+		return items.size;
+	}
+
+	public boolean isEmpty() {
+		return items.size == 0;
+	}
+
+	/**
+	 * 每次增删后递增的版本号
+	 * 
+	 * @return
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * 开始一次分发,必要时刷新快照,返回快照中的元素数量
+	 * 
+	 * @return
+	 */
+	public int begin() {
+		synchronized (items) {
+			if (snapshotGeneration != generation) {
+				final int size = items.size;
+				if (snapshot.length < size) {
+					snapshot = new Object[MathUtils.max(size, snapshot.length * 2)];
+				}
+				for (int i = 0; i < size; i++) {
+					snapshot[i] = items.get(i);
+				}
+				for (int i = size; i < snapshotSize; i++) {
+					snapshot[i] = null;
+				}
+				snapshotSize = size;
+				snapshotGeneration = generation;
+			}
+			return snapshotSize;
+		}
+	}
+
+	/**
+	 * 返回快照中的元素,只在begin之后使用
+	 * 
+	 * @param index
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		return (T) snapshot[index];
+	}
+
+}
@@ -30,6 +30,8 @@ public class GifEncoder {
 
 	protected byte[] indexedPixels; // converted frame indexed to palette
 
+	private byte[] bgrBuffer; // reused BGR buffer for int[] frames
+
 	protected int colorDepth; // number of bit planes
 
 	protected byte[] colorTab; // RGB palette
@@ -128,29 +130,73 @@ public class GifEncoder {
 			}
 			image = im;
 			getImagePixels(); // convert to correct format if necessary
-			analyzePixels(); // build color table & map pixels
-			if (firstFrame) {
-				writeLSD(); // logical screen descriptior
-				writePalette(); // global color table
-				if (repeat >= 0) {
-					// use NS app extension to indicate reps
-					writeNetscapeExt();
-				}
+			writeFrame();
+		} catch (IOException e) {
+			ok = false;
+		}
+
+		return ok;
+	}
+
+	/**
+	 * 直接以ARGB像素数组添加一帧(不需要构建Image对象),尺寸与GIF不同时按最近邻缩放
+	 *
+	 * @param argb
+	 * @param w
+	 * @param h
+	 * @return
+	 */
+	public boolean addFrame(int[] argb, int w, int h) {
+		if ((argb == null) || !started || w < 1 || h < 1) {
+			return false;
+		}
+		boolean ok = true;
+		try {
+			if (!sizeSet) {
+				setSize(w, h);
+			}
+			final int size = width * height * 3;
+			if (bgrBuffer == null || bgrBuffer.length != size) {
+				bgrBuffer = new byte[size];
 			}
-			writeGraphicCtrlExt(); // write graphic control extension
-			writeImageDesc(); // image descriptor
-			if (!firstFrame) {
-				writePalette(); // local color table
+			final byte[] dst = bgrBuffer;
+			int idx = 0;
+			for (int y = 0; y < height; y++) {
+				final int row = (h == height ? y : (y * h / height)) * w;
+				for (int x = 0; x < width; x++) {
+					final int pixel = argb[row + (w == width ? x : (x * w / width))];
+					dst[idx++] = (byte) (pixel & 0xFF);
+					dst[idx++] = (byte) ((pixel >> 8) & 0xFF);
+					dst[idx++] = (byte) ((pixel >> 16) & 0xFF);
+				}
 			}
-			writePixels(); // encode and write pixel data
-			firstFrame = false;
+			pixels = dst;
+			writeFrame();
 		} catch (IOException e) {
 			ok = false;
 		}
-
 		return ok;
 	}
 
+	private void writeFrame() throws IOException {
+		analyzePixels(); // build color table & map pixels
+		if (firstFrame) {
+			writeLSD(); // logical screen descriptior
+			writePalette(); // global color table
+			if (repeat >= 0) {
+				// use NS app extension to indicate reps
+				writeNetscapeExt();
+			}
+		}
+		writeGraphicCtrlExt(); // write graphic control extension
+		writeImageDesc(); // image descriptor
+		if (!firstFrame) {
+			writePalette(); // local color table
+		}
+		writePixels(); // encode and write pixel data
+		firstFrame = false;
+	}
+
 	/**
 	 * Flushes any pending data and closes output file. If writing to an
 	 * OutputStream, the stream is not closed.
@@ -175,6 +221,7 @@ public class GifEncoder {
 		output = null;
 		image = null;
 		pixels = null;
+		bgrBuffer = null;
 		indexedPixels = null;
 		colorTab = null;
 		closeStream = false;
@@ -270,7 +317,9 @@ public class GifEncoder {
 	protected void analyzePixels() {
 		int len = pixels.length;
 		int nPix = len / 3;
-		indexedPixels = new byte[nPix];
+		if (indexedPixels == null || indexedPixels.length != nPix) {
+			indexedPixels = new byte[nPix];
+		}
 		NeuQuant nq = new NeuQuant(pixels, len, sample);
 		// initialize quantizer
 		if (!preserveColorTab) {
@@ -587,6 +587,10 @@ public class MathUtils {
 		return (n < 0) ? -n : n;
 	}
 
+	static public final int sign(int n) {
+		return (n > 0) ? 1 : ((n < 0) ? -1 : 0);
+	}
+
 	static public final float sq(float a) {
 		return a * a;
 	}
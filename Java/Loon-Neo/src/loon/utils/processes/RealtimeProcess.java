@@ -40,6 +40,9 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 
 	private SortedList<GameProcess> processesToFireWhenFinished;
 
+	// 所在RealtimeProcessManager时间轮中的位置,由管理器维护
+	RealtimeProcessManager.Entry entry;
+
 	public RealtimeProcess() {
 		this("Process" + System.currentTimeMillis());
 	}
@@ -80,10 +83,12 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 
 	public void sleep(long delay) {
 		timer.setDelay(delay);
+		wake();
 	}
 
 	public void setDelay(long delay) {
 		timer.setDelay(delay);
+		wake();
 	}
 
 	public long getDelay() {
@@ -91,19 +96,51 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 	}
 
 	public long getCurrentTick() {
+		final RealtimeProcessManager.Entry e = entry;
+		if (e != null) {
+			long elapsed = e.owner.elapsed(e);
+			if (elapsed >= 0) {
+				return elapsed;
+			}
+		}
 		return timer.getCurrentTick();
 	}
 
 	public void interrupt() {
-		timer.stop();
+		stop();
 	}
 
 	public void stop() {
-		timer.stop();
+		if (timer.isActive()) {
+			timer.setCurrentTick(getCurrentTick());
+			timer.stop();
+			wake();
+		}
 	}
 
 	public void start() {
-		timer.start();
+		if (!timer.isActive()) {
+			timer.start();
+			wake();
+		}
+	}
+
+	long timerTick() {
+		return timer.getCurrentTick();
+	}
+
+	void setTimerTick(long tick) {
+		timer.setCurrentTick(tick);
+	}
+
+	/**
+	 * 计时状态改变时通知管理器重新安排触发时间
+	 */
+	private void wake() {
+		final RealtimeProcessManager.Entry e = entry;
+		if (e != null) {
+			e.owner.wake(e);
+		}
 	}
 
 	public boolean isActive() {
@@ -115,6 +152,7 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 	@Override
 	public void kill() {
 		this.isDead = true;
+		wake();
 	}
 
 	@Override
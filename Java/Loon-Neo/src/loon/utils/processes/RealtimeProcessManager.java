@@ -22,16 +22,98 @@
 package loon.utils.processes;
 
 import loon.LRelease;
-import loon.utils.LIterator;
-import loon.utils.SortedList;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
 import loon.utils.TArray;
 import loon.utils.timer.LTimerContext;
 
+/**
+ * 进程管理器.RealtimeProcess按下次触发时间放入分层时间轮(4层,每层64格,精度1毫秒),每帧只唤醒到期的进程;
+ * 延迟为0的计时进程与其它GameProcess保存在逐帧更新的链表中.任意线程提交的进程先进入提交队列,在下一次tick开始时统一处理,
+ * 进程的查找与删除通过id索引完成
+ */
 public class RealtimeProcessManager implements RealtimeProcessEvent, LRelease {
 
+	static final class Entry {
+
+		final RealtimeProcessManager owner;
+
+		final GameProcess process;
+
+		final RealtimeProcess timed;
+
+		// 到期时间
+		long due;
+
+		// 在时间轮中的位置,落后的进程每帧最多补触发一次
+		long at;
+
+		int bucket = NONE;
+
+		Entry prev, next;
+
+		// 提交队列中的下一项
+		Entry nextSubmit;
+
+		// 相同id的下一项
+		Entry sameId;
+
+		boolean queued;
+
+		boolean removed;
+
+		Entry(RealtimeProcessManager owner, GameProcess process) {
+			this.owner = owner;
+			this.process = process;
+			this.timed = (process instanceof RealtimeProcess) ? (RealtimeProcess) process
+					: null;
+		}
+	}
+
+	private static final int WHEEL_BITS = 6;
+
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private static final int WHEEL_LEVELS = 4;
+
+	private static final int WHEEL_BUCKETS = WHEEL_SIZE * WHEEL_LEVELS;
+
+	private static final long WHEEL_SPAN = 1L << (WHEEL_BITS * WHEEL_LEVELS);
+
+	static final int NONE = -1;
+
+	// 逐帧更新的进程
+	static final int FRAME = WHEEL_BUCKETS;
+
+	// 计时器停止的进程
+	static final int PARKED = WHEEL_BUCKETS + 1;
+
+	// 延迟为0的计时进程,与LTimer一致每帧都触发(包括经过时间为0的帧)
+	static final int EVERY = WHEEL_BUCKETS + 2;
+
 	private static RealtimeProcessManager instance;
 
-	private SortedList<GameProcess> processes;
+	private final Entry[] heads = new Entry[WHEEL_BUCKETS + 3];
+
+	private final Entry[] tails = new Entry[WHEEL_BUCKETS + 3];
+
+	private final ObjectMap<String, Entry> index = new ObjectMap<String, Entry>();
+
+	private final Object lock = new Object();
+
+	private Entry submitted;
+
+	private int queueDepth, maxQueueDepth;
+
+	private long currentTime;
+
+	private int wheelCount, frameCount, parkedCount;
+
+	private long fireCount, lateFireCount, totalLateness, maxLateness;
+
+	private long lateThreshold = 16;
 
 	public static RealtimeProcessManager get() {
 		synchronized (RealtimeProcessManager.class) {
@@ -43,111 +125,490 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, LRelease {
 	}
 
 	private RealtimeProcessManager() {
-		this.processes = new SortedList<GameProcess>();
 	}
 
 	public static RealtimeProcessManager newProcess() {
 		return new RealtimeProcessManager();
 	}
 
+	/**
+	 * 提交进程,可在任意线程调用,进程从下一次tick开始运行
+	 */
+	@Override
 	public void addProcess(GameProcess realtimeProcess) {
-		synchronized (this.processes) {
-			this.processes.add(realtimeProcess);
+		if (realtimeProcess == null) {
+			return;
+		}
+		Entry e = new Entry(this, realtimeProcess);
+		synchronized (lock) {
+			if (e.timed != null) {
+				e.timed.entry = e;
+			}
+			String id = realtimeProcess.getId();
+			if (id != null) {
+				e.sameId = index.get(id);
+				index.put(id, e);
+			}
+			submit(e);
+		}
+	}
+
+	/**
+	 * 进程的计时状态(延迟,启动,停止或死亡)改变时由RealtimeProcess调用,在下一次tick时重新安排
+	 * 
+	 * @param e
+	 */
+	void wake(Entry e) {
+		synchronized (lock) {
+			submit(e);
 		}
 	}
 
+	private void submit(Entry e) {
+		if (e.queued) {
+			return;
+		}
+		e.queued = true;
+		e.nextSubmit = submitted;
+		submitted = e;
+		if (++queueDepth > maxQueueDepth) {
+			maxQueueDepth = queueDepth;
+		}
+	}
+
+	private Entry takeSubmitted() {
+		Entry head;
+		synchronized (lock) {
+			head = submitted;
+			submitted = null;
+			queueDepth = 0;
+			Entry prev = null;
+			while (head != null) {
+				Entry n = head.nextSubmit;
+				head.nextSubmit = prev;
+				head.queued = false;
+				prev = head;
+				head = n;
+			}
+			head = prev;
+		}
+		return head;
+	}
+
+	@Override
 	public void tick(LTimerContext time) {
-		if (processes.size > 0) {
-			final SortedList<GameProcess> toBeUpdated;
-			synchronized (this.processes) {
-				toBeUpdated = new SortedList<GameProcess>(this.processes);
-			}
-			final SortedList<GameProcess> deadProcesses = new SortedList<GameProcess>();
-			for (LIterator<GameProcess> it = toBeUpdated.listIterator(); it
-					.hasNext();) {
-				GameProcess realtimeProcess = it.next();
-				realtimeProcess.tick(time);
-				if (realtimeProcess.isDead()) {
-					deadProcesses.add(realtimeProcess);
+		if (submitted != null) {
+			for (Entry e = takeSubmitted(); e != null;) {
+				Entry n = e.nextSubmit;
+				e.nextSubmit = null;
+				apply(e);
+				e = n;
+			}
+		}
+		if (frameCount > 0) {
+			for (Entry e = heads[FRAME]; e != null;) {
+				Entry n = e.next;
+				if (!e.removed) {
+					GameProcess p = e.process;
+					p.tick(time);
+					if (!e.removed && p.isDead()) {
+						retire(e);
+					}
 				}
+				e = n;
+			}
+		}
+		// 只触发本帧开始时已在列表中的进程,本帧内改为延迟0的进程从下一帧开始
+		final Entry last = tails[EVERY];
+		advance(currentTime + MathUtils.max(0, time.timeSinceLastUpdate), time);
+		for (Entry e = last == null ? null : heads[EVERY]; e != null;) {
+			Entry n = e.next;
+			unlink(e);
+			e.due = currentTime;
+			fire(e, time, currentTime);
+			if (e == last) {
+				break;
 			}
-			if (deadProcesses.size > 0) {
-				for (LIterator<GameProcess> it = deadProcesses.listIterator(); it
-						.hasNext();) {
-					GameProcess realtimeProcess = it.next();
-					realtimeProcess.finish();
+			e = n;
+		}
+	}
+
+	private void apply(Entry e) {
+		if (e.removed) {
+			discard(e);
+			return;
+		}
+		if (e.process.isDead()) {
+			retire(e);
+			return;
+		}
+		if (e.timed == null) {
+			if (e.bucket == NONE) {
+				link(e, FRAME);
+			}
+			return;
+		}
+		unlink(e);
+		RealtimeProcess t = e.timed;
+		if (!t.isActive()) {
+			link(e, PARKED);
+			return;
+		}
+		long delay = t.getDelay();
+		if (delay <= 0) {
+			e.due = e.at = currentTime;
+			link(e, EVERY);
+			return;
+		}
+		long remaining = delay - t.timerTick();
+		e.due = currentTime + MathUtils.max(1, remaining);
+		e.at = e.due;
+		insert(e);
+	}
+
+	private void advance(long target, LTimerContext time) {
+		while (currentTime < target) {
+			if (wheelCount == 0) {
+				currentTime = target;
+				return;
+			}
+			final long now = ++currentTime;
+			final int slot = (int) (now & WHEEL_MASK);
+			if (slot == 0) {
+				for (int level = 1; level < WHEEL_LEVELS; level++) {
+					int idx = (int) ((now >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+					cascade(level * WHEEL_SIZE + idx);
+					if (idx != 0) {
+						break;
+					}
 				}
-				synchronized (this.processes) {
-					this.processes.removeAll(deadProcesses);
+			}
+			Entry e;
+			while ((e = heads[slot]) != null) {
+				unlink(e);
+				fire(e, time, target);
+			}
+		}
+	}
+
+	private void cascade(int bucket) {
+		Entry e;
+		while ((e = heads[bucket]) != null) {
+			unlink(e);
+			insert(e);
+		}
+	}
+
+	private void fire(Entry e, LTimerContext time, long now) {
+		final RealtimeProcess t = e.timed;
+		if (e.removed) {
+			discard(e);
+			return;
+		}
+		if (t.isDead()) {
+			retire(e);
+			return;
+		}
+		if (!t.isActive()) {
+			link(e, PARKED);
+			return;
+		}
+		final long late = now - e.due;
+		fireCount++;
+		totalLateness += late;
+		if (late > maxLateness) {
+			maxLateness = late;
+		}
+		if (late > lateThreshold) {
+			lateFireCount++;
+		}
+		t.setTimerTick(0);
+		t.run(time);
+		if (e.removed) {
+			discard(e);
+			return;
+		}
+		if (t.isDead()) {
+			retire(e);
+			return;
+		}
+		if (e.bucket != NONE) {
+			return;
+		}
+		if (!t.isActive()) {
+			link(e, PARKED);
+			return;
+		}
+		long delay = t.getDelay();
+		if (delay <= 0) {
+			e.due = e.at = now;
+			link(e, EVERY);
+			return;
+		}
+		e.due += delay;
+		e.at = e.due > now ? e.due : now + 1;
+		insert(e);
+	}
+
+	private void insert(Entry e) {
+		final long at = e.at;
+		final long delta = at - currentTime;
+		int bucket;
+		if (delta < (1L << WHEEL_BITS)) {
+			bucket = (int) (at & WHEEL_MASK);
+		} else if (delta < (1L << (WHEEL_BITS * 2))) {
+			bucket = WHEEL_SIZE + (int) ((at >>> WHEEL_BITS) & WHEEL_MASK);
+		} else if (delta < (1L << (WHEEL_BITS * 3))) {
+			bucket = WHEEL_SIZE * 2
+					+ (int) ((at >>> (WHEEL_BITS * 2)) & WHEEL_MASK);
+		} else {
+			long due = delta < WHEEL_SPAN ? at : currentTime + WHEEL_SPAN
+					- 1;
+			bucket = WHEEL_SIZE * 3
+					+ (int) ((due >>> (WHEEL_BITS * 3)) & WHEEL_MASK);
+		}
+		link(e, bucket);
+	}
+
+	private void link(Entry e, int bucket) {
+		e.bucket = bucket;
+		e.next = null;
+		e.prev = tails[bucket];
+		if (e.prev == null) {
+			heads[bucket] = e;
+		} else {
+			e.prev.next = e;
+		}
+		tails[bucket] = e;
+		if (bucket < WHEEL_BUCKETS) {
+			wheelCount++;
+		} else if (bucket == FRAME || bucket == EVERY) {
+			frameCount++;
+		} else {
+			parkedCount++;
+		}
+	}
+
+	private void unlink(Entry e) {
+		final int bucket = e.bucket;
+		if (bucket == NONE) {
+			return;
+		}
+		if (e.prev == null) {
+			heads[bucket] = e.next;
+		} else {
+			e.prev.next = e.next;
+		}
+		if (e.next == null) {
+			tails[bucket] = e.prev;
+		} else {
+			e.next.prev = e.prev;
+		}
+		e.prev = e.next = null;
+		e.bucket = NONE;
+		if (bucket < WHEEL_BUCKETS) {
+			wheelCount--;
+		} else if (bucket == FRAME || bucket == EVERY) {
+			frameCount--;
+		} else {
+			parkedCount--;
+		}
+	}
+
+	private void discard(Entry e) {
+		unlink(e);
+		if (e.timed != null && e.timed.entry == e) {
+			e.timed.entry = null;
+		}
+	}
+
+	private void retire(Entry e) {
+		e.removed = true;
+		discard(e);
+		synchronized (lock) {
+			removeIndex(e);
+		}
+		e.process.finish();
+	}
+
+	private void removeIndex(Entry e) {
+		String id = e.process.getId();
+		if (id == null) {
+			return;
+		}
+		Entry head = index.get(id);
+		if (head == e) {
+			if (e.sameId == null) {
+				index.remove(id);
+			} else {
+				index.put(id, e.sameId);
+			}
+		} else {
+			for (Entry p = head; p != null; p = p.sameId) {
+				if (p.sameId == e) {
+					p.sameId = e.sameId;
+					break;
 				}
 			}
 		}
+		e.sameId = null;
+	}
+
+	/**
+	 * 进程自上次触发以来经过的时间,仅对时间轮中的进程有效
+	 * 
+	 * @param e
+	 * @return
+	 */
+	long elapsed(Entry e) {
+		if (e.bucket < 0 || e.bucket >= WHEEL_BUCKETS) {
+			return -1;
+		}
+		long delay = MathUtils.max(0, e.timed.getDelay());
+		return MathUtils.max(0, delay - (e.due - currentTime));
 	}
 
 	public GameProcess find(String id) {
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				for (LIterator<GameProcess> it = processes.listIterator(); it
-						.hasNext();) {
-					GameProcess p = it.next();
-					if (p.getId() == id || p.getId().equals(id)) {
-						return p;
-					}
+		synchronized (lock) {
+			Entry found = null;
+			for (Entry e = index.get(id); e != null; e = e.sameId) {
+				if (!e.removed) {
+					found = e;
 				}
 			}
+			return found == null ? null : found.process;
 		}
-		return null;
 	}
 
 	public void delete(String id) {
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(
-						processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					if (p.getId() == id || p.getId().equals(id)) {
-						p.kill();
-						processes.remove(p);
-					}
-				}
+		synchronized (lock) {
+			Entry e = index.remove(id);
+			while (e != null) {
+				Entry n = e.sameId;
+				e.sameId = null;
+				e.removed = true;
+				e.process.kill();
+				submit(e);
+				e = n;
 			}
 		}
 	}
 
 	public void deleteIndex(String id) {
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(
-						processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					if (p.getId() == id || p.getId().indexOf(id) != -1) {
-						p.kill();
-						processes.remove(p);
-					}
+		TArray<String> keys = new TArray<String>();
+		synchronized (lock) {
+			for (String key : index.keys()) {
+				if (key == id || key.indexOf(id) != -1) {
+					keys.add(key);
 				}
 			}
 		}
+		for (int i = 0; i < keys.size; i++) {
+			delete(keys.get(i));
+		}
+	}
+
+	/**
+	 * 尚未处理的提交(新增进程与状态变化)数量
+	 * 
+	 * @return
+	 */
+	public int getQueueDepth() {
+		synchronized (lock) {
+			return queueDepth;
+		}
+	}
+
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * 时间轮中等待触发的进程数量
+	 * 
+	 * @return
+	 */
+	public int getScheduledCount() {
+		return wheelCount;
+	}
+
+	public int getFrameProcessCount() {
+		return frameCount;
+	}
+
+	public int getParkedCount() {
+		return parkedCount;
+	}
+
+	public int size() {
+		return wheelCount + frameCount + parkedCount;
+	}
+
+	public long getFireCount() {
+		return fireCount;
+	}
+
+	/**
+	 * 触发时间晚于到期时间超过lateThreshold毫秒的次数
+	 * 
+	 * @return
+	 */
+	public long getLateFireCount() {
+		return lateFireCount;
+	}
+
+	public long getMaxLateness() {
+		return maxLateness;
 	}
-	
-	public void dispose(){
+
+	public float getAverageLateness() {
+		return fireCount == 0 ? 0 : (float) totalLateness / fireCount;
+	}
+
+	public long getLateThreshold() {
+		return lateThreshold;
+	}
+
+	public void setLateThreshold(long lateThreshold) {
+		this.lateThreshold = lateThreshold;
+	}
+
+	public void resetMetrics() {
+		fireCount = lateFireCount = totalLateness = maxLateness = 0;
+		maxQueueDepth = 0;
+	}
+
+	public void dispose() {
 		close();
 	}
 
 	@Override
 	public void close() {
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(
-						processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					p.finish();
-				}
-				processes.clear();
+		for (Entry e = takeSubmitted(); e != null;) {
+			Entry n = e.nextSubmit;
+			e.nextSubmit = null;
+			if (e.bucket == NONE && !e.removed) {
+				link(e, e.timed == null ? FRAME : PARKED);
+			}
+			e = n;
+		}
+		for (int i = 0; i < heads.length; i++) {
+			Entry e;
+			while ((e = heads[i]) != null) {
+				e.removed = true;
+				discard(e);
+				e.process.finish();
+			}
+		}
+		synchronized (lock) {
+			for (Entry e = submitted; e != null; e = e.nextSubmit) {
+				e.removed = true;
+				e.queued = false;
 			}
+			submitted = null;
+			queueDepth = 0;
+			index.clear();
 		}
 	}
 
-}
\ No newline at end of file
+}
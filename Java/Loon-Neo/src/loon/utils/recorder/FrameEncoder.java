@@ -0,0 +1,56 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.recorder;
+
+import java.io.OutputStream;
+
+/**
+ * 屏幕录像的帧编码器,由ScreenRecorder在编码线程(或不支持异步的平台的游戏线程)中顺序调用
+ */
+public interface FrameEncoder {
+
+	/**
+	 * 开始编码
+	 *
+	 * @param output
+	 * @param width
+	 *            输出帧宽
+	 * @param height
+	 *            输出帧高
+	 * @param delay
+	 *            帧间隔(毫秒)
+	 * @return
+	 */
+	public boolean start(OutputStream output, int width, int height, long delay);
+
+	/**
+	 * 添加一帧ARGB像素(数组在调用结束后会被复用,不可保留引用)
+	 *
+	 * @param argb
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public boolean addFrame(int[] argb, int width, int height);
+
+	public boolean finish();
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.recorder;
+
+import java.io.OutputStream;
+
+import loon.utils.GifEncoder;
+
+/**
+ * 使用GifEncoder输出GIF动画
+ */
+public class GifFrameEncoder implements FrameEncoder {
+
+	private final GifEncoder gif;
+
+	public GifFrameEncoder() {
+		this(new GifEncoder());
+	}
+
+	public GifFrameEncoder(GifEncoder gif) {
+		this.gif = gif;
+	}
+
+	@Override
+	public boolean start(OutputStream output, int width, int height, long delay) {
+		gif.setSize(width, height);
+		gif.setDelay((int) delay);
+		return gif.start(output);
+	}
+
+	@Override
+	public boolean addFrame(int[] argb, int width, int height) {
+		return gif.addFrame(argb, width, height);
+	}
+
+	@Override
+	public boolean finish() {
+		return gif.finish();
+	}
+
+	public GifEncoder getGifEncoder() {
+		return gif;
+	}
+
+}
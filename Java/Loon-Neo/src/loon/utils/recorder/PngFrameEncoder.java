@@ -0,0 +1,212 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 以PNG图片序列输出录像帧(RGB,每行使用Sub过滤后以最快速度压缩).
+ * 设置FrameOutput时每帧写入各自的输出流,否则全部PNG依次写入start时传入的输出流.
+ */
+public class PngFrameEncoder implements FrameEncoder {
+
+	/**
+	 * 为每一帧提供独立的输出流(比如按序号创建文件)
+	 */
+	public static interface FrameOutput {
+
+		public OutputStream open(int index) throws IOException;
+
+		public void close(int index, OutputStream out) throws IOException;
+
+	}
+
+	private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10,
+			26, 10 };
+
+	private static final byte[] IHDR = { 'I', 'H', 'D', 'R' };
+
+	private static final byte[] IDAT = { 'I', 'D', 'A', 'T' };
+
+	private static final byte[] IEND = { 'I', 'E', 'N', 'D' };
+
+	private final FrameOutput frameOutput;
+
+	private final Deflater deflater;
+
+	private final CRC32 crc = new CRC32();
+
+	private final byte[] header = new byte[13];
+
+	private final byte[] chunk = new byte[4];
+
+	private OutputStream output;
+
+	private byte[] raw;
+
+	private byte[] compressed;
+
+	private int frames;
+
+	public PngFrameEncoder() {
+		this(null);
+	}
+
+	public PngFrameEncoder(FrameOutput out) {
+		this(out, Deflater.BEST_SPEED);
+	}
+
+	public PngFrameEncoder(FrameOutput out, int level) {
+		this.frameOutput = out;
+		this.deflater = new Deflater(level);
+	}
+
+	@Override
+	public boolean start(OutputStream output, int width, int height, long delay) {
+		if (output == null && frameOutput == null) {
+			return false;
+		}
+		this.output = output;
+		this.frames = 0;
+		return true;
+	}
+
+	@Override
+	public boolean addFrame(int[] argb, int width, int height) {
+		if (output == null && frameOutput == null) {
+			return false;
+		}
+		final int stride = width * 3 + 1;
+		final int size = stride * height;
+		if (raw == null || raw.length != size) {
+			raw = new byte[size];
+		}
+		final byte[] dst = raw;
+		for (int y = 0, idx = 0, src = 0; y < height; y++) {
+			// Sub过滤,记录与左侧像素的差值
+			dst[idx++] = 1;
+			int pr = 0, pg = 0, pb = 0;
+			for (int x = 0; x < width; x++) {
+				final int pixel = argb[src++];
+				final int r = (pixel >> 16) & 0xFF;
+				final int g = (pixel >> 8) & 0xFF;
+				final int b = pixel & 0xFF;
+				dst[idx++] = (byte) (r - pr);
+				dst[idx++] = (byte) (g - pg);
+				dst[idx++] = (byte) (b - pb);
+				pr = r;
+				pg = g;
+				pb = b;
+			}
+		}
+		deflater.reset();
+		deflater.setInput(dst, 0, size);
+		deflater.finish();
+		if (compressed == null) {
+			compressed = new byte[size / 2 + 64];
+		}
+		int length = 0;
+		for (; !deflater.finished();) {
+			if (length == compressed.length) {
+				byte[] tmp = new byte[compressed.length * 2];
+				System.arraycopy(compressed, 0, tmp, 0, length);
+				compressed = tmp;
+			}
+			length += deflater.deflate(compressed, length, compressed.length
+					- length);
+		}
+		final int index = frames;
+		OutputStream out = output;
+		try {
+			if (frameOutput != null) {
+				out = frameOutput.open(index);
+			}
+			out.write(SIGNATURE);
+			putInt(header, 0, width);
+			putInt(header, 4, height);
+			header[8] = 8;
+			header[9] = 2;
+			header[10] = 0;
+			header[11] = 0;
+			header[12] = 0;
+			writeChunk(out, IHDR, header, 13);
+			writeChunk(out, IDAT, compressed, length);
+			writeChunk(out, IEND, header, 0);
+			out.flush();
+			if (frameOutput != null) {
+				frameOutput.close(index, out);
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		frames++;
+		return true;
+	}
+
+	@Override
+	public boolean finish() {
+		if (output == null && frameOutput == null) {
+			return false;
+		}
+		try {
+			if (output != null) {
+				output.flush();
+			}
+		} catch (IOException e) {
+			return false;
+		} finally {
+			output = null;
+			raw = null;
+			compressed = null;
+		}
+		return true;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	private void writeChunk(OutputStream out, byte[] type, byte[] data,
+			int length) throws IOException {
+		putInt(chunk, 0, length);
+		out.write(chunk, 0, 4);
+		out.write(type);
+		crc.reset();
+		crc.update(type, 0, 4);
+		if (length > 0) {
+			out.write(data, 0, length);
+			crc.update(data, 0, length);
+		}
+		putInt(chunk, 0, (int) crc.getValue());
+		out.write(chunk, 0, 4);
+	}
+
+	private static void putInt(byte[] dst, int offset, int v) {
+		dst[offset] = (byte) (v >>> 24);
+		dst[offset + 1] = (byte) (v >> 16);
+		dst[offset + 2] = (byte) (v >> 8);
+		dst[offset + 3] = (byte) v;
+	}
+
+}
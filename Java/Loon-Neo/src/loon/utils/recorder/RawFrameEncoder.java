@@ -0,0 +1,124 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 不压缩的原始帧序列,格式为:
+ *
+ * <pre>
+ * "LRAW" width height delay (int,大端)
+ * 每帧: width height ARGB像素(每像素4字节,大端)
+ * 结尾: 0 0
+ * </pre>
+ *
+ * 编码几乎不消耗CPU,适合录制后再离线转码.
+ */
+public class RawFrameEncoder implements FrameEncoder {
+
+	private OutputStream output;
+
+	private byte[] buffer;
+
+	private int frames;
+
+	@Override
+	public boolean start(OutputStream output, int width, int height, long delay) {
+		if (output == null) {
+			return false;
+		}
+		this.output = output;
+		this.frames = 0;
+		try {
+			output.write('L');
+			output.write('R');
+			output.write('A');
+			output.write('W');
+			writeInt(width);
+			writeInt(height);
+			writeInt((int) delay);
+		} catch (IOException e) {
+			this.output = null;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean addFrame(int[] argb, int width, int height) {
+		if (output == null) {
+			return false;
+		}
+		final int size = width * height * 4;
+		if (buffer == null || buffer.length != size) {
+			buffer = new byte[size];
+		}
+		final byte[] dst = buffer;
+		for (int i = 0, idx = 0, len = width * height; i < len; i++) {
+			final int pixel = argb[i];
+			dst[idx++] = (byte) (pixel >>> 24);
+			dst[idx++] = (byte) (pixel >> 16);
+			dst[idx++] = (byte) (pixel >> 8);
+			dst[idx++] = (byte) pixel;
+		}
+		try {
+			writeInt(width);
+			writeInt(height);
+			output.write(dst, 0, size);
+		} catch (IOException e) {
+			return false;
+		}
+		frames++;
+		return true;
+	}
+
+	@Override
+	public boolean finish() {
+		if (output == null) {
+			return false;
+		}
+		try {
+			writeInt(0);
+			writeInt(0);
+			output.flush();
+		} catch (IOException e) {
+			return false;
+		} finally {
+			output = null;
+			buffer = null;
+		}
+		return true;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	private void writeInt(int v) throws IOException {
+		output.write(v >>> 24);
+		output.write(v >> 16);
+		output.write(v >> 8);
+		output.write(v);
+	}
+
+}
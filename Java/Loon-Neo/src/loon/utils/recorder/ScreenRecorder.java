@@ -0,0 +1,475 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.recorder;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import loon.LGame;
+import loon.LRelease;
+import loon.LSystem;
+import loon.opengl.GL20;
+import loon.utils.MathUtils;
+import loon.utils.TimeUtils;
+import loon.utils.processes.RealtimeProcess;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.timer.LTimer;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 屏幕录像器,渲染线程只负责用glReadPixels把画面复制到一组可复用的帧缓存中,
+ * 像素转换,缩放与编码(比如GIF的颜色量化)都交给后台线程完成.帧缓存全部占满时新帧会被丢弃并计数,
+ * 因此录像不会拖慢游戏帧率.不支持异步的平台则在游戏线程中按每帧预算(毫秒)逐帧编码.
+ */
+public class ScreenRecorder implements LRelease {
+
+	private static class FrameSlot {
+
+		byte[] data;
+
+		int width, height;
+
+	}
+
+	private class EncodeWorker implements Runnable {
+
+		@Override
+		public void run() {
+			boolean ok = false;
+			try {
+				for (; encodeNext(true);) {
+				}
+				ok = true;
+			} finally {
+				if (!ok) {
+					synchronized (ScreenRecorder.this) {
+						workerRunning = false;
+					}
+				}
+			}
+		}
+	}
+
+	private class EncodeProcess extends RealtimeProcess {
+
+		EncodeProcess() {
+			super("ScreenRecorder", 0);
+		}
+
+		@Override
+		public void run(LTimerContext time) {
+			frameUpdate();
+		}
+	}
+
+	private final Object encoderLock = new Object();
+
+	private final LTimer captureDelay = new LTimer();
+
+	private final FrameSlot[] ring;
+
+	private FrameEncoder encoder;
+
+	private EncodeProcess process;
+
+	private ByteBuffer readBuffer;
+
+	private int[] argb;
+
+	private int head, pending, peakPending;
+
+	private int outputWidth, outputHeight;
+
+	private float scale;
+
+	private long frameBudget = 8;
+
+	private boolean recording, finished = true, workerRunning;
+
+	private int capturedFrames, encodedFrames, droppedFrames, failedFrames;
+
+	private long lastCaptureTime, lastEncodeTime, totalEncodeTime;
+
+	public ScreenRecorder() {
+		this(LSystem.isDesktop() ? 4 : 3);
+	}
+
+	/**
+	 * @param capacity
+	 *            可同时等待编码的帧数量,超出的帧会被丢弃
+	 */
+	public ScreenRecorder(int capacity) {
+		this.ring = new FrameSlot[MathUtils.max(1, capacity)];
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = new FrameSlot();
+		}
+		// 因为内存和速度关系,非桌面平台默认只录屏幕大小的一半
+		this.scale = LSystem.isDesktop() ? 1f : 0.5f;
+	}
+
+	/**
+	 * 开始录像
+	 *
+	 * @param enc
+	 * @param output
+	 * @param delay
+	 *            截取画面的间隔(毫秒)
+	 * @return
+	 */
+	public boolean start(FrameEncoder enc, OutputStream output, long delay) {
+		stop();
+		final int width = getCaptureWidth();
+		final int height = getCaptureHeight();
+		synchronized (encoderLock) {
+			synchronized (this) {
+				this.head = 0;
+				this.pending = 0;
+				this.peakPending = 0;
+				this.capturedFrames = 0;
+				this.encodedFrames = 0;
+				this.droppedFrames = 0;
+				this.failedFrames = 0;
+				this.totalEncodeTime = 0;
+				this.outputWidth = MathUtils.max(1, (int) (width * scale));
+				this.outputHeight = MathUtils.max(1, (int) (height * scale));
+			}
+			this.encoder = enc;
+			if (enc == null
+					|| !enc.start(output, outputWidth, outputHeight, delay)) {
+				return false;
+			}
+			this.finished = false;
+		}
+		captureDelay.setDelay(delay);
+		captureDelay.refresh();
+		if (process == null || process.isDead()) {
+			process = new EncodeProcess();
+			RealtimeProcessManager.get().addProcess(process);
+		}
+		recording = true;
+		return true;
+	}
+
+	/**
+	 * 按start时设定的间隔截取画面,需要在渲染线程的绘制结束前调用
+	 *
+	 * @param clock
+	 * @return
+	 */
+	public boolean capture(LTimerContext clock) {
+		if (!recording || !captureDelay.action(clock)) {
+			return false;
+		}
+		return captureFrame();
+	}
+
+	/**
+	 * 立即截取当前画面,帧缓存已满时丢弃该帧
+	 *
+	 * @return
+	 */
+	public boolean captureFrame() {
+		if (!recording) {
+			return false;
+		}
+		final LGame game = LSystem.base();
+		if (game == null) {
+			return false;
+		}
+		final long st = TimeUtils.nanoTime();
+		FrameSlot slot;
+		synchronized (this) {
+			if (pending >= ring.length) {
+				droppedFrames++;
+				return false;
+			}
+			slot = ring[(head + pending) % ring.length];
+		}
+		final int width = getCaptureWidth();
+		final int height = getCaptureHeight();
+		final int size = width * height * 4;
+		if (readBuffer == null || readBuffer.capacity() < size) {
+			readBuffer = game.support().newByteBuffer(size);
+		}
+		final GL20 gl = game.graphics().gl;
+		readBuffer.clear();
+		gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+		gl.glReadPixels(0, 0, width, height, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, readBuffer);
+		if (slot.data == null || slot.data.length < size) {
+			slot.data = new byte[size];
+		}
+		readBuffer.position(0);
+		readBuffer.get(slot.data, 0, size);
+		slot.width = width;
+		slot.height = height;
+		boolean startWorker = false;
+		synchronized (this) {
+			pending++;
+			capturedFrames++;
+			if (pending > peakPending) {
+				peakPending = pending;
+			}
+			if (!workerRunning && isAsync()) {
+				workerRunning = true;
+				startWorker = true;
+			}
+		}
+		lastCaptureTime = TimeUtils.nanoTime() - st;
+		if (startWorker) {
+			game.invokeAsync(new EncodeWorker());
+		}
+		return true;
+	}
+
+	/**
+	 * 编码队首的一帧,没有可编码的帧时返回false
+	 *
+	 * @param worker
+	 * @return
+	 */
+	private boolean encodeNext(boolean worker) {
+		synchronized (encoderLock) {
+			FrameSlot slot;
+			synchronized (this) {
+				if (pending == 0 || finished) {
+					if (worker) {
+						workerRunning = false;
+					}
+					return false;
+				}
+				slot = ring[head];
+			}
+			final long st = TimeUtils.nanoTime();
+			final int ow = outputWidth;
+			final int oh = outputHeight;
+			convert(slot, ow, oh);
+			boolean ok = false;
+			try {
+				ok = encoder.addFrame(argb, ow, oh);
+			} catch (Throwable ex) {
+				LSystem.error("ScreenRecorder encode exception", ex);
+			}
+			final long time = TimeUtils.nanoTime() - st;
+			synchronized (this) {
+				head = (head + 1) % ring.length;
+				pending--;
+				if (ok) {
+					encodedFrames++;
+				} else {
+					failedFrames++;
+				}
+				lastEncodeTime = time;
+				totalEncodeTime += time;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 把RGBA帧(自底向上)转为自顶向下的ARGB像素,并按输出尺寸最近邻缩放
+	 *
+	 * @param slot
+	 * @param ow
+	 * @param oh
+	 */
+	private void convert(FrameSlot slot, int ow, int oh) {
+		final int size = ow * oh;
+		if (argb == null || argb.length < size) {
+			argb = new int[size];
+		}
+		final int[] dst = argb;
+		final byte[] src = slot.data;
+		final int w = slot.width;
+		final int h = slot.height;
+		int idx = 0;
+		for (int y = 0; y < oh; y++) {
+			final int sy = h - 1 - (oh == h ? y : (y * h / oh));
+			final int row = sy * w;
+			for (int x = 0; x < ow; x++) {
+				final int p = (row + (ow == w ? x : (x * w / ow))) << 2;
+				dst[idx++] = 0xFF000000 | ((src[p] & 0xFF) << 16)
+						| ((src[p + 1] & 0xFF) << 8) | (src[p + 2] & 0xFF);
+			}
+		}
+	}
+
+	private boolean isAsync() {
+		LGame game = LSystem.base();
+		return game != null && game.isAsyncSupported();
+	}
+
+	private void frameUpdate() {
+		if (isAsync()) {
+			return;
+		}
+		final long st = TimeUtils.millis();
+		for (; encodeNext(false);) {
+			if (TimeUtils.millis() - st >= frameBudget) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 停止截取画面,在调用线程中编码剩余的帧(后台线程正在编码的帧会先完成)并结束编码器
+	 *
+	 * @return
+	 */
+	public boolean stop() {
+		recording = false;
+		for (; encodeNext(false);) {
+		}
+		boolean ok = false;
+		synchronized (encoderLock) {
+			if (!finished) {
+				finished = true;
+				ok = encoder.finish();
+			}
+		}
+		if (process != null) {
+			process.kill();
+			process = null;
+		}
+		return ok;
+	}
+
+	private int getCaptureWidth() {
+		return (int) (LSystem.viewSize.width * LSystem.getScaleWidth());
+	}
+
+	private int getCaptureHeight() {
+		return (int) (LSystem.viewSize.height * LSystem.getScaleHeight());
+	}
+
+	/**
+	 * 设定输出帧相对屏幕的缩放比例(需要在start前设定)
+	 *
+	 * @param s
+	 * @return
+	 */
+	public ScreenRecorder setScale(float s) {
+		this.scale = MathUtils.clamp(s, 0.05f, 1f);
+		return this;
+	}
+
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * 不支持异步时,每帧在游戏线程中用于编码的时间(毫秒)
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public ScreenRecorder setFrameBudget(long millis) {
+		this.frameBudget = millis;
+		return this;
+	}
+
+	public long getFrameBudget() {
+		return frameBudget;
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public FrameEncoder getEncoder() {
+		return encoder;
+	}
+
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	public int getOutputWidth() {
+		return outputWidth;
+	}
+
+	public int getOutputHeight() {
+		return outputHeight;
+	}
+
+	public synchronized int getCapturedFrames() {
+		return capturedFrames;
+	}
+
+	public synchronized int getEncodedFrames() {
+		return encodedFrames;
+	}
+
+	public synchronized int getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	public synchronized int getFailedFrames() {
+		return failedFrames;
+	}
+
+	public synchronized int getPendingFrames() {
+		return pending;
+	}
+
+	public synchronized int getPeakPendingFrames() {
+		return peakPending;
+	}
+
+	/**
+	 * 最近一次截取画面在渲染线程中的耗时(纳秒)
+	 *
+	 * @return
+	 */
+	public long getLastCaptureTime() {
+		return lastCaptureTime;
+	}
+
+	/**
+	 * 最近一帧的编码耗时(纳秒)
+	 *
+	 * @return
+	 */
+	public synchronized long getLastEncodeTime() {
+		return lastEncodeTime;
+	}
+
+	public synchronized long getTotalEncodeTime() {
+		return totalEncodeTime;
+	}
+
+	@Override
+	public void close() {
+		stop();
+		synchronized (encoderLock) {
+			for (int i = 0; i < ring.length; i++) {
+				ring[i].data = null;
+			}
+			argb = null;
+		}
+		readBuffer = null;
+	}
+
+}
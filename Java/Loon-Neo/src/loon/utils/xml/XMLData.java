@@ -24,11 +24,26 @@ public class XMLData {
 
 	private String text;
 
+	// 延迟生成文本时引用的原始字符区间
+	private char[] source;
+
+	private int start, length;
+
 	public String toString() {
+		if (this.text == null && this.source != null) {
+			this.text = new String(source, start, length);
+			this.source = null;
+		}
 		return this.text;
 	}
 
 	public XMLData(String paramString) {
 		this.text = paramString;
 	}
+
+	XMLData(char[] source, int start, int length) {
+		this.source = source;
+		this.start = start;
+		this.length = length;
+	}
 }
@@ -40,12 +40,77 @@ public class XMLElement {
 		this(null);
 	}
 
+	// 延迟生成的属性,按(名称起点,名称长度,值起点,值长度)保存在source中的区间
+	private char[] source;
+
+	private int[] spans;
+
+	private int spanCount;
+
 	public XMLElement(String name) {
 		this.attributes = new ObjectMap<String, XMLAttribute>();
 		this.contents = new TArray<Object>();
 		this.name = name;
 	}
 
+	XMLElement(String name, int contentSize) {
+		this.contents = new TArray<Object>(contentSize);
+		this.name = name;
+	}
+
+	void addLazyAttribute(char[] src, int nameStart, int nameLength,
+			int valueStart, int valueLength) {
+		if (attributes != null) {
+			XMLAttribute a = addAttribute(new String(src, nameStart,
+					nameLength), new String(src, valueStart, valueLength));
+			a.element = this;
+			return;
+		}
+		if (spans == null) {
+			spans = new int[16];
+		} else if (spanCount + 4 > spans.length) {
+			int[] tmp = new int[spans.length * 2];
+			System.arraycopy(spans, 0, tmp, 0, spanCount);
+			spans = tmp;
+		}
+		source = src;
+		spans[spanCount++] = nameStart;
+		spans[spanCount++] = nameLength;
+		spans[spanCount++] = valueStart;
+		spans[spanCount++] = valueLength;
+	}
+
+	/**
+	 * 查找延迟属性中名称相同的最后一项,返回其在spans中的位置
+	 * 
+	 * @param name
+	 * @return
+	 */
+	private int findSpan(String name) {
+		for (int i = spanCount - 4; i >= 0; i -= 4) {
+			if (XMLStreamParser.equals(source, spans[i], spans[i + 1], name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private ObjectMap<String, XMLAttribute> attributes() {
+		if (attributes == null) {
+			attributes = new ObjectMap<String, XMLAttribute>();
+			for (int i = 0; i < spanCount; i += 4) {
+				XMLAttribute a = addAttribute(new String(source, spans[i],
+						spans[i + 1]), new String(source, spans[i + 2],
+						spans[i + 3]));
+				a.element = this;
+			}
+			source = null;
+			spans = null;
+			spanCount = 0;
+		}
+		return attributes;
+	}
+
 	public byte[] readContentBinHex() {
 		byte[] buffer = new byte[0x1000];
 		readBinHex(buffer, 0, 0x1000);
@@ -87,52 +152,71 @@ public class XMLElement {
 	}
 
 	public XMLAttribute getAttribute(String name) {
-		if (!this.attributes.containsKey(name))
+		if (!attributes().containsKey(name))
 			throw new Error("Unknown attribute name '" + name + "' in element '" + this.name + "' !");
-		return this.attributes.get(name);
+		return attributes().get(name);
 	}
 
 	public String getAttribute(String name, String v) {
-		if (!this.attributes.containsKey(name)) {
+		if (attributes == null) {
+			int idx = findSpan(name);
+			return idx == -1 ? v : new String(source, spans[idx + 2],
+					spans[idx + 3]);
+		}
+		if (!attributes().containsKey(name)) {
 			return v;
 		}
-		return (this.attributes.get(name)).getValue();
+		return (attributes().get(name)).getValue();
 	}
 
 	public int getIntAttribute(String name, int v) {
-		if (!this.attributes.containsKey(name)) {
+		if (attributes == null) {
+			int idx = findSpan(name);
+			if (idx == -1) {
+				return v;
+			}
+			final int start = spans[idx + 2], len = spans[idx + 3];
+			int result = XMLStreamParser.parseInt(source, start, len, 0);
+			if (result != 0 || (len == 1 && source[start] == '0')) {
+				return result;
+			}
+		}
+		if (!attributes().containsKey(name)) {
 			return v;
 		}
-		return (this.attributes.get(name)).getIntValue();
+		return (attributes().get(name)).getIntValue();
 	}
 
 	public float getFloatAttribute(String name, float v) {
-		if (!this.attributes.containsKey(name)) {
+		if (!attributes().containsKey(name)) {
 			return v;
 		}
-		return (this.attributes.get(name)).getFloatValue();
+		return (attributes().get(name)).getFloatValue();
 	}
 
 	public double getDoubleAttribute(String name, double v) {
-		if (!this.attributes.containsKey(name)) {
+		if (!attributes().containsKey(name)) {
 			return v;
 		}
-		return (this.attributes.get(name)).getDoubleValue();
+		return (attributes().get(name)).getDoubleValue();
 	}
 
 	public boolean getBoolAttribute(String name, boolean v) {
-		if (!this.attributes.containsKey(name)) {
+		if (!attributes().containsKey(name)) {
 			return v;
 		}
-		return (this.attributes.get(name)).getBoolValue();
+		return (attributes().get(name)).getBoolValue();
 	}
 
 	public ObjectMap<String, XMLAttribute> getAttributes() {
-		return this.attributes;
+		return attributes();
 	}
 
 	public boolean hasAttribute(String name) {
-		return this.attributes.containsKey(name);
+		if (attributes == null) {
+			return findSpan(name) != -1;
+		}
+		return attributes().containsKey(name);
 	}
 
 	public Iterator<Object> elements() {
@@ -255,7 +339,7 @@ public class XMLElement {
 		} else {
 			str1 = "<" + this.name;
 		}
-		for (String str2 : attributes.keys()) {
+		for (String str2 : attributes().keys()) {
 			str1 = str1 + " " + str2 + " = \"" + getAttribute(str2).getValue() + "\"";
 		}
 		if (this.name != null) {
@@ -270,13 +354,13 @@ public class XMLElement {
 
 	public XMLAttribute addAttribute(String name, int value) {
 		XMLAttribute attribute = new XMLAttribute(name, String.valueOf(value));
-		this.attributes.put(name, attribute);
+		attributes().put(name, attribute);
 		return attribute;
 	}
 	
 	public XMLAttribute addAttribute(String name, String value) {
 		XMLAttribute attribute = new XMLAttribute(name, value);
-		this.attributes.put(name, attribute);
+		attributes().put(name, attribute);
 		return attribute;
 	}
 
@@ -290,6 +374,9 @@ public class XMLElement {
 			attributes.clear();
 			attributes = null;
 		}
+		source = null;
+		spans = null;
+		spanCount = 0;
 		if (contents != null) {
 			contents.clear();
 			contents = null;
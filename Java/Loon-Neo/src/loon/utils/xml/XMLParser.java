@@ -267,8 +267,26 @@ public class XMLParser {
 		return parse(file, null);
 	}
 
+	/**
+	 * 读取并解析XML文件,由XMLStreamParser单遍扫描构建文档
+	 * 
+	 * @param file
+	 * @param l
+	 * @return
+	 */
 	public static XMLDocument parse(String file, XMLListener l) {
-		return new XMLParser().parseText(BaseIO.loadText(file), l);
+		return XMLStreamParser.parseDocument(BaseIO.loadText(file), l);
+	}
+
+	/**
+	 * 使用XMLTokenizer逐个截取标记的旧解析方式解析XML文本
+	 * 
+	 * @param text
+	 * @param l
+	 * @return
+	 */
+	public static XMLDocument parseTokens(String text, XMLListener l) {
+		return new XMLParser().parseText(text, l);
 	}
 
 
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.xml;
+
+/**
+ * 由XMLStreamParser事件构建XMLDocument,默认为延迟模式:属性与文本只记录原文区间,在首次读取时才生成字符串.
+ * 若传入XMLListener,则按XMLParser相同的顺序回调(此时属性会立即生成XMLAttribute)
+ */
+public class XMLStreamBuilder implements XMLStreamListener {
+
+	private final XMLListener listener;
+
+	private final StringBuffer header = new StringBuffer(128);
+
+	private XMLElement[] stack = new XMLElement[16];
+
+	private int depth;
+
+	private XMLElement rootElement;
+
+	private boolean lazy;
+
+	public XMLStreamBuilder() {
+		this(null);
+	}
+
+	public XMLStreamBuilder(XMLListener l) {
+		this(l, true);
+	}
+
+	public XMLStreamBuilder(XMLListener l, boolean lazy) {
+		this.listener = l;
+		this.lazy = lazy;
+	}
+
+	private XMLElement top() {
+		return depth == 0 ? null : stack[depth - 1];
+	}
+
+	private void appendHeader(XMLStreamParser p) {
+		if (rootElement == null) {
+			header.append(p.getChars(), p.getRawStart(), p.getRawLength());
+		}
+	}
+
+	@Override
+	public void startElement(XMLStreamParser p) {
+		XMLElement e = new XMLElement(p.getName(), 4);
+		XMLElement top = top();
+		if (top == null) {
+			rootElement = e;
+		} else {
+			top.addContents(e);
+		}
+		if (depth == stack.length) {
+			XMLElement[] tmp = new XMLElement[depth * 2];
+			System.arraycopy(stack, 0, tmp, 0, depth);
+			stack = tmp;
+		}
+		stack[depth++] = e;
+		if (listener != null) {
+			listener.addElement(p.getIndex(), e);
+		}
+	}
+
+	@Override
+	public void attribute(XMLStreamParser p) {
+		XMLElement e = top();
+		if (lazy && listener == null) {
+			e.addLazyAttribute(p.getChars(), p.getAttributeNameStart(),
+					p.getAttributeNameLength(), p.getAttributeValueStart(),
+					p.getAttributeValueLength());
+			return;
+		}
+		XMLAttribute a = e.addAttribute(p.getAttributeName(),
+				p.getAttributeValue());
+		a.element = e;
+		if (listener != null) {
+			listener.addAttribute(p.getIndex(), a);
+		}
+	}
+
+	@Override
+	public void text(XMLStreamParser p) {
+		XMLElement e = top();
+		if (e != null) {
+			XMLData data = lazy ? new XMLData(p.getChars(), p.getTextStart(),
+					p.getTextLength()) : new XMLData(p.getText());
+			e.addContents(data);
+			if (listener != null) {
+				listener.addData(p.getIndex(), data);
+			}
+		} else if (rootElement == null) {
+			header.append(p.getChars(), p.getTextStart(), p.getTextLength());
+		}
+	}
+
+	@Override
+	public void comment(XMLStreamParser p) {
+		XMLElement e = top();
+		if (e != null) {
+			XMLComment c = new XMLComment(p.getText());
+			e.addContents(c);
+			if (listener != null) {
+				listener.addComment(p.getIndex(), c);
+			}
+		} else {
+			appendHeader(p);
+		}
+	}
+
+	@Override
+	public void processing(XMLStreamParser p) {
+		XMLElement e = top();
+		if (e != null && p.getEventType() == XMLStreamParser.PROCESSING) {
+			XMLProcessing xp = new XMLProcessing(p.getText());
+			e.addContents(xp);
+			if (listener != null) {
+				listener.addHeader(p.getIndex(), xp);
+			}
+		} else if (e == null) {
+			appendHeader(p);
+		}
+	}
+
+	@Override
+	public void endElement(XMLStreamParser p) {
+		if (listener != null) {
+			listener.endElement(p.getIndex(), top());
+		}
+		stack[--depth] = null;
+	}
+
+	public XMLElement getRoot() {
+		return rootElement;
+	}
+
+	public XMLDocument getDocument() {
+		return new XMLDocument(header.toString(), rootElement);
+	}
+
+	public boolean isLazy() {
+		return lazy;
+	}
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.xml;
+
+/**
+ * XMLStreamParser的事件回调,事件中的名称,属性与文本都以字符区间的形式保存在解析器内,只在调用getName,getText等方法时才会生成字符串
+ */
+public interface XMLStreamListener {
+
+	public void startElement(XMLStreamParser parser);
+
+	public void attribute(XMLStreamParser parser);
+
+	public void text(XMLStreamParser parser);
+
+	public void comment(XMLStreamParser parser);
+
+	public void processing(XMLStreamParser parser);
+
+	public void endElement(XMLStreamParser parser);
+
+}
@@ -0,0 +1,600 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.xml;
+
+import loon.BaseIO;
+import loon.LSystem;
+
+/**
+ * 单遍扫描的XML游标解析器,直接在char数组上移动游标,以开始标签,属性,文本,结束标签等事件通知XMLStreamListener.
+ * 解析过程中不截取子字符串,标签与属性名经过内部字符串池复用,属性值与文本仅在被读取时才生成字符串.
+ * 
+ * <pre>
+ * XMLStreamParser parser = new XMLStreamParser();
+ * parser.parse(text, listener);
+ * // 或者构建延迟加载的XMLDocument
+ * XMLDocument doc = XMLStreamParser.parseDocument(text);
+ * </pre>
+ */
+public class XMLStreamParser {
+
+	public static final int START_ELEMENT = 1;
+
+	public static final int ATTRIBUTE = 2;
+
+	public static final int TEXT = 3;
+
+	public static final int END_ELEMENT = 4;
+
+	public static final int COMMENT = 5;
+
+	public static final int PROCESSING = 6;
+
+	public static final int DECLARATION = 7;
+
+	public static final int CDATA = 8;
+
+	private static final int POOL_SIZE = 256;
+
+	private final String[] namePool = new String[POOL_SIZE];
+
+	private char[] chars;
+
+	private int pos, limit;
+
+	private int eventType;
+
+	private int index;
+
+	private int depth;
+
+	private int nameStart, nameLength;
+
+	private int attrNameStart, attrNameLength;
+
+	private int attrValueStart, attrValueLength;
+
+	private int textStart, textLength;
+
+	private int rawStart, rawLength;
+
+	private boolean emptyElement;
+
+	// 已打开标签名称的区间(起点,长度)
+	private int[] stack = new int[32];
+
+	private boolean stopped;
+
+	/**
+	 * 读取指定路径的文件并构建XMLDocument
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public static XMLDocument parseFile(String file) {
+		return parseFile(file, null);
+	}
+
+	public static XMLDocument parseFile(String file, XMLListener l) {
+		return parseDocument(BaseIO.loadText(file), l);
+	}
+
+	public static XMLDocument parseDocument(CharSequence text) {
+		return parseDocument(text, null);
+	}
+
+	/**
+	 * 解析XML文本并构建延迟生成属性与文本字符串的XMLDocument,若listener不为null则同时按XMLParser的方式回调
+	 * 
+	 * @param text
+	 * @param l
+	 * @return
+	 */
+	public static XMLDocument parseDocument(CharSequence text, XMLListener l) {
+		XMLStreamBuilder builder = new XMLStreamBuilder(l);
+		new XMLStreamParser().parse(text, builder);
+		return builder.getDocument();
+	}
+
+	public void parse(CharSequence text, XMLStreamListener listener) {
+		if (text == null) {
+			throw LSystem.runThrow("XML text is null !");
+		}
+		char[] buffer;
+		if (text instanceof String) {
+			buffer = ((String) text).toCharArray();
+		} else {
+			final int size = text.length();
+			buffer = new char[size];
+			for (int i = 0; i < size; i++) {
+				buffer[i] = text.charAt(i);
+			}
+		}
+		parse(buffer, 0, buffer.length, listener);
+	}
+
+	/**
+	 * 解析chars中offset开始的length个字符,解析期间不复制也不修改该数组
+	 * 
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @param listener
+	 */
+	public void parse(char[] buffer, int offset, int length,
+			XMLStreamListener listener) {
+		this.chars = buffer;
+		this.pos = offset;
+		this.limit = offset + length;
+		this.index = 0;
+		this.depth = 0;
+		this.stopped = false;
+		final char[] c = buffer;
+		while (pos < limit && !stopped) {
+			rawStart = pos;
+			if (c[pos] != '<') {
+				int start = pos;
+				while (pos < limit && c[pos] != '<') {
+					pos++;
+				}
+				setText(TEXT, start, pos - start);
+				listener.text(this);
+			} else if (startsWith("<!--")) {
+				int end = indexOf("-->", pos + 4);
+				int start = pos + 4;
+				pos = end + 3;
+				setText(COMMENT, start, end - start);
+				listener.comment(this);
+			} else if (startsWith("<![CDATA[")) {
+				int end = indexOf("]]>", pos + 9);
+				int start = pos + 9;
+				pos = end + 3;
+				setText(CDATA, start, end - start);
+				listener.text(this);
+			} else if (startsWith("<?")) {
+				int end = indexOf("?>", pos + 2);
+				int start = pos + 2;
+				pos = end + 2;
+				setText(PROCESSING, start, end - start);
+				listener.processing(this);
+			} else if (startsWith("<!")) {
+				int end = indexOf(">", pos + 2);
+				int start = pos + 2;
+				pos = end + 1;
+				setText(DECLARATION, start, end - start);
+				listener.processing(this);
+			} else if (pos + 1 < limit && c[pos + 1] == '/') {
+				pos += 2;
+				readName();
+				skipWhitespace();
+				expect('>');
+				if (depth == 0) {
+					throw error("Unexpected close tag '" + getName() + "'");
+				}
+				final int top = (depth - 1) * 2;
+				if (!regionEquals(stack[top], stack[top + 1], nameStart,
+						nameLength)) {
+					throw error("Expected close of '"
+							+ new String(c, stack[top], stack[top + 1])
+							+ "' instead of '" + getName() + "'");
+				}
+				eventType = END_ELEMENT;
+				emptyElement = false;
+				rawLength = pos - rawStart;
+				depth--;
+				listener.endElement(this);
+			} else {
+				pos++;
+				readName();
+				if (nameLength == 0) {
+					throw error("Element name expected");
+				}
+				push(nameStart, nameLength);
+				eventType = START_ELEMENT;
+				emptyElement = false;
+				rawLength = 0;
+				listener.startElement(this);
+				readAttributes(listener);
+				rawLength = pos - rawStart;
+				if (emptyElement) {
+					eventType = END_ELEMENT;
+					depth--;
+					listener.endElement(this);
+				}
+			}
+			index++;
+		}
+	}
+
+	private void readAttributes(XMLStreamListener listener) {
+		final char[] c = chars;
+		final int elementStart = nameStart, elementLength = nameLength;
+		for (;;) {
+			skipWhitespace();
+			if (pos >= limit) {
+				throw error("Tokenizer error: < without > at end of text");
+			}
+			char ch = c[pos];
+			if (ch == '>') {
+				pos++;
+				break;
+			}
+			if (ch == '/') {
+				pos++;
+				expect('>');
+				emptyElement = true;
+				break;
+			}
+			attrNameStart = pos;
+			while (pos < limit) {
+				ch = c[pos];
+				if (ch == '=' || ch == '>' || ch == '/' || isWhitespace(ch)) {
+					break;
+				}
+				pos++;
+			}
+			attrNameLength = pos - attrNameStart;
+			if (attrNameLength == 0) {
+				throw error("Attribute name expected");
+			}
+			skipWhitespace();
+			attrValueStart = pos;
+			attrValueLength = 0;
+			if (pos < limit && c[pos] == '=') {
+				pos++;
+				skipWhitespace();
+				if (pos >= limit) {
+					throw error("Attribute value expected");
+				}
+				ch = c[pos];
+				if (ch == '"' || ch == '\'') {
+					attrValueStart = ++pos;
+					while (pos < limit && c[pos] != ch) {
+						pos++;
+					}
+					if (pos >= limit) {
+						throw error("Unclosed attribute value");
+					}
+					attrValueLength = pos - attrValueStart;
+					pos++;
+				} else {
+					attrValueStart = pos;
+					while (pos < limit) {
+						ch = c[pos];
+						if (ch == '>' || isWhitespace(ch)) {
+							break;
+						}
+						pos++;
+					}
+					attrValueLength = pos - attrValueStart;
+				}
+			}
+			eventType = ATTRIBUTE;
+			listener.attribute(this);
+			nameStart = elementStart;
+			nameLength = elementLength;
+		}
+	}
+
+	private void push(int start, int len) {
+		if (depth * 2 + 2 > stack.length) {
+			int[] tmp = new int[stack.length * 2];
+			System.arraycopy(stack, 0, tmp, 0, stack.length);
+			stack = tmp;
+		}
+		stack[depth * 2] = start;
+		stack[depth * 2 + 1] = len;
+		depth++;
+	}
+
+	private void readName() {
+		final char[] c = chars;
+		nameStart = pos;
+		while (pos < limit) {
+			char ch = c[pos];
+			if (ch == '>' || ch == '/' || ch == '=' || isWhitespace(ch)) {
+				break;
+			}
+			pos++;
+		}
+		nameLength = pos - nameStart;
+	}
+
+	private void setText(int type, int start, int len) {
+		eventType = type;
+		textStart = start;
+		textLength = len;
+		rawLength = pos - rawStart;
+	}
+
+	private void skipWhitespace() {
+		while (pos < limit && isWhitespace(chars[pos])) {
+			pos++;
+		}
+	}
+
+	private void expect(char ch) {
+		if (pos >= limit || chars[pos] != ch) {
+			throw error("'" + ch + "' expected");
+		}
+		pos++;
+	}
+
+	private boolean startsWith(String s) {
+		final int len = s.length();
+		if (pos + len > limit) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (chars[pos + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int indexOf(String s, int from) {
+		final int len = s.length();
+		final char first = s.charAt(0);
+		for (int i = from, end = limit - len; i <= end; i++) {
+			if (chars[i] != first) {
+				continue;
+			}
+			int j = 1;
+			for (; j < len && chars[i + j] == s.charAt(j); j++) {
+			}
+			if (j == len) {
+				return i;
+			}
+		}
+		throw error("'" + s + "' expected before end of text");
+	}
+
+	private boolean regionEquals(int s1, int len1, int s2, int len2) {
+		if (len1 != len2) {
+			return false;
+		}
+		for (int i = 0; i < len1; i++) {
+			if (chars[s1 + i] != chars[s2 + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private RuntimeException error(String message) {
+		return LSystem.runThrow(message + " at offset " + pos);
+	}
+
+	static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t';
+	}
+
+	static boolean equals(char[] c, int start, int len, CharSequence s) {
+		if (s == null || s.length() != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (c[start + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 从池中取得与字符区间相同的字符串,避免重复出现的标签名与属性名反复创建
+	 * 
+	 * @param start
+	 * @param len
+	 * @return
+	 */
+	String pooled(int start, int len) {
+		final char[] c = chars;
+		int hash = 0;
+		for (int i = 0; i < len; i++) {
+			hash = 31 * hash + c[start + i];
+		}
+		final int slot = (hash ^ (hash >>> 16)) & (POOL_SIZE - 1);
+		String s = namePool[slot];
+		if (s == null || !equals(c, start, len, s)) {
+			s = new String(c, start, len);
+			namePool[slot] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * 在回调中调用,停止后续解析
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+
+	public int getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * 当前事件在文档中的标记序号(标签,文本,注释各计一次)
+	 * 
+	 * @return
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * 当前打开的元素层级,开始标签事件中包含当前元素本身
+	 * 
+	 * @return
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public char[] getChars() {
+		return chars;
+	}
+
+	public int getOffset() {
+		return pos;
+	}
+
+	public boolean isEmptyElement() {
+		return emptyElement;
+	}
+
+	public String getName() {
+		return pooled(nameStart, nameLength);
+	}
+
+	public boolean isName(CharSequence name) {
+		return equals(chars, nameStart, nameLength, name);
+	}
+
+	public int getNameStart() {
+		return nameStart;
+	}
+
+	public int getNameLength() {
+		return nameLength;
+	}
+
+	public String getAttributeName() {
+		return pooled(attrNameStart, attrNameLength);
+	}
+
+	public boolean isAttribute(CharSequence name) {
+		return equals(chars, attrNameStart, attrNameLength, name);
+	}
+
+	public int getAttributeNameStart() {
+		return attrNameStart;
+	}
+
+	public int getAttributeNameLength() {
+		return attrNameLength;
+	}
+
+	public String getAttributeValue() {
+		return new String(chars, attrValueStart, attrValueLength);
+	}
+
+	public int getAttributeValueStart() {
+		return attrValueStart;
+	}
+
+	public int getAttributeValueLength() {
+		return attrValueLength;
+	}
+
+	/**
+	 * 直接从字符区间解析整数属性值,无法解析时返回默认值
+	 * 
+	 * @param v
+	 * @return
+	 */
+	public int getAttributeInt(int v) {
+		return parseInt(chars, attrValueStart, attrValueLength, v);
+	}
+
+	public float getAttributeFloat(float v) {
+		if (attrValueLength == 0) {
+			return v;
+		}
+		try {
+			return Float.parseFloat(getAttributeValue());
+		} catch (Exception ex) {
+			return v;
+		}
+	}
+
+	public String getText() {
+		return new String(chars, textStart, textLength);
+	}
+
+	public int getTextStart() {
+		return textStart;
+	}
+
+	public int getTextLength() {
+		return textLength;
+	}
+
+	/**
+	 * 当前文本是否只包含空白字符
+	 * 
+	 * @return
+	 */
+	public boolean isWhitespace() {
+		for (int i = textStart, end = textStart + textLength; i < end; i++) {
+			if (!isWhitespace(chars[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 当前标记在原文中的起点(包含尖括号等标记符号)
+	 * 
+	 * @return
+	 */
+	public int getRawStart() {
+		return rawStart;
+	}
+
+	public int getRawLength() {
+		return rawLength;
+	}
+
+	static int parseInt(char[] c, int start, int len, int v) {
+		if (len == 0 || len > 10) {
+			return v;
+		}
+		int i = start;
+		final int end = start + len;
+		boolean negative = false;
+		if (c[i] == '-' || c[i] == '+') {
+			negative = c[i] == '-';
+			if (++i == end) {
+				return v;
+			}
+		}
+		long result = 0;
+		for (; i < end; i++) {
+			int d = c[i] - '0';
+			if (d < 0 || d > 9) {
+				return v;
+			}
+			result = result * 10 + d;
+		}
+		if (negative) {
+			result = -result;
+		}
+		if (result > Integer.MAX_VALUE || result < Integer.MIN_VALUE) {
+			return v;
+		}
+		return (int) result;
+	}
+
+}